@@ -175,11 +175,17 @@ public class MapGoogleController extends MapController<MapView, MapGoogleControl
         imageFile = new ImageFile(tdlib, avatar);
         imageFile.setSwOnly(true);
         imageFile.setSize(ChatView.getDefaultAvatarCacheSize());
-        synchronized (ImageCache.getReferenceCounters()) {
-          Bitmap avatarBitmap = ImageCache.instance().getBitmap(imageFile);
-          if (U.isValidBitmap(avatarBitmap)) {
-            drawAvatar(c, avatarBitmap);
-            return;
+        Bitmap avatarBitmap = ImageCache.instance().getBitmap(imageFile);
+        if (avatarBitmap != null) {
+          // Hold reference while drawing, so the bitmap can't be recycled by eviction
+          ImageCache.instance().addReference(imageFile, avatarBitmap);
+          try {
+            if (U.isValidBitmap(avatarBitmap)) {
+              drawAvatar(c, avatarBitmap);
+              return;
+            }
+          } finally {
+            ImageCache.instance().removeReference(imageFile, avatarBitmap);
           }
         }
       } else {
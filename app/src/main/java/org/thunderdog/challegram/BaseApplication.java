@@ -20,6 +20,8 @@ import androidx.camera.core.CameraXConfig;
 import androidx.multidex.MultiDexApplication;
 import androidx.work.Configuration;
 
+import org.thunderdog.challegram.loader.ImageCache;
+import org.thunderdog.challegram.loader.cache.BitmapPool;
 import org.thunderdog.challegram.tool.UI;
 
 public final class BaseApplication extends MultiDexApplication implements Configuration.Provider, CameraXConfig.Provider {
@@ -29,6 +31,14 @@ public final class BaseApplication extends MultiDexApplication implements Config
     UI.initApp(getApplicationContext());
   }
 
+  @Override
+  public void onTrimMemory (int level) {
+    super.onTrimMemory(level);
+    // Cache trim comes first, as evicted bitmaps are released to the pool
+    ImageCache.instance().trimMemory(level);
+    BitmapPool.instance().trimMemory(level);
+  }
+
   @NonNull
   @Override
   public Configuration getWorkManagerConfiguration () {
@@ -350,6 +350,7 @@ public class Log {
 
   public static final int SETTING_ANDROID_LOG = 0x01;
   public static final int SETTING_DISABLE_FULLY = 0x02;
+  public static final int SETTING_ASYNC_FORMAT = 0x04;
 
   public static final int RUNTIME_NOT_ASYNC = 0x01;
 
@@ -357,6 +358,9 @@ public class Log {
   private static final int ACTION_LOG_CLOSE = 1;
   private static final int ACTION_GET_LOG_FILES = 2;
   private static final int ACTION_DELETE_ALL = 3;
+  private static final int ACTION_DRAIN_BUFFER = 4;
+
+  private static final int BUFFER_CAPACITY = 1024;
 
   // Don't forget to duplicate new values in log.h
   public static final int TAG_NETWORK_STATE = 1;
@@ -416,6 +420,7 @@ public class Log {
   private static long tags;
 
   private static @Nullable BaseThread pool;
+  private static volatile LogBuffer buffer;
 
   // == Settings ==
 
@@ -497,7 +502,7 @@ public class Log {
   public static void setSetting (int setting, boolean enabled) {
     if (enabled != checkSetting(setting)) {
       settings = BitwiseUtils.setFlag(settings, setting, enabled);
-      Settings.instance().putInt(Settings.KEY_LOG_SETTINGS, setting);
+      Settings.instance().putInt(Settings.KEY_LOG_SETTINGS, settings);
     }
   }
 
@@ -505,6 +510,10 @@ public class Log {
     synchronized (Log.class) {
       if (enabled != ((runtimeFlags & runtimeFlag) == runtimeFlag)) {
         runtimeFlags = BitwiseUtils.setFlag(runtimeFlags, runtimeFlag, enabled);
+        if (enabled && runtimeFlag == RUNTIME_NOT_ASYNC) {
+          // Usually a crash, write everything that is still waiting to be formatted
+          drainBuffer(false);
+        }
       }
     }
   }
@@ -596,6 +605,10 @@ public class Log {
                       logToFileImpl(msg.arg1, msg.arg2, (String) msg.obj);
                       break;
                     }
+                    case ACTION_DRAIN_BUFFER: {
+                      drainBuffer(true);
+                      break;
+                    }
                     case ACTION_LOG_CLOSE: {
                       closeLogImpl();
                       break;
@@ -709,74 +722,148 @@ public class Log {
     boolean force = Config.USE_CRASHLYTICS && level <= LEVEL_ERROR;
     boolean hasPermission = checkPermission(tag, level);
     if (hasPermission || force) {
+      // Warnings and errors are always formatted right away, as they may precede a crash.
+      // Arguments that may change before the log thread gets to them are formatted right away as well
+      if (!force && level > LEVEL_WARNING && (settings & SETTING_ASYNC_FORMAT) != 0 && !isCapturing && (runtimeFlags & RUNTIME_NOT_ASYNC) == 0 && isImmutable(args) && offerToBuffer(tag, level, fmt, t, args)) {
+        return;
+      }
+      LogBuffer buffer = Log.buffer;
+      if (buffer != null && !buffer.isEmpty()) {
+        // Output deferred messages first, so they don't appear after the ones that were logged later
+        drainBuffer((runtimeFlags & RUNTIME_NOT_ASYNC) == 0);
+      }
       final String sourceMessage = args.length != 0 ? String.format(Locale.US, fmt, args) : fmt;
-      if ((settings & SETTING_ANDROID_LOG) != 0 || force) {
-        final int priority = getAndroidPriority(level);
-        final String androidTag = tag != 0 ? getLogTag(tag) : null;
-        String androidMessage;
-        if (androidTag != null) {
-          androidMessage = "[" + androidTag + "] " + sourceMessage;
-        } else {
-          androidMessage = sourceMessage;
-        }
-        if (hasPermission) {
-          if (t != null) {
-            switch (priority) {
-              case android.util.Log.ASSERT:
-              case android.util.Log.ERROR:
-                android.util.Log.e(LOG_TAG, androidMessage, t);
-                break;
-              case android.util.Log.WARN:
-                android.util.Log.w(LOG_TAG, androidMessage, t);
-                break;
-              case android.util.Log.INFO:
-                android.util.Log.i(LOG_TAG, androidMessage, t);
-                break;
-              case android.util.Log.DEBUG:
-                android.util.Log.d(LOG_TAG, androidMessage, t);
-                break;
-              case android.util.Log.VERBOSE:
-                android.util.Log.v(LOG_TAG, androidMessage, t);
-                break;
-            }
-          } else {
-            android.util.Log.println(priority, LOG_TAG, androidMessage);
-          }
-        }
-        if (force) {
-          logExternally(androidMessage, t);
-        }
+      output(tag, level, sourceMessage, t, hasPermission, force, (runtimeFlags & RUNTIME_NOT_ASYNC) == 0);
+      if (level == LEVEL_ASSERT && !isCapturing) {
+        throw new AssertionError(sourceMessage);
       }
-      if (hasPermission && ((settings & SETTING_DISABLE_FULLY) == 0 || isCapturing)) {
-        final String fileMessage;
+    }
+  }
+
+  private static void output (int tag, int level, @NonNull String sourceMessage, @Nullable Throwable t, boolean hasPermission, boolean force, boolean async) {
+    if ((settings & SETTING_ANDROID_LOG) != 0 || force) {
+      final int priority = getAndroidPriority(level);
+      final String androidTag = tag != 0 ? getLogTag(tag) : null;
+      String androidMessage;
+      if (androidTag != null) {
+        androidMessage = "[" + androidTag + "] " + sourceMessage;
+      } else {
+        androidMessage = sourceMessage;
+      }
+      if (hasPermission) {
         if (t != null) {
-          StringBuilder b = new StringBuilder(sourceMessage);
-          if (b.length() > 0) {
-            b.append('\n');
+          switch (priority) {
+            case android.util.Log.ASSERT:
+            case android.util.Log.ERROR:
+              android.util.Log.e(LOG_TAG, androidMessage, t);
+              break;
+            case android.util.Log.WARN:
+              android.util.Log.w(LOG_TAG, androidMessage, t);
+              break;
+            case android.util.Log.INFO:
+              android.util.Log.i(LOG_TAG, androidMessage, t);
+              break;
+            case android.util.Log.DEBUG:
+              android.util.Log.d(LOG_TAG, androidMessage, t);
+              break;
+            case android.util.Log.VERBOSE:
+              android.util.Log.v(LOG_TAG, androidMessage, t);
+              break;
           }
-          toStringBuilder(t, 10, b);
-          fileMessage = b.toString();
         } else {
-          fileMessage = sourceMessage;
+          android.util.Log.println(priority, LOG_TAG, androidMessage);
+        }
+      }
+      if (force) {
+        logExternally(androidMessage, t);
+      }
+    }
+    if (hasPermission && ((settings & SETTING_DISABLE_FULLY) == 0 || isCapturing)) {
+      final String fileMessage;
+      if (t != null) {
+        StringBuilder b = new StringBuilder(sourceMessage);
+        if (b.length() > 0) {
+          b.append('\n');
         }
+        toStringBuilder(t, 10, b);
+        fileMessage = b.toString();
+      } else {
+        fileMessage = sourceMessage;
+      }
 
-        logToFile(tag, level, fileMessage, (runtimeFlags & RUNTIME_NOT_ASYNC) == 0);
-        if (isCapturing) {
-          switch (level) {
-            case LEVEL_ERROR: {
-              capturedErrors++;
-              break;
-            }
-            case LEVEL_WARNING: {
-              capturedWarnings++;
-              break;
-            }
+      logToFile(tag, level, fileMessage, async);
+      if (isCapturing) {
+        switch (level) {
+          case LEVEL_ERROR: {
+            capturedErrors++;
+            break;
+          }
+          case LEVEL_WARNING: {
+            capturedWarnings++;
+            break;
           }
         }
       }
-      notifyOutputListeners(tag, level, sourceMessage, t);
-      if (level == LEVEL_ASSERT && !isCapturing) {
-        throw new AssertionError(sourceMessage);
+    }
+    notifyOutputListeners(tag, level, sourceMessage, t);
+  }
+
+  // Asynchronous formatting
+
+  private static boolean isImmutable (@NonNull Object[] args) {
+    for (Object arg : args) {
+      if (arg != null && !(
+        arg instanceof String ||
+        arg instanceof Integer || arg instanceof Long || arg instanceof Short || arg instanceof Byte ||
+        arg instanceof Float || arg instanceof Double ||
+        arg instanceof Boolean || arg instanceof Character ||
+        arg instanceof Enum
+      )) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean offerToBuffer (int tag, int level, @NonNull String fmt, @Nullable Throwable t, @NonNull Object[] args) {
+    BaseThread pool = preparePool();
+    if (pool == null) {
+      return false;
+    }
+    LogBuffer buffer = Log.buffer;
+    if (buffer == null) {
+      synchronized (Log.class) {
+        if ((buffer = Log.buffer) == null) {
+          Log.buffer = buffer = new LogBuffer(BUFFER_CAPACITY);
+        }
+      }
+    }
+    switch (buffer.offer(tag, level, fmt, t, args)) {
+      case LogBuffer.RESULT_QUEUED_NEED_DRAIN:
+        pool.sendMessage(Message.obtain(pool.getHandler(), ACTION_DRAIN_BUFFER), 0);
+        return true;
+      case LogBuffer.RESULT_QUEUED:
+        return true;
+      case LogBuffer.RESULT_FULL:
+      default:
+        // Writer can't keep up, so formatting here would only make things worse
+        buffer.onDropped();
+        return true;
+    }
+  }
+
+  private static void drainBuffer (boolean async) {
+    LogBuffer buffer = Log.buffer;
+    if (buffer == null) {
+      return;
+    }
+    synchronized (Log.class) {
+      // When async, file writes are queued after the ones that were sent before, so file keeps the same order
+      int droppedCount = buffer.drain((tag, level, message, t) ->
+        output(tag, level, message, t, true, false, async)
+      );
+      if (droppedCount > 0) {
+        output(0, LEVEL_WARNING, droppedCount + " log messages dropped, because they were logged faster than written", null, true, false, async);
       }
     }
   }
@@ -0,0 +1,137 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Locale;
+
+/**
+ * Fixed-size ring of not yet formatted {@link Log} calls.
+ *
+ * Callers store only tag, level, format string and the arguments array they already have,
+ * so recording an entry costs a short critical section and no allocations.
+ * Format strings are kept by reference: they are almost always literals, so the reference
+ * works as an identifier, and formatting happens only when entries are drained by the writer.
+ *
+ * Entries are drained by a single writer at a time (callers hold {@code Log.class} lock),
+ * slots being drained are not reused until {@link #drain(Writer)} finishes.
+ */
+final class LogBuffer {
+  interface Writer {
+    void write (int tag, int level, @NonNull String message, @Nullable Throwable t);
+  }
+
+  static final int RESULT_FULL = 0;
+  static final int RESULT_QUEUED = 1;
+  static final int RESULT_QUEUED_NEED_DRAIN = 2;
+
+  private final int mask;
+  private final int[] tags, levels;
+  private final String[] formats;
+  private final Object[][] args;
+  private final Throwable[] errors;
+
+  private long head, tail;
+  private boolean isDrainScheduled;
+  private int droppedCount;
+
+  LogBuffer (int capacity) {
+    if (Integer.bitCount(capacity) != 1)
+      throw new IllegalArgumentException(Integer.toString(capacity));
+    this.mask = capacity - 1;
+    this.tags = new int[capacity];
+    this.levels = new int[capacity];
+    this.formats = new String[capacity];
+    this.args = new Object[capacity][];
+    this.errors = new Throwable[capacity];
+  }
+
+  /**
+   * @return {@link #RESULT_QUEUED_NEED_DRAIN}, when caller has to schedule {@link #drain(Writer)},
+   * or {@link #RESULT_FULL}, when entry was not recorded.
+   */
+  int offer (int tag, int level, @NonNull String fmt, @Nullable Throwable t, @NonNull Object[] args) {
+    synchronized (this) {
+      if (head - tail > mask) {
+        return RESULT_FULL;
+      }
+      int slot = (int) (head & mask);
+      this.tags[slot] = tag;
+      this.levels[slot] = level;
+      this.formats[slot] = fmt;
+      this.args[slot] = args;
+      this.errors[slot] = t;
+      head++;
+      if (isDrainScheduled) {
+        return RESULT_QUEUED;
+      }
+      isDrainScheduled = true;
+      return RESULT_QUEUED_NEED_DRAIN;
+    }
+  }
+
+  boolean isEmpty () {
+    synchronized (this) {
+      return head == tail && droppedCount == 0;
+    }
+  }
+
+  void onDropped () {
+    synchronized (this) {
+      droppedCount++;
+    }
+  }
+
+  /**
+   * Formats all recorded entries and passes them to the writer in the order they were recorded.
+   *
+   * @return number of entries that were dropped because the buffer was full since the previous call
+   */
+  int drain (@NonNull Writer writer) {
+    long from, to;
+    int droppedCount;
+    synchronized (this) {
+      // Entries recorded from now on need another drain
+      isDrainScheduled = false;
+      from = tail;
+      to = head;
+      droppedCount = this.droppedCount;
+      this.droppedCount = 0;
+    }
+    for (long i = from; i < to; i++) {
+      int slot = (int) (i & mask);
+      String fmt = formats[slot];
+      Object[] args = this.args[slot];
+      Throwable t = errors[slot];
+      formats[slot] = null;
+      this.args[slot] = null;
+      errors[slot] = null;
+      String message;
+      try {
+        message = args.length != 0 ? String.format(Locale.US, fmt, args) : fmt;
+      } catch (Throwable formatError) {
+        // Same call would have thrown in the caller thread, but it is already gone
+        message = fmt + " (" + formatError.getClass().getSimpleName() + ")";
+      }
+      writer.write(tags[slot], levels[slot], message, t);
+    }
+    synchronized (this) {
+      tail = to;
+    }
+    return droppedCount;
+  }
+}
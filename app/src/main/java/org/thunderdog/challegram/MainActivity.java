@@ -22,6 +22,7 @@ import android.util.TypedValue;
 import android.view.Gravity;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.FrameLayout;
 import android.widget.LinearLayout;
 import android.widget.TextView;
@@ -142,6 +143,25 @@ public class MainActivity extends BaseActivity implements GlobalAccountListener,
       initController(account.tdlib(), account.tdlib().authorizationStatus());
     }
 
+    // Subsystems that weren't needed for the first frame are created in background after it,
+    // starting with the current account, then other accounts that are already running
+    rootView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+      @Override
+      public boolean onPreDraw () {
+        rootView.getViewTreeObserver().removeOnPreDrawListener(this);
+        rootView.post(() -> {
+          tdlib.startupGraph().warmUp();
+          for (TdlibAccount otherAccount : TdlibManager.instance()) {
+            Tdlib otherTdlib = otherAccount.activeTdlib();
+            if (otherTdlib != null) {
+              otherTdlib.startupGraph().warmUp();
+            }
+          }
+        });
+        return true;
+      }
+    });
+
     if (Config.AWAKE_ALL_TDLIB_INSTANCES) {
       Tdlib currentTdlib = TdlibManager.instance().current();
       currentTdlib.awaitConnection(() -> {
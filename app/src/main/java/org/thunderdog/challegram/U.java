@@ -2312,6 +2312,24 @@ public class U {
     }
   }
 
+  /**
+   * Same as {@link #measureText(CharSequence, int, int, Paint)}, but the run is measured without
+   * the rest of {@code in} as its context, so result depends only on the measured characters.
+   */
+  public static float measureTextRun (@NonNull CharSequence in, int start, int end, @NonNull Paint p) {
+    final int count = end - start;
+    if (count <= 0) {
+      return 0;
+    }
+    if (Config.USE_TEXT_ADVANCE && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && Strings.getTextDirection(in, start, end) != Strings.DIRECTION_RTL) {
+      return p.getRunAdvance(in, start, end, start, end, false, end);
+    } else {
+      float[] widths = pickWidths(count, true);
+      p.getTextWidths(in, start, end, widths);
+      return ArrayUtils.sum(widths, count);
+    }
+  }
+
   public static byte[] computeSHA1(byte[] convertme, int offset, int len) {
     try {
       java.security.MessageDigest md = java.security.MessageDigest.getInstance("SHA-1");
@@ -1,153 +1,90 @@
 package org.thunderdog.challegram.charts;
 
+/**
+ * Range min/max queries over chart values, backed by min/max mip levels.
+ *
+ * Level K holds min/max of each 2^K consecutive values, level 0 is the source array itself.
+ * Levels are built lazily: a query over N values needs only levels up to log2(N),
+ * so zoomed-in chart never builds the upper ones. Once built, levels are kept,
+ * and queries made on each frame while panning don't allocate.
+ *
+ * Not thread-safe, must be queried from the same thread.
+ */
 public class SegmentTree {
 
-  private Node[] heap;
-  private int[] array;
-  private int size;
+  private final int[] array;
+  private final int[][] maxLevels = new int[Integer.SIZE][];
+  private final int[][] minLevels = new int[Integer.SIZE][];
+  private int levelCount;
 
   public SegmentTree(int[] array) {
     this.array = array;
-    if (array.length < 30) {
-      return;
-    }
-    //The max size of this array is about 2 * 2 ^ log2(n) + 1
-    size = (int) (2 * Math.pow(2.0, Math.floor((Math.log((double) array.length) / Math.log(2.0)) + 1)));
-    heap = new Node[size];
-    build(1, 0, array.length);
+    this.maxLevels[0] = this.minLevels[0] = array;
+    this.levelCount = 1;
   }
 
-
-  private void build(int v, int from, int size) {
-    heap[v] = new Node();
-    heap[v].from = from;
-    heap[v].to = from + size - 1;
-
-    if (size == 1) {
-      heap[v].sum = array[from];
-      heap[v].max = array[from];
-      heap[v].min = array[from];
-    } else {
-      //Build childs
-      build(2 * v, from, size / 2);
-      build(2 * v + 1, from + size / 2, size - size / 2);
-
-      heap[v].sum = heap[2 * v].sum + heap[2 * v + 1].sum;
-      //max = max of the children
-      heap[v].max = Math.max(heap[2 * v].max, heap[2 * v + 1].max);
-      heap[v].min = Math.min(heap[2 * v].min, heap[2 * v + 1].min);
+  private void ensureLevel(int level) {
+    while (levelCount <= level) {
+      int[] prevMax = maxLevels[levelCount - 1];
+      int[] prevMin = minLevels[levelCount - 1];
+      int size = (prevMax.length + 1) >> 1;
+      int[] max = new int[size];
+      int[] min = new int[size];
+      for (int i = 0; i < size; i++) {
+        int left = i << 1;
+        int right = left + 1;
+        if (right < prevMax.length) {
+          max[i] = Math.max(prevMax[left], prevMax[right]);
+          min[i] = Math.min(prevMin[left], prevMin[right]);
+        } else {
+          max[i] = prevMax[left];
+          min[i] = prevMin[left];
+        }
+      }
+      maxLevels[levelCount] = max;
+      minLevels[levelCount] = min;
+      levelCount++;
     }
   }
 
   public int rMaxQ(int from, int to) {
-    if (array.length < 30) {
-      int max = Integer.MIN_VALUE;
-      if (from < 0) from = 0;
-      if (to > array.length - 1) to = array.length - 1;
-      for (int i = from; i <= to; i++) {
-        if (array[i] > max) max = array[i];
+    if (from < 0) from = 0;
+    if (to > array.length - 1) to = array.length - 1;
+    int max = Integer.MIN_VALUE;
+    // [left, right) range on the current level: take unpaired edges, then go one level up
+    int left = from, right = to + 1;
+    for (int level = 0; left < right; level++) {
+      ensureLevel(level);
+      int[] values = maxLevels[level];
+      if ((left & 1) != 0) {
+        max = Math.max(max, values[left++]);
       }
-      return max;
-    }
-    return rMaxQ(1, from, to);
-  }
-
-  private int rMaxQ(int v, int from, int to) {
-    Node n = heap[v];
-    //If you did a range update that contained this node, you can infer the Min value without going down the tree
-    if (n.pendingVal != null && contains(n.from, n.to, from, to)) {
-      return n.pendingVal;
-    }
-
-    if (contains(from, to, n.from, n.to)) {
-      return heap[v].max;
-    }
-
-    if (intersects(from, to, n.from, n.to)) {
-      propagate(v);
-      int leftMin = rMaxQ(2 * v, from, to);
-      int rightMin = rMaxQ(2 * v + 1, from, to);
-
-      return Math.max(leftMin, rightMin);
+      if ((right & 1) != 0) {
+        max = Math.max(max, values[--right]);
+      }
+      left >>= 1;
+      right >>= 1;
     }
-
-    return 0;
+    return max;
   }
 
   public int rMinQ(int from, int to) {
-    if (array.length < 30) {
-      int min = Integer.MAX_VALUE;
-      if (from < 0) from = 0;
-      if (to > array.length - 1) to = array.length - 1;
-      for (int i = from; i <= to; i++) {
-        if (array[i] < min) min = array[i];
+    if (from < 0) from = 0;
+    if (to > array.length - 1) to = array.length - 1;
+    int min = Integer.MAX_VALUE;
+    int left = from, right = to + 1;
+    for (int level = 0; left < right; level++) {
+      ensureLevel(level);
+      int[] values = minLevels[level];
+      if ((left & 1) != 0) {
+        min = Math.min(min, values[left++]);
       }
-      return min;
-    }
-    return rMinQ(1, from, to);
-  }
-
-  private int rMinQ(int v, int from, int to) {
-    Node n = heap[v];
-    //If you did a range update that contained this node, you can infer the Min value without going down the tree
-    if (n.pendingVal != null && contains(n.from, n.to, from, to)) {
-      return n.pendingVal;
-    }
-
-    if (contains(from, to, n.from, n.to)) {
-      return heap[v].min;
-    }
-
-    if (intersects(from, to, n.from, n.to)) {
-      propagate(v);
-      int leftMin = rMinQ(2 * v, from, to);
-      int rightMin = rMinQ(2 * v + 1, from, to);
-
-      return Math.min(leftMin, rightMin);
-    }
-
-    return Integer.MAX_VALUE;
-  }
-
-  private void propagate(int v) {
-    Node n = heap[v];
-
-    if (n.pendingVal != null) {
-      change(heap[2 * v], n.pendingVal);
-      change(heap[2 * v + 1], n.pendingVal);
-      n.pendingVal = null;
-    }
-  }
-
-  private void change(Node n, int value) {
-    n.pendingVal = value;
-    n.sum = n.size() * value;
-    n.max = value;
-    n.min = value;
-    array[n.from] = value;
-
-  }
-
-  private boolean contains(int from1, int to1, int from2, int to2) {
-    return from2 >= from1 && to2 <= to1;
-  }
-
-  private boolean intersects(int from1, int to1, int from2, int to2) {
-    return from1 <= from2 && to1 >= from2   //  (.[..)..] or (.[...]..)
-      || from1 >= from2 && from1 <= to2; // [.(..]..) or [..(..)..
-  }
-
-  static class Node {
-    int sum;
-    int max;
-    int min;
-
-    Integer pendingVal = null;
-    int from;
-    int to;
-
-    int size() {
-      return to - from + 1;
+      if ((right & 1) != 0) {
+        min = Math.min(min, values[--right]);
+      }
+      left >>= 1;
+      right >>= 1;
     }
+    return min;
   }
 }
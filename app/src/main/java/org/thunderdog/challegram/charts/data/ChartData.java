@@ -1,79 +1,97 @@
 package org.thunderdog.challegram.charts.data;
 
 import android.graphics.Color;
+import android.util.JsonReader;
+import android.util.JsonToken;
 
 import androidx.core.graphics.ColorUtils;
 
-import org.json.JSONArray;
 import org.json.JSONException;
-import org.json.JSONObject;
 import org.thunderdog.challegram.charts.SegmentTree;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class ChartData {
 
+    private static final int DAY_LABEL_CACHE_SIZE = 64; // Must be a power of two
+
     public long[] x;
     public float[] xPercentage;
-    public String[] daysLookup;
     public ArrayList<Line> lines = new ArrayList<>();
     public int maxValue = 0;
     public int minValue = Integer.MAX_VALUE;
 
     public float oneDayPercentage = 0f;
 
+    private final String[] dayLabels = new String[DAY_LABEL_CACHE_SIZE];
+    private final int[] dayLabelIndexes = new int[DAY_LABEL_CACHE_SIZE];
+    private SimpleDateFormat dayFormatter;
+
     protected ChartData() {
     }
 
     protected long timeStep;
 
-    public ChartData(JSONObject jsonObject) throws JSONException {
-        JSONArray columns = jsonObject.getJSONArray("columns");
-
-        int n = columns.length();
-        for (int i = 0; i < columns.length(); i++) {
-            JSONArray a = columns.getJSONArray(i);
-            if (a.getString(0).equals("x")) {
-                int len = a.length() - 1;
-                x = new long[len];
-                for (int j = 0; j < len; j++) {
-                    x[j] = a.getLong(j + 1);
-                }
-            } else {
-                Line l = new Line();
-                lines.add(l);
-                int len = a.length() - 1;
-                l.id = a.getString(0);
-                l.y = new int[len];
-                for (int j = 0; j < len; j++) {
-                    l.y[j] = a.getInt(j + 1);
-                    if (l.y[j] > l.maxValue) l.maxValue = l.y[j];
-                    if (l.y[j] < l.minValue) l.minValue = l.y[j];
+    /**
+     * Reads graph JSON in a single pass, writing columns straight into primitive arrays
+     * without building intermediate {@link org.json.JSONObject} tree.
+     */
+    public ChartData(String json) throws JSONException {
+        Map<String, String> colors = new HashMap<>();
+        Map<String, String> names = new HashMap<>();
+        try {
+            JsonReader reader = new JsonReader(new StringReader(json));
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "columns":
+                        readColumns(reader);
+                        break;
+                    case "colors":
+                        readStrings(reader, colors);
+                        break;
+                    case "names":
+                        readStrings(reader, names);
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
                 }
             }
-
-            if (x.length > 1) {
-                timeStep = x[1] - x[0];
-            } else {
-                timeStep = 86400000L;
-            }
-            measure();
+            reader.endObject();
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            JSONException exception = new JSONException(e.getMessage());
+            exception.initCause(e);
+            throw exception;
+        }
+        if (x == null) {
+            throw new JSONException("Missing x column");
         }
 
-        JSONObject colors = jsonObject.optJSONObject("colors");
-        JSONObject names = jsonObject.optJSONObject("names");
+        if (x.length > 1) {
+            timeStep = x[1] - x[0];
+        } else {
+            timeStep = 86400000L;
+        }
+        measure();
 
         Pattern colorPattern = Pattern.compile("(.*)(#.*)");
         for (int i = 0; i < lines.size(); i++) {
             Line line = lines.get(i);
 
-            if (colors != null) {
-                Matcher matcher = colorPattern.matcher(colors.getString(line.id));
+            String color = colors.get(line.id);
+            if (color != null) {
+                Matcher matcher = colorPattern.matcher(color);
                 if (matcher.matches()) {
                     String key = matcher.group(1);
                     if (key != null) {
@@ -85,13 +103,77 @@ public class ChartData {
                 }
             }
 
-            if (names != null) {
-                line.name = names.getString(line.id);
+            String name = names.get(line.id);
+            if (name != null) {
+                line.name = name;
+            }
+        }
+    }
+
+    private void readColumns(JsonReader reader) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            reader.beginArray();
+            String id = reader.nextString();
+            // All columns have the same length, so only the first one needs to grow its buffer
+            int expectedLength = x != null ? x.length : !lines.isEmpty() ? lines.get(0).y.length : 0;
+            if (id.equals("x")) {
+                x = readLongs(reader, expectedLength);
+            } else {
+                Line l = new Line();
+                l.id = id;
+                l.y = readInts(reader, expectedLength);
+                for (int value : l.y) {
+                    if (value > l.maxValue) l.maxValue = value;
+                    if (value < l.minValue) l.minValue = value;
+                }
+                lines.add(l);
+            }
+            reader.endArray();
+        }
+        reader.endArray();
+    }
+
+    private static long[] readLongs(JsonReader reader, int expectedLength) throws IOException {
+        long[] values = new long[Math.max(expectedLength, 256)];
+        int count = 0;
+        while (reader.hasNext()) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count << 1);
             }
+            values[count++] = reader.nextLong();
+        }
+        return count == values.length ? values : Arrays.copyOf(values, count);
+    }
 
+    private static int[] readInts(JsonReader reader, int expectedLength) throws IOException {
+        int[] values = new int[Math.max(expectedLength, 256)];
+        int count = 0;
+        while (reader.hasNext()) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count << 1);
+            }
+            values[count++] = (int) reader.nextLong();
         }
+        return count == values.length ? values : Arrays.copyOf(values, count);
     }
 
+    private static void readStrings(JsonReader reader, Map<String, String> out) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if (reader.peek() == JsonToken.STRING) {
+                out.put(key, reader.nextString());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
 
     protected void measure() {
         int n = x.length;
@@ -118,29 +200,36 @@ public class ChartData {
         }
 
 
-        daysLookup = new String[(int) ((end - start) / timeStep) + 10];
-        SimpleDateFormat formatter;
-        if (timeStep == 1) {
-            formatter = null;
-        } else if (timeStep < 86400000L) {
-            formatter = new SimpleDateFormat("HH:mm");
-        } else {
-            formatter = new SimpleDateFormat("MMM d");
-        }
-
-        for (int i = 0; i < daysLookup.length; i++) {
-            if (timeStep == 1) {
-                daysLookup[i] = String.format(Locale.ENGLISH, "%02d:00", i);
-            } else {
-                daysLookup[i] = formatter.format(new Date(start + (i * timeStep)));
-            }
-        }
+        Arrays.fill(dayLabels, null);
+        dayFormatter = null;
 
         oneDayPercentage = timeStep / (float) (x[x.length - 1] - x[0]);
     }
 
+    /**
+     * Labels are formatted on demand, only visible ones are kept in a small cache.
+     */
     public String getDayString(int i) {
-        return daysLookup[(int) ((x[i] - x[0]) / timeStep)];
+        int day = (int) ((x[i] - x[0]) / timeStep);
+        // Visible labels are often a power of two steps apart, so mix the index before picking a slot
+        int slot = (day * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(DAY_LABEL_CACHE_SIZE));
+        String label = dayLabels[slot];
+        if (label == null || dayLabelIndexes[slot] != day) {
+            label = formatDay(day);
+            dayLabels[slot] = label;
+            dayLabelIndexes[slot] = day;
+        }
+        return label;
+    }
+
+    private String formatDay(int day) {
+        if (timeStep == 1) {
+            return String.format(Locale.ENGLISH, "%02d:00", day);
+        }
+        if (dayFormatter == null) {
+            dayFormatter = new SimpleDateFormat(timeStep < 86400000L ? "HH:mm" : "MMM d");
+        }
+        return dayFormatter.format(new Date(x[0] + (day * timeStep)));
     }
 
     public int findStartIndex(float v) {
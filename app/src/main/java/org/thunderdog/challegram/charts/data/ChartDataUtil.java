@@ -2,7 +2,6 @@ package org.thunderdog.challegram.charts.data;
 
 import org.drinkless.tdlib.TdApi;
 import org.json.JSONException;
-import org.json.JSONObject;
 
 public class ChartDataUtil {
   public static final int TYPE_LINEAR = 0;
@@ -11,16 +10,15 @@ public class ChartDataUtil {
   public static final int TYPE_STACK_PIE = 4;
 
   public static ChartData create (TdApi.StatisticalGraphData data, int type) throws JSONException {
-    JSONObject json = new JSONObject(data.jsonData);
     switch (type) {
       case TYPE_LINEAR:
-        return new ChartData(json);
+        return new ChartData(data.jsonData);
       case TYPE_DOUBLE_LINEAR:
-        return new DoubleLinearChartData(json);
+        return new DoubleLinearChartData(data.jsonData);
       case TYPE_STACK_BAR:
-        return new StackBarChartData(json);
+        return new StackBarChartData(data.jsonData);
       case TYPE_STACK_PIE:
-        return new StackLinearChartData(json);
+        return new StackLinearChartData(data.jsonData);
     }
     throw new IllegalArgumentException("type == " + type);
   }
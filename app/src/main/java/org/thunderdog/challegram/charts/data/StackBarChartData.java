@@ -2,7 +2,6 @@ package org.thunderdog.challegram.charts.data;
 
 
 import org.json.JSONException;
-import org.json.JSONObject;
 import org.thunderdog.challegram.charts.SegmentTree;
 
 public class StackBarChartData extends ChartData {
@@ -10,8 +9,8 @@ public class StackBarChartData extends ChartData {
     public int[] ySum;
     public SegmentTree ySumSegmentTree;
 
-    public StackBarChartData(JSONObject jsonObject) throws JSONException {
-        super(jsonObject);
+    public StackBarChartData(String json) throws JSONException {
+        super(json);
         init();
     }
 
@@ -1,7 +1,6 @@
 package org.thunderdog.challegram.charts.data;
 
 import org.json.JSONException;
-import org.json.JSONObject;
 import org.thunderdog.challegram.charts.SegmentTree;
 
 import java.util.ArrayList;
@@ -16,8 +15,8 @@ public class StackLinearChartData extends ChartData {
     public int simplifiedSize;
 
 
-    public StackLinearChartData(JSONObject jsonObject) throws JSONException {
-        super(jsonObject);
+    public StackLinearChartData(String json) throws JSONException {
+        super(json);
 
         int n = lines.get(0).y.length;
         int k = lines.size();
@@ -0,0 +1,135 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.component.chat;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from message identifier to {@link MessagesAdapter} position.
+ *
+ * Unlike {@link me.vkryl.core.collection.LongSparseIntArray}, lookups and inserts don't depend on the number of entries.
+ * Removal uses backward shift, so there are no tombstones and probe sequences stay short.
+ */
+final class MessageIdIndex {
+  public static final int NOT_FOUND = Integer.MIN_VALUE;
+
+  private static final int INITIAL_CAPACITY = 64; // Must be a power of two
+
+  private long[] keys;
+  private int[] values;
+  private int size;
+
+  public MessageIdIndex () {
+    allocate(INITIAL_CAPACITY);
+  }
+
+  private void allocate (int capacity) {
+    keys = new long[capacity];
+    values = new int[capacity];
+    Arrays.fill(values, NOT_FOUND);
+  }
+
+  private static int slotOf (long key, int mask) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+
+  public int size () {
+    return size;
+  }
+
+  public int get (long key) {
+    final int mask = keys.length - 1;
+    for (int slot = slotOf(key, mask); values[slot] != NOT_FOUND; slot = (slot + 1) & mask) {
+      if (keys[slot] == key) {
+        return values[slot];
+      }
+    }
+    return NOT_FOUND;
+  }
+
+  public void put (long key, int value) {
+    if (value == NOT_FOUND)
+      throw new IllegalArgumentException();
+    int mask = keys.length - 1;
+    int slot = slotOf(key, mask);
+    while (values[slot] != NOT_FOUND) {
+      if (keys[slot] == key) {
+        values[slot] = value;
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = key;
+    values[slot] = value;
+    if (++size * 2 > keys.length) {
+      grow();
+    }
+  }
+
+  public void remove (long key) {
+    final int mask = keys.length - 1;
+    int slot = slotOf(key, mask);
+    while (values[slot] != NOT_FOUND) {
+      if (keys[slot] == key) {
+        break;
+      }
+      slot = (slot + 1) & mask;
+    }
+    if (values[slot] == NOT_FOUND) {
+      return;
+    }
+    size--;
+    // Move following entries of the same cluster into the freed slot, if it's on their probe path
+    int free = slot;
+    for (int next = (free + 1) & mask; values[next] != NOT_FOUND; next = (next + 1) & mask) {
+      int desired = slotOf(keys[next], mask);
+      if (((next - desired) & mask) >= ((next - free) & mask)) {
+        keys[free] = keys[next];
+        values[free] = values[next];
+        free = next;
+      }
+    }
+    values[free] = NOT_FOUND;
+  }
+
+  public void clear () {
+    if (size == 0)
+      return;
+    if (keys.length > INITIAL_CAPACITY) {
+      allocate(INITIAL_CAPACITY);
+    } else {
+      Arrays.fill(values, NOT_FOUND);
+    }
+    size = 0;
+  }
+
+  private void grow () {
+    final long[] oldKeys = keys;
+    final int[] oldValues = values;
+    allocate(oldKeys.length << 1);
+    final int mask = keys.length - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldValues[i] != NOT_FOUND) {
+        int slot = slotOf(oldKeys[i], mask);
+        while (values[slot] != NOT_FOUND) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+}
@@ -43,6 +43,7 @@ import org.thunderdog.challegram.data.TGWebPage;
 import org.thunderdog.challegram.loader.AvatarReceiver;
 import org.thunderdog.challegram.loader.ComplexReceiver;
 import org.thunderdog.challegram.loader.DoubleImageReceiver;
+import org.thunderdog.challegram.loader.ImageDecodeScheduler;
 import org.thunderdog.challegram.loader.ImageReceiver;
 import org.thunderdog.challegram.loader.Receiver;
 import org.thunderdog.challegram.loader.gif.GifReceiver;
@@ -109,6 +110,7 @@ public class MessageView extends SparseDrawableView implements Destroyable, Draw
   private ImageReceiver contentReceiver;
   private DoubleImageReceiver previewReceiver;
   private ComplexReceiver complexReceiver;
+  private @ImageDecodeScheduler.Priority int imagePriority = ImageDecodeScheduler.Priority.VISIBLE;
   private MessageViewGroup parentMessageViewGroup;
   private MessagesManager manager;
 
@@ -436,6 +438,7 @@ public class MessageView extends SparseDrawableView implements Destroyable, Draw
     if (footerTextMediaReceiver == null) {
       footerTextMediaReceiver = new ComplexReceiver()
         .setUpdateListener(refreshRateLimiter);
+      footerTextMediaReceiver.setPriority(imagePriority);
       if (isAttached) {
         footerTextMediaReceiver.attach();
       } else {
@@ -447,10 +450,40 @@ public class MessageView extends SparseDrawableView implements Destroyable, Draw
 
   private boolean isAttached = true;
 
+  /**
+   * Changes decode priority of all images requested by this view.
+   * {@link ImageDecodeScheduler.Priority#PREFETCH} is used while the view is laid out outside of the viewport or detached.
+   */
+  public void setImagePriority (@ImageDecodeScheduler.Priority int priority) {
+    if (this.imagePriority != priority) {
+      this.imagePriority = priority;
+      avatarReceiver.setPriority(priority);
+      avatarsReceiver.setPriority(priority);
+      reactionsComplexReceiver.setPriority(priority);
+      textMediaReceiver.setPriority(priority);
+      emojiStatusReceiver.setPriority(priority);
+      replyReceiver.setPriority(priority);
+      replyTextMediaReceiver.setPriority(priority);
+      if (footerTextMediaReceiver != null) {
+        footerTextMediaReceiver.setPriority(priority);
+      }
+      if (contentReceiver != null) {
+        contentReceiver.setPriority(priority);
+      }
+      if (previewReceiver != null) {
+        previewReceiver.setPriority(priority);
+      }
+      if (complexReceiver != null) {
+        complexReceiver.setPriority(priority);
+      }
+    }
+  }
+
   public void onAttachedToRecyclerView () {
     getMessage().checkHighlightedText();
     if (!isAttached) {
       isAttached = true;
+      setImagePriority(ImageDecodeScheduler.Priority.VISIBLE);
       avatarReceiver.attach();
       avatarsReceiver.attach();
       gifReceiver.attach();
@@ -487,6 +520,7 @@ public class MessageView extends SparseDrawableView implements Destroyable, Draw
       if ((flags & FLAG_USE_COMPLEX_RECEIVER) != 0) {
         complexReceiver.detach();
       }
+      setImagePriority(ImageDecodeScheduler.Priority.PREFETCH);
     }
   }
 
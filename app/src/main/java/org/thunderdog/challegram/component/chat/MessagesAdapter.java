@@ -50,6 +50,12 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
 
   private final @Nullable ViewController<?> themeProvider;
 
+  // Message identifier -> (position - messageIndexOffset).
+  // Offset allows inserting and removing items on bottom without touching the rest of the index.
+  private final MessageIdIndex messageIndex = new MessageIdIndex();
+  private int messageIndexOffset;
+  private boolean messageIndexInvalidated = true;
+
   public MessagesAdapter (Context context, MessagesManager manager, @Nullable ViewController<?> themeProvider) {
     this.context = context;
     this.manager = manager;
@@ -212,8 +218,13 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
 
   public void replaceItem (int index, TGMessage msg) {
     if (items != null) {
-      items.get(index).onDestroy();
+      TGMessage prevMsg = items.get(index);
+      prevMsg.onDestroy();
       items.set(index, msg);
+      synchronized (messageIndex) {
+        unindexMessage(prevMsg, index);
+        indexMessage(msg, index);
+      }
       boolean includeTop = index > 0;
       if (includeTop) {
         TGMessage bottomMessage = items.get(index - 1);
@@ -240,6 +251,15 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
     if (items == null)
       return null;
     try {
+      int index = findMessageContainer(messageId);
+      if (index == -1) {
+        return null;
+      }
+      TGMessage container = items.get(index);
+      if (container.getChatId() == chatId) {
+        return container.getMessage(messageId);
+      }
+      // Same identifier in another chat, e.g. in the history of a migrated group
       for (TGMessage msg : items) {
         if (msg.getChatId() == chatId) {
           TdApi.Message message = msg.getMessage(messageId);
@@ -255,10 +275,9 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
   }
 
   public TGMessage findMessageById (long messageId) {
-    if (items == null) {
-      return null;
-    }
-    for (TGMessage msg : items) {
+    int index = findMessageContainer(messageId);
+    if (index != -1) {
+      TGMessage msg = items.get(index);
       if (msg.getId() == messageId) {
         return msg;
       }
@@ -273,10 +292,34 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
   // Index getters
 
   public int indexOfMessageContainer (MessageId messageId) {
-    if (items != null) {
+    if (items == null) {
+      return -1;
+    }
+    boolean foundInOtherChat = false;
+    int index = findMessageContainer(messageId.getMessageId());
+    if (index != -1) {
+      if (items.get(index).getChatId() == messageId.getChatId()) {
+        return index;
+      }
+      foundInOtherChat = true;
+    }
+    long[] otherMessageIds = messageId.getOtherMessageIds();
+    if (otherMessageIds != null) {
+      for (long otherMessageId : otherMessageIds) {
+        index = findMessageContainer(otherMessageId);
+        if (index != -1) {
+          if (items.get(index).getChatId() == messageId.getChatId()) {
+            return index;
+          }
+          foundInOtherChat = true;
+        }
+      }
+    }
+    if (foundInOtherChat) {
+      // Same identifier in another chat, e.g. in the history of a migrated group
       int i = 0;
       for (TGMessage item : items) {
-        if (item.getChatId() == messageId.getChatId() && item.isDescendantOrSelf(messageId.getMessageId(), messageId.getOtherMessageIds())) {
+        if (item.getChatId() == messageId.getChatId() && item.isDescendantOrSelf(messageId.getMessageId(), otherMessageIds)) {
           return i;
         }
         i++;
@@ -286,15 +329,120 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
   }
 
   public int indexOfMessageContainer (long messageId) {
+    return findMessageContainer(messageId);
+  }
+
+  // Message index
+
+  private void indexMessage (TGMessage msg, int position) {
+    final int value = position - messageIndexOffset;
+    msg.iterate(message -> messageIndex.put(message.id, value), false);
+  }
+
+  private void unindexMessage (TGMessage msg, int position) {
+    final int value = position - messageIndexOffset;
+    msg.iterate(message -> {
+      if (messageIndex.get(message.id) == value) {
+        messageIndex.remove(message.id);
+      }
+    }, false);
+  }
+
+  private void invalidateMessageIndex () {
+    synchronized (messageIndex) {
+      messageIndexInvalidated = true;
+    }
+  }
+
+  private void rebuildMessageIndexIfNeeded () {
+    if (!messageIndexInvalidated) {
+      return;
+    }
+    messageIndex.clear();
+    messageIndexOffset = 0;
+    if (items != null) {
+      // From top to bottom, so the bottommost container wins in case of duplicates
+      for (int i = items.size() - 1; i >= 0; i--) {
+        indexMessage(items.get(i), i);
+      }
+    }
+    messageIndexInvalidated = false;
+  }
+
+  private void reindexMessages (int fromIndex, int toIndex) {
+    for (int i = toIndex - 1; i >= fromIndex; i--) {
+      indexMessage(items.get(i), i);
+    }
+  }
+
+  private void onItemsInserted (int index, int count) {
+    synchronized (messageIndex) {
+      if (messageIndexInvalidated) {
+        return;
+      }
+      final int size = items.size();
+      if (index < size - index - count) {
+        // Shift everything up by moving the offset, then fix items below
+        messageIndexOffset += count;
+        reindexMessages(0, index + count);
+      } else {
+        reindexMessages(index, size);
+      }
+    }
+  }
+
+  private void onItemRemoved (TGMessage msg, int index) {
+    synchronized (messageIndex) {
+      if (messageIndexInvalidated) {
+        return;
+      }
+      unindexMessage(msg, index);
+      final int size = items.size();
+      if (index < size - index) {
+        messageIndexOffset--;
+        reindexMessages(0, index);
+      } else {
+        reindexMessages(index, size);
+      }
+    }
+  }
+
+  /**
+   * Must be called when identifiers of the message container change outside of the adapter,
+   * e.g. when it gets combined with other album parts or a message gets sent.
+   *
+   * Identifiers that are no longer part of the container are detected during lookup.
+   */
+  public void onMessageIdsChanged (int index) {
+    if (items == null || index < 0 || index >= items.size()) {
+      return;
+    }
+    synchronized (messageIndex) {
+      if (!messageIndexInvalidated) {
+        indexMessage(items.get(index), index);
+      }
+    }
+  }
+
+  private int findMessageContainer (long messageId) {
+    final ArrayList<TGMessage> items = this.items;
     if (items == null) {
       return -1;
     }
-    int i = 0;
-    for (TGMessage item : items) {
-      if (item.isDescendantOrSelf(messageId)) {
-        return i;
+    synchronized (messageIndex) {
+      for (int attempt = 0; attempt < 2; attempt++) {
+        rebuildMessageIndexIfNeeded();
+        int value = messageIndex.get(messageId);
+        if (value == MessageIdIndex.NOT_FOUND) {
+          return -1;
+        }
+        int index = value + messageIndexOffset;
+        if (index >= 0 && index < items.size() && items.get(index).isDescendantOrSelf(messageId)) {
+          return index;
+        }
+        // Container no longer holds this message, e.g. it was removed from album
+        messageIndexInvalidated = true;
       }
-      i++;
     }
     return -1;
   }
@@ -316,6 +464,7 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
       }
       items.clear();
     }
+    invalidateMessageIndex();
     U.notifyItemsReplaced(this, oldItemCount);
   }
 
@@ -325,6 +474,11 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
     }
     TGMessage msg = items.remove(fromIndex);
     items.add(toIndex, msg);
+    synchronized (messageIndex) {
+      if (!messageIndexInvalidated) {
+        reindexMessages(Math.min(fromIndex, toIndex), Math.max(fromIndex, toIndex) + 1);
+      }
+    }
 
     TGMessage topMessage = getMessage(toIndex + 1);
 
@@ -364,6 +518,7 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
       return null;
     }
     TGMessage msg = items.remove(index);
+    onItemRemoved(msg, index);
     msg.onDestroy();
     notifyItemRemoved(index);
     if (items.size() != 0) {
@@ -395,6 +550,7 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
       }
       items.clear();
     }
+    invalidateMessageIndex();
     if (message == null) {
       if (items != null) {
         items = null;
@@ -452,6 +608,7 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
         }
 
         items.add(index, message);
+        onItemsInserted(index, 1);
         notifyItemInserted(index);
 
         // FIXME for some reason bubble merging on bottom side does not work
@@ -518,6 +675,7 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
     int prevSize = items.size();
     if (top) {
       items.add(message);
+      onItemsInserted(prevSize, 1);
       if (prevSize == 0) {
         notifyItemChanged(0);
       } else {
@@ -530,6 +688,7 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
         notifyItemChanged(newIndex);
       }
       items.add(newIndex, message);
+      onItemsInserted(newIndex, 1);
       if (prevSize == 0) {
         notifyItemChanged(0);
       } else {
@@ -550,6 +709,7 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
       this.items.clear();
     }
     this.items.addAll(items);
+    invalidateMessageIndex();
     U.notifyItemsReplaced(this, oldItemCount);
   }
 
@@ -561,32 +721,14 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
     final int count = this.items.size();
 
     if (count > 0 && !items.isEmpty() && manager.needRemoveDuplicates()) {
-      if (items.size() > count) {
-        for (int i = items.size() - 1; i >= 0; i--) {
-          TGMessage msg = items.get(i);
-          if (indexOfMessageContainer(msg.getId()) != -1) {
-            items.remove(i);
-            if (i > 0) {
-              items.get(i - 1).mergeWith(items.size() > i ? items.get(i) : null, !fromTop && i - 1 == 0);
-              items.get(i - 1).rebuildLayout();
-            }
-          }
-        }
-      } else {
-        for (TGMessage item : this.items) {
-          for (int i = items.size() - 1; i >= 0; i--) {
-            TGMessage newItem = items.get(i);
-            if (item.isDescendantOrSelf(newItem.getId())) {
-              items.remove(i);
-              if (i > 0) {
-                items.get(i - 1).mergeWith(items.size() > i ? items.get(i) : null, !fromTop && i - 1 == 0);
-                items.get(i - 1).rebuildLayout();
-              }
-              break;
-            }
+      for (int i = items.size() - 1; i >= 0; i--) {
+        TGMessage msg = items.get(i);
+        if (indexOfMessageContainer(msg.getId()) != -1) {
+          items.remove(i);
+          if (i > 0) {
+            items.get(i - 1).mergeWith(items.size() > i ? items.get(i) : null, !fromTop && i - 1 == 0);
+            items.get(i - 1).rebuildLayout();
           }
-          if (items.isEmpty())
-            break;
         }
       }
     }
@@ -603,6 +745,7 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
         notifyItemChanged(count - 1);
       }
       this.items.addAll(items);
+      onItemsInserted(count, newCount);
       if (count == 0) {
         U.notifyItemsReplaced(this, oldItemCount);
       } else {
@@ -634,6 +777,7 @@ public class MessagesAdapter extends RecyclerView.Adapter<MessagesHolder> {
         notifyItemChanged(0);
       }
       this.items.addAll(0, items);
+      onItemsInserted(0, newCount);
       if (count == 0) {
         U.notifyItemsReplaced(this, oldItemCount);
       } else {
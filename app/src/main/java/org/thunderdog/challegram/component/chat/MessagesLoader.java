@@ -49,6 +49,12 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import me.vkryl.core.DateUtils;
 import me.vkryl.core.MathUtils;
@@ -520,6 +526,7 @@ public class MessagesLoader implements Client.ResultHandler {
     synchronized (lock) {
       lastHandler = null;
       isLoading = false;
+      prefetchedPage = null;
     }
   }
 
@@ -1100,6 +1107,9 @@ public class MessagesLoader implements Client.ResultHandler {
       }
 
       Client.ResultHandler handler = newHandler(allowMoreTop, allowMoreBottom, (mode != MODE_MORE_TOP && mode != MODE_MORE_BOTTOM) || !foundUnreadAtLeastOnce);
+      if (mode == MODE_MORE_TOP && function.getConstructor() == TdApi.GetChatHistory.CONSTRUCTOR && awaitPrefetchedPage((TdApi.GetChatHistory) function, handler)) {
+        return;
+      }
       //noinspection SwitchIntDef
       switch (function.getConstructor()) {
         case TdApi.SearchSecretMessages.CONSTRUCTOR: {
@@ -1118,6 +1128,115 @@ public class MessagesLoader implements Client.ResultHandler {
     }
   }
 
+  // Prefetch
+
+  private static final long PREFETCH_TTL_MS = 30000;
+
+  private static class PrefetchedPage {
+    public final long contextId;
+    public final TdApi.GetChatHistory function;
+    public final long time;
+
+    public boolean isLoaded;
+    public Runnable pendingRequest;
+
+    public PrefetchedPage (long contextId, TdApi.GetChatHistory function) {
+      this.contextId = contextId;
+      this.function = function;
+      this.time = SystemClock.uptimeMillis();
+    }
+
+    public boolean isExpired () {
+      return SystemClock.uptimeMillis() - time >= PREFETCH_TTL_MS;
+    }
+
+    public boolean matches (long contextId, TdApi.GetChatHistory function) {
+      return !isExpired() &&
+        this.contextId == contextId &&
+        this.function.chatId == function.chatId &&
+        this.function.fromMessageId == function.fromMessageId &&
+        this.function.offset == function.offset &&
+        this.function.limit == function.limit &&
+        this.function.onlyLocal == function.onlyLocal;
+    }
+  }
+
+  private PrefetchedPage prefetchedPage;
+
+  /**
+   * Requests the page {@link #loadMore(boolean)} would request next on top,
+   * so TDLib already has it locally by the time user scrolls to it.
+   *
+   * Result itself is dropped: edits, deletions and other updates that arrive
+   * before the page is needed wouldn't be applied to it,
+   * so the actual request is always sent again.
+   * Page is also forgotten after {@link #PREFETCH_TTL_MS} or once any message of the chat changes,
+   * see {@link #invalidatePrefetchedPage(long)}.
+   */
+  private void prefetchTop () {
+    if (specialMode != SPECIAL_MODE_NONE || hasSearchFilter() || messageThread != null || !canLoadTop) {
+      return;
+    }
+    final MessageId startTop = getStartTop();
+    if (startTop == null) {
+      return;
+    }
+    final TdApi.GetChatHistory function = new TdApi.GetChatHistory(startTop.getChatId(), startTop.getMessageId(), 0, CHUNK_SIZE_BIG, false);
+    final PrefetchedPage page;
+    synchronized (lock) {
+      if (isLoading || (prefetchedPage != null && prefetchedPage.matches(contextId, function))) {
+        return;
+      }
+      page = prefetchedPage = new PrefetchedPage(contextId, function);
+    }
+    tdlib.client().send(function, result -> {
+      final Runnable pendingRequest;
+      synchronized (lock) {
+        page.isLoaded = true;
+        pendingRequest = page.pendingRequest;
+        page.pendingRequest = null;
+      }
+      if (pendingRequest != null) {
+        pendingRequest.run();
+      }
+    });
+  }
+
+  /**
+   * Called on message updates, so the next request never waits for a page fetched before the change.
+   */
+  public void invalidatePrefetchedPage (long chatId) {
+    synchronized (lock) {
+      if (prefetchedPage != null && prefetchedPage.function.chatId == chatId) {
+        prefetchedPage = null;
+      }
+    }
+  }
+
+  /**
+   * @return true, if the request will be sent once the prefetch of the same page completes,
+   * instead of being sent right away
+   */
+  private boolean awaitPrefetchedPage (TdApi.GetChatHistory function, Client.ResultHandler handler) {
+    synchronized (lock) {
+      final PrefetchedPage page = prefetchedPage;
+      if (page == null) {
+        return false;
+      }
+      prefetchedPage = null;
+      final boolean hit = page.matches(contextId, function);
+      MessagesLoaderStats.onPrefetchUsed(hit);
+      if (!hit || page.isLoaded) {
+        return false;
+      }
+      if (Log.isEnabled(Log.TAG_MESSAGES_LOADER)) {
+        Log.i(Log.TAG_MESSAGES_LOADER, "Waiting for prefetched page before requesting it");
+      }
+      page.pendingRequest = () -> tdlib.client().send(function, handler);
+      return true;
+    }
+  }
+
   public boolean loadMoreInAnyDirection () {
     return loadMore(canLoadTop());
   }
@@ -1225,27 +1344,142 @@ public class MessagesLoader implements Client.ResultHandler {
     return array;
   }
 
-  private long measuredStartTime;
   private long measuredTotalMs;
   private int stepsCount;
 
-  private void startMeasureStep () {
-    measuredStartTime = SystemClock.uptimeMillis();
+  private long startMeasureStep () {
+    return SystemClock.uptimeMillis();
   }
 
-  private void endMeasureStep (TGMessage result, long messageId, int size) {
-    long ms = SystemClock.uptimeMillis() - measuredStartTime;
+  private synchronized void endMeasureStep (TGMessage result, long messageId, int size, long startTime) {
+    long ms = SystemClock.uptimeMillis() - startTime;
     Log.i(Log.TAG_MESSAGES_LOADER, "message_id=%d (size: %d) took %dms (%s)", messageId, size, ms, result != null ? result.getClass().getName() : "combination");
     measuredTotalMs += ms;
     stepsCount++;
   }
 
-  private void completeMeasure () {
+  private synchronized void completeMeasure () {
     Log.i(Log.TAG_MESSAGES_LOADER, "processed %d steps in %dms (average %dms per step)", stepsCount, measuredTotalMs, stepsCount == 0 ? -1 : (measuredTotalMs / stepsCount));
     measuredTotalMs = 0;
     stepsCount = 0;
   }
 
+  // Parallel processing
+
+  private static final int MIN_PARALLEL_MESSAGE_COUNT = 8;
+  private static final int MAX_PROCESSING_THREAD_COUNT = 3;
+
+  private static ThreadPoolExecutor processingExecutor;
+
+  private static ThreadPoolExecutor getProcessingExecutor () {
+    if (processingExecutor == null) {
+      synchronized (MessagesLoader.class) {
+        if (processingExecutor == null) {
+          int threadCount = Math.max(1, Math.min(MAX_PROCESSING_THREAD_COUNT, Runtime.getRuntime().availableProcessors() - 1));
+          ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> new Thread(runnable, "MessagesProcessor"));
+          executor.allowCoreThreadTimeOut(true);
+          processingExecutor = executor;
+        }
+      }
+    }
+    return processingExecutor;
+  }
+
+  /**
+   * Runs all tasks, using the calling thread as one of the workers, and waits for their completion.
+   */
+  private static void runTasks (List<Runnable> tasks) {
+    if (tasks.size() < 2) {
+      for (Runnable task : tasks) {
+        task.run();
+      }
+      return;
+    }
+    final AtomicInteger nextTask = new AtomicInteger();
+    final Runnable worker = () -> {
+      int index;
+      while ((index = nextTask.getAndIncrement()) < tasks.size()) {
+        tasks.get(index).run();
+      }
+    };
+    ThreadPoolExecutor executor = getProcessingExecutor();
+    int helperCount = Math.min(executor.getMaximumPoolSize(), tasks.size() - 1);
+    List<Future<?>> helpers = new ArrayList<>(helperCount);
+    for (int i = 0; i < helperCount; i++) {
+      helpers.add(executor.submit(worker));
+    }
+    worker.run();
+    for (Future<?> helper : helpers) {
+      try {
+        helper.get();
+      } catch (InterruptedException | ExecutionException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  private static class ParsedMessage {
+    public final TGMessage message;
+    public final int endIndex;
+    public final boolean containsScrollingMessage;
+
+    public ParsedMessage (TGMessage message, int endIndex, boolean containsScrollingMessage) {
+      this.message = message;
+      this.endIndex = endIndex;
+      this.containsScrollingMessage = containsScrollingMessage;
+    }
+  }
+
+  /**
+   * Parses messages[toIndex..fromIndex] from the oldest to the newest, combining albums.
+   */
+  private void parseMessages (TdApi.Message[] messages, int fromIndex, int toIndex, @Nullable TdApi.ChatAdministrator[] administrators, @Nullable MessageId scrollMessageId, boolean needMeasureSpeed, List<ParsedMessage> out) {
+    for (int j = fromIndex; j >= toIndex; j--) {
+      final long startTime = needMeasureSpeed ? startMeasureStep() : 0;
+      final long startNanos = System.nanoTime();
+      boolean containsScrollingMessage = false;
+      TGMessage cur;
+      try {
+        cur = TGMessage.valueOf(manager, messages[j], chat, messageThread, administrators != null ? administrators[j] : null);
+        if (cur != null) {
+          if (!containsScrollingMessage && scrollMessageId != null && scrollMessageId.compareTo(messages[j].chatId, messages[j].id)) {
+            containsScrollingMessage = true;
+          }
+          if (j > toIndex) {
+            while (j > toIndex && cur.combineWith(messages[j - 1], true)) {
+              if (!containsScrollingMessage && scrollMessageId != null && scrollMessageId.compareTo(messages[j - 1].chatId, messages[j - 1].id)) {
+                containsScrollingMessage = true;
+              }
+              j--;
+            }
+          }
+        }
+      } catch (Throwable t) {
+        Log.critical("Couldn't parse message", t);
+        if (needMeasureSpeed) {
+          endMeasureStep(null, 0, -1, startTime);
+        }
+        continue;
+      }
+      if (cur == null) {
+        continue;
+      }
+      MessagesLoaderStats.record(MessagesLoaderStats.STEP_PARSE, System.nanoTime() - startNanos);
+      if (needMeasureSpeed) {
+        endMeasureStep(cur, cur.getId(), cur.getMessageCount(), startTime);
+      }
+      out.add(new ParsedMessage(cur, j, containsScrollingMessage));
+    }
+  }
+
+  private static void prepareLayout (List<TGMessage> items, int fromIndex, int toIndex) {
+    for (int i = fromIndex; i < toIndex; i++) {
+      final long startNanos = System.nanoTime();
+      items.get(i).prepareLayout();
+      MessagesLoaderStats.record(MessagesLoaderStats.STEP_LAYOUT, System.nanoTime() - startNanos);
+    }
+  }
+
   private void processMessages (final long currentContextId, TdApi.Message[] messages, int knownTotalMessageCount,
                                 String nextSearchOffset, long nextSearchFromMessageId,
                                 boolean needFindUnread, @Nullable List<List<TdApi.Message>> missingAlbums) {
@@ -1293,17 +1527,13 @@ public class MessagesLoader implements Client.ResultHandler {
     final TGMessage topMessage = manager.getAdapter().getTopMessage();
     final long startTop = topMessage != null ? topMessage.getSmallestId() : 0;
 
-    long adminUserId = 0;
-    TdApi.ChatAdministrator administrator = null;
-
     int minIndex = 0;
     int maxIndex = messages.length - 1;
 
     final List<TdApi.Message> combineWithMessages = new ArrayList<>();
 
-    if (needMeasureSpeed) {
-      startMeasureStep();
-    }
+    final long pageStartNanos = System.nanoTime();
+    final long combineStartTime = needMeasureSpeed ? startMeasureStep() : 0;
     if (messages.length > 0) {
       switch (loadingMode) {
         case MODE_MORE_BOTTOM: {
@@ -1331,58 +1561,47 @@ public class MessagesLoader implements Client.ResultHandler {
       }
     }
     if (needMeasureSpeed) {
-      endMeasureStep(null, 0, 0);
+      endMeasureStep(null, 0, 0, combineStartTime);
     }
 
     if (!combineWithMessages.isEmpty()) {
       final boolean bottom = loadingMode == MODE_MORE_BOTTOM;
       UI.post(() -> {
+        final TGMessage targetMessage = bottom ? bottomMessage : topMessage;
+        final int targetIndex = manager.getAdapter().indexOfMessageContainer(targetMessage.getId());
         for (TdApi.Message message : combineWithMessages) {
-          if (bottom) {
-            bottomMessage.combineWith(message, true);
-          } else {
-            topMessage.combineWith(message, false);
-          }
+          targetMessage.combineWith(message, bottom);
         }
+        manager.getAdapter().onMessageIdsChanged(targetIndex);
       });
     }
 
     boolean unreadFound = !needFindUnread;
     TGMessage unreadBadged = null;
 
-    for (int j = maxIndex; j >= minIndex; j--) {
-      if (needMeasureSpeed) {
-        startMeasureStep();
-      }
-      boolean containsScrollingMessage = false;
-      try {
-        if (chatAdmins != null) {
-          if (adminUserId != Td.getSenderUserId(messages[j])) {
-            adminUserId = Td.getSenderUserId(messages[j]);
-            administrator = chatAdmins.get(adminUserId);
-          }
-        }
-        cur = TGMessage.valueOf(manager, messages[j], chat, messageThread, administrator);
-        if (cur != null) {
-          if (!containsScrollingMessage && scrollMessageId != null && scrollMessageId.compareTo(messages[j].chatId, messages[j].id)) {
-            containsScrollingMessage = true;
-          }
-          if (j > minIndex) {
-            while (j > minIndex && cur.combineWith(messages[j - 1], true)) {
-              if (!containsScrollingMessage && scrollMessageId != null && scrollMessageId.compareTo(messages[j - 1].chatId, messages[j - 1].id)) {
-                containsScrollingMessage = true;
-              }
-              j--;
-            }
-          }
-        }
-      } catch (Throwable t) {
-        Log.critical("Couldn't parse message", t);
-        if (needMeasureSpeed) {
-          endMeasureStep(null, 0, -1);
-        }
-        continue;
+    // Parsing stays on the calling thread: TGMessage constructors subscribe to listeners
+    // and touch lazily initialized static state, which is not safe to do concurrently
+    final int messageCount = maxIndex - minIndex + 1;
+    final boolean parallel = messageCount >= MIN_PARALLEL_MESSAGE_COUNT;
+    final TdApi.ChatAdministrator[] administrators;
+    if (chatAdmins != null && messageCount > 0) {
+      administrators = new TdApi.ChatAdministrator[messages.length];
+      for (int j = minIndex; j <= maxIndex; j++) {
+        administrators[j] = chatAdmins.get(Td.getSenderUserId(messages[j]));
       }
+    } else {
+      administrators = null;
+    }
+    final MessageId scrollingMessageId = this.scrollMessageId;
+    final List<ParsedMessage> parsedMessages = new ArrayList<>(messageCount);
+    if (messageCount > 0) {
+      parseMessages(messages, maxIndex, minIndex, administrators, scrollingMessageId, needMeasureSpeed, parsedMessages);
+    }
+
+    // Merging with neighbours is cheap, but depends on the previous message, so it is sequential
+
+    for (ParsedMessage parsedMessage : parsedMessages) {
+      cur = parsedMessage.message;
 
       if (!isChannel) {
         if (cur.isOutgoing()) {
@@ -1419,23 +1638,36 @@ public class MessagesLoader implements Client.ResultHandler {
         id = cur.getChatId();
       }
 
-      cur.mergeWith(top, j == minIndex);
-      cur.prepareLayout();
+      cur.mergeWith(top, parsedMessage.endIndex == minIndex);
 
       items.add(0, cur);
 
-      if (containsScrollingMessage) {
+      if (parsedMessage.containsScrollingMessage) {
         scrollItemIndex = items.size();
         scrollItem = cur;
       }
 
       top = cur;
+    }
 
-      if (needMeasureSpeed) {
-        endMeasureStep(cur, cur.getId(), cur.getMessageCount());
+    // Layout of each message depends only on its own state, so it is computed in parallel
+
+    if (parallel && items.size() >= MIN_PARALLEL_MESSAGE_COUNT) {
+      final int chunkSize = Math.max(1, items.size() / ((MAX_PROCESSING_THREAD_COUNT + 1) * 2));
+      final List<Runnable> layoutTasks = new ArrayList<>();
+      for (int i = 0; i < items.size(); i += chunkSize) {
+        final int fromIndex = i;
+        final int toIndex = Math.min(items.size(), i + chunkSize);
+        layoutTasks.add(() -> prepareLayout(items, fromIndex, toIndex));
       }
+      runTasks(layoutTasks);
+    } else {
+      prepareLayout(items, 0, items.size());
     }
 
+    MessagesLoaderStats.record(MessagesLoaderStats.STEP_PAGE, System.nanoTime() - pageStartNanos);
+    MessagesLoaderStats.onPageProcessed(parallel);
+
     if (needMeasureSpeed) {
       completeMeasure();
     }
@@ -1656,6 +1888,9 @@ public class MessagesLoader implements Client.ResultHandler {
         manager.onBottomEndChecked();
       }
       manager.ensureContentHeight();
+      if (loadingMode != MODE_MORE_BOTTOM && !loadingLocal && !ignoreEndCheck) {
+        prefetchTop();
+      }
     });
   }
 
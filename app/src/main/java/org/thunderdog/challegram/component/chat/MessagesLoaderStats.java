@@ -0,0 +1,124 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.component.chat;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Timings of {@link MessagesLoader} processing steps, collected for all chats since app start.
+ *
+ * Each step is recorded into a log2 histogram of microseconds, so recording never allocates.
+ */
+public final class MessagesLoaderStats {
+  public static final int STEP_PARSE = 0;
+  public static final int STEP_LAYOUT = 1;
+  public static final int STEP_PAGE = 2;
+  private static final int STEP_COUNT = 3;
+
+  // Bucket N contains durations within [2^(N-1), 2^N) microseconds
+  private static final int BUCKET_COUNT = 32;
+
+  private static final int[] histograms = new int[STEP_COUNT * BUCKET_COUNT];
+  private static final long[] counts = new long[STEP_COUNT];
+  private static final long[] totalNanos = new long[STEP_COUNT];
+  private static final long[] maxNanos = new long[STEP_COUNT];
+
+  private static long parallelPageCount, prefetchHitCount, prefetchMissCount;
+
+  private static int bucketOf (long nanos) {
+    long micros = nanos / 1000;
+    return micros <= 0 ? 0 : Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+  }
+
+  static void record (int step, long elapsedNanos) {
+    synchronized (histograms) {
+      counts[step]++;
+      totalNanos[step] += elapsedNanos;
+      if (elapsedNanos > maxNanos[step]) {
+        maxNanos[step] = elapsedNanos;
+      }
+      histograms[step * BUCKET_COUNT + bucketOf(elapsedNanos)]++;
+    }
+  }
+
+  static void onPageProcessed (boolean parallel) {
+    if (parallel) {
+      synchronized (histograms) {
+        parallelPageCount++;
+      }
+    }
+  }
+
+  static void onPrefetchUsed (boolean hit) {
+    synchronized (histograms) {
+      if (hit) {
+        prefetchHitCount++;
+      } else {
+        prefetchMissCount++;
+      }
+    }
+  }
+
+  private static long percentileMicros (int step, double percentile) {
+    long count = counts[step];
+    if (count == 0) {
+      return 0;
+    }
+    long threshold = (long) Math.ceil(count * percentile);
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+      seen += histograms[step * BUCKET_COUNT + bucket];
+      if (seen >= threshold) {
+        return 1L << bucket;
+      }
+    }
+    return 1L << (BUCKET_COUNT - 1);
+  }
+
+  private static String formatMicros (long micros) {
+    if (micros >= 1000) {
+      return (micros / 1000) + "ms";
+    }
+    return micros + "us";
+  }
+
+  private static void appendStep (StringBuilder b, String name, int step) {
+    long count = counts[step];
+    b.append(name)
+      .append(": count=").append(count)
+      .append(", total=").append(totalNanos[step] / 1_000_000).append("ms")
+      .append(", avg=").append(formatMicros(count != 0 ? totalNanos[step] / count / 1000 : 0))
+      .append(", p50=").append(formatMicros(percentileMicros(step, .5)))
+      .append(", p99=").append(formatMicros(percentileMicros(step, .99)))
+      .append(", max=").append(formatMicros(maxNanos[step] / 1000))
+      .append('\n');
+  }
+
+  @NonNull
+  public static String dump () {
+    StringBuilder b = new StringBuilder();
+    synchronized (histograms) {
+      b.append("Percentiles are upper bounds of power-of-two buckets\n\n");
+      appendStep(b, "Parse (per message)", STEP_PARSE);
+      appendStep(b, "Layout (per message)", STEP_LAYOUT);
+      appendStep(b, "Page", STEP_PAGE);
+      b.append("\nPages processed in parallel: ").append(parallelPageCount)
+        .append("\nPrefetched pages used: ").append(prefetchHitCount)
+        .append(", discarded: ").append(prefetchMissCount)
+        .append('\n');
+    }
+    return b.toString();
+  }
+}
@@ -1149,6 +1149,7 @@ public class MessagesManager implements Client.ResultHandler, MessagesSearchMana
       for (int i = album.messages.size() - olderCount; i < album.messages.size(); i++) {
         targetAlbum.combineWith(album.messages.get(i), false);
       }
+      adapter.onMessageIdsChanged(containerIndex);
       targetAlbum.invalidateContent(targetAlbum);
     }
   }
@@ -1561,6 +1562,7 @@ public class MessagesManager implements Client.ResultHandler, MessagesSearchMana
       boolean atBottom = manager.findFirstVisibleItemPosition() == 0;
       TGMessage bottomMessage = adapter.getBottomMessage();
       if (bottomMessage != null && bottomMessage.combineWith(message.getMessage(), true)) {
+        adapter.onMessageIdsChanged(0);
         if (!atBottom) {
           bottomMessage.markAsUnread();
         }
@@ -1659,7 +1661,9 @@ public class MessagesManager implements Client.ResultHandler, MessagesSearchMana
     int index = adapter.indexOfMessageContainer(oldMessageId);
     if (index != -1) {
       TGMessage msg = adapter.getItem(index);
-      switch (msg.setSendSucceeded(message, oldMessageId)) {
+      int changeType = msg.setSendSucceeded(message, oldMessageId);
+      adapter.onMessageIdsChanged(index);
+      switch (changeType) {
         case TGMessage.MESSAGE_INVALIDATED: {
           invalidateViewAt(index);
           break;
@@ -1717,6 +1721,7 @@ public class MessagesManager implements Client.ResultHandler, MessagesSearchMana
     updateReturnToMessageId(oldMessageId, message.id);
     int index = adapter.indexOfMessageContainer(oldMessageId);
     if (index != -1 && adapter.getItem(index).setSendFailed(message, oldMessageId)) {
+      adapter.onMessageIdsChanged(index);
       invalidateViewAt(index);
 
       ThreadInfo messageThread = loader.getMessageThread();
@@ -3122,6 +3127,7 @@ public class MessagesManager implements Client.ResultHandler, MessagesSearchMana
 
   @Override
   public void onMessageContentChanged (final long chatId, final long messageId, final TdApi.MessageContent newContent) {
+    loader.invalidatePrefetchedPage(chatId);
     int sentMessageIndex = indexOfSentMessage(chatId, messageId);
     if (sentMessageIndex != -1) {
       sentMessages.get(sentMessageIndex).content = newContent;
@@ -3136,6 +3142,7 @@ public class MessagesManager implements Client.ResultHandler, MessagesSearchMana
 
   @Override
   public void onMessageEdited (final long chatId, final long messageId, final int editDate, @Nullable final TdApi.ReplyMarkup replyMarkup) {
+    loader.invalidatePrefetchedPage(chatId);
     int sentMessageIndex = indexOfSentMessage(chatId, messageId);
     if (sentMessageIndex != -1) {
       TdApi.Message msg = sentMessages.get(sentMessageIndex);
@@ -3180,6 +3187,7 @@ public class MessagesManager implements Client.ResultHandler, MessagesSearchMana
 
   @Override
   public void onMessageInteractionInfoChanged (long chatId, long messageId, @Nullable TdApi.MessageInteractionInfo interactionInfo) {
+    loader.invalidatePrefetchedPage(chatId);
     int sentMessageIndex = indexOfSentMessage(chatId, messageId);
     if (sentMessageIndex != -1) {
       sentMessages.get(sentMessageIndex).interactionInfo = interactionInfo;
@@ -3194,6 +3202,7 @@ public class MessagesManager implements Client.ResultHandler, MessagesSearchMana
 
   @Override
   public void onMessagePinned (long chatId, long messageId, boolean isPinned) {
+    loader.invalidatePrefetchedPage(chatId);
     int sentMessageIndex = indexOfSentMessage(chatId, messageId);
     if (sentMessageIndex != -1) {
       sentMessages.get(sentMessageIndex).isPinned = isPinned;
@@ -3222,6 +3231,7 @@ public class MessagesManager implements Client.ResultHandler, MessagesSearchMana
 
   @Override
   public void onMessagesDeleted (final long chatId, final long[] messageIds) {
+    loader.invalidatePrefetchedPage(chatId);
     tdlib.ui().post(() -> {
       if (loader.getChatId() == chatId) {
         updateMessagesDeleted(chatId, messageIds);
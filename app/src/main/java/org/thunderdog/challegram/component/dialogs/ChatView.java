@@ -33,6 +33,7 @@ import org.thunderdog.challegram.data.AvatarPlaceholder;
 import org.thunderdog.challegram.data.TGChat;
 import org.thunderdog.challegram.loader.AvatarReceiver;
 import org.thunderdog.challegram.loader.ComplexReceiver;
+import org.thunderdog.challegram.loader.ImageDecodeScheduler;
 import org.thunderdog.challegram.loader.Receiver;
 import org.thunderdog.challegram.navigation.ViewController;
 import org.thunderdog.challegram.support.RippleSupport;
@@ -330,7 +331,17 @@ public class ChatView extends BaseView implements TdlibSettingsManager.Preferenc
     return getAvatarTop(chatListMode) + getAvatarRadius(chatListMode);
   }
 
+  /**
+   * Changes decode priority of all images requested by this view.
+   */
+  public void setImagePriority (@ImageDecodeScheduler.Priority int priority) {
+    avatarReceiver.setPriority(priority);
+    textMediaReceiver.setPriority(priority);
+    emojiStatusReceiver.setPriority(priority);
+  }
+
   public void attach () {
+    setImagePriority(ImageDecodeScheduler.Priority.VISIBLE);
     avatarReceiver.attach();
     textMediaReceiver.attach();
     emojiStatusReceiver.attach();
@@ -340,6 +351,7 @@ public class ChatView extends BaseView implements TdlibSettingsManager.Preferenc
     avatarReceiver.detach();
     textMediaReceiver.detach();
     emojiStatusReceiver.detach();
+    setImagePriority(ImageDecodeScheduler.Priority.PREFETCH);
   }
 
   public void setChat (TGChat chat) {
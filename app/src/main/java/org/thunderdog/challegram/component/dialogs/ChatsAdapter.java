@@ -38,6 +38,7 @@ import java.util.HashSet;
 import java.util.Set;
 
 import me.vkryl.core.ArrayUtils;
+import me.vkryl.core.collection.LongSet;
 import me.vkryl.td.ChatPosition;
 
 public class ChatsAdapter extends RecyclerView.Adapter<ChatsViewHolder> {
@@ -381,6 +382,17 @@ public class ChatsAdapter extends RecyclerView.Adapter<ChatsViewHolder> {
     return -1;
   }
 
+  public int updateUserStatuses (LongSet userIds, int startIndex) {
+    for (int index = startIndex; index < chats.size(); index++) {
+      TGChat chat = chats.get(index);
+      long userId = chat.getChatUserId();
+      if (userId != 0 && userIds.has(userId) && chat.checkOnline()) {
+        return index;
+      }
+    }
+    return -1;
+  }
+
   public int updateChatTitle (long chatId, String title) {
     int index = indexOfChat(chatId);
     if (index != -1 && chats.get(index).updateChatTitle(chatId, title)) {
@@ -43,6 +43,12 @@ public class Config {
 
   public static final boolean MODERN_IMAGE_DECODER_ENABLED = true;
   public static final boolean FORCE_SOFTWARE_IMAGE_DECODER = true;
+  public static final boolean IMAGE_CACHE_TINY_LFU = true; // false: plain LRU
+  public static final boolean BITMAP_POOL_ENABLED = true;
+  public static final int BITMAP_POOL_SIZE_MIB = 12;
+  public static final boolean IMAGE_DISK_CACHE_ENABLED = true;
+  public static final int IMAGE_DISK_CACHE_SIZE_MIB = 64;
+  public static final int LOTTIE_CACHE_SIZE_MIB = 128;
 
   // Allow stretch bounce in places where the glow looks ugly
   public static final boolean HAS_NICE_OVER_SCROLL_EFFECT = Build.VERSION.SDK_INT >= Build.VERSION_CODES.S;
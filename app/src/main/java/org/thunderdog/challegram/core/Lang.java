@@ -247,8 +247,7 @@ public class Lang {
     if (allowCloud) {
       if (languagePackInfo == null)
         languagePackInfo = Settings.instance().getLanguagePackInfo();
-      final String key = getResourceEntryName(resId);
-      TdApi.LanguagePackStringValueOrdinary string = getStringValue(key, languagePackInfo);
+      TdApi.LanguagePackStringValueOrdinary string = getStringValue(resId, languagePackInfo);
       if (string != null)
         return string.value;
     }
@@ -360,8 +359,7 @@ public class Lang {
     if (allowCloud) {
       if (languagePackInfo == null)
         languagePackInfo = Settings.instance().getLanguagePackInfo();
-      final String key = getResourceEntryName(resId);
-      TdApi.LanguagePackStringValueOrdinary string = getStringValue(key, languagePackInfo);
+      TdApi.LanguagePackStringValueOrdinary string = getStringValue(resId, languagePackInfo);
       if (string != null) {
         try {
           return formatString(applyFlags(string.value, flags), hasSpanned, creator, formatArgs);
@@ -1561,8 +1559,7 @@ public class Lang {
     if (resId == 0)
       throw new Resources.NotFoundException("resId == 0");
 
-    String key = getResourceEntryName(resId);
-    TdApi.LanguagePackStringValuePluralized string = getStringPluralized(key, Settings.instance().getLanguagePackInfo());
+    TdApi.LanguagePackStringValuePluralized string = getStringPluralized(resId, Settings.instance().getLanguagePackInfo());
     if (string != null) {
       int languageCode = pluralCode();
       int pluralForm = numberPluralizationForm(languageCode, num);
@@ -3348,7 +3345,20 @@ public class Lang {
     return defaultLocale;
   }
 
+  private static @Nullable TdApi.LanguagePackStringValueOrdinary getStringValue (@StringRes int resId, @NonNull TdApi.LanguagePackInfo language) {
+    LangStringTable table = stringTable(language);
+    if (table != null) {
+      TdApi.LanguagePackStringValue string = table.get(resId);
+      return string instanceof TdApi.LanguagePackStringValueOrdinary ? (TdApi.LanguagePackStringValueOrdinary) string : null;
+    }
+    return getStringValue(getResourceEntryName(resId), language);
+  }
+
   public static @Nullable TdApi.LanguagePackStringValueOrdinary getStringValue (String key, @NonNull TdApi.LanguagePackInfo language) {
+    LangStringTable table = stringTable(language);
+    if (table != null && table.getOther(key) instanceof TdApi.LanguagePackStringValueOrdinary) {
+      return (TdApi.LanguagePackStringValueOrdinary) table.getOther(key);
+    }
     String cacheKey = null;
     if (packId().equals(language.id)) {
       cacheKey = makeStringCacheKey(language.id, key);
@@ -3383,7 +3393,20 @@ public class Lang {
     return Lang.cleanLanguageCode(languagePackId);
   }
 
+  private static @Nullable TdApi.LanguagePackStringValuePluralized getStringPluralized (@StringRes int resId, @NonNull TdApi.LanguagePackInfo language) {
+    LangStringTable table = stringTable(language);
+    if (table != null) {
+      TdApi.LanguagePackStringValue string = table.get(resId);
+      return string instanceof TdApi.LanguagePackStringValuePluralized ? (TdApi.LanguagePackStringValuePluralized) string : null;
+    }
+    return getStringPluralized(getResourceEntryName(resId), language);
+  }
+
   public static @Nullable TdApi.LanguagePackStringValuePluralized getStringPluralized (String key, @NonNull TdApi.LanguagePackInfo language) {
+    LangStringTable table = stringTable(language);
+    if (table != null && table.getOther(key) instanceof TdApi.LanguagePackStringValuePluralized) {
+      return (TdApi.LanguagePackStringValuePluralized) table.getOther(key);
+    }
     String cacheKey = null;
     if (packId().equals(language.id)) {
       cacheKey = makeStringCacheKey(language.id, key);
@@ -3460,6 +3483,7 @@ public class Lang {
   private static void dispatchLanguagePackChanged () {
     boolean wasRtl = languageRtl;
     Lang.clearCachedStrings();
+    Lang.invalidateStringTable();
     checkLanguageSettings(false);
     sendLanguageEvent(EVENT_PACK_CHANGED, languageRtl != wasRtl ? 1 : 0);
   }
@@ -3467,6 +3491,7 @@ public class Lang {
   @UiThread
   private static void dispatchLanguagePackStringChanged (String languageCode, TdApi.LanguagePackString[] strings, String actualLanguagePackId) {
     Lang.putCachedStrings(actualLanguagePackId != null ? actualLanguagePackId : languageCode, strings);
+    Lang.updateStringTable(languageCode, strings);
     checkLanguageSettings(true);
     if (hasLanguageListeners()) {
       for (TdApi.LanguagePackString string : strings) {
@@ -3747,6 +3772,82 @@ public class Lang {
     cachedStrings().clear();
   }
 
+  // Strings Table
+
+  private static volatile LangStringTable stringTable;
+  private static int stringTableGeneration;
+  private static boolean stringTableRequested;
+
+  /**
+   * @return table with all strings of the language pack, or null, if it is not loaded yet.
+   * In the latter case strings have to be requested one by one.
+   */
+  private static @Nullable LangStringTable stringTable (@NonNull TdApi.LanguagePackInfo languagePackInfo) {
+    LangStringTable table = stringTable;
+    if (table != null) {
+      return table.belongsTo(languagePackInfo) ? table : null;
+    }
+    if (!stringTableRequested && packId().equals(languagePackInfo.id)) {
+      requestStringTable(languagePackInfo);
+    }
+    return null;
+  }
+
+  private static void requestStringTable (@NonNull TdApi.LanguagePackInfo languagePackInfo) {
+    if (isBuiltinLanguage(languagePackInfo.id)) {
+      // Built-in strings are resolved through resources
+      return;
+    }
+    final int generation;
+    synchronized (Lang.class) {
+      if (stringTableRequested) {
+        return;
+      }
+      // On failure table is not requested again until language pack changes
+      stringTableRequested = true;
+      generation = stringTableGeneration;
+    }
+    LangStringTable.load(TdlibManager.instance().current(), languagePackInfo, table -> {
+      if (table == null) {
+        return;
+      }
+      synchronized (Lang.class) {
+        if (generation == stringTableGeneration) {
+          Log.i("Loaded language pack %s, stringCount:%d", table.languagePackId, table.size());
+          stringTable = table;
+        }
+      }
+    });
+  }
+
+  private static void updateStringTable (String languagePackId, TdApi.LanguagePackString[] strings) {
+    final LangStringTable table;
+    synchronized (Lang.class) {
+      table = stringTable;
+    }
+    if (table == null || !(table.languagePackId.equals(languagePackId) || languagePackId.equals(table.baseLanguagePackId))) {
+      // Table that is being loaded might not include these strings
+      invalidateStringTable();
+      return;
+    }
+    LangStringTable updatedTable = table.withUpdatedStrings(languagePackId, strings);
+    synchronized (Lang.class) {
+      if (stringTable == table) {
+        stringTable = updatedTable;
+        return;
+      }
+    }
+    invalidateStringTable();
+  }
+
+  private static void invalidateStringTable () {
+    synchronized (Lang.class) {
+      stringTableGeneration++;
+      stringTableRequested = false;
+      stringTable = null;
+    }
+  }
+
   public static String makeStringCacheKey (String languageCode, String key) {
     return languageCode + "|" + key;
   }
@@ -0,0 +1,210 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.StringRes;
+
+import org.drinkless.tdlib.TdApi;
+import org.thunderdog.challegram.Log;
+import org.thunderdog.challegram.data.TD;
+import org.thunderdog.challegram.telegram.Tdlib;
+import org.thunderdog.challegram.telegram.TdlibManager;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import me.vkryl.core.StringUtils;
+import me.vkryl.core.lambda.RunnableData;
+
+/**
+ * Immutable snapshot of all strings of a language pack (merged with its base language pack),
+ * loaded with a single {@link TdApi.GetLanguagePackStrings} request.
+ *
+ * Strings that have a resource in the app are stored in an array indexed by resource entry index,
+ * so lookup by {@link StringRes} is a bounds check and an array read.
+ * Other strings (e.g. error or suffixed keys) are stored in a map.
+ */
+public final class LangStringTable {
+  private static final int ENTRY_MASK = 0xffff;
+
+  public final String languagePackId;
+  public final @Nullable String baseLanguagePackId;
+
+  private final int resourceType;
+  private final TdApi.LanguagePackStringValue[] values;
+  private final Map<String, TdApi.LanguagePackStringValue> otherValues;
+
+  private LangStringTable (String languagePackId, @Nullable String baseLanguagePackId, int resourceType, TdApi.LanguagePackStringValue[] values, Map<String, TdApi.LanguagePackStringValue> otherValues) {
+    this.languagePackId = languagePackId;
+    this.baseLanguagePackId = baseLanguagePackId;
+    this.resourceType = resourceType;
+    this.values = values;
+    this.otherValues = otherValues;
+  }
+
+  public boolean belongsTo (@NonNull TdApi.LanguagePackInfo languagePackInfo) {
+    return languagePackId.equals(languagePackInfo.id) && StringUtils.equalsOrBothEmpty(baseLanguagePackId, languagePackInfo.baseLanguagePackId);
+  }
+
+  /**
+   * @return string value, or null, if language pack doesn't have this string
+   */
+  @Nullable
+  public TdApi.LanguagePackStringValue get (@StringRes int resId) {
+    if ((resId & ~ENTRY_MASK) != resourceType)
+      return null;
+    int index = resId & ENTRY_MASK;
+    return index < values.length ? values[index] : null;
+  }
+
+  /**
+   * @return string value for the key that has no resource in the app, or null, if it is unknown
+   */
+  @Nullable
+  public TdApi.LanguagePackStringValue getOther (String key) {
+    return otherValues.get(key);
+  }
+
+  public int size () {
+    int size = otherValues.size();
+    for (TdApi.LanguagePackStringValue value : values) {
+      if (value != null) {
+        size++;
+      }
+    }
+    return size;
+  }
+
+  // Updating
+
+  /**
+   * Applies {@link TdApi.UpdateLanguagePackStrings} received for this language pack or its base language pack.
+   *
+   * Only updated entries are changed, so that a single string update doesn't require loading all strings again.
+   * Values that have to fall back to the other language pack are read from the local language pack database.
+   *
+   * @return new table with updated strings
+   */
+  @NonNull
+  public LangStringTable withUpdatedStrings (@NonNull String updatedLanguagePackId, @NonNull TdApi.LanguagePackString[] strings) {
+    final boolean isBase = !languagePackId.equals(updatedLanguagePackId);
+    int resourceType = this.resourceType;
+    TdApi.LanguagePackStringValue[] values = this.values.clone();
+    Map<String, TdApi.LanguagePackStringValue> otherValues = new HashMap<>(this.otherValues);
+    final String languageDatabasePath = TdlibManager.getLanguageDatabasePath();
+    for (TdApi.LanguagePackString string : strings) {
+      TdApi.LanguagePackStringValue value = string.value.getConstructor() != TdApi.LanguagePackStringValueDeleted.CONSTRUCTOR ? string.value : null;
+      if (isBase) {
+        if (TdlibManager.getString(languageDatabasePath, string.key, languagePackId) != null) {
+          // Overridden by the language pack itself
+          continue;
+        }
+      } else if (value == null && baseLanguagePackId != null) {
+        value = TdlibManager.getString(languageDatabasePath, string.key, baseLanguagePackId);
+      }
+      int resId = Lang.getStringResourceIdentifier(string.key);
+      if (resId != 0 && (resourceType == 0 || (resId & ~ENTRY_MASK) == resourceType)) {
+        resourceType = resId & ~ENTRY_MASK;
+        int index = resId & ENTRY_MASK;
+        if (index >= values.length) {
+          if (value == null)
+            continue;
+          values = Arrays.copyOf(values, index + 1);
+        }
+        values[index] = value;
+      } else if (value != null) {
+        otherValues.put(string.key, value);
+      } else {
+        otherValues.remove(string.key);
+      }
+    }
+    return new LangStringTable(languagePackId, baseLanguagePackId, resourceType, values, otherValues);
+  }
+
+  // Loading
+
+  private static final class Builder {
+    private final Map<String, TdApi.LanguagePackStringValue> strings = new HashMap<>();
+
+    void addAll (TdApi.LanguagePackString[] strings, boolean override) {
+      for (TdApi.LanguagePackString string : strings) {
+        if (string.value.getConstructor() == TdApi.LanguagePackStringValueDeleted.CONSTRUCTOR)
+          continue;
+        if (override) {
+          this.strings.put(string.key, string.value);
+        } else if (!this.strings.containsKey(string.key)) {
+          this.strings.put(string.key, string.value);
+        }
+      }
+    }
+
+    LangStringTable build (String languagePackId, @Nullable String baseLanguagePackId) {
+      int resourceType = 0;
+      int maxIndex = -1;
+      Map<String, Integer> resources = new HashMap<>(strings.size());
+      Map<String, TdApi.LanguagePackStringValue> otherValues = new HashMap<>();
+      for (Map.Entry<String, TdApi.LanguagePackStringValue> entry : strings.entrySet()) {
+        int resId = Lang.getStringResourceIdentifier(entry.getKey());
+        if (resId != 0 && (resourceType == 0 || (resId & ~ENTRY_MASK) == resourceType)) {
+          resourceType = resId & ~ENTRY_MASK;
+          maxIndex = Math.max(maxIndex, resId & ENTRY_MASK);
+          resources.put(entry.getKey(), resId);
+        } else {
+          otherValues.put(entry.getKey(), entry.getValue());
+        }
+      }
+      TdApi.LanguagePackStringValue[] values = new TdApi.LanguagePackStringValue[maxIndex + 1];
+      for (Map.Entry<String, Integer> entry : resources.entrySet()) {
+        values[entry.getValue() & ENTRY_MASK] = strings.get(entry.getKey());
+      }
+      return new LangStringTable(languagePackId, baseLanguagePackId, resourceType, values, otherValues);
+    }
+  }
+
+  /**
+   * Loads all strings of the language pack and its base language pack.
+   * Table is built on TDLib thread, callback receives null on failure.
+   */
+  public static void load (@NonNull Tdlib tdlib, @NonNull TdApi.LanguagePackInfo languagePackInfo, @NonNull RunnableData<LangStringTable> callback) {
+    final String languagePackId = languagePackInfo.id;
+    final String baseLanguagePackId = StringUtils.isEmpty(languagePackInfo.baseLanguagePackId) ? null : languagePackInfo.baseLanguagePackId;
+    final Builder builder = new Builder();
+    // Empty key list means all strings
+    tdlib.send(new TdApi.GetLanguagePackStrings(languagePackId, new String[0]), result -> {
+      if (result.getConstructor() != TdApi.LanguagePackStrings.CONSTRUCTOR) {
+        Log.e("Failed to load language pack %s: %s", languagePackId, TD.toErrorString(result));
+        callback.runWithData(null);
+        return;
+      }
+      builder.addAll(((TdApi.LanguagePackStrings) result).strings, true);
+      if (baseLanguagePackId == null) {
+        callback.runWithData(builder.build(languagePackId, null));
+        return;
+      }
+      tdlib.send(new TdApi.GetLanguagePackStrings(baseLanguagePackId, new String[0]), baseResult -> {
+        if (baseResult.getConstructor() != TdApi.LanguagePackStrings.CONSTRUCTOR) {
+          Log.e("Failed to load base language pack %s: %s", baseLanguagePackId, TD.toErrorString(baseResult));
+          callback.runWithData(null);
+          return;
+        }
+        builder.addAll(((TdApi.LanguagePackStrings) baseResult).strings, false);
+        callback.runWithData(builder.build(languagePackId, baseLanguagePackId));
+      });
+    });
+  }
+}
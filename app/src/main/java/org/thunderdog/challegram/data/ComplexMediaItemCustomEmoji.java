@@ -60,6 +60,7 @@ public class ComplexMediaItemCustomEmoji implements ComplexMediaItem {
         this.gifFile.setScaleType(GifFile.FIT_CENTER);
         this.gifFile.setOptimizationMode(GifFile.OptimizationMode.EMOJI);
         this.gifFile.setRequestedSize(size);
+        this.gifFile.setShared(true);
 
         this.imageFile = null;
         break;
@@ -99,7 +99,6 @@ import org.thunderdog.challegram.ui.MessagesController;
 import org.thunderdog.challegram.ui.TranslationControllerV2;
 import org.thunderdog.challegram.unsorted.Settings;
 import org.thunderdog.challegram.util.EmojiStatusHelper;
-import org.thunderdog.challegram.util.LanguageDetector;
 import org.thunderdog.challegram.util.ReactionsCounterDrawable;
 import org.thunderdog.challegram.util.TranslationCounterDrawable;
 import org.thunderdog.challegram.util.text.Counter;
@@ -7130,7 +7129,7 @@ public abstract class TGMessage implements InvalidateContentProvider, TdlibDeleg
 
   // Paints
 
-  protected static Paint mQuickText;
+  protected static volatile Paint mQuickText;
 
   protected static TextPaint mHotPaint () {
     return Paints.getRegularTextPaint(12f);
@@ -7153,42 +7152,72 @@ public abstract class TGMessage implements InvalidateContentProvider, TdlibDeleg
 
   private static void initPaints () {
     if (mQuickText == null) {
-      mQuickText = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG | Paint.FILTER_BITMAP_FLAG);
-      mQuickText.setColor(Theme.chatQuickActionTextColor());
-      ThemeManager.addThemeListener(mQuickText, ColorId.messageSwipeContent);
-      mQuickText.setTypeface(Fonts.getRobotoRegular());
-      mQuickText.setTextSize(Screen.dp(16f));
+      synchronized (TGMessage.class) {
+        if (mQuickText == null) {
+          Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG | Paint.FILTER_BITMAP_FLAG);
+          paint.setColor(Theme.chatQuickActionTextColor());
+          paint.setTypeface(Fonts.getRobotoRegular());
+          paint.setTextSize(Screen.dp(16f));
+          ThemeManager.addThemeListener(paint, ColorId.messageSwipeContent);
+          mQuickText = paint;
+        }
+      }
     }
   }
 
-  private static TextStyleProvider styleProvider, simpleStyleProvider, biggerStyleProvider, smallerStyleProvider, nameProvider, timeProvider, reactionBubbleProvider, bubbleServiceProvider;
+  // Built lazily from parallel message parsing and layout threads, so published through volatile fields
+  private static volatile TextStyleProvider styleProvider, simpleStyleProvider, biggerStyleProvider, smallerStyleProvider, nameProvider, timeProvider, reactionBubbleProvider, bubbleServiceProvider;
+
+  private static TextStyleProvider newChatFontSizeProvider (float textSizeDiff) {
+    TextStyleProvider provider = new TextStyleProvider(Fonts.newRobotoStorage());
+    if (textSizeDiff != 0f) {
+      provider.setTextSizeDiff(textSizeDiff);
+    }
+    provider.setTextSize(Settings.instance().getChatFontSize()).setAllowSp(true);
+    Settings.instance().addChatFontSizeChangeListener(provider);
+    return provider;
+  }
 
   public static TextStyleProvider reactionsTextStyleProvider () {
     if (reactionBubbleProvider == null) {
-      reactionBubbleProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSizeDiff(-4f).setTextSize(Settings.instance().getChatFontSize()).setAllowSp(true);
-      Settings.instance().addChatFontSizeChangeListener(reactionBubbleProvider);
+      synchronized (TGMessage.class) {
+        if (reactionBubbleProvider == null) {
+          reactionBubbleProvider = newChatFontSizeProvider(-4f);
+        }
+      }
     }
     return reactionBubbleProvider;
   }
 
   public static TextStyleProvider simpleTextStyleProvider () {
     if (simpleStyleProvider == null) {
-      simpleStyleProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSize(Settings.CHAT_FONT_SIZE_DEFAULT);
+      synchronized (TGMessage.class) {
+        if (simpleStyleProvider == null) {
+          simpleStyleProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSize(Settings.CHAT_FONT_SIZE_DEFAULT);
+        }
+      }
     }
     return simpleStyleProvider;
   }
 
   public static TextStyleProvider getNameStyleProvider () {
     if (nameProvider == null) {
-      nameProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSize(15f);
+      synchronized (TGMessage.class) {
+        if (nameProvider == null) {
+          nameProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSize(15f);
+        }
+      }
     }
     return nameProvider;
   }
 
   public static TextStyleProvider getTextStyleProvider () {
     if (styleProvider == null) {
-      styleProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSize(Settings.instance().getChatFontSize()).setAllowSp(true);
-      Settings.instance().addChatFontSizeChangeListener(styleProvider);
+      synchronized (TGMessage.class) {
+        if (styleProvider == null) {
+          styleProvider = newChatFontSizeProvider(0f);
+        }
+      }
     }
     return styleProvider;
   }
@@ -7203,31 +7232,44 @@ public abstract class TGMessage implements InvalidateContentProvider, TdlibDeleg
 
   public static TextStyleProvider bubbleServiceTextStyleProvider () {
     if (bubbleServiceProvider == null) {
-      bubbleServiceProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSizeDiff(-2f).setTextSize(Settings.instance().getChatFontSize()).setAllowSp(true);
-      Settings.instance().addChatFontSizeChangeListener(bubbleServiceProvider);
+      synchronized (TGMessage.class) {
+        if (bubbleServiceProvider == null) {
+          bubbleServiceProvider = newChatFontSizeProvider(-2f);
+        }
+      }
     }
     return bubbleServiceProvider;
   }
 
   public static TextStyleProvider getSmallerTextStyleProvider () {
     if (smallerStyleProvider == null) {
-      smallerStyleProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSizeDiff(-1f).setTextSize(Settings.instance().getChatFontSize()).setAllowSp(true);
-      Settings.instance().addChatFontSizeChangeListener(smallerStyleProvider);
+      synchronized (TGMessage.class) {
+        if (smallerStyleProvider == null) {
+          smallerStyleProvider = newChatFontSizeProvider(-1f);
+        }
+      }
     }
     return smallerStyleProvider;
   }
 
   public static TextStyleProvider getBiggerTextStyleProvider () {
     if (biggerStyleProvider == null) {
-      biggerStyleProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSizeDiff(1f).setTextSize(Settings.instance().getChatFontSize()).setAllowSp(true);
-      Settings.instance().addChatFontSizeChangeListener(biggerStyleProvider);
+      synchronized (TGMessage.class) {
+        if (biggerStyleProvider == null) {
+          biggerStyleProvider = newChatFontSizeProvider(1f);
+        }
+      }
     }
     return biggerStyleProvider;
   }
 
   public static TextStyleProvider getTimeTextStyleProvider () {
     if (timeProvider == null) {
-      timeProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSize(11f);
+      synchronized (TGMessage.class) {
+        if (timeProvider == null) {
+          timeProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSize(11f);
+        }
+      }
     }
     return timeProvider;
   }
@@ -7348,7 +7390,7 @@ public abstract class TGMessage implements InvalidateContentProvider, TdlibDeleg
 
   private static Drawable iQuickTranslate, iQuickStopTranslate, iQuickReply, iQuickShare, iBadge;
   private static String shareText, replyText, translateText, translateStopText;
-  private static boolean initialized;
+  private static volatile boolean initialized;
 
   private static void initResources () {
     Resources res = UI.getResources();
@@ -8605,7 +8647,7 @@ public abstract class TGMessage implements InvalidateContentProvider, TdlibDeleg
 
   public @Nullable TdApi.FormattedText getTranslatedText () {
     if (textToTranslate == null) return null;
-    return mTranslationsManager.getCachedTextTranslation(textToTranslate.text, getCurrentTranslatedLanguage());
+    return mTranslationsManager.getCachedTextTranslation(textToTranslate, getCurrentTranslatedLanguage());
   }
 
   @Override
@@ -8626,13 +8668,18 @@ public abstract class TGMessage implements InvalidateContentProvider, TdlibDeleg
     return textToTranslate;
   }
 
+  @Override
+  public boolean isTranslationVisible () {
+    return hasAnyTargetToInvalidate();
+  }
+
   public void checkTranslatableText (Runnable after) {
     final TdApi.FormattedText textToTranslate = getTextToTranslateImpl();
     this.textToTranslate = textToTranslate;
     textToTranslateOriginalLanguage = textToTranslate != null ? mTranslationsManager.getCachedTextLanguage(textToTranslate.text): null;
     if (textToTranslate != null && textToTranslateOriginalLanguage == null && translationStyleMode() != Settings.TRANSLATE_MODE_NONE) {
-      LanguageDetector.detectLanguage(context(), textToTranslate.text, lang -> {
-        mTranslationsManager.saveCachedTextLanguage(textToTranslate.text, textToTranslateOriginalLanguage = lang);
+      tdlib.translations().detectTextLanguage(context(), textToTranslate.text, lang -> {
+        textToTranslateOriginalLanguage = lang;
         after.run();
       }, err -> {
         textToTranslateOriginalLanguage = null;
@@ -542,9 +542,14 @@ public class TGReactions implements Destroyable, ReactionLoadListener {
       TGStickerObj stickerObj = reactionObj.newCenterAnimationSicker();
       animation = stickerObj.getFullAnimation();
       animationScale = stickerObj.getDisplayScale();
-      if (animation != null && !stickerObj.isCustomReaction()) {
-        animation.setPlayOnce(true);
-        animation.setLooped(true);
+      if (animation != null) {
+        if (!stickerObj.isCustomReaction()) {
+          animation.setPlayOnce(true);
+          animation.setLooped(true);
+        } else {
+          // Same custom reaction is usually displayed under many messages at once
+          animation.setShared(true);
+        }
       }
 
       TGStickerObj staticFile = reactionObj.staticCenterAnimationSicker();
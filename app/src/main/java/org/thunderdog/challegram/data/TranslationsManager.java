@@ -2,13 +2,10 @@ package org.thunderdog.challegram.data;
 
 import androidx.annotation.Nullable;
 
-import org.drinkless.tdlib.Client;
 import org.drinkless.tdlib.TdApi;
 import org.thunderdog.challegram.telegram.Tdlib;
 import org.thunderdog.challegram.util.TranslationCounterDrawable;
 
-import java.util.HashMap;
-
 import me.vkryl.core.StringUtils;
 
 public final class TranslationsManager {
@@ -38,6 +35,13 @@ public final class TranslationsManager {
     String getOriginalMessageLanguage ();
 
     TdApi.FormattedText getTextToTranslate ();
+
+    /**
+     * @return Whether translation is currently displayed, translations of visible texts are requested first
+     */
+    default boolean isTranslationVisible () {
+      return true;
+    }
   }
 
   public TranslationsManager (Tdlib tdlib, Translatable message, OnChangeTranslatedStatus statusDelegate, OnChangeTranslatedResult resultDelegate, OnNewTranslatedError errorDelegate) {
@@ -68,7 +72,7 @@ public final class TranslationsManager {
     TdApi.FormattedText textToTranslate = prepareTextToTranslate(message.getTextToTranslate());
     if (textToTranslate == null) return;
 
-    TdApi.FormattedText cachedText = getCachedTextTranslation(textToTranslate.text, language);
+    TdApi.FormattedText cachedText = getCachedTextTranslation(textToTranslate, language);
     if (cachedText != null) {
       statusDelegate.setTranslatedStatus(TranslationCounterDrawable.TRANSLATE_STATUS_SUCCESS, true);
       resultDelegate.setTranslationResult(cachedText);
@@ -76,10 +80,9 @@ public final class TranslationsManager {
     }
 
     statusDelegate.setTranslatedStatus(TranslationCounterDrawable.TRANSLATE_STATUS_LOADING, true);
-    tdlib.ui().post(() -> requestTranslationImpl(textToTranslate, language, object -> tdlib.ui().post(() -> {
+    tdlib.translations().translate(textToTranslate, language, message::isTranslationVisible, object -> {
       if (object instanceof TdApi.FormattedText) {
-        TdApi.FormattedText text = prepareTranslatedText((TdApi.FormattedText) object);
-        saveCachedTextTranslation(textToTranslate.text, language, text);
+        TdApi.FormattedText text = (TdApi.FormattedText) object;
         if (StringUtils.equalsOrBothEmpty(currentTranslatedLanguage, language)) {
           statusDelegate.setTranslatedStatus(TranslationCounterDrawable.TRANSLATE_STATUS_SUCCESS, true);
           resultDelegate.setTranslationResult(text);
@@ -92,7 +95,7 @@ public final class TranslationsManager {
           }
         }
       }
-    })));
+    });
   }
 
   public String getCurrentTranslatedLanguage () {
@@ -103,46 +106,20 @@ public final class TranslationsManager {
     return lastTranslatedLanguage;
   }
 
-  private void requestTranslationImpl (TdApi.FormattedText originalText, String toLanguage, Client.ResultHandler callback) {
-    tdlib.client().send(new TdApi.TranslateText(originalText, toLanguage), callback);
-  }
-
-
-
-
-  private final HashMap<String, TranslatedCachedValue> mTranslationsCache2 = new HashMap<>();
-
-  private static class TranslatedCachedValue {
-    public final String originalLanguage;
-    public final HashMap<String, TdApi.FormattedText> translationsCache;
-
-    public TranslatedCachedValue (String originalLanguage) {
-      this.originalLanguage = originalLanguage;
-      this.translationsCache = new HashMap<>();
-    }
-  }
+  // Cache is shared by all messages, see TdlibTranslationService
 
   public @Nullable String getCachedTextLanguage (String text) {
-    TranslatedCachedValue cachedValue = mTranslationsCache2.get(text);
-    return (cachedValue != null ? cachedValue.originalLanguage: null);
+    return tdlib.translations().findTextLanguage(text);
   }
 
   public void saveCachedTextLanguage (String text, String language) {
-    if (!mTranslationsCache2.containsKey(text)) {
-      mTranslationsCache2.put(text, new TranslatedCachedValue(language));
+    if (text != null && tdlib.translations().findTextLanguage(text) == null) {
+      tdlib.translations().saveTextLanguage(text, language);
     }
   }
 
-  public @Nullable TdApi.FormattedText getCachedTextTranslation (String text, String language) {
-    TranslatedCachedValue cachedValue = mTranslationsCache2.get(text);
-    return (cachedValue != null ? cachedValue.translationsCache.get(language): null);
-  }
-
-  public void saveCachedTextTranslation (String text, String language, TdApi.FormattedText translated) {
-    TranslatedCachedValue cachedValue = mTranslationsCache2.get(text);
-    if (cachedValue != null) {
-      cachedValue.translationsCache.put(language, translated);
-    }
+  public @Nullable TdApi.FormattedText getCachedTextTranslation (TdApi.FormattedText text, String language) {
+    return tdlib.translations().findTranslation(prepareTextToTranslate(text), language);
   }
 
 
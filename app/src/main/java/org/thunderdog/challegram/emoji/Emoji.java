@@ -72,6 +72,7 @@ public class Emoji {
   }
 
   private final HashMap<String, EmojiInfo> rects;
+  private final EmojiMatcher<EmojiInfo> matcher;
   private final ReferenceList<EmojiChangeListener> emojiChangeListeners = new ReferenceList<>();
 
   private final CountLimiter singleLimiter = new org.thunderdog.challegram.emoji.Emoji.CountLimiter() {
@@ -153,6 +154,19 @@ public class Emoji {
         rects.put(EmojiData.data[sectionIndex][emojiIndex], new EmojiInfo(rect, sectionIndex, page));
       }
     }
+
+    EmojiMatcher.Builder<EmojiInfo> matcher = new EmojiMatcher.Builder<>();
+    for (Map.Entry<String, EmojiInfo> entry : rects.entrySet()) {
+      matcher.add(entry.getKey(), entry.getKey(), entry.getValue(), true);
+    }
+    // Same precedence as in getEmojiInfo: alias is used only when there's no such emoji
+    for (Map.Entry<String, String> alias : EmojiData.instance().getEmojiAliases().entrySet()) {
+      EmojiInfo info = rects.get(alias.getValue());
+      if (info != null) {
+        matcher.add(alias.getKey(), alias.getValue(), info, false);
+      }
+    }
+    this.matcher = matcher.build();
   }
 
   public void changeEmojiPack (Settings.EmojiPack emojiPack) {
@@ -678,6 +692,55 @@ public class Emoji {
       return "";
     }
 
+    Spannable spannable = callback != null ? null : start == 0 && end == cs.length() && cs instanceof Spannable ? (Spannable) cs : null;
+    int emojiCount = countLimiter != null ? countLimiter.getEmojiCount() : 0;
+    final EmojiMatcher<EmojiInfo> matcher = this.matcher;
+
+    try {
+      for (int i = start; i < end; ) {
+        long match = matcher.match(cs, i, end);
+        if (match == EmojiMatcher.NO_MATCH) {
+          i++;
+          continue;
+        }
+        final int length = EmojiMatcher.matchLength(match);
+        final int index = EmojiMatcher.matchIndex(match);
+        final EmojiInfo info = matcher.value(index);
+        if (callback != null) {
+          callback.onEmojiFound(cs, matcher.code(index), info, i, length);
+        } else {
+          EmojiSpan span = EmojiSpanImpl.newSpan(info);
+          if (spannable == null) {
+            spannable = Spannable.Factory.getInstance().newSpannable(start == 0 && end == cs.length() ? cs : cs.subSequence(start, end));
+          }
+          spannable.setSpan(span, i - start, i + length - start, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+        i += length;
+        emojiCount++;
+        if ((countLimiter != null && !countLimiter.incrementEmojiCount()) || (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP && emojiCount >= 1000)) {
+          break;
+        }
+      }
+    } catch (Text.LimitReachedException e) {
+      throw e;
+    } catch (Throwable t) {
+      Log.e("Cannot replace emoji, text:\n%s", t, start != 0 || end != cs.length() ? cs.subSequence(start, end) : cs);
+    }
+    return spannable != null ? spannable : cs;
+  }
+
+  /**
+   * Previous implementation of {@link #replaceEmoji(CharSequence, int, int, CountLimiter, Callback)},
+   * kept only to compare results and performance in {@link EmojiScannerBenchmark}.
+   */
+  CharSequence replaceEmojiLegacy (CharSequence cs, int start, int end, CountLimiter countLimiter, Callback callback) {
+    if (Settings.instance().useSystemEmoji() || StringUtils.isEmpty(cs)) {
+      return cs;
+    }
+    if (start == end) {
+      return "";
+    }
+
     Spannable spannable = callback != null ? null : start == 0 && end == cs.length() && cs instanceof Spannable ? (Spannable) cs : null;
     long buf = 0;
     int emojiCount = countLimiter != null ? countLimiter.getEmojiCount() : 0;
@@ -25,6 +25,7 @@ import org.thunderdog.challegram.Log;
 import org.thunderdog.challegram.U;
 import org.thunderdog.challegram.config.Config;
 import org.thunderdog.challegram.core.Media;
+import org.thunderdog.challegram.loader.cache.BitmapPool;
 import org.thunderdog.challegram.telegram.TGLegacyManager;
 import org.thunderdog.challegram.tool.EmojiCode;
 import org.thunderdog.challegram.tool.Screen;
@@ -69,16 +70,40 @@ class EmojiBitmaps {
             if (Config.FORCE_SOFTWARE_IMAGE_DECODER) {
               decoder.setAllocator(android.graphics.ImageDecoder.ALLOCATOR_SOFTWARE);
             }
+            if (BitmapPool.isEnabled()) {
+              decoder.setMutableRequired(true);
+            }
           }
         });
       } catch (Throwable t) {
         Log.e("Cannot load emoji bitmap (Pie)", t);
       }
     } else {
-      try (InputStream is = isAsset ? UI.getAppContext().getAssets().open(filePath) : U.openInputStream(filePath)) {
-        BitmapFactory.Options opts = new BitmapFactory.Options();
+      BitmapFactory.Options opts = new BitmapFactory.Options();
+      opts.inSampleSize = sampleSize;
+      if (BitmapPool.isEnabled()) {
+        // All sheets of the pack share the same size, so sheets released on pack change get reused
+        try (InputStream is = openAsset(filePath, isAsset)) {
+          opts.inJustDecodeBounds = true;
+          BitmapFactory.decodeStream(is, null, opts);
+        } catch (Throwable t) {
+          Log.e("Cannot read emoji bitmap bounds", t);
+        }
+        opts.inJustDecodeBounds = false;
+        if (BitmapPool.instance().prepareOptions(opts)) {
+          try (InputStream is = openAsset(filePath, isAsset)) {
+            Bitmap bitmap = BitmapFactory.decodeStream(is, null, opts);
+            if (bitmap != null) {
+              return bitmap;
+            }
+          } catch (Throwable t) {
+            Log.w("Cannot reuse bitmap for emoji", t);
+          }
+          BitmapPool.instance().clearOptions(opts);
+        }
+      }
+      try (InputStream is = openAsset(filePath, isAsset)) {
         opts.inJustDecodeBounds = false;
-        opts.inSampleSize = sampleSize;
         return BitmapFactory.decodeStream(is, null, opts);
       } catch (Throwable t) {
         Log.e("Cannot load emoji bitmap", t);
@@ -87,6 +112,10 @@ class EmojiBitmaps {
     return null;
   }
 
+  private static InputStream openAsset (String filePath, boolean isAsset) throws Throwable {
+    return isAsset ? UI.getAppContext().getAssets().open(filePath) : U.openInputStream(filePath);
+  }
+
   static int calculateSampleSize () {
     return Screen.density() <= 1.0f ? 2 : 1;
   }
@@ -115,7 +144,7 @@ class EmojiBitmaps {
       for (Bitmap[] bitmaps : this.bitmaps) {
         int index = 0;
         for (Bitmap bitmap : bitmaps) {
-          U.recycle(bitmap);
+          BitmapPool.instance().put(bitmap);
           bitmaps[index] = null;
           index++;
         }
@@ -137,8 +166,7 @@ class EmojiBitmaps {
     Bitmap resultFinal = result;
     UI.post(() -> {
       if (recycled) {
-        if (resultFinal != null)
-          resultFinal.recycle();
+        BitmapPool.instance().put(resultFinal);
       } else {
         bitmaps[page1][page2] = resultFinal;
       }
@@ -0,0 +1,275 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.emoji;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Precompiled trie over UTF-16 code units of all known emoji.
+ *
+ * Trie is stored in flat arrays: outgoing edges of each node occupy a contiguous, sorted range,
+ * so a transition is a binary search. Nodes with many children that occupy a narrow range of code units
+ * (e.g. low surrogates after U+D83D) additionally get a direct lookup table.
+ * There's also a bitset of the first code units, so text without emoji is rejected with a single lookup per character.
+ *
+ * Variation selectors are transparent: they are skipped inside a sequence and appended to the match,
+ * so "\u2764" and "\u2764\uFE0F" resolve to the same emoji, while emoji data doesn't need to list both.
+ * Matching never allocates.
+ */
+public final class EmojiMatcher<T> {
+  public static final long NO_MATCH = -1;
+
+  private static final int NO_VALUE = -1;
+  private static final int MIN_DENSE_EDGE_COUNT = 16;
+
+  private final long[] firstChars = new long[65536 / 64];
+  private final int[] edgeStart;
+  private final char[] edgeChars;
+  private final int[] edgeTargets;
+  private final int[] nodeValues;
+  private final int[] denseStart;
+  private final int[] denseTargets;
+
+  private final String[] codes;
+  private final T[] values;
+
+  private EmojiMatcher (int[] edgeStart, char[] edgeChars, int[] edgeTargets, int[] nodeValues, String[] codes, T[] values) {
+    this.edgeStart = edgeStart;
+    this.edgeChars = edgeChars;
+    this.edgeTargets = edgeTargets;
+    this.nodeValues = nodeValues;
+    this.codes = codes;
+    this.values = values;
+    for (int edge = edgeStart[0]; edge < edgeStart[1]; edge++) {
+      char c = edgeChars[edge];
+      firstChars[c >>> 6] |= 1L << c;
+    }
+
+    final int nodeCount = nodeValues.length;
+    this.denseStart = new int[nodeCount];
+    int denseSize = 0;
+    for (int node = 0; node < nodeCount; node++) {
+      denseStart[node] = -1;
+      int edgeCount = edgeStart[node + 1] - edgeStart[node];
+      if (edgeCount >= MIN_DENSE_EDGE_COUNT) {
+        int span = edgeChars[edgeStart[node + 1] - 1] - edgeChars[edgeStart[node]] + 1;
+        if (span <= edgeCount * 2) {
+          denseStart[node] = denseSize;
+          denseSize += span;
+        }
+      }
+    }
+    this.denseTargets = new int[denseSize];
+    Arrays.fill(denseTargets, -1);
+    for (int node = 0; node < nodeCount; node++) {
+      if (denseStart[node] != -1) {
+        char first = edgeChars[edgeStart[node]];
+        for (int edge = edgeStart[node]; edge < edgeStart[node + 1]; edge++) {
+          denseTargets[denseStart[node] + (edgeChars[edge] - first)] = edgeTargets[edge];
+        }
+      }
+    }
+  }
+
+  private static boolean isVariationSelector (char c) {
+    return c == '\uFE0F' || c == '\uFE0E';
+  }
+
+  private int findEdge (int node, char c) {
+    int low = edgeStart[node];
+    int high = edgeStart[node + 1] - 1;
+    if (low > high) {
+      return -1;
+    }
+    if (denseStart[node] != -1) {
+      int offset = c - edgeChars[low];
+      return offset >= 0 && c <= edgeChars[high] ? denseTargets[denseStart[node] + offset] : -1;
+    }
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      char midChar = edgeChars[mid];
+      if (midChar < c) {
+        low = mid + 1;
+      } else if (midChar > c) {
+        high = mid - 1;
+      } else {
+        return edgeTargets[mid];
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Finds the longest emoji that starts at {@code start}.
+   *
+   * @return {@link #NO_MATCH} or match, which can be read with {@link #matchLength(long)} and {@link #matchIndex(long)}
+   */
+  public long match (CharSequence cs, int start, int end) {
+    char c = cs.charAt(start);
+    if ((firstChars[c >>> 6] & (1L << c)) == 0) {
+      return NO_MATCH;
+    }
+    int node = 0;
+    int matchIndex = NO_VALUE;
+    int matchEnd = start;
+    for (int i = start; i < end; i++) {
+      c = cs.charAt(i);
+      if (i > start && isVariationSelector(c)) {
+        continue;
+      }
+      node = findEdge(node, c);
+      if (node == -1) {
+        break;
+      }
+      if (nodeValues[node] != NO_VALUE) {
+        matchIndex = nodeValues[node];
+        matchEnd = i + 1;
+      }
+    }
+    if (matchIndex == NO_VALUE) {
+      return NO_MATCH;
+    }
+    while (matchEnd < end && isVariationSelector(cs.charAt(matchEnd))) {
+      matchEnd++;
+    }
+    return ((long) (matchEnd - start) << 32) | matchIndex;
+  }
+
+  public static int matchLength (long match) {
+    return (int) (match >>> 32);
+  }
+
+  public static int matchIndex (long match) {
+    return (int) match;
+  }
+
+  /**
+   * @return canonical emoji code, as listed in emoji data
+   */
+  public String code (int matchIndex) {
+    return codes[matchIndex];
+  }
+
+  public T value (int matchIndex) {
+    return values[matchIndex];
+  }
+
+  // Building
+
+  public static final class Builder<T> {
+    private static final class Node {
+      final HashMap<Character, Node> children = new HashMap<>();
+      int value = NO_VALUE;
+    }
+
+    private final Node root = new Node();
+    private final List<String> codes = new ArrayList<>();
+    private final List<T> values = new ArrayList<>();
+    private int nodeCount = 1;
+
+    private static String normalize (String code) {
+      if (code.indexOf('\uFE0F') == -1 && code.indexOf('\uFE0E') == -1)
+        return code;
+      StringBuilder b = new StringBuilder(code.length());
+      for (int i = 0; i < code.length(); i++) {
+        char c = code.charAt(i);
+        if (!isVariationSelector(c)) {
+          b.append(c);
+        }
+      }
+      return b.toString();
+    }
+
+    /**
+     * @param key Sequence to be matched
+     * @param code Canonical code of the emoji
+     * @param replace Whether value should be replaced, if key is already present
+     */
+    public Builder<T> add (@NonNull String key, @NonNull String code, @NonNull T value, boolean replace) {
+      key = normalize(key);
+      if (key.isEmpty())
+        return this;
+      Node node = root;
+      for (int i = 0; i < key.length(); i++) {
+        Character c = key.charAt(i);
+        Node child = node.children.get(c);
+        if (child == null) {
+          child = new Node();
+          node.children.put(c, child);
+          nodeCount++;
+        }
+        node = child;
+      }
+      if (node.value == NO_VALUE) {
+        node.value = codes.size();
+        codes.add(code);
+        values.add(value);
+      } else if (replace) {
+        codes.set(node.value, code);
+        values.set(node.value, value);
+      }
+      return this;
+    }
+
+    public boolean contains (@NonNull String key) {
+      key = normalize(key);
+      Node node = root;
+      for (int i = 0; i < key.length() && node != null; i++) {
+        node = node.children.get(key.charAt(i));
+      }
+      return node != null && node.value != NO_VALUE;
+    }
+
+    @SuppressWarnings("unchecked")
+    public EmojiMatcher<T> build () {
+      int[] edgeStart = new int[nodeCount + 1];
+      char[] edgeChars = new char[nodeCount - 1];
+      int[] edgeTargets = new int[nodeCount - 1];
+      int[] nodeValues = new int[nodeCount];
+
+      // Breadth-first numbering, so children of each node get a contiguous range of edges
+      ArrayDeque<Node> queue = new ArrayDeque<>();
+      queue.add(root);
+      int nodeIndex = 0;
+      int nextNodeIndex = 1;
+      int edgeIndex = 0;
+      while (!queue.isEmpty()) {
+        Node node = queue.poll();
+        nodeValues[nodeIndex] = node.value;
+        edgeStart[nodeIndex] = edgeIndex;
+        Character[] chars = node.children.keySet().toArray(new Character[0]);
+        Arrays.sort(chars);
+        for (Character c : chars) {
+          edgeChars[edgeIndex] = c;
+          edgeTargets[edgeIndex] = nextNodeIndex++;
+          edgeIndex++;
+          queue.add(node.children.get(c));
+        }
+        nodeIndex++;
+      }
+      edgeStart[nodeCount] = edgeIndex;
+
+      String[] codes = this.codes.toArray(new String[0]);
+      T[] values = (T[]) this.values.toArray();
+      return new EmojiMatcher<>(edgeStart, edgeChars, edgeTargets, nodeValues, codes, values);
+    }
+  }
+}
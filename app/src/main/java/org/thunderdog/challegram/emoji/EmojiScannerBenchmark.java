@@ -0,0 +1,169 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.emoji;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import me.vkryl.core.StringUtils;
+
+/**
+ * Compares {@link Emoji#replaceEmoji(CharSequence, int, int, Emoji.CountLimiter, Emoji.Callback)}
+ * with the previous implementation on the given texts, e.g. chat titles and messages of the current account.
+ *
+ * Both scanners report matches through a callback, so spans are not created, and only scanning is measured.
+ */
+public final class EmojiScannerBenchmark {
+  private static final int WARMUP_ITERATIONS = 3;
+
+  private static final class Recorder implements Emoji.Callback {
+    private int[] matches = new int[32];
+    private int size;
+
+    @Override
+    public boolean onEmojiFound (CharSequence input, CharSequence code, EmojiInfo info, int position, int length) {
+      if (size + 2 > matches.length) {
+        matches = Arrays.copyOf(matches, matches.length * 2);
+      }
+      matches[size++] = position;
+      matches[size++] = length;
+      return true;
+    }
+
+    int count () {
+      return size / 2;
+    }
+
+    void clear () {
+      size = 0;
+    }
+
+    boolean sameMatches (Recorder other) {
+      if (size != other.size)
+        return false;
+      for (int i = 0; i < size; i++) {
+        if (matches[i] != other.matches[i])
+          return false;
+      }
+      return true;
+    }
+
+    @NonNull
+    @Override
+    public String toString () {
+      StringBuilder b = new StringBuilder();
+      for (int i = 0; i < size; i += 2) {
+        if (i > 0) {
+          b.append(", ");
+        }
+        b.append(matches[i]).append('+').append(matches[i + 1]);
+      }
+      return b.toString();
+    }
+  }
+
+  private interface Scanner {
+    void scan (String text, Recorder recorder);
+  }
+
+  private static long measureNanos (List<String> corpus, int iterations, Scanner scanner) {
+    Recorder recorder = new Recorder();
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      for (String text : corpus) {
+        scanner.scan(text, recorder);
+        recorder.clear();
+      }
+    }
+    long startNanos = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      for (String text : corpus) {
+        scanner.scan(text, recorder);
+        recorder.clear();
+      }
+    }
+    return System.nanoTime() - startNanos;
+  }
+
+  private static String toCodePoints (String text, int maxLength) {
+    StringBuilder b = new StringBuilder();
+    int length = Math.min(text.length(), maxLength);
+    for (int i = 0; i < length; ) {
+      int codePoint = text.codePointAt(i);
+      if (b.length() > 0) {
+        b.append(' ');
+      }
+      if (codePoint >= 0x20 && codePoint < 0x7f) {
+        b.appendCodePoint(codePoint);
+      } else {
+        b.append("U+").append(Integer.toHexString(codePoint).toUpperCase());
+      }
+      i += Character.charCount(codePoint);
+    }
+    if (length < text.length()) {
+      b.append(" …");
+    }
+    return b.toString();
+  }
+
+  @NonNull
+  public static String run (@NonNull List<String> corpus, int iterations) {
+    final Emoji emoji = Emoji.instance();
+    final Scanner current = (text, recorder) -> emoji.replaceEmoji(text, 0, text.length(), null, recorder);
+    final Scanner legacy = (text, recorder) -> emoji.replaceEmojiLegacy(text, 0, text.length(), null, recorder);
+
+    long totalLength = 0;
+    int emojiCount = 0, mismatchCount = 0;
+    StringBuilder mismatches = new StringBuilder();
+    Recorder currentRecorder = new Recorder(), legacyRecorder = new Recorder();
+    for (String text : corpus) {
+      totalLength += text.length();
+      current.scan(text, currentRecorder);
+      legacy.scan(text, legacyRecorder);
+      emojiCount += currentRecorder.count();
+      if (!currentRecorder.sameMatches(legacyRecorder)) {
+        if (mismatchCount < 10) {
+          mismatches.append("\n").append(toCodePoints(text, 48))
+            .append("\n  new: ").append(currentRecorder)
+            .append("\n  old: ").append(legacyRecorder);
+        }
+        mismatchCount++;
+      }
+      currentRecorder.clear();
+      legacyRecorder.clear();
+    }
+
+    long legacyNanos = measureNanos(corpus, iterations, legacy);
+    long currentNanos = measureNanos(corpus, iterations, current);
+
+    StringBuilder b = new StringBuilder();
+    b.append("Texts: ").append(corpus.size())
+      .append(", characters: ").append(totalLength)
+      .append(", emoji: ").append(emojiCount)
+      .append(", iterations: ").append(iterations)
+      .append("\n\nLegacy scanner: ").append(legacyNanos / 1_000_000).append("ms")
+      .append("\nTrie scanner: ").append(currentNanos / 1_000_000).append("ms");
+    if (currentNanos > 0) {
+      b.append(" (x").append(String.format(Locale.US, "%.2f", (double) legacyNanos / (double) currentNanos)).append(")");
+    }
+    b.append("\n\nTexts with different matches: ").append(mismatchCount);
+    if (!StringUtils.isEmpty(mismatches)) {
+      b.append('\n').append(mismatches);
+    }
+    return b.toString();
+  }
+}
@@ -1017,6 +1017,11 @@ public class AvatarReceiver implements Receiver, ChatListener, TdlibCache.UserDa
     complexReceiver.setAnimationDisabled(disabled);
   }
 
+  @Override
+  public void setPriority (@ImageDecodeScheduler.Priority int priority) {
+    complexReceiver.setPriority(priority);
+  }
+
   @Override
   public boolean setBounds (int left, int top, int right, int bottom) {
     boolean changed = false;
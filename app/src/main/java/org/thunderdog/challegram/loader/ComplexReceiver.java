@@ -151,7 +151,7 @@ public class ComplexReceiver implements Destroyable {
   }
 
   public DoubleImageReceiver getPreviewReceiver (long key) {
-    return getReceiver(previews, view, updateListener, isAttached, animationsDisabled, key, TYPE_DOUBLE);
+    return getReceiver(previews, view, updateListener, isAttached, animationsDisabled, priority, key, TYPE_DOUBLE);
   }
 
   private static final int TYPE_DOUBLE = 1;
@@ -159,7 +159,7 @@ public class ComplexReceiver implements Destroyable {
   private static final int TYPE_GIF = 3;
   private static final int TYPE_AVATAR = 4;
 
-  private static <T extends Receiver> T getReceiver (LongSparseArray<T> target, View view, @Nullable ComplexReceiverUpdateListener updateListener, boolean isAttached, boolean animationsDisabled, long key, int type) {
+  private static <T extends Receiver> T getReceiver (LongSparseArray<T> target, View view, @Nullable ComplexReceiverUpdateListener updateListener, boolean isAttached, boolean animationsDisabled, @ImageDecodeScheduler.Priority int priority, long key, int type) {
     int i = target.indexOfKey(key);
     if (i >= 0) {
       return target.valueAt(i);
@@ -187,6 +187,9 @@ public class ComplexReceiver implements Destroyable {
     if (animationsDisabled) {
       receiver.setAnimationDisabled(animationsDisabled);
     }
+    if (priority != ImageDecodeScheduler.Priority.VISIBLE) {
+      receiver.setPriority(priority);
+    }
     if (updateListener != null) {
       receiver.setUpdateListener((r) ->
         updateListener.onRequestInvalidate(r, key)
@@ -204,15 +207,15 @@ public class ComplexReceiver implements Destroyable {
   }
 
   public ImageReceiver getImageReceiver (long key) {
-    return getReceiver(imageReceivers, view, updateListener, isAttached, animationsDisabled, key, TYPE_IMAGE);
+    return getReceiver(imageReceivers, view, updateListener, isAttached, animationsDisabled, priority, key, TYPE_IMAGE);
   }
 
   public GifReceiver getGifReceiver (long key) {
-    return getReceiver(gifReceivers, view, updateListener, isAttached, animationsDisabled, key, TYPE_GIF);
+    return getReceiver(gifReceivers, view, updateListener, isAttached, animationsDisabled, priority, key, TYPE_GIF);
   }
 
   public AvatarReceiver getAvatarReceiver (long key) {
-    return getReceiver(avatarReceivers, view, updateListener, isAttached, animationsDisabled, key, TYPE_AVATAR);
+    return getReceiver(avatarReceivers, view, updateListener, isAttached, animationsDisabled, priority, key, TYPE_AVATAR);
   }
 
   private boolean isAttached = true;
@@ -228,6 +231,17 @@ public class ComplexReceiver implements Destroyable {
     }
   }
 
+  private @ImageDecodeScheduler.Priority int priority = ImageDecodeScheduler.Priority.VISIBLE;
+
+  public void setPriority (@ImageDecodeScheduler.Priority int priority) {
+    if (this.priority != priority) {
+      this.priority = priority;
+      iterate(receiver ->
+        receiver.setPriority(priority)
+      );
+    }
+  }
+
   private void iterate (RunnableData<Receiver> callback) {
     iterate(imageReceivers, callback);
     iterate(avatarReceivers, callback);
@@ -49,6 +49,12 @@ public class DoubleImageReceiver implements Receiver {
     this.receiver.setAnimationDisabled(disabled);
   }
 
+  @Override
+  public void setPriority (@ImageDecodeScheduler.Priority int priority) {
+    this.preview.setPriority(priority);
+    this.receiver.setPriority(priority);
+  }
+
   @Override
   public void setRadius (float radius) {
     if (isAnimated)
@@ -35,6 +35,7 @@ public class ImageActor implements ImageReader.Listener, AudioController.ApicLis
   private ImageFile file;
 
   private volatile boolean isCancelled;
+  private volatile @ImageDecodeScheduler.Priority int priority = ImageDecodeScheduler.Priority.VISIBLE;
 
   public ImageActor (ImageFile file) {
     this.file = file;
@@ -42,6 +43,7 @@ public class ImageActor implements ImageReader.Listener, AudioController.ApicLis
 
   public void cancel () {
     this.isCancelled = true;
+    ImageReader.instance().cancel(this);
     if (cancellationSignal != null)
       cancellationSignal.cancel();
     if (file instanceof ImageApicFile) {
@@ -54,6 +56,17 @@ public class ImageActor implements ImageReader.Listener, AudioController.ApicLis
     return isCancelled;
   }
 
+  public @ImageDecodeScheduler.Priority int getPriority () {
+    return priority;
+  }
+
+  public void setPriority (@ImageDecodeScheduler.Priority int priority) {
+    if (this.priority != priority) {
+      this.priority = priority;
+      ImageReader.instance().updatePriority(this);
+    }
+  }
+
   private CancellationSignal cancellationSignal;
 
   public CancellationSignal getCancellationSignal () {
@@ -15,22 +15,25 @@
 package org.thunderdog.challegram.loader;
 
 import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.os.Build;
-import android.util.LruCache;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import org.thunderdog.challegram.Log;
 import org.thunderdog.challegram.U;
+import org.thunderdog.challegram.config.Config;
+import org.thunderdog.challegram.loader.cache.BitmapMemoryCache;
+import org.thunderdog.challegram.loader.cache.BitmapPool;
+import org.thunderdog.challegram.loader.cache.ImageDiskCache;
+import org.thunderdog.challegram.loader.cache.LruEvictionPolicy;
+import org.thunderdog.challegram.loader.cache.TinyLfuEvictionPolicy;
 import org.thunderdog.challegram.tool.UI;
 
-import java.lang.ref.WeakReference;
-import java.util.HashMap;
-import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Locale;
 
 import me.vkryl.core.unit.ByteUnit;
 
@@ -44,55 +47,28 @@ public class ImageCache {
     return instance;
   }
 
-  public static HashMap<String, AtomicInteger> getReferenceCounters () {
-    return instance().getCounters();
-  }
-
-  private final HashMap<String, AtomicInteger> counters;
-  private final HashMap<String, Integer> rotations;
-  private final HashMap<String, WeakReference<Bitmap>> references;
-  private class BitmapLruCache extends LruCache<String, Bitmap> {
-    public BitmapLruCache (int maxSize) {
-      super(maxSize);
-    }
+  private final BitmapMemoryCache memcache;
 
-    @Override
-    protected int sizeOf (String key, Bitmap value) {
-      if (value == null || value.isRecycled())
-        return 1;
-      if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB_MR1) {
-        return value.getRowBytes() * value.getHeight();
-      } else if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
-        return value.getByteCount();
-      } else {
-        return value.getAllocationByteCount();
-      }
-    }
-
-    @Override
-    protected void entryRemoved (boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
-      if (!counters.containsKey(key)) {
-        if (Log.isEnabled(Log.TAG_IMAGE_LOADER)) {
-          Log.v(Log.TAG_IMAGE_LOADER, "#%s: recycling bitmap in entryRemoved", key);
+  private ImageCache () {
+    memcache = new BitmapMemoryCache(
+      getMemcacheSize(),
+      Math.max(4, Runtime.getRuntime().availableProcessors() * 2),
+      Config.IMAGE_CACHE_TINY_LFU ? TinyLfuEvictionPolicy::new : LruEvictionPolicy::new,
+      (key, bitmap, reusable) -> {
+        if (reusable) {
+          if (Log.isEnabled(Log.TAG_IMAGE_LOADER)) {
+            Log.v(Log.TAG_IMAGE_LOADER, "#%s: releasing bitmap to pool", key);
+          }
+          BitmapPool.instance().put(bitmap);
+        } else {
+          // Receivers detect recycled bitmaps and request the file again
+          if (Log.isEnabled(Log.TAG_IMAGE_LOADER)) {
+            Log.v(Log.TAG_IMAGE_LOADER, "#%s: recycling bitmap", key);
+          }
+          U.recycle(bitmap);
         }
-        U.recycle(oldValue);
       }
-    }
-  }
-
-  private final BitmapLruCache memcache;
-
-  private static final boolean ALLOW_REFERENCES = true;
-
-  private ImageCache () {
-    counters = new HashMap<>();
-    rotations = new HashMap<>();
-    memcache = new BitmapLruCache(getMemcacheSize());
-    references = new HashMap<>();
-  }
-
-  private boolean hasInMemcache (String key) {
-    return memcache.get(key) != null;
+    );
   }
 
   private int getMemcacheSize () {
@@ -104,23 +80,12 @@ public class ImageCache {
     }
   }
 
-  public HashMap<String, AtomicInteger> getCounters () {
-    return counters;
-  }
-
   public void addReference (ImageFile file, Bitmap bitmap) {
     if (file != null && bitmap != null) {
-      synchronized (counters) {
-        final String key = file.toString();
-        AtomicInteger count = counters.get(key);
-        if (count != null) {
-          count.incrementAndGet();
-        } else {
-          counters.put(key, count = new AtomicInteger(1));
-        }
-        if (Log.isEnabled(Log.TAG_IMAGE_LOADER)) {
-          Log.v(Log.TAG_IMAGE_LOADER, "#%s: reference++: %d", key, count.get());
-        }
+      final String key = file.toString();
+      int count = memcache.addReference(key);
+      if (Log.isEnabled(Log.TAG_IMAGE_LOADER)) {
+        Log.v(Log.TAG_IMAGE_LOADER, "#%s: reference++: %d", key, count);
       }
     } else {
       if (Log.isEnabled(Log.TAG_IMAGE_LOADER)) {
@@ -131,30 +96,10 @@ public class ImageCache {
 
   public void removeReference (ImageFile file, Bitmap bitmap) {
     if (file != null && bitmap != null) {
-      synchronized (counters) {
-        String key = file.toString();
-
-        AtomicInteger count = counters.get(key);
-        if (count != null) {
-          int result = count.decrementAndGet();
-          if (result < 0)
-            throw new IllegalStateException("key:" + key);
-          if (Log.isEnabled(Log.TAG_IMAGE_LOADER)) {
-            Log.v(Log.TAG_IMAGE_LOADER, "#%s: reference--: %d", key, result);
-          }
-          if (result == 0) {
-            counters.remove(key);
-            if (!hasInMemcache(key)) {
-              if (Log.isEnabled(Log.TAG_IMAGE_LOADER)) {
-                Log.v(Log.TAG_IMAGE_LOADER, "#%s: recycling bitmap in removeReference", key);
-              }
-              U.recycle(bitmap);
-            }
-            if (ALLOW_REFERENCES) {
-              references.remove(key);
-            }
-          }
-        }
+      final String key = file.toString();
+      int count = memcache.removeReference(key, bitmap);
+      if (count != -1 && Log.isEnabled(Log.TAG_IMAGE_LOADER)) {
+        Log.v(Log.TAG_IMAGE_LOADER, "#%s: reference--: %d", key, count);
       }
     } else if (file == null) {
       if (Log.isEnabled(Log.TAG_IMAGE_LOADER)) {
@@ -163,77 +108,81 @@ public class ImageCache {
     }
   }
 
+  /**
+   * Releases reference to {@code oldBitmap} and takes reference to {@code newBitmap}.
+   * When both files map to the same cache segment, it is done atomically.
+   */
+  public void replaceReference (@Nullable ImageFile oldFile, @Nullable Bitmap oldBitmap, @Nullable ImageFile newFile, @Nullable Bitmap newBitmap) {
+    memcache.replaceReference(
+      oldFile != null ? oldFile.toString() : null, oldBitmap,
+      newFile != null && newBitmap != null ? newFile.toString() : null
+    );
+  }
+
   private static String getBitmapInfo (@Nullable Bitmap bitmap) {
     return bitmap != null ? (bitmap.isRecycled() ? "recycled" : bitmap.getWidth() + "x" + bitmap.getHeight()) : "null";
   }
 
   public void putBitmap (ImageFile file, Bitmap bitmap) {
-    final String key = file.toString();
-    memcache.put(key, bitmap);
-    if (file.getRotation() != 0) {
-      rotations.put(key, file.getRotation());
-    }
-    if (ALLOW_REFERENCES) {
-      synchronized (counters) {
-        references.put(key, new WeakReference<>(bitmap));
-      }
-    }
+    memcache.put(file.toString(), bitmap, file.getRotation(), !file.needReferences());
   }
 
   public Bitmap getBitmap (ImageFile file) {
-    final String key = file.toString();
-    final Bitmap cached = memcache.get(key);
-    if (cached != null) {
-      Integer rotation = rotations.get(key);
-      if (rotation != null) {
-        file.setRotation(rotation);
-      }
-    }
-    if (ALLOW_REFERENCES && cached == null) {
-      synchronized (counters) {
-        final WeakReference<Bitmap> reference = references.get(key);
-        final Bitmap referenced = reference != null ? reference.get() : null;
-        if (referenced == null || referenced.isRecycled()) {
-          references.remove(key);
-        } else {
-          return referenced;
-        }
-      }
+    return memcache.get(file.toString(), file);
+  }
+
+  /**
+   * Returns cached bitmap with a reference already taken, so it stays valid while it is in use
+   * by someone who is not an image receiver. Caller must call {@link #removeReference} when done.
+   */
+  @Nullable
+  public Bitmap acquireBitmap (ImageFile file) {
+    return memcache.acquire(file.toString());
+  }
+
+  public BitmapMemoryCache.Stats getStats () {
+    return memcache.getStats();
+  }
+
+  /**
+   * @return human-readable statistics of memory cache, bitmap pool and disk cache, shown in the debug menu
+   */
+  @NonNull
+  public String dumpStats () {
+    BitmapMemoryCache.Stats stats = memcache.getStats();
+    StringBuilder b = new StringBuilder();
+    b.append("Memory cache, policy: ").append(Config.IMAGE_CACHE_TINY_LFU ? "W-TinyLFU" : "LRU").append('\n')
+      .append(stats).append('\n')
+      .append("hit rate: ").append(String.format(Locale.US, "%.1f%%", stats.hitRate() * 100f)).append("\n\n");
+    b.append("Bitmap pool\n").append(BitmapPool.instance()).append("\n\n");
+    b.append("Disk cache, enabled: ").append(ImageDiskCache.isEnabled()).append('\n');
+    if (ImageDiskCache.isEnabled()) {
+      b.append(ImageDiskCache.instance()).append('\n');
     }
-    return cached;
+    return b.toString();
   }
 
   @Override
   @NonNull
   public String toString () {
-    return "ImageCache { counters = " + counters.size() + ", memcache = " + memcache.size() + " }";
+    return "ImageCache { " + memcache.getStats() + " }";
   }
 
   public void clear (boolean withMemcache) {
-    synchronized (counters) {
-      if (withMemcache) {
-        counters.clear();
-      }
-    }
     if (withMemcache) {
       memcache.evictAll();
     }
   }
 
-  public void clearForAccount (int accountId) {
-    synchronized (counters) {
-      final String prefix = "account" + accountId + "_";
-      /*U.removeByPrefix(counters, prefix);
-      U.removeByPrefix(rotations, prefix);
-      if (ALLOW_REFERENCES) {
-        U.removeByPrefix(references, prefix);
-      }*/
-      Set<String> snapshot = memcache.snapshot().keySet();
-      for (String key : snapshot) {
-        if (key.startsWith(prefix)) {
-          memcache.remove(key);
-        }
-      }
+  public void trimMemory (int level) {
+    if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+      memcache.trimToSize(0);
+    } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+      memcache.trimToSize(memcache.getMaxBytes() / 2);
     }
   }
+
+  public void clearForAccount (int accountId) {
+    memcache.removeByPrefix("account" + accountId + "_");
+  }
 }
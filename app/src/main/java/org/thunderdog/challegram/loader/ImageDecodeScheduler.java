@@ -0,0 +1,383 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.loader;
+
+import android.graphics.Bitmap;
+import android.os.Process;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.IntDef;
+import androidx.annotation.NonNull;
+
+import org.thunderdog.challegram.Log;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Bounded pool of decoder threads that serves {@link ImageReader} requests.
+ *
+ * Pending tasks are ordered by {@link Priority} first and by arrival time second, so images
+ * that are currently on screen are decoded before the ones that were requested earlier,
+ * but have already scrolled away. Requests for the same cacheable {@link ImageFile} key
+ * are merged into a single decode, and a task disappears from the queue as soon as
+ * the last actor waiting for it is cancelled. If the actor that was chosen to perform a merged
+ * decode gets cancelled before the result is delivered, the task is queued again for the
+ * remaining actors.
+ */
+public class ImageDecodeScheduler {
+  @Retention(RetentionPolicy.SOURCE)
+  @IntDef({
+    Priority.BACKGROUND,
+    Priority.PREFETCH,
+    Priority.VISIBLE
+  })
+  public @interface Priority {
+    int BACKGROUND = 0, PREFETCH = 1, VISIBLE = 2;
+  }
+
+  private static final int PRIORITY_COUNT = 3;
+
+  interface Decoder {
+    void decode (ImageActor actor, ImageFile file, String path, ImageReader.Listener listener);
+  }
+
+  private static class Subscriber {
+    final ImageActor actor;
+    final ImageReader.Listener listener;
+
+    Subscriber (ImageActor actor, ImageReader.Listener listener) {
+      this.actor = actor;
+      this.listener = listener;
+    }
+  }
+
+  private static class Task implements ImageReader.Listener {
+    final String key;
+    final ImageFile file;
+    final String path;
+    final boolean isVideo;
+    final ArrayList<Subscriber> subscribers = new ArrayList<>(1);
+
+    @Priority int priority;
+    boolean isRunning;
+    volatile boolean isDelivered;
+
+    Task (String key, ImageFile file, String path, boolean isVideo) {
+      this.key = key;
+      this.file = file;
+      this.path = path;
+      this.isVideo = isVideo;
+    }
+
+    @Override
+    public void onImageLoaded (boolean success, Bitmap result) {
+      // Only cacheable files are merged, so every subscriber receives the same cached bitmap
+      Subscriber[] subscribers;
+      synchronized (this) {
+        isDelivered = true;
+        subscribers = this.subscribers.toArray(new Subscriber[0]);
+      }
+      for (Subscriber subscriber : subscribers) {
+        subscriber.listener.onImageLoaded(success, result);
+      }
+    }
+  }
+
+  private final Decoder decoder;
+  private final Worker[] workers;
+  private final int maxVideoTasks;
+
+  @SuppressWarnings("unchecked")
+  private final ArrayDeque<Task>[] queues = new ArrayDeque[PRIORITY_COUNT];
+  private final HashMap<String, Task> mergeableTasks = new HashMap<>();
+  private final HashMap<ImageActor, Task> actorTasks = new HashMap<>();
+  private int runningVideoTasks;
+
+  private long scheduledCount, mergedCount, cancelledCount, completedCount;
+
+  ImageDecodeScheduler (@NonNull Decoder decoder, int workerCount) {
+    this.decoder = decoder;
+    for (int i = 0; i < PRIORITY_COUNT; i++) {
+      queues[i] = new ArrayDeque<>();
+    }
+    // Video thumbnails are extracted by MediaMetadataRetriever and can take seconds
+    this.maxVideoTasks = Math.max(1, workerCount / 2);
+    this.workers = new Worker[workerCount];
+    for (int i = 0; i < workerCount; i++) {
+      workers[i] = new Worker(i);
+    }
+  }
+
+  static int defaultWorkerCount () {
+    return Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+  }
+
+  // Public API
+
+  @AnyThread
+  public void schedule (ImageActor actor, ImageFile file, String path, boolean isVideo, ImageReader.Listener listener) {
+    final Subscriber subscriber = new Subscriber(actor, listener);
+    final @Priority int priority = actor.getPriority();
+    synchronized (queues) {
+      if (actor.isCancelled()) {
+        return;
+      }
+      final String key = file.shouldBeCached() && file.getBytes() == null ? file.toString() : null;
+      Task task = key != null ? mergeableTasks.get(key) : null;
+      if (task != null) {
+        synchronized (task) {
+          task.subscribers.add(subscriber);
+        }
+        actorTasks.put(actor, task);
+        mergedCount++;
+        if (!task.isRunning && priority > task.priority) {
+          queues[task.priority].remove(task);
+          task.priority = priority;
+          queues[priority].offer(task);
+        }
+        if (Log.isEnabled(Log.TAG_IMAGE_LOADER)) {
+          Log.v(Log.TAG_IMAGE_LOADER, "#%s: merged with pending decode", key);
+        }
+        return;
+      }
+      task = new Task(key, file, path, isVideo);
+      task.subscribers.add(subscriber);
+      task.priority = priority;
+      if (key != null) {
+        mergeableTasks.put(key, task);
+      }
+      actorTasks.put(actor, task);
+      queues[priority].offer(task);
+      scheduledCount++;
+      queues.notify();
+    }
+  }
+
+  /**
+   * Removes actor from its pending task. Task is dropped from the queue when no actors are left.
+   */
+  @AnyThread
+  public void cancel (ImageActor actor) {
+    synchronized (queues) {
+      Task task = actorTasks.remove(actor);
+      if (task == null) {
+        return;
+      }
+      boolean isEmpty;
+      synchronized (task) {
+        for (int i = task.subscribers.size() - 1; i >= 0; i--) {
+          if (task.subscribers.get(i).actor == actor) {
+            task.subscribers.remove(i);
+          }
+        }
+        isEmpty = task.subscribers.isEmpty();
+      }
+      if (isEmpty && !task.isRunning) {
+        queues[task.priority].remove(task);
+        if (task.key != null) {
+          mergeableTasks.remove(task.key);
+        }
+        cancelledCount++;
+      }
+    }
+  }
+
+  @AnyThread
+  public void updatePriority (ImageActor actor) {
+    final @Priority int priority = actor.getPriority();
+    synchronized (queues) {
+      Task task = actorTasks.get(actor);
+      if (task == null || task.isRunning || task.priority == priority) {
+        return;
+      }
+      int newPriority = priority;
+      synchronized (task) {
+        // Merged task must not go below any of its other actors
+        for (Subscriber subscriber : task.subscribers) {
+          newPriority = Math.max(newPriority, subscriber.actor.getPriority());
+        }
+      }
+      if (newPriority != task.priority) {
+        queues[task.priority].remove(task);
+        task.priority = newPriority;
+        queues[newPriority].offer(task);
+      }
+    }
+  }
+
+  // Workers
+
+  private Task takeTask () throws InterruptedException {
+    synchronized (queues) {
+      while (true) {
+        for (int priority = PRIORITY_COUNT - 1; priority >= 0; priority--) {
+          ArrayDeque<Task> queue = queues[priority];
+          if (queue.isEmpty())
+            continue;
+          Task found = null;
+          for (Task task : queue) {
+            if (!task.isVideo || runningVideoTasks < maxVideoTasks) {
+              found = task;
+              break;
+            }
+          }
+          if (found != null) {
+            queue.remove(found);
+            found.isRunning = true;
+            if (found.key != null) {
+              // Requests that arrive after this point can't receive the result anymore
+              mergeableTasks.remove(found.key);
+            }
+            if (found.isVideo) {
+              runningVideoTasks++;
+            }
+            return found;
+          }
+        }
+        queues.wait();
+      }
+    }
+  }
+
+  private void finishTask (Task task) {
+    synchronized (queues) {
+      if (task.isVideo) {
+        runningVideoTasks--;
+        queues.notifyAll();
+      }
+      if (!task.isDelivered && requeueTask(task)) {
+        return;
+      }
+      synchronized (task) {
+        for (Subscriber subscriber : task.subscribers) {
+          if (actorTasks.get(subscriber.actor) == task) {
+            actorTasks.remove(subscriber.actor);
+          }
+        }
+      }
+      completedCount++;
+    }
+  }
+
+  /**
+   * Puts task back to the queue when decode was aborted, because the chosen actor
+   * has been cancelled, but other actors are still waiting for the result.
+   *
+   * @return false, if there are no actors left to deliver the result to
+   */
+  private boolean requeueTask (Task task) {
+    int priority = -1;
+    synchronized (task) {
+      for (Subscriber subscriber : task.subscribers) {
+        if (!subscriber.actor.isCancelled()) {
+          priority = Math.max(priority, subscriber.actor.getPriority());
+        }
+      }
+    }
+    if (priority == -1) {
+      return false;
+    }
+    Task pendingTask = task.key != null ? mergeableTasks.get(task.key) : null;
+    if (pendingTask != null) {
+      // Same file has been requested again while this task was running
+      synchronized (task) {
+        synchronized (pendingTask) {
+          for (Subscriber subscriber : task.subscribers) {
+            pendingTask.subscribers.add(subscriber);
+            actorTasks.put(subscriber.actor, pendingTask);
+          }
+        }
+        task.subscribers.clear();
+      }
+      if (!pendingTask.isRunning && priority > pendingTask.priority) {
+        queues[pendingTask.priority].remove(pendingTask);
+        pendingTask.priority = priority;
+        queues[priority].offer(pendingTask);
+      }
+    } else {
+      task.isRunning = false;
+      task.priority = priority;
+      if (task.key != null) {
+        mergeableTasks.put(task.key, task);
+      }
+      queues[priority].offer(task);
+    }
+    queues.notify();
+    if (Log.isEnabled(Log.TAG_IMAGE_LOADER)) {
+      Log.v(Log.TAG_IMAGE_LOADER, "#%s: decoding actor cancelled, re-dispatching", task.file.toString());
+    }
+    return true;
+  }
+
+  private void runTask (Task task) {
+    ImageActor actor = null;
+    synchronized (task) {
+      for (Subscriber subscriber : task.subscribers) {
+        if (!subscriber.actor.isCancelled()) {
+          actor = subscriber.actor;
+          break;
+        }
+      }
+    }
+    try {
+      if (actor != null) {
+        decoder.decode(actor, task.file, task.path, task);
+      }
+    } catch (Throwable t) {
+      Log.e(Log.TAG_IMAGE_LOADER, "#%s: decode failed", t, task.file.toString());
+      task.onImageLoaded(false, null);
+    } finally {
+      finishTask(task);
+    }
+  }
+
+  private class Worker extends Thread {
+    Worker (int index) {
+      super("ImageDecoder#" + index);
+      start();
+    }
+
+    @Override
+    public void run () {
+      Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND + Process.THREAD_PRIORITY_MORE_FAVORABLE);
+      while (true) {
+        Task task;
+        try {
+          task = takeTask();
+        } catch (InterruptedException e) {
+          return;
+        }
+        runTask(task);
+      }
+    }
+  }
+
+  @Override
+  @NonNull
+  public String toString () {
+    synchronized (queues) {
+      return "ImageDecodeScheduler { workers: " + workers.length +
+        ", pending: " + queues[Priority.VISIBLE].size() + "/" + queues[Priority.PREFETCH].size() + "/" + queues[Priority.BACKGROUND].size() +
+        ", scheduled: " + scheduledCount +
+        ", merged: " + mergedCount +
+        ", cancelled: " + cancelledCount +
+        ", completed: " + completedCount + " }";
+    }
+  }
+}
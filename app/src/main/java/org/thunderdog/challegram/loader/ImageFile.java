@@ -21,6 +21,7 @@ import androidx.palette.graphics.Palette;
 
 import org.drinkless.tdlib.TdApi;
 import org.thunderdog.challegram.data.TD;
+import org.thunderdog.challegram.loader.cache.BitmapMemoryCache;
 import org.thunderdog.challegram.mediaview.crop.CropState;
 import org.thunderdog.challegram.mediaview.data.FiltersState;
 import org.thunderdog.challegram.mediaview.paint.PaintState;
@@ -37,7 +38,7 @@ import me.vkryl.core.reference.ReferenceList;
 import me.vkryl.core.reference.ReferenceUtils;
 import me.vkryl.td.Td;
 
-public class ImageFile {
+public class ImageFile implements BitmapMemoryCache.RotationReceiver {
   public static final int HTTP_START_ID = -1000000;
   public static final int GALLERY_START_ID = -2000000;
   public static final int LOCAL_START_ID = -3000000;
@@ -245,6 +246,7 @@ public class ImageFile {
     this.rotationMetadataListener = listener;
   }
 
+  @Override
   public void setRotation (int degrees) {
     if (this.rotation != degrees && rotationMetadataListener != null) {
       this.rotation = degrees;
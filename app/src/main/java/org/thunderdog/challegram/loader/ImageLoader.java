@@ -23,6 +23,7 @@ import org.drinkless.tdlib.TdApi;
 import org.thunderdog.challegram.Log;
 import org.thunderdog.challegram.config.Config;
 import org.thunderdog.challegram.data.TD;
+import org.thunderdog.challegram.loader.cache.ImageDiskCache;
 import org.thunderdog.challegram.telegram.Tdlib;
 import org.thunderdog.challegram.telegram.TdlibAccount;
 import org.thunderdog.challegram.tool.UI;
@@ -46,6 +47,8 @@ public class ImageLoader {
   private final ImageThread thread = new ImageThread();
 
   private final HashMap<String, ImageWatchers> watchers = new HashMap<>();
+  // Record each reference currently waits for. Receivers remove their watcher before requesting another file
+  private final HashMap<WatcherReference, ImageWatchers> watcherRecords = new HashMap<>();
   private final HashMap<String, ArrayList<String>> workers = new HashMap<>();
 
   private ImageLoader () {
@@ -92,6 +95,7 @@ public class ImageLoader {
       record = new ImageWatchers(file, actor, reference);
       synchronized (watchers) {
         watchers.put(file.toString(), record);
+        watcherRecords.put(reference, record);
       }
       if (actor.act()) {
         synchronized (watchers) {
@@ -146,6 +150,7 @@ public class ImageLoader {
           Log.v(Log.TAG_IMAGE_LOADER, "#%s: another watcher joined same actor, total: %d", file.toString(), watchers.size() + 1);
         }
         record.addWatcher(reference);
+        watcherRecords.put(reference, record);
       }
     }
   }
@@ -191,6 +196,7 @@ public class ImageLoader {
     }
 
     synchronized (watchers) {
+      watcherRecords.remove(reference);
       ArrayList<String> itemsToRemove = null;
       Set<Map.Entry<String, ImageWatchers>> entrySet = watchers.entrySet();
 
@@ -236,6 +242,20 @@ public class ImageLoader {
     }
   }
 
+  public void updatePriority (WatcherReference reference) {
+    if (Thread.currentThread() != thread) {
+      thread.updatePriority(reference);
+      return;
+    }
+
+    synchronized (watchers) {
+      ImageWatchers record = watcherRecords.get(reference);
+      if (record != null) {
+        record.updatePriority();
+      }
+    }
+  }
+
   public boolean onProgress (Tdlib tdlib, TdApi.File file) {
     boolean found = false;
 
@@ -329,6 +349,9 @@ public class ImageLoader {
         watchers.remove(file.toString());
 
         for (WatcherReference reference : record.getWatchers()) {
+          if (watcherRecords.get(reference) == record) {
+            watcherRecords.remove(reference);
+          }
           reference.imageLoaded(file, success, bitmap);
         }
       } else {
@@ -410,13 +433,16 @@ public class ImageLoader {
         }
 
         watchers.clear();
+        watcherRecords.clear();
       }
     }
 
     if (accountId != TdlibAccount.NO_ID) {
       ImageCache.instance().clearForAccount(accountId);
+      ImageDiskCache.instance().clearForAccount(accountId);
     } else {
       ImageCache.instance().clear(withMemcache);
+      ImageDiskCache.instance().clear();
     }
   }
 }
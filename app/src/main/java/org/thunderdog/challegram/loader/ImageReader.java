@@ -34,6 +34,8 @@ import org.thunderdog.challegram.N;
 import org.thunderdog.challegram.U;
 import org.thunderdog.challegram.config.Config;
 import org.thunderdog.challegram.filegen.TdlibFileGenerationManager;
+import org.thunderdog.challegram.loader.cache.BitmapPool;
+import org.thunderdog.challegram.loader.cache.ImageDiskCache;
 import org.thunderdog.challegram.loader.svg.SvgRender;
 import org.thunderdog.challegram.support.Mp3Support;
 import org.thunderdog.challegram.tool.UI;
@@ -58,33 +60,40 @@ public class ImageReader {
     return instance;
   }
 
-  private static byte[] bytesThumb;
+  // Decoding happens on multiple ImageDecodeScheduler workers at once
+  private static final ThreadLocal<byte[]> bytesThumb = new ThreadLocal<>();
 
-  private final ImageReaderThread imageThread, videoThread, memThread;
+  private final ImageReaderThread imageThread;
+  private final ImageDecodeScheduler scheduler;
 
   private ImageReader () {
     imageThread = new ImageReaderThread();
-    videoThread = new ImageReaderThread();
-    memThread = new ImageReaderThread();
+    scheduler = new ImageDecodeScheduler(this::readImageImpl, ImageDecodeScheduler.defaultWorkerCount());
   }
 
   public void post (Runnable r) {
     imageThread.post(r, 0);
   }
 
-  public void postVideo (Runnable r) {
-    videoThread.post(r, 0);
+  public void readImage (final ImageActor actor, final ImageFile file, final String path, final Listener listener) {
+    boolean isVideo = file instanceof ImageVideoThumbFile || file instanceof ImageMp3File || (file instanceof ImageGalleryFile && ((ImageGalleryFile) file).isVideo());
+    scheduler.schedule(actor, file, path, isVideo, listener);
   }
 
-  @SuppressWarnings (value={"SpellCheckingInspection", "deprecation"})
-  public void readImage (final ImageActor actor, final ImageFile file, final String path, final Listener listener) {
-    ImageReaderThread thread = file.getBytes() != null ? memThread : file instanceof ImageVideoThumbFile || file instanceof ImageMp3File || (file instanceof ImageGalleryFile && ((ImageGalleryFile) file).isVideo()) ? videoThread : imageThread;
+  void cancel (ImageActor actor) {
+    scheduler.cancel(actor);
+  }
 
-    if (Thread.currentThread() != thread) {
-      thread.readImage(actor, file, path, listener);
-      return;
-    }
+  void updatePriority (ImageActor actor) {
+    scheduler.updatePriority(actor);
+  }
 
+  public ImageDecodeScheduler getScheduler () {
+    return scheduler;
+  }
+
+  @SuppressWarnings (value={"SpellCheckingInspection", "deprecation"})
+  private void readImageImpl (final ImageActor actor, final ImageFile file, final String path, final Listener listener) {
     if (actor.isCancelled()) {
       return;
     }
@@ -128,7 +137,13 @@ public class ImageReader {
       return;
     }
 
-    Bitmap bitmap = readImage(file, path);
+    Bitmap bitmap = ImageDiskCache.instance().get(file, path);
+    if (bitmap == null) {
+      bitmap = readImage(file, path);
+      if (bitmap != null) {
+        ImageDiskCache.instance().put(file, path, bitmap);
+      }
+    }
     listener.onImageLoaded(bitmap != null, bitmap);
   }
 
@@ -190,7 +205,7 @@ public class ImageReader {
             if (Config.FORCE_SOFTWARE_IMAGE_DECODER) {
               decoder.setAllocator(android.graphics.ImageDecoder.ALLOCATOR_SOFTWARE);
             }
-            if (forceSw) {
+            if (forceSw || BitmapPool.isEnabled()) {
               decoder.setMutableRequired(true);
             }
             int limitSize = file.isPrivate() ? 36 : file.getSize();
@@ -297,9 +312,9 @@ public class ImageReader {
             bitmap = null;
           } else {
             int len = (int) f.length();
-            byte[] data = bytesThumb != null && bytesThumb.length >= len ? bytesThumb : null;
-            if (data == null) {
-              bytesThumb = data = new byte[len];
+            byte[] data = bytesThumb.get();
+            if (data == null || data.length < len) {
+              bytesThumb.set(data = new byte[len]);
             }
             f.readFully(data, 0, len);
             bitmap = BitmapFactory.decodeByteArray(data, 0, len, opts);
@@ -339,9 +354,7 @@ public class ImageReader {
           }
 
           if (bitmap == null) {
-            try (FileInputStream is = new FileInputStream(cacheFile)) {
-              bitmap = BitmapFactory.decodeStream(is, null, opts);
-            }
+            bitmap = decodeFilePooled(cacheFile, opts);
           }
         }
       }
@@ -416,7 +429,20 @@ public class ImageReader {
     }
     opts.inPreferredConfig = Bitmap.Config.ARGB_8888;
 
-    Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, opts);
+    Bitmap bitmap = null;
+    if (BitmapPool.instance().prepareOptions(opts)) {
+      try {
+        bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, opts);
+      } catch (IllegalArgumentException e) {
+        Log.i(Log.TAG_IMAGE_LOADER, "Cannot decode into pooled bitmap, retrying without it", e);
+      }
+      if (bitmap == null) {
+        BitmapPool.instance().clearOptions(opts);
+      }
+    }
+    if (bitmap == null) {
+      bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, opts);
+    }
 
     if (bitmap != null) {
       if (maxSize > 0 && Math.max(bitmap.getWidth(), bitmap.getHeight()) > maxSize && scaleToFit) {
@@ -634,6 +660,23 @@ public class ImageReader {
     decodeFile(path, opts);
   }
 
+  private static Bitmap decodeFilePooled (File file, BitmapFactory.Options opts) throws IOException {
+    if (BitmapPool.instance().prepareOptions(opts)) {
+      Bitmap bitmap = null;
+      try (FileInputStream is = new FileInputStream(file)) {
+        bitmap = BitmapFactory.decodeStream(is, null, opts);
+      } catch (IllegalArgumentException e) {
+        // Pooled bitmap could not be reused for this image
+        Log.i(Log.TAG_IMAGE_LOADER, "Cannot decode into pooled bitmap, retrying without it", e);
+      }
+      if (bitmap != null) {
+        return bitmap;
+      }
+      BitmapPool.instance().clearOptions(opts);
+    }
+    return BitmapFactory.decodeFile(file.getPath(), opts);
+  }
+
   public static Bitmap decodeFile (String path, BitmapFactory.Options opts) {
     try (InputStream is = U.openInputStream(path)) {
       return BitmapFactory.decodeStream(is, null, opts);
@@ -842,7 +885,7 @@ public class ImageReader {
       resized = Bitmap.createScaledBitmap(bitmap, (int) (width * ratio), (int) (height * ratio), true);
       if (resized != null) {
         if (allowRecycle && !bitmap.isRecycled()) {
-          bitmap.recycle();
+          BitmapPool.instance().put(bitmap);
         }
         if (pin) {
           N.pinBitmapIfNeeded(resized);
@@ -686,6 +686,17 @@ public class ImageReceiver implements Watcher, ValueAnimator.AnimatorUpdateListe
     this.needProgress = true;
   }
 
+  /**
+   * Changes decode priority of the current and all further requests of this receiver,
+   * e.g. to {@link ImageDecodeScheduler.Priority#PREFETCH} for items that are laid out off screen.
+   */
+  @Override
+  public void setPriority (@ImageDecodeScheduler.Priority int priority) {
+    if (reference.setPriority(priority) && file != null && !isDetached) {
+      ImageLoader.instance().updatePriority(reference);
+    }
+  }
+
   public void requestFile (ImageFile file) {
     if (isDetached) {
       cachedFile = file;
@@ -812,16 +823,12 @@ public class ImageReceiver implements Watcher, ValueAnimator.AnimatorUpdateListe
       final ImageFile oldFile = this.file;
 
       if (oldBitmap != bitmap) {
-        synchronized (ImageCache.getReferenceCounters()) {
-          if (needRefs1 && oldBitmap != null) {
-            ImageCache.instance().removeReference(oldFile, oldBitmap);
-          }
-          if (needRefs2 && bitmap != null) {
-            ImageCache.instance().addReference(file, bitmap);
-          }
-          setBitmap(bitmap);
-          bitmapChanged = true;
-        }
+        ImageCache.instance().replaceReference(
+          needRefs1 ? oldFile : null, oldBitmap,
+          needRefs2 ? file : null, bitmap
+        );
+        setBitmap(bitmap);
+        bitmapChanged = true;
       }
 
       if (oldFile != file) {
@@ -831,30 +838,26 @@ public class ImageReceiver implements Watcher, ValueAnimator.AnimatorUpdateListe
       ImageFile oldFile = this.file;
       Bitmap oldBitmap = this.bitmap;
 
-      synchronized (ImageCache.getReferenceCounters()) {
-        this.file = file;
-        setBitmap(bitmap);
-
-        if (displayCrop != null) {
-          if (oldFile != null) {
-            oldFile.removeCropStateListener(this);
-          }
-          if (file != null) {
-            displayCrop.set(file.getCropState());
-            file.addCropStateListener(this);
-          } else {
-            displayCrop.set(null);
-          }
-        }
+      this.file = file;
+      setBitmap(bitmap);
 
-        if (needRefs1 && oldFile != null) {
-          ImageCache.instance().removeReference(oldFile, oldBitmap);
+      if (displayCrop != null) {
+        if (oldFile != null) {
+          oldFile.removeCropStateListener(this);
         }
-        if (needRefs2 && file != null && bitmap != null) {
-          ImageCache.instance().addReference(file, bitmap);
+        if (file != null) {
+          displayCrop.set(file.getCropState());
+          file.addCropStateListener(this);
+        } else {
+          displayCrop.set(null);
         }
       }
 
+      ImageCache.instance().replaceReference(
+        needRefs1 ? oldFile : null, oldBitmap,
+        needRefs2 ? file : null, bitmap
+      );
+
       if (oldBitmap != bitmap) {
         bitmapChanged = true;
       }
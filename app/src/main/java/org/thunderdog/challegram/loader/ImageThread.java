@@ -27,6 +27,7 @@ public class ImageThread extends BaseThread {
   private static final int ACTOR_RESULT = 3;
   private static final int CLEAR = 4;
   private static final int DOWNLOAD_FILE_PERSISTENT = 5;
+  private static final int UPDATE_PRIORITY = 6;
 
   public ImageThread () {
     super("ImageThread");
@@ -40,6 +41,10 @@ public class ImageThread extends BaseThread {
     sendMessage(Message.obtain(getHandler(), REMOVE_WATCHER, reference), 0);
   }
 
+  public void updatePriority (WatcherReference reference) {
+    sendMessage(Message.obtain(getHandler(), UPDATE_PRIORITY, reference), 0);
+  }
+
   public void downloadFilePersistent (ImageFileRemote persistentFile, TdApi.File file) {
     sendMessage(Message.obtain(getHandler(), DOWNLOAD_FILE_PERSISTENT, new Object[] {persistentFile, file}), 0);
   }
@@ -73,6 +78,10 @@ public class ImageThread extends BaseThread {
         ImageLoader.instance().removeWatcher((WatcherReference) msg.obj);
         break;
       }
+      case UPDATE_PRIORITY: {
+        ImageLoader.instance().updatePriority((WatcherReference) msg.obj);
+        break;
+      }
       case LOAD_COMPLETE: {
         Object[] data = (Object[]) msg.obj;
 
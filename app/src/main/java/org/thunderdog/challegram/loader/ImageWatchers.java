@@ -26,6 +26,7 @@ public class ImageWatchers {
     this.actor = actor;
     this.watcherList = new ArrayList<>(2);
     this.watcherList.add(reference);
+    actor.setPriority(reference.getPriority());
   }
 
   public ImageFile getFile () {
@@ -50,6 +51,7 @@ public class ImageWatchers {
 
     actor.watcherJoined(reference);
     watcherList.add(reference);
+    actor.setPriority(getPriority());
 
     return true;
   }
@@ -59,9 +61,26 @@ public class ImageWatchers {
       return false;
 
     watcherList.remove(reference);
+    if (!watcherList.isEmpty()) {
+      actor.setPriority(getPriority());
+    }
     return true;
   }
 
+  public @ImageDecodeScheduler.Priority int getPriority () {
+    int priority = ImageDecodeScheduler.Priority.BACKGROUND;
+    if (watcherList != null) {
+      for (WatcherReference reference : watcherList) {
+        priority = Math.max(priority, reference.getPriority());
+      }
+    }
+    return priority;
+  }
+
+  public void updatePriority () {
+    actor.setPriority(getPriority());
+  }
+
   public boolean hasWatchers () {
     return watcherList != null && !watcherList.isEmpty();
   }
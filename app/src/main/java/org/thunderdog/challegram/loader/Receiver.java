@@ -130,6 +130,7 @@ public interface Receiver extends TooltipOverlayView.LocationProvider {
   void setAlpha (float alpha);
   float getAlpha ();
   void setAnimationDisabled (boolean disabled);
+  default void setPriority (@ImageDecodeScheduler.Priority int priority) { }
   boolean setBounds (int left, int top, int right, int bottom);
   default boolean setBoundsScaled (int left, int top, int right, int bottom, float scale) {
     if (scale == 1f) {
@@ -21,11 +21,27 @@ import java.lang.ref.WeakReference;
 
 public class WatcherReference {
   private Reference<Watcher> reference;
+  private volatile @ImageDecodeScheduler.Priority int priority = ImageDecodeScheduler.Priority.VISIBLE;
 
   public WatcherReference (Watcher watcher) {
     this.reference = new WeakReference<>(watcher);
   }
 
+  public @ImageDecodeScheduler.Priority int getPriority () {
+    return priority;
+  }
+
+  /**
+   * @return true, if priority has been changed
+   */
+  public boolean setPriority (@ImageDecodeScheduler.Priority int priority) {
+    if (this.priority != priority) {
+      this.priority = priority;
+      return true;
+    }
+    return false;
+  }
+
   public void imageLoaded (ImageFile file, boolean success, Bitmap bitmap) {
     Watcher watcher = reference.get();
     if (watcher != null) {
@@ -0,0 +1,519 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.loader.cache;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bitmap memory cache with lock striping by key hash.
+ *
+ * Each segment owns its part of the key space: hash table, reference counters
+ * and {@link EvictionPolicy}. Memory budget is shared between all segments and is accounted
+ * in bytes. When it overflows, every segment proposes its victim, and the one that was accessed
+ * least recently is evicted, so with {@link LruEvictionPolicy} eviction order is global LRU.
+ * No more than one segment lock is held at a time, so order is exact only when there are no concurrent hits.
+ *
+ * With {@link TinyLfuEvictionPolicy} admission decisions are made per segment. A key always maps
+ * to the same segment, so its frequency estimate is the same as with a single sketch, but window
+ * and main space sizes are split between segments, and each segment ages its sketch on its own.
+ *
+ * Entry stays in the table while it is either resident (counted towards the budget)
+ * or referenced by at least one receiver. Bitmaps are passed to {@link Recycler}
+ * only when they become neither. Entries put with {@code untracked} flag are drawn
+ * by receivers that don't take references, so their bitmaps are never reported as reusable.
+ */
+public final class BitmapMemoryCache {
+  /**
+   * Receives rotation that was stored with the bitmap, e.g. {@link org.thunderdog.challegram.loader.ImageFile}.
+   */
+  public interface RotationReceiver {
+    void setRotation (int degrees);
+  }
+
+  public interface Recycler {
+    /**
+     * @param reusable true, if no receiver can still hold the bitmap, and its memory may be reused
+     */
+    void recycle (String key, Bitmap bitmap, boolean reusable);
+  }
+
+  public static final class Entry {
+    static final int QUEUE_NONE = -1;
+
+    final String key;
+    final int hash;
+
+    Bitmap bitmap;
+    int byteCount;
+    int refCount;
+    int rotation;
+    boolean resident, untracked;
+    // System.nanoTime() of the last insertion or hit, used to pick the globally oldest victim
+    long accessTime;
+
+    // Managed by EvictionPolicy
+    Entry prev, next;
+    int queue = QUEUE_NONE;
+
+    Entry (String key, int hash) {
+      this.key = key;
+      this.hash = hash;
+    }
+
+    public String getKey () {
+      return key;
+    }
+
+    public int getByteCount () {
+      return byteCount;
+    }
+  }
+
+  private static final class Segment {
+    final HashMap<String, Entry> entries = new HashMap<>();
+    final EvictionPolicy policy;
+
+    long residentBytes;
+    int residentCount;
+
+    long hitCount, referenceHitCount, missCount, putCount, evictionCount, evictedBytes;
+
+    Segment (EvictionPolicy policy) {
+      this.policy = policy;
+    }
+  }
+
+  private final Segment[] segments;
+  private final int segmentMask;
+  private final long maxBytes;
+  private final Recycler recycler;
+
+  private final AtomicLong totalBytes = new AtomicLong();
+
+  public BitmapMemoryCache (long maxBytes, int concurrencyLevel, @NonNull EvictionPolicy.Factory policyFactory, @NonNull Recycler recycler) {
+    int segmentCount = Integer.highestOneBit(Math.max(1, concurrencyLevel - 1)) << 1;
+    this.segments = new Segment[segmentCount];
+    this.segmentMask = segmentCount - 1;
+    this.maxBytes = maxBytes;
+    this.recycler = recycler;
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment(policyFactory.create(maxBytes / segmentCount));
+    }
+  }
+
+  public long getMaxBytes () {
+    return maxBytes;
+  }
+
+  public long getTotalBytes () {
+    return totalBytes.get();
+  }
+
+  private static int hash (String key) {
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  private Segment segmentFor (int hash) {
+    return segments[(hash * 0x9e3779b9 >>> 24) & segmentMask];
+  }
+
+  public static int sizeOf (Bitmap bitmap) {
+    if (bitmap == null || bitmap.isRecycled())
+      return 1;
+    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB_MR1) {
+      return bitmap.getRowBytes() * bitmap.getHeight();
+    } else if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+      return bitmap.getByteCount();
+    } else {
+      return bitmap.getAllocationByteCount();
+    }
+  }
+
+  // Lookup
+
+  /**
+   * @param rotationReceiver if not {@code null} and cache has rotation for this key, receives it
+   * @return resident bitmap, or a bitmap that was evicted, but is still referenced by someone
+   */
+  @AnyThread
+  @Nullable
+  public Bitmap get (String key, @Nullable RotationReceiver rotationReceiver) {
+    final int hash = hash(key);
+    final Segment segment = segmentFor(hash);
+    final Bitmap bitmap;
+    final int rotation;
+    synchronized (segment) {
+      Entry entry = lookup(segment, key, hash);
+      if (entry == null) {
+        return null;
+      }
+      bitmap = entry.bitmap;
+      rotation = entry.rotation;
+    }
+    if (rotationReceiver != null && rotation != 0) {
+      rotationReceiver.setRotation(rotation);
+    }
+    return bitmap;
+  }
+
+  private static Entry lookup (Segment segment, String key, int hash) {
+    segment.policy.recordAccess(hash);
+    Entry entry = segment.entries.get(key);
+    if (entry != null && entry.bitmap != null && !entry.bitmap.isRecycled()) {
+      if (entry.resident) {
+        segment.policy.onHit(entry);
+        entry.accessTime = System.nanoTime();
+        segment.hitCount++;
+      } else {
+        segment.referenceHitCount++;
+      }
+      return entry;
+    }
+    segment.missCount++;
+    return null;
+  }
+
+  /**
+   * Same as {@link #get}, but also takes a reference to the returned bitmap,
+   * so it can't be recycled or reused until {@link #removeReference} is called.
+   */
+  @AnyThread
+  @Nullable
+  public Bitmap acquire (String key) {
+    final int hash = hash(key);
+    final Segment segment = segmentFor(hash);
+    synchronized (segment) {
+      Entry entry = lookup(segment, key, hash);
+      if (entry == null) {
+        return null;
+      }
+      entry.refCount++;
+      return entry.bitmap;
+    }
+  }
+
+  @AnyThread
+  public boolean contains (String key) {
+    final int hash = hash(key);
+    final Segment segment = segmentFor(hash);
+    synchronized (segment) {
+      Entry entry = segment.entries.get(key);
+      return entry != null && entry.resident;
+    }
+  }
+
+  // Insertion
+
+  @AnyThread
+  public void put (String key, Bitmap bitmap, int rotation, boolean untracked) {
+    final int hash = hash(key);
+    final Segment segment = segmentFor(hash);
+    final int byteCount = sizeOf(bitmap);
+    synchronized (segment) {
+      Entry entry = segment.entries.get(key);
+      if (entry == null) {
+        entry = new Entry(key, hash);
+        segment.entries.put(key, entry);
+      } else {
+        if (entry.resident) {
+          detach(segment, entry);
+        }
+        if (entry.bitmap != null && entry.bitmap != bitmap && entry.refCount == 0) {
+          recycler.recycle(key, entry.bitmap, !entry.untracked);
+        }
+        // When previous bitmap is still referenced, it is left to GC: references are counted per key,
+        // so there's no way to tell when its last holder is gone
+
+      }
+      entry.bitmap = bitmap;
+      entry.untracked |= untracked;
+      entry.byteCount = byteCount;
+      if (rotation != 0) {
+        entry.rotation = rotation;
+      }
+      attach(segment, entry);
+      segment.putCount++;
+    }
+    trimToSize(maxBytes);
+  }
+
+  private void attach (Segment segment, Entry entry) {
+    entry.resident = true;
+    entry.accessTime = System.nanoTime();
+    segment.policy.onAdd(entry);
+    segment.residentBytes += entry.byteCount;
+    segment.residentCount++;
+    totalBytes.addAndGet(entry.byteCount);
+  }
+
+  private void detach (Segment segment, Entry entry) {
+    entry.resident = false;
+    segment.policy.onRemove(entry);
+    segment.residentBytes -= entry.byteCount;
+    segment.residentCount--;
+    totalBytes.addAndGet(-entry.byteCount);
+  }
+
+  // Eviction
+
+  /**
+   * Evicts entries until total size of resident bitmaps fits into {@code size}.
+   */
+  @AnyThread
+  public void trimToSize (long size) {
+    while (totalBytes.get() > size) {
+      Segment oldestSegment = null;
+      long oldestAccessTime = 0;
+      for (Segment segment : segments) {
+        synchronized (segment) {
+          Entry victim = segment.policy.peekVictim();
+          if (victim != null && (oldestSegment == null || victim.accessTime - oldestAccessTime < 0)) {
+            oldestSegment = segment;
+            oldestAccessTime = victim.accessTime;
+          }
+        }
+      }
+      if (oldestSegment == null) {
+        break;
+      }
+      synchronized (oldestSegment) {
+        Entry victim = oldestSegment.policy.selectVictim();
+        if (victim != null) {
+          evict(oldestSegment, victim);
+        }
+      }
+    }
+  }
+
+  private void evict (Segment segment, Entry entry) {
+    detach(segment, entry);
+    segment.evictionCount++;
+    segment.evictedBytes += entry.byteCount;
+    if (entry.refCount == 0) {
+      segment.entries.remove(entry.key);
+      if (entry.bitmap != null) {
+        recycler.recycle(entry.key, entry.bitmap, !entry.untracked);
+        entry.bitmap = null;
+      }
+    }
+  }
+
+  @AnyThread
+  public void evictAll () {
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        Iterator<Entry> it = segment.entries.values().iterator();
+        while (it.hasNext()) {
+          Entry entry = it.next();
+          final boolean reusable = entry.refCount == 0 && !entry.untracked;
+          entry.refCount = 0;
+          if (entry.resident) {
+            detach(segment, entry);
+            segment.evictionCount++;
+            segment.evictedBytes += entry.byteCount;
+          }
+          if (entry.bitmap != null) {
+            recycler.recycle(entry.key, entry.bitmap, reusable);
+            entry.bitmap = null;
+          }
+          it.remove();
+        }
+      }
+    }
+  }
+
+  @AnyThread
+  public void removeByPrefix (String prefix) {
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        Iterator<Entry> it = segment.entries.values().iterator();
+        while (it.hasNext()) {
+          Entry entry = it.next();
+          if (entry.resident && entry.key.startsWith(prefix)) {
+            detach(segment, entry);
+            if (entry.refCount == 0) {
+              if (entry.bitmap != null) {
+                recycler.recycle(entry.key, entry.bitmap, !entry.untracked);
+                entry.bitmap = null;
+              }
+              it.remove();
+            }
+          }
+        }
+      }
+    }
+  }
+
+  // References
+
+  /**
+   * @return reference count after increment
+   */
+  @AnyThread
+  public int addReference (String key) {
+    final int hash = hash(key);
+    final Segment segment = segmentFor(hash);
+    synchronized (segment) {
+      return addReferenceImpl(segment, key, hash);
+    }
+  }
+
+  private static int addReferenceImpl (Segment segment, String key, int hash) {
+    Entry entry = segment.entries.get(key);
+    if (entry == null) {
+      entry = new Entry(key, hash);
+      segment.entries.put(key, entry);
+    }
+    return ++entry.refCount;
+  }
+
+  /**
+   * Decrements reference count and recycles {@code bitmap}, when it was the last reference
+   * and the key is no longer resident.
+   *
+   * @return reference count after decrement, or -1, if there were no references
+   */
+  @AnyThread
+  public int removeReference (String key, Bitmap bitmap) {
+    final int hash = hash(key);
+    final Segment segment = segmentFor(hash);
+    synchronized (segment) {
+      return removeReferenceImpl(segment, key, bitmap);
+    }
+  }
+
+  private int removeReferenceImpl (Segment segment, String key, Bitmap bitmap) {
+    Entry entry = segment.entries.get(key);
+    if (entry == null || entry.refCount == 0) {
+      return -1;
+    }
+    final int result = --entry.refCount;
+    if (result == 0 && !entry.resident) {
+      segment.entries.remove(key);
+      // Entry may have been put again with another bitmap while referenced, see put()
+      if (entry.bitmap != null) {
+        recycler.recycle(key, entry.bitmap, !entry.untracked);
+        entry.bitmap = null;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Atomically moves reference from one bitmap to another, when both keys belong to the same segment.
+   * New reference is taken before the old one is released.
+   */
+  @AnyThread
+  public void replaceReference (@Nullable String oldKey, @Nullable Bitmap oldBitmap, @Nullable String newKey) {
+    if (oldKey == null || oldBitmap == null) {
+      if (newKey != null) {
+        addReference(newKey);
+      }
+      return;
+    }
+    if (newKey == null) {
+      removeReference(oldKey, oldBitmap);
+      return;
+    }
+    final int oldHash = hash(oldKey), newHash = hash(newKey);
+    final Segment oldSegment = segmentFor(oldHash), newSegment = segmentFor(newHash);
+    if (oldSegment == newSegment) {
+      synchronized (oldSegment) {
+        addReferenceImpl(newSegment, newKey, newHash);
+        removeReferenceImpl(oldSegment, oldKey, oldBitmap);
+      }
+    } else {
+      addReference(newKey);
+      removeReference(oldKey, oldBitmap);
+    }
+  }
+
+  // Stats
+
+  public static final class Stats {
+    public final long maxBytes, totalBytes;
+    public final int entryCount, residentCount, segmentCount;
+    public final long hitCount, referenceHitCount, missCount, putCount, evictionCount, evictedBytes;
+
+    Stats (long maxBytes, long totalBytes, int entryCount, int residentCount, int segmentCount, long hitCount, long referenceHitCount, long missCount, long putCount, long evictionCount, long evictedBytes) {
+      this.maxBytes = maxBytes;
+      this.totalBytes = totalBytes;
+      this.entryCount = entryCount;
+      this.residentCount = residentCount;
+      this.segmentCount = segmentCount;
+      this.hitCount = hitCount;
+      this.referenceHitCount = referenceHitCount;
+      this.missCount = missCount;
+      this.putCount = putCount;
+      this.evictionCount = evictionCount;
+      this.evictedBytes = evictedBytes;
+    }
+
+    public float hitRate () {
+      long requestCount = hitCount + referenceHitCount + missCount;
+      return requestCount != 0 ? (float) (hitCount + referenceHitCount) / (float) requestCount : 0f;
+    }
+
+    @Override
+    @NonNull
+    public String toString () {
+      return "bytes: " + totalBytes + "/" + maxBytes +
+        ", entries: " + residentCount + "/" + entryCount +
+        ", segments: " + segmentCount +
+        ", hits: " + hitCount + "+" + referenceHitCount +
+        ", misses: " + missCount +
+        ", puts: " + putCount +
+        ", evictions: " + evictionCount + " (" + evictedBytes + " bytes)";
+    }
+  }
+
+  @AnyThread
+  public Stats getStats () {
+    int entryCount = 0, residentCount = 0;
+    long hitCount = 0, referenceHitCount = 0, missCount = 0, putCount = 0, evictionCount = 0, evictedBytes = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        entryCount += segment.entries.size();
+        residentCount += segment.residentCount;
+        hitCount += segment.hitCount;
+        referenceHitCount += segment.referenceHitCount;
+        missCount += segment.missCount;
+        putCount += segment.putCount;
+        evictionCount += segment.evictionCount;
+        evictedBytes += segment.evictedBytes;
+      }
+    }
+    return new Stats(maxBytes, totalBytes.get(), entryCount, residentCount, segments.length, hitCount, referenceHitCount, missCount, putCount, evictionCount, evictedBytes);
+  }
+
+  @AnyThread
+  public void resetStats () {
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        segment.hitCount = segment.referenceHitCount = segment.missCount = segment.putCount = segment.evictionCount = segment.evictedBytes = 0;
+      }
+    }
+  }
+}
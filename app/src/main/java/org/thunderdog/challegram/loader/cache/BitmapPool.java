@@ -0,0 +1,291 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.loader.cache;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.thunderdog.challegram.Log;
+import org.thunderdog.challegram.config.Config;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+import me.vkryl.core.unit.ByteUnit;
+
+/**
+ * Shared pool of mutable bitmaps that are no longer used by anyone.
+ *
+ * Bitmaps are grouped into size classes by their allocation size (4 classes per power of two),
+ * so request can be satisfied by any bitmap of the same class via {@link Bitmap#reconfigure}.
+ * Pool never holds more than {@link #maxBytes}: when it overflows, bitmaps from the largest
+ * classes are recycled first, as they are the least likely to be reused.
+ *
+ * Reuse relies on {@link Bitmap#reconfigure} and {@link BitmapFactory.Options#inBitmap} with
+ * arbitrary dimensions, so pool is disabled before KitKat.
+ */
+public final class BitmapPool {
+  private static volatile BitmapPool instance;
+
+  public static BitmapPool instance () {
+    if (instance == null) {
+      synchronized (BitmapPool.class) {
+        if (instance == null) {
+          instance = new BitmapPool(ByteUnit.MIB.toBytes(Config.BITMAP_POOL_SIZE_MIB));
+        }
+      }
+    }
+    return instance;
+  }
+
+  public static boolean isEnabled () {
+    return Config.BITMAP_POOL_ENABLED && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+  }
+
+  private static final int CLASSES_PER_POWER = 4;
+  private static final int CLASS_COUNT = 32 * CLASSES_PER_POWER;
+
+  @SuppressWarnings("unchecked")
+  private final ArrayDeque<Bitmap>[] classes = new ArrayDeque[CLASS_COUNT];
+  private final long maxBytes;
+  private long currentBytes;
+  private int maxClass = -1;
+
+  private long hitCount, missCount, putCount, evictionCount;
+
+  private BitmapPool (long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  private static int sizeClassOf (int byteCount) {
+    if (byteCount <= 1)
+      return 0;
+    int power = 31 - Integer.numberOfLeadingZeros(byteCount - 1);
+    int step = Math.max(1, 1 << power >> 2);
+    int quarter = ((byteCount - 1) - (1 << power)) / step;
+    return Math.min(CLASS_COUNT - 1, power * CLASSES_PER_POWER + Math.min(CLASSES_PER_POWER - 1, Math.max(0, quarter)));
+  }
+
+  private static int byteCountOf (int width, int height, Bitmap.Config config) {
+    final int bytesPerPixel;
+    switch (config) {
+      case ALPHA_8:
+        bytesPerPixel = 1;
+        break;
+      case RGB_565:
+      case ARGB_4444:
+        bytesPerPixel = 2;
+        break;
+      default:
+        bytesPerPixel = 4;
+        break;
+    }
+    return width * height * bytesPerPixel;
+  }
+
+  private static boolean canReuse (Bitmap bitmap) {
+    return bitmap != null && !bitmap.isRecycled() && bitmap.isMutable() && (Build.VERSION.SDK_INT < Build.VERSION_CODES.O || bitmap.getConfig() != Bitmap.Config.HARDWARE);
+  }
+
+  // Obtaining
+
+  /**
+   * @return pooled bitmap reconfigured to the requested size and cleared, or {@code null} when there's none
+   */
+  @AnyThread
+  @Nullable
+  public Bitmap get (int width, int height, @NonNull Bitmap.Config config) {
+    Bitmap bitmap = take(byteCountOf(width, height, config), width, height, config);
+    if (bitmap != null) {
+      bitmap.eraseColor(0);
+    }
+    return bitmap;
+  }
+
+  /**
+   * Same as {@link Bitmap#createBitmap(int, int, Bitmap.Config)}, but reuses pooled bitmap when possible.
+   */
+  @AnyThread
+  public Bitmap obtain (int width, int height, @NonNull Bitmap.Config config) {
+    Bitmap bitmap = isEnabled() ? get(width, height, config) : null;
+    return bitmap != null ? bitmap : Bitmap.createBitmap(width, height, config);
+  }
+
+  @Nullable
+  private Bitmap take (int byteCount, int width, int height, Bitmap.Config config) {
+    if (!isEnabled() || width <= 0 || height <= 0)
+      return null;
+    final int sizeClass = sizeClassOf(byteCount);
+    Bitmap result = null;
+    synchronized (this) {
+      // Bitmaps in the next class are always large enough, but waste up to a quarter more memory
+      for (int index = sizeClass; index <= sizeClass + 1 && index < CLASS_COUNT && result == null; index++) {
+        ArrayDeque<Bitmap> bucket = classes[index];
+        if (bucket == null)
+          continue;
+        Iterator<Bitmap> it = bucket.iterator();
+        while (it.hasNext()) {
+          Bitmap bitmap = it.next();
+          if (bitmap.getAllocationByteCount() >= byteCount) {
+            it.remove();
+            currentBytes -= bitmap.getAllocationByteCount();
+            result = bitmap;
+            break;
+          }
+        }
+      }
+      if (result != null) {
+        hitCount++;
+      } else {
+        missCount++;
+      }
+    }
+    if (result != null && (result.getWidth() != width || result.getHeight() != height || result.getConfig() != config)) {
+      try {
+        result.reconfigure(width, height, config);
+      } catch (Throwable t) {
+        Log.w(Log.TAG_IMAGE_LOADER, "Cannot reconfigure pooled bitmap", t);
+        result.recycle();
+        result = null;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Sets {@link BitmapFactory.Options#inBitmap} for the decode described by {@code opts}.
+   * Must be called after bounds were decoded and {@link BitmapFactory.Options#inSampleSize} is set.
+   *
+   * @return true, if {@code opts} now point to a pooled bitmap. In this case caller must
+   * retry decoding with {@link #clearOptions} when decode returns null or throws {@link IllegalArgumentException}.
+   */
+  @AnyThread
+  public boolean prepareOptions (@NonNull BitmapFactory.Options opts) {
+    if (!isEnabled() || opts.outWidth <= 0 || opts.outHeight <= 0)
+      return false;
+    if (opts.inPurgeable)
+      return false;
+    final int sampleSize = Math.max(1, opts.inSampleSize);
+    final int width = (opts.outWidth + sampleSize - 1) / sampleSize;
+    final int height = (opts.outHeight + sampleSize - 1) / sampleSize;
+    final Bitmap.Config config = opts.inPreferredConfig != null ? opts.inPreferredConfig : Bitmap.Config.ARGB_8888;
+    Bitmap bitmap = take(byteCountOf(width, height, config), width, height, config);
+    if (bitmap != null) {
+      opts.inBitmap = bitmap;
+      opts.inMutable = true;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns {@link BitmapFactory.Options#inBitmap} back to the pool after failed decode.
+   */
+  @AnyThread
+  public void clearOptions (@NonNull BitmapFactory.Options opts) {
+    Bitmap bitmap = opts.inBitmap;
+    opts.inBitmap = null;
+    if (bitmap != null) {
+      put(bitmap);
+    }
+  }
+
+  // Releasing
+
+  /**
+   * Puts bitmap to the pool, or recycles it when it can't be reused or doesn't fit into the budget.
+   * Caller must not use bitmap after this call.
+   */
+  @AnyThread
+  public void put (@Nullable Bitmap bitmap) {
+    if (bitmap == null || bitmap.isRecycled())
+      return;
+    if (!isEnabled() || !canReuse(bitmap)) {
+      bitmap.recycle();
+      return;
+    }
+    final int byteCount = bitmap.getAllocationByteCount();
+    if (byteCount > maxBytes / 4) {
+      bitmap.recycle();
+      return;
+    }
+    final int sizeClass = sizeClassOf(byteCount);
+    synchronized (this) {
+      ArrayDeque<Bitmap> bucket = classes[sizeClass];
+      if (bucket == null) {
+        classes[sizeClass] = bucket = new ArrayDeque<>();
+      }
+      bucket.offerFirst(bitmap);
+      currentBytes += byteCount;
+      maxClass = Math.max(maxClass, sizeClass);
+      putCount++;
+      trimToSizeImpl(maxBytes);
+    }
+  }
+
+  private void trimToSizeImpl (long size) {
+    while (currentBytes > size && maxClass >= 0) {
+      ArrayDeque<Bitmap> bucket = classes[maxClass];
+      Bitmap bitmap = bucket != null ? bucket.pollLast() : null;
+      if (bitmap == null) {
+        maxClass--;
+        continue;
+      }
+      currentBytes -= bitmap.getAllocationByteCount();
+      evictionCount++;
+      bitmap.recycle();
+    }
+  }
+
+  // Memory pressure
+
+  @AnyThread
+  public void trimMemory (int level) {
+    final long size;
+    if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+      size = 0;
+    } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+      size = maxBytes / 2;
+    } else {
+      return;
+    }
+    synchronized (this) {
+      trimToSizeImpl(size);
+    }
+  }
+
+  @AnyThread
+  public void clear () {
+    synchronized (this) {
+      trimToSizeImpl(0);
+    }
+  }
+
+  @Override
+  @NonNull
+  public synchronized String toString () {
+    return "BitmapPool { bytes: " + currentBytes + "/" + maxBytes +
+      ", hits: " + hitCount +
+      ", misses: " + missCount +
+      ", puts: " + putCount +
+      ", evictions: " + evictionCount + " }";
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.loader.cache;
+
+// Intrusive doubly-linked access-order queue, head is the least recently used entry
+final class EntryQueue {
+  final int id;
+  BitmapMemoryCache.Entry head, tail;
+  long bytes;
+
+  EntryQueue (int id) {
+    this.id = id;
+  }
+
+  boolean isEmpty () {
+    return head == null;
+  }
+
+  void addLast (BitmapMemoryCache.Entry entry) {
+    entry.queue = id;
+    entry.prev = tail;
+    entry.next = null;
+    if (tail != null) {
+      tail.next = entry;
+    } else {
+      head = entry;
+    }
+    tail = entry;
+    bytes += entry.byteCount;
+  }
+
+  void remove (BitmapMemoryCache.Entry entry) {
+    if (entry.prev != null) {
+      entry.prev.next = entry.next;
+    } else {
+      head = entry.next;
+    }
+    if (entry.next != null) {
+      entry.next.prev = entry.prev;
+    } else {
+      tail = entry.prev;
+    }
+    entry.prev = entry.next = null;
+    entry.queue = BitmapMemoryCache.Entry.QUEUE_NONE;
+    bytes -= entry.byteCount;
+  }
+
+  void moveToLast (BitmapMemoryCache.Entry entry) {
+    if (tail != entry) {
+      remove(entry);
+      addLast(entry);
+    }
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.loader.cache;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Decides which resident entry of a single {@link BitmapMemoryCache} segment should go first.
+ *
+ * All methods are called while holding the segment lock, so implementations don't need
+ * any synchronization of their own.
+ */
+public interface EvictionPolicy {
+  interface Factory {
+    EvictionPolicy create (long maxBytes);
+  }
+
+  /**
+   * Called on every lookup, including misses, before {@link #onHit} or {@link #onAdd}.
+   */
+  void recordAccess (int hash);
+
+  void onAdd (BitmapMemoryCache.Entry entry);
+  void onHit (BitmapMemoryCache.Entry entry);
+  void onRemove (BitmapMemoryCache.Entry entry);
+
+  /**
+   * @return entry {@link #selectVictim()} would return, without changing any state, or {@code null}, if there are no resident entries.
+   * Used to compare candidates of different segments.
+   */
+  @Nullable
+  BitmapMemoryCache.Entry peekVictim ();
+
+  /**
+   * @return entry that has to be evicted next, or {@code null}, if there are no resident entries.
+   */
+  @Nullable
+  BitmapMemoryCache.Entry selectVictim ();
+}
@@ -0,0 +1,72 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.loader.cache;
+
+/**
+ * Count-Min sketch with 4 rows of saturating 4-bit counters and periodic aging,
+ * as described in TinyLFU paper.
+ */
+final class FrequencySketch {
+  private static final int DEPTH = 4;
+  private static final int MAX_COUNT = 15;
+  private static final int[] SEEDS = {0x97cb3127, 0xb4f0d7c9, 0x6a09e667, 0x3c6ef372};
+
+  private final byte[] table;
+  private final int mask;
+  private final int sampleSize;
+  private int additions;
+
+  FrequencySketch (int expectedSize) {
+    int width = Integer.highestOneBit(Math.max(64, expectedSize) - 1) << 1;
+    this.table = new byte[width * DEPTH];
+    this.mask = width - 1;
+    this.sampleSize = width * 10;
+  }
+
+  private int indexOf (int hash, int row) {
+    int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+    h ^= h >>> 16;
+    return row * (mask + 1) + (h & mask);
+  }
+
+  int frequency (int hash) {
+    int min = MAX_COUNT;
+    for (int row = 0; row < DEPTH; row++) {
+      min = Math.min(min, table[indexOf(hash, row)]);
+    }
+    return min;
+  }
+
+  void increment (int hash) {
+    boolean added = false;
+    for (int row = 0; row < DEPTH; row++) {
+      int index = indexOf(hash, row);
+      if (table[index] < MAX_COUNT) {
+        table[index]++;
+        added = true;
+      }
+    }
+    if (added && ++additions == sampleSize) {
+      reset();
+    }
+  }
+
+  private void reset () {
+    for (int i = 0; i < table.length; i++) {
+      table[i] = (byte) (table[i] >>> 1);
+    }
+    additions >>>= 1;
+  }
+}
@@ -0,0 +1,527 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.loader.cache;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.thunderdog.challegram.Log;
+import org.thunderdog.challegram.config.Config;
+import org.thunderdog.challegram.core.BaseThread;
+import org.thunderdog.challegram.loader.ImageFile;
+import org.thunderdog.challegram.loader.ImageFilteredFile;
+import org.thunderdog.challegram.loader.ImageGalleryFile;
+import org.thunderdog.challegram.telegram.TdlibAccount;
+import org.thunderdog.challegram.tool.UI;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import me.vkryl.core.unit.ByteUnit;
+
+/**
+ * Second-level cache that keeps already downsampled bitmaps on disk between sessions.
+ *
+ * Entries store raw pixels in the same config they were decoded with, so warm reads are a single
+ * memory-mapped copy into a pooled bitmap instead of a JPEG or WebP decode. Key consists of
+ * {@link ImageFile#toString()} plus identity of the source file (path, length, modification time)
+ * and everything else that affects decoded pixels, so stale entries are never returned,
+ * and are eventually evicted by LRU instead.
+ *
+ * Index is kept in memory and is restored from the directory listing on the cache thread
+ * after first access, using file modification time as the access time. Until then, all reads are misses.
+ *
+ * Files of secret chats are never stored, so that their contents don't outlive the chat.
+ */
+public final class ImageDiskCache {
+  private static volatile ImageDiskCache instance;
+
+  public static ImageDiskCache instance () {
+    if (instance == null) {
+      synchronized (ImageDiskCache.class) {
+        if (instance == null) {
+          instance = new ImageDiskCache(ByteUnit.MIB.toBytes(Config.IMAGE_DISK_CACHE_SIZE_MIB));
+        }
+      }
+    }
+    return instance;
+  }
+
+  public static boolean isEnabled () {
+    return Config.IMAGE_DISK_CACHE_ENABLED;
+  }
+
+  public static File getCacheDir () {
+    return new File(UI.getAppContext().getCacheDir(), "thumbs");
+  }
+
+  private static final int MAGIC = 0x54475854; // TGXT
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 4 * 7;
+
+  private static final int CONFIG_ARGB_8888 = 0;
+  private static final int CONFIG_RGB_565 = 1;
+
+  private static final int MAX_ENTRY_BYTES = 2 * 1024 * 1024;
+  private static final int MAX_PENDING_BYTES = 8 * 1024 * 1024;
+  private static final int BUFFER_GRANULARITY = 256 * 1024;
+  private static final int MAX_POOLED_BYTES = 2 * (MAX_ENTRY_BYTES + BUFFER_GRANULARITY);
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final long maxBytes;
+  private final BaseThread thread = new BaseThread("ImageDiskCacheThread");
+
+  private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(64, .75f, true);
+  private boolean indexLoaded, indexLoadScheduled;
+  private long currentBytes;
+  private long pendingBytes;
+
+  // Write buffers are reused, so that storing a thumbnail doesn't allocate up to MAX_ENTRY_BYTES each time.
+  // Writes are serialized on the cache thread, so a couple of buffers is enough in a steady state.
+  private final ArrayList<ByteBuffer> bufferPool = new ArrayList<>();
+  private long pooledBytes;
+
+  private long hitCount, missCount, putCount, evictionCount;
+
+  private ImageDiskCache (long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  // Keys
+
+  private static boolean isSupported (Bitmap.Config config) {
+    return config == Bitmap.Config.ARGB_8888 || config == Bitmap.Config.RGB_565;
+  }
+
+  /**
+   * @return unique key of the decoded image, or {@code null} when result of this decode must not be stored on disk
+   */
+  @Nullable
+  private static String makeKey (ImageFile file, String path) {
+    if (file.getSize() == 0 || !file.shouldBeCached() || file.isPrivate() || file.getBytes() != null || file.isVector() || file.isContentUri())
+      return null;
+    // Filtered files are keyed by edit session, gallery files change with user edits
+    if (file instanceof ImageFilteredFile || file instanceof ImageGalleryFile)
+      return null;
+    if (path == null || isSecretFile(path))
+      return null;
+    File source = new File(path);
+    long length = source.length();
+    long lastModified = source.lastModified();
+    if (length <= 0)
+      return null;
+    StringBuilder b = new StringBuilder(file.toString());
+    b.append('|').append(path);
+    b.append('|').append(length);
+    b.append('|').append(lastModified);
+    b.append('|');
+    if (file.needBlur()) {
+      b.append('b').append(file.getBlurRadius());
+    }
+    if (!file.shouldUseBlur()) {
+      b.append('n');
+    }
+    if (file.isWebp()) {
+      b.append('w');
+    }
+    if (file.forceArgb8888()) {
+      b.append('a');
+    }
+    if (file.needHiRes()) {
+      b.append('h');
+    }
+    if (file.isSwOnly()) {
+      b.append('s');
+    }
+    return b.toString();
+  }
+
+  /**
+   * @return true, if file is stored by TDLib in one of directories for secret chat or Telegram Passport files
+   */
+  private static boolean isSecretFile (String path) {
+    return path.contains("/secret/") || path.contains("/secret_thumbnails/") || path.contains("/passport/");
+  }
+
+  private static String makeFileName (int accountId, String key) {
+    // FNV-1a
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < key.length(); i++) {
+      hash ^= key.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    return "a" + accountId + "_" + Long.toHexString(hash);
+  }
+
+  private static String accountPrefix (int accountId) {
+    return "a" + accountId + "_";
+  }
+
+  // Index
+
+  /**
+   * Schedules index restoration on the cache thread. Must be called under lock.
+   *
+   * @return true, if index is already loaded
+   */
+  private boolean checkIndexLoaded () {
+    if (indexLoaded)
+      return true;
+    if (!indexLoadScheduled) {
+      indexLoadScheduled = true;
+      thread.post(this::loadIndex, 0);
+    }
+    return false;
+  }
+
+  /**
+   * Restores index from the directory listing. Called on the cache thread only,
+   * so that listing and sorting never block decoders waiting for the lock.
+   */
+  private void loadIndex () {
+    synchronized (this) {
+      if (indexLoaded)
+        return;
+    }
+    LinkedHashMap<String, Long> loadedIndex = new LinkedHashMap<>(64, .75f, true);
+    long loadedBytes = 0;
+    File[] files = getCacheDir().listFiles();
+    if (files != null && files.length > 0) {
+      final long[] lastModified = new long[files.length];
+      Integer[] order = new Integer[files.length];
+      for (int i = 0; i < files.length; i++) {
+        lastModified[i] = files[i].lastModified();
+        order[i] = i;
+      }
+      Arrays.sort(order, (a, b) -> Long.compare(lastModified[a], lastModified[b]));
+      for (int i : order) {
+        File file = files[i];
+        String name = file.getName();
+        if (name.endsWith(".tmp")) {
+          // Leftover from interrupted write
+          file.delete();
+          continue;
+        }
+        long length = file.length();
+        loadedIndex.put(name, length);
+        loadedBytes += length;
+      }
+    }
+    synchronized (this) {
+      // Index is modified only on the cache thread until it is loaded, so it is still empty here
+      index.putAll(loadedIndex);
+      currentBytes += loadedBytes;
+      indexLoaded = true;
+    }
+  }
+
+  // Reading
+
+  /**
+   * Reads previously stored result of decoding {@code file} located at {@code path}.
+   *
+   * @return mutable bitmap, or {@code null}, if there's no valid entry
+   */
+  @AnyThread
+  @Nullable
+  public Bitmap get (@NonNull ImageFile file, String path) {
+    if (!isEnabled())
+      return null;
+    final String key = makeKey(file, path);
+    if (key == null)
+      return null;
+    final String fileName = makeFileName(file.accountId(), key);
+    synchronized (this) {
+      if (!checkIndexLoaded() || index.get(fileName) == null) {
+        missCount++;
+        return null;
+      }
+    }
+    final File cacheFile = new File(getCacheDir(), fileName);
+    Bitmap bitmap = null;
+    int rotation = 0;
+    try (RandomAccessFile f = new RandomAccessFile(cacheFile, "r")) {
+      MappedByteBuffer buffer = f.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, f.length());
+      buffer.order(ByteOrder.nativeOrder());
+      if (buffer.remaining() >= HEADER_SIZE && buffer.getInt() == MAGIC && buffer.getInt() == VERSION) {
+        final int width = buffer.getInt();
+        final int height = buffer.getInt();
+        final int configId = buffer.getInt();
+        rotation = buffer.getInt();
+        final int keyLength = buffer.getInt();
+        if (width > 0 && height > 0 && keyLength > 0 && keyLength <= buffer.remaining()) {
+          byte[] keyBytes = new byte[keyLength];
+          buffer.get(keyBytes);
+          final Bitmap.Config config = configId == CONFIG_RGB_565 ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+          final int bytesPerPixel = config == Bitmap.Config.RGB_565 ? 2 : 4;
+          if (key.equals(new String(keyBytes, UTF_8)) && buffer.remaining() == width * height * bytesPerPixel) {
+            bitmap = BitmapPool.instance().obtain(width, height, config);
+            bitmap.copyPixelsFromBuffer(buffer);
+          }
+        }
+      }
+    } catch (Throwable t) {
+      Log.w(Log.TAG_IMAGE_LOADER, "#%s: Cannot read cached thumbnail", t, file.toString());
+      if (bitmap != null) {
+        BitmapPool.instance().put(bitmap);
+        bitmap = null;
+      }
+    }
+    synchronized (this) {
+      if (bitmap != null) {
+        hitCount++;
+      } else {
+        missCount++;
+        Long size = index.remove(fileName);
+        if (size != null) {
+          currentBytes -= size;
+          thread.post(cacheFile::delete, 0);
+        }
+      }
+    }
+    if (bitmap == null) {
+      return null;
+    }
+    if (file.isProbablyRotated()) {
+      file.setRotation(rotation);
+    }
+    // Keep LRU order across sessions
+    thread.post(() -> cacheFile.setLastModified(System.currentTimeMillis()), 0);
+    if (Log.isEnabled(Log.TAG_IMAGE_LOADER)) {
+      Log.v(Log.TAG_IMAGE_LOADER, "#%s: read from disk cache, width: %d height: %d", file.toString(), bitmap.getWidth(), bitmap.getHeight());
+    }
+    return bitmap;
+  }
+
+  // Writing
+
+  /**
+   * Stores decoded bitmap. Pixels are copied on the caller thread, so bitmap may be released
+   * right after this call, and written to disk on the cache thread.
+   */
+  @AnyThread
+  public void put (@NonNull ImageFile file, String path, @Nullable Bitmap bitmap) {
+    if (!isEnabled() || bitmap == null || bitmap.isRecycled())
+      return;
+    final Bitmap.Config config = bitmap.getConfig();
+    if (config == null || !isSupported(config))
+      return;
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && config == Bitmap.Config.HARDWARE)
+      return;
+    final int pixelBytes = bitmap.getRowBytes() * bitmap.getHeight();
+    if (pixelBytes <= 0 || pixelBytes > MAX_ENTRY_BYTES || bitmap.getRowBytes() != bitmap.getWidth() * (config == Bitmap.Config.RGB_565 ? 2 : 4))
+      return;
+    final String key = makeKey(file, path);
+    if (key == null)
+      return;
+    final String fileName = makeFileName(file.accountId(), key);
+    final byte[] keyBytes = key.getBytes(UTF_8);
+    final int totalBytes = HEADER_SIZE + keyBytes.length + pixelBytes;
+    synchronized (this) {
+      if (pendingBytes + totalBytes > MAX_PENDING_BYTES) {
+        // Disk can't keep up with decoding, e.g. during fast scroll
+        return;
+      }
+      pendingBytes += totalBytes;
+    }
+    final ByteBuffer buffer = obtainBuffer(totalBytes);
+    buffer.putInt(MAGIC);
+    buffer.putInt(VERSION);
+    buffer.putInt(bitmap.getWidth());
+    buffer.putInt(bitmap.getHeight());
+    buffer.putInt(config == Bitmap.Config.RGB_565 ? CONFIG_RGB_565 : CONFIG_ARGB_8888);
+    buffer.putInt(file.getRotation());
+    buffer.putInt(keyBytes.length);
+    buffer.put(keyBytes);
+    try {
+      bitmap.copyPixelsToBuffer(buffer);
+    } catch (Throwable t) {
+      Log.w(Log.TAG_IMAGE_LOADER, "#%s: Cannot copy pixels", t, file.toString());
+      synchronized (this) {
+        pendingBytes -= totalBytes;
+        recycleBuffer(buffer);
+      }
+      return;
+    }
+    buffer.flip();
+    thread.post(() -> {
+      try {
+        write(fileName, buffer);
+      } finally {
+        synchronized (this) {
+          pendingBytes -= totalBytes;
+          recycleBuffer(buffer);
+        }
+      }
+    }, 0);
+  }
+
+  private ByteBuffer obtainBuffer (int size) {
+    synchronized (this) {
+      ByteBuffer bestBuffer = null;
+      int bestIndex = -1;
+      for (int i = 0; i < bufferPool.size(); i++) {
+        ByteBuffer buffer = bufferPool.get(i);
+        if (buffer.capacity() >= size && (bestBuffer == null || buffer.capacity() < bestBuffer.capacity())) {
+          bestBuffer = buffer;
+          bestIndex = i;
+        }
+      }
+      if (bestBuffer != null) {
+        bufferPool.remove(bestIndex);
+        pooledBytes -= bestBuffer.capacity();
+        bestBuffer.clear();
+        bestBuffer.limit(size);
+        return bestBuffer;
+      }
+    }
+    // Round up, so that buffer fits thumbnails of slightly different sizes
+    final int capacity = (size + BUFFER_GRANULARITY - 1) / BUFFER_GRANULARITY * BUFFER_GRANULARITY;
+    ByteBuffer buffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    buffer.limit(size);
+    return buffer;
+  }
+
+  private void recycleBuffer (ByteBuffer buffer) {
+    // Called under lock
+    if (pooledBytes + buffer.capacity() > MAX_POOLED_BYTES)
+      return;
+    bufferPool.add(buffer);
+    pooledBytes += buffer.capacity();
+  }
+
+  private void write (String fileName, ByteBuffer data) {
+    final File cacheDir = getCacheDir();
+    if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+      return;
+    }
+    final int length = data.remaining();
+    final File tmpFile = new File(cacheDir, fileName + ".tmp");
+    try (RandomAccessFile f = new RandomAccessFile(tmpFile, "rw")) {
+      f.setLength(length);
+      MappedByteBuffer out = f.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+      // No fsync: losing a few thumbnails on power loss is fine, and the entry is validated on read anyway
+      out.put(data);
+    } catch (Throwable t) {
+      Log.w(Log.TAG_IMAGE_LOADER, "Cannot write cached thumbnail", t);
+      tmpFile.delete();
+      return;
+    }
+    if (!tmpFile.renameTo(new File(cacheDir, fileName))) {
+      tmpFile.delete();
+      return;
+    }
+    loadIndex();
+    ArrayList<String> evicted = null;
+    synchronized (this) {
+      Long prevSize = index.put(fileName, (long) length);
+      if (prevSize != null) {
+        currentBytes -= prevSize;
+      }
+      currentBytes += length;
+      putCount++;
+      if (currentBytes > maxBytes) {
+        // Evict a bit more than required, so that every next write doesn't hit the limit again
+        final long targetBytes = maxBytes - maxBytes / 10;
+        Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+        while (currentBytes > targetBytes && it.hasNext()) {
+          Map.Entry<String, Long> entry = it.next();
+          if (entry.getKey().equals(fileName))
+            continue;
+          it.remove();
+          currentBytes -= entry.getValue();
+          evictionCount++;
+          if (evicted == null)
+            evicted = new ArrayList<>();
+          evicted.add(entry.getKey());
+        }
+      }
+    }
+    if (evicted != null) {
+      for (String name : evicted) {
+        new File(cacheDir, name).delete();
+      }
+    }
+  }
+
+  // Clearing
+
+  @AnyThread
+  public void clear () {
+    clearForAccount(TdlibAccount.NO_ID, true);
+  }
+
+  @AnyThread
+  public void clearForAccount (int accountId) {
+    clearForAccount(accountId, false);
+  }
+
+  private void clearForAccount (int accountId, boolean all) {
+    final String prefix = accountPrefix(accountId);
+    // Posted to the cache thread, so that writes scheduled before this call are cleared too
+    thread.post(() -> {
+      loadIndex();
+      synchronized (this) {
+        if (all) {
+          index.clear();
+          currentBytes = 0;
+        } else {
+          Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+          while (it.hasNext()) {
+            Map.Entry<String, Long> entry = it.next();
+            if (entry.getKey().startsWith(prefix)) {
+              it.remove();
+              currentBytes -= entry.getValue();
+            }
+          }
+        }
+      }
+      File[] files = getCacheDir().listFiles();
+      if (files != null) {
+        for (File file : files) {
+          if (all || file.getName().startsWith(prefix)) {
+            file.delete();
+          }
+        }
+      }
+    }, 0);
+  }
+
+  @Override
+  @NonNull
+  public synchronized String toString () {
+    return "ImageDiskCache { bytes: " + currentBytes + "/" + maxBytes +
+      ", entries: " + index.size() +
+      ", hits: " + hitCount +
+      ", misses: " + missCount +
+      ", puts: " + putCount +
+      ", evictions: " + evictionCount + " }";
+  }
+}
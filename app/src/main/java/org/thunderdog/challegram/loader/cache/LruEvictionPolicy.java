@@ -0,0 +1,58 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.loader.cache;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Plain least-recently-used order, same behavior as {@link android.util.LruCache}.
+ */
+public final class LruEvictionPolicy implements EvictionPolicy {
+  private final EntryQueue queue = new EntryQueue(0);
+
+  public LruEvictionPolicy (long maxBytes) {
+    // Capacity is not needed for plain LRU order
+  }
+
+  @Override
+  public void recordAccess (int hash) { }
+
+  @Override
+  public void onAdd (BitmapMemoryCache.Entry entry) {
+    queue.addLast(entry);
+  }
+
+  @Override
+  public void onHit (BitmapMemoryCache.Entry entry) {
+    queue.moveToLast(entry);
+  }
+
+  @Override
+  public void onRemove (BitmapMemoryCache.Entry entry) {
+    queue.remove(entry);
+  }
+
+  @Nullable
+  @Override
+  public BitmapMemoryCache.Entry peekVictim () {
+    return queue.head;
+  }
+
+  @Nullable
+  @Override
+  public BitmapMemoryCache.Entry selectVictim () {
+    return queue.head;
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.loader.cache;
+
+import androidx.annotation.Nullable;
+
+/**
+ * W-TinyLFU: small LRU admission window in front of segmented LRU main space.
+ *
+ * Entries leaving the window compete with the main space victim, and the one
+ * with lower estimated access frequency is evicted. This keeps avatars and stickers
+ * that are seen over and over again from being flushed by a single pass through a long album.
+ */
+public final class TinyLfuEvictionPolicy implements EvictionPolicy {
+  private static final int QUEUE_WINDOW = 0;
+  private static final int QUEUE_PROBATION = 1;
+  private static final int QUEUE_PROTECTED = 2;
+
+  private static final int AVERAGE_ENTRY_SIZE = 32 * 1024;
+
+  private final EntryQueue window = new EntryQueue(QUEUE_WINDOW);
+  private final EntryQueue probation = new EntryQueue(QUEUE_PROBATION);
+  private final EntryQueue protectedQueue = new EntryQueue(QUEUE_PROTECTED);
+
+  private final long maxWindowBytes, maxMainBytes, maxProtectedBytes;
+  private final FrequencySketch sketch;
+
+  public TinyLfuEvictionPolicy (long maxBytes) {
+    this.maxWindowBytes = Math.max(1, maxBytes / 100);
+    this.maxMainBytes = maxBytes - maxWindowBytes;
+    this.maxProtectedBytes = maxMainBytes * 4 / 5;
+    this.sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE / 8, maxBytes / AVERAGE_ENTRY_SIZE));
+  }
+
+  @Override
+  public void recordAccess (int hash) {
+    sketch.increment(hash);
+  }
+
+  @Override
+  public void onAdd (BitmapMemoryCache.Entry entry) {
+    window.addLast(entry);
+    // Free admission while main space is not full yet
+    while (window.bytes > maxWindowBytes && window.head != entry) {
+      BitmapMemoryCache.Entry candidate = window.head;
+      if (probation.bytes + protectedQueue.bytes + candidate.byteCount > maxMainBytes) {
+        break;
+      }
+      window.remove(candidate);
+      probation.addLast(candidate);
+    }
+  }
+
+  @Override
+  public void onHit (BitmapMemoryCache.Entry entry) {
+    switch (entry.queue) {
+      case QUEUE_WINDOW:
+        window.moveToLast(entry);
+        break;
+      case QUEUE_PROBATION:
+        probation.remove(entry);
+        protectedQueue.addLast(entry);
+        while (protectedQueue.bytes > maxProtectedBytes && protectedQueue.head != entry) {
+          BitmapMemoryCache.Entry demoted = protectedQueue.head;
+          protectedQueue.remove(demoted);
+          probation.addLast(demoted);
+        }
+        break;
+      case QUEUE_PROTECTED:
+        protectedQueue.moveToLast(entry);
+        break;
+    }
+  }
+
+  @Override
+  public void onRemove (BitmapMemoryCache.Entry entry) {
+    switch (entry.queue) {
+      case QUEUE_WINDOW:
+        window.remove(entry);
+        break;
+      case QUEUE_PROBATION:
+        probation.remove(entry);
+        break;
+      case QUEUE_PROTECTED:
+        protectedQueue.remove(entry);
+        break;
+    }
+  }
+
+  @Nullable
+  private BitmapMemoryCache.Entry windowCandidate () {
+    return window.bytes > maxWindowBytes ? window.head : null;
+  }
+
+  @Nullable
+  private BitmapMemoryCache.Entry mainVictim () {
+    return !probation.isEmpty() ? probation.head : protectedQueue.head;
+  }
+
+  private boolean shouldAdmit (BitmapMemoryCache.Entry candidate, BitmapMemoryCache.Entry victim) {
+    return sketch.frequency(candidate.hash) > sketch.frequency(victim.hash);
+  }
+
+  @Nullable
+  @Override
+  public BitmapMemoryCache.Entry peekVictim () {
+    BitmapMemoryCache.Entry candidate = windowCandidate();
+    BitmapMemoryCache.Entry victim = mainVictim();
+    if (candidate == null) {
+      return victim != null ? victim : window.head;
+    }
+    if (victim == null) {
+      return candidate;
+    }
+    return shouldAdmit(candidate, victim) ? victim : candidate;
+  }
+
+  @Nullable
+  @Override
+  public BitmapMemoryCache.Entry selectVictim () {
+    BitmapMemoryCache.Entry candidate = windowCandidate();
+    BitmapMemoryCache.Entry victim = mainVictim();
+    if (candidate == null) {
+      return victim != null ? victim : window.head;
+    }
+    if (victim == null) {
+      return candidate;
+    }
+    if (shouldAdmit(candidate, victim)) {
+      // Admit window candidate into the main space at the expense of the main victim
+      window.remove(candidate);
+      probation.addLast(candidate);
+      return victim;
+    }
+    return candidate;
+  }
+}
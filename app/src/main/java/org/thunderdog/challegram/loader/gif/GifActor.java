@@ -73,10 +73,14 @@ public class GifActor implements GifState.Callback, TGPlayerController.TrackChan
   private @Nullable GifState gif;
   private final int[] metadata;
   private final double[] lottieMetadata;
-  private final GifThread thread;
+  private final GifFrameScheduler scheduler;
   private final boolean isLottie;
   private int lottieCacheState = LOTTIE_CACHE_NONE;
 
+  GifFile getFile () {
+    return file;
+  }
+
   public boolean isLottie () {
     return isLottie;
   }
@@ -88,14 +92,14 @@ public class GifActor implements GifState.Callback, TGPlayerController.TrackChan
 
   private final boolean isPlayOnce;
 
-  public GifActor (final GifFile file, GifThread thread) {
+  public GifActor (final GifFile file, GifFrameScheduler scheduler) {
     this.isPlayOnce = file.isPlayOnce();
     file.setVibrationPattern(Emoji.VIBRATION_PATTERN_NONE);
     this.maxFrameRate = file.hasOptimizations() || Settings.instance().getNewSetting(Settings.SETTING_FLAG_LIMIT_STICKERS_FPS) ? REDUCED_MAX_FRAME_RATE : DEFAULT_MAX_FRAME_RATE;
     this.isLottie = file.getGifType() == GifFile.TYPE_TG_LOTTIE;
     this.metadata = new int[4];
     this.lottieMetadata = new double[3];
-    this.thread = thread;
+    this.scheduler = scheduler;
     this.file = file;
     this.isPlaybackFrozen = isFrozen(file);
 
@@ -208,7 +212,7 @@ public class GifActor implements GifState.Callback, TGPlayerController.TrackChan
         file.tdlib().client().send(new TdApi.CancelDownloadFile(file.getFileId(), false), fileLoadHandler);
         flags &= ~FLAG_LOADING_FILE;
       } else {
-        thread.onDestroy(this);
+        scheduler.onDestroy(this);
       }
     }
   }
@@ -240,7 +244,7 @@ public class GifActor implements GifState.Callback, TGPlayerController.TrackChan
     Td.copyTo(file, localFile);
 
     if ((flags & FLAG_CANCELLED) == 0) {
-      thread.startDecoding(this, file.local.path);
+      scheduler.startDecoding(this, file.local.path);
     }
   }
 
@@ -284,7 +288,7 @@ public class GifActor implements GifState.Callback, TGPlayerController.TrackChan
     }
   }*/
 
-  private boolean isCancelled () {
+  boolean isCancelled () {
     return (flags & FLAG_CANCELLED) != 0;
   }
 
@@ -414,7 +418,7 @@ public class GifActor implements GifState.Callback, TGPlayerController.TrackChan
       this.gif = gif;
     }
     if (!isPlaybackFrozen) {
-      thread.prepareNextFrame(this);
+      scheduler.prepareNextFrame(this, frameDurationMs());
       scheduleNext(false);
     } else {
       GifBridge.instance().dispatchGifFrameChanged(file, gif, false);
@@ -440,14 +444,15 @@ public class GifActor implements GifState.Callback, TGPlayerController.TrackChan
   }
 
   // Decoder thread
-  public void prepareStartFrame () {
+  public boolean prepareStartFrame () {
     if (gif == null) {
-      return;
+      return false;
     }
     boolean res = N.seekVideoToStart(nativePtr);
     if (res) {
-      prepareNextFrame();
+      return prepareNextFrame(0);
     }
+    return false;
   }
 
   private static final double DEFAULT_MAX_FRAME_RATE = 60.0;
@@ -467,14 +472,22 @@ public class GifActor implements GifState.Callback, TGPlayerController.TrackChan
     int OK = 0, NEED_CREATE = 1, ERROR = 2, CANCELED = 3;
   }
 
+  boolean canSkipFrames () {
+    return isLottie;
+  }
+
+  /**
+   * @param skipFrameCount amount of frames that can be skipped, because they would be displayed too late
+   * @return true, if frame was prepared synchronously
+   */
   // Decoder thread
-  public void prepareNextFrame () {
+  public boolean prepareNextFrame (int skipFrameCount) {
     GifState gif;
     synchronized (gifLock) {
       gif = this.gif;
     }
     if (gif == null) {
-      return;
+      return false;
     }
     boolean gifRestarted = false;
     boolean success = false;
@@ -485,6 +498,13 @@ public class GifActor implements GifState.Callback, TGPlayerController.TrackChan
       if (isLottie) {
         double frameDelta = frameDelta();
         desiredNextFrameNo = lastFrameNo + frameDelta;
+        if (skipFrameCount > 0) {
+          // Frames that would be displayed too late are skipped, but never past the last one
+          double skippedFrameNo = desiredNextFrameNo + frameDelta * skipFrameCount;
+          if ((long) (skippedFrameNo + frameDelta) < totalFrameCount) {
+            desiredNextFrameNo = skippedFrameNo;
+          }
+        }
         if ((long) desiredNextFrameNo >= totalFrameCount) {
           file.onLoop();
           desiredNextFrameNo = 0;
@@ -613,11 +633,12 @@ public class GifActor implements GifState.Callback, TGPlayerController.TrackChan
       }
     }
     if (isCancelled()) {
-      return;
+      return false;
     }
     if (success) {
       GifBridge.instance().nextFrameReady(this, gifRestarted);
     }
+    return success;
   }
 
   // GifStage thread
@@ -647,6 +668,19 @@ public class GifActor implements GifState.Callback, TGPlayerController.TrackChan
     return maxFrameRate;
   }
 
+  private double avgFrameRate () {
+    if (isLottie) {
+      return Math.min(maxFrameRate(), frameRate);
+    } else {
+      return metadata[2] != 0 ? (double) metadata[2] / 1000.0 : 25.0;
+    }
+  }
+
+  private long frameDurationMs () {
+    final double avgFrameRate = avgFrameRate();
+    return avgFrameRate > 0 ? Math.max(1, (long) (1000.0 / avgFrameRate)) : 0;
+  }
+
   // GifStage thread
   private void scheduleNext (boolean force) {
     final double frameDelay;
@@ -655,12 +689,7 @@ public class GifActor implements GifState.Callback, TGPlayerController.TrackChan
     final float screenFrameRate = Screen.refreshRate();
     final double screenFrameRateDelay = 1000.0 / screenFrameRate;
 
-    final double avgFrameRate;
-    if (isLottie) {
-      avgFrameRate = Math.min(maxFrameRate(), frameRate);
-    } else {
-      avgFrameRate = metadata[2] != 0 ? (double) metadata[2] / 1000.0 : 25.0;
-    }
+    final double avgFrameRate = avgFrameRate();
     final double avgFrameRateDelay = 1000.0 / avgFrameRate;
     if (isLottie) {
       frameDelay = Math.max(screenFrameRateDelay, avgFrameRateDelay);
@@ -780,7 +809,7 @@ public class GifActor implements GifState.Callback, TGPlayerController.TrackChan
         }
         if (isPlayingRoundVideo) {
           if (TdlibManager.instance().player().isPlayingMessage(file.getChatId(), file.getMessageId())) {
-            thread.prepareStartFrame(this);
+            scheduler.prepareStartFrame(this, frameDurationMs());
             if (lastTimeStamp != 0) {
               scheduleNext(true);
             }
@@ -788,7 +817,7 @@ public class GifActor implements GifState.Callback, TGPlayerController.TrackChan
           return false;
         }
         if (GifBridge.instance().canScheduleNextFrame(this, file.getFileId())) {
-          thread.prepareNextFrame(this);
+          scheduler.prepareNextFrame(this, frameDurationMs());
           scheduleNext(false);
           return true;
         }
@@ -48,6 +48,7 @@ public class GifFile {
   public static final int FLAG_PLAY_ONCE = 1 << 2;
   public static final int FLAG_UNIQUE = 1 << 3;
   public static final int FLAG_DECODE_LAST_FRAME = 1 << 4;
+  public static final int FLAG_SHARED = 1 << 5;
 
   @Retention(RetentionPolicy.SOURCE)
   @IntDef({
@@ -287,6 +288,21 @@ public class GifFile {
     return BitwiseUtils.hasFlag(flags, FLAG_UNIQUE);
   }
 
+  /**
+   * Allows all files with the same content, optimization mode and requested size to be played
+   * by a single {@link GifActor}, even when file is {@link #isUnique()}.
+   * This way each frame is decoded once into a single set of bitmaps, and then drawn by every receiver.
+   *
+   * Ignored for round videos and files that must be played once from their own start.
+   */
+  public void setShared (boolean isShared) {
+    this.flags = BitwiseUtils.setFlag(flags, FLAG_SHARED, isShared);
+  }
+
+  public boolean isShared () {
+    return BitwiseUtils.hasFlag(flags, FLAG_SHARED) && !isRoundVideo() && !(isPlayOnce() && StringUtils.isEmpty(playOnceId));
+  }
+
   public boolean isStill () {
     return (flags & FLAG_STILL) != 0;
   }
@@ -357,7 +373,12 @@ public class GifFile {
     if (fitzpatrickType != 0) {
       b.append(",f").append(fitzpatrickType);
     }
-    if (isUnique() || (isPlayOnce() && StringUtils.isEmpty(playOnceId))) {
+    if (isShared()) {
+      b.append(",s").append(requestedSize);
+      if (isPlayOnce()) {
+        b.append(",p").append(playOnceId);
+      }
+    } else if (isUnique() || (isPlayOnce() && StringUtils.isEmpty(playOnceId))) {
       b.append(",o").append(creationTime);
     } else if (isPlayOnce()) {
       b.append(",p").append(playOnceId);
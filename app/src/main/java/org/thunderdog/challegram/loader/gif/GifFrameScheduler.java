@@ -0,0 +1,408 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.loader.gif;
+
+import android.os.SystemClock;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+
+import org.thunderdog.challegram.Log;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared pool of frame decoder threads for all {@link GifActor}s.
+ *
+ * Every actor owns a serial lane of operations, because native decoders are not thread-safe,
+ * but lane is not bound to any particular thread. Lanes that have pending work are ordered
+ * by the deadline of their first operation, i.e. by the time the frame being prepared has to be displayed,
+ * so a single heavy 60fps sticker can't delay emoji and GIFs that share the worker with it.
+ *
+ * Each worker prefers lanes it ran last time, and steals the lane with the earliest deadline
+ * from other workers when its own lanes are not as urgent, or when it has nothing to do.
+ *
+ * When frame is prepared later than one frame after its deadline, lottie actors skip the frames
+ * that would be displayed too late anyway. Pending frame requests are dropped once actor is cancelled.
+ *
+ * Decoder creation (e.g. parsing of the whole lottie animation) may take much longer than a frame,
+ * so it runs on separate threads, while lane stays busy and its frame requests wait for it.
+ */
+public class GifFrameScheduler {
+  private static final int OP_START_DECODING = 0;
+  private static final int OP_PREPARE_START_FRAME = 1;
+  private static final int OP_PREPARE_NEXT_FRAME = 2;
+  private static final int OP_DESTROY = 3;
+
+  // Own lane is preferred, unless other worker holds a lane that is at least this much more urgent
+  private static final long STEAL_THRESHOLD_MS = 4;
+
+  private static final int START_THREAD_COUNT = 2;
+
+  private static class Op {
+    final int type;
+    final long deadline;
+    final long frameDurationMs;
+    final String path;
+
+    Op (int type, long deadline, long frameDurationMs, String path) {
+      this.type = type;
+      this.deadline = deadline;
+      this.frameDurationMs = frameDurationMs;
+      this.path = path;
+    }
+  }
+
+  private static class Lane {
+    final GifActor actor;
+    final long sequence;
+    final ArrayDeque<Op> ops = new ArrayDeque<>();
+    int workerIndex;
+    boolean isRunning, isQueued, isDestroyed;
+
+    // Stats
+    long firstFrameTime, lastFrameTime;
+    int preparedFrameCount, droppedFrameCount, lateFrameCount;
+    double targetFrameRate;
+
+    Lane (GifActor actor, long sequence, int workerIndex) {
+      this.actor = actor;
+      this.sequence = sequence;
+      this.workerIndex = workerIndex;
+    }
+
+    long deadline () {
+      Op op = ops.peekFirst();
+      return op != null ? op.deadline : Long.MAX_VALUE;
+    }
+
+    double achievedFrameRate () {
+      long duration = lastFrameTime - firstFrameTime;
+      return preparedFrameCount > 1 && duration > 0 ? (double) (preparedFrameCount - 1) * 1000.0 / (double) duration : 0;
+    }
+  }
+
+  private static int compareLanes (Lane a, Lane b) {
+    int c = Long.compare(a.deadline(), b.deadline());
+    return c != 0 ? c : Long.compare(a.sequence, b.sequence);
+  }
+
+  private final Object lock = new Object();
+  private final Worker[] workers;
+  private final ThreadPoolExecutor startExecutor;
+  private final HashMap<GifActor, Lane> lanes = new HashMap<>();
+  private long laneSequence;
+  private int lastAssignedWorker;
+
+  private long stealCount, droppedFrameCount;
+
+  GifFrameScheduler (int workerCount) {
+    this.startExecutor = new ThreadPoolExecutor(START_THREAD_COUNT, START_THREAD_COUNT, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> new Thread(runnable, "GifStartThread"));
+    this.startExecutor.allowCoreThreadTimeOut(true);
+    this.workers = new Worker[workerCount];
+    for (int i = 0; i < workerCount; i++) {
+      workers[i] = new Worker(i);
+    }
+    // Workers look into each other's queues, so none of them can start before all are created
+    for (Worker worker : workers) {
+      worker.start();
+    }
+  }
+
+  static int defaultWorkerCount () {
+    return Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+  }
+
+  // Public API
+
+  @AnyThread
+  public void startDecoding (GifActor actor, String path) {
+    long now = SystemClock.uptimeMillis();
+    enqueue(actor, new Op(OP_START_DECODING, now, 0, path));
+  }
+
+  @AnyThread
+  public void prepareStartFrame (GifActor actor, long frameDurationMs) {
+    long now = SystemClock.uptimeMillis();
+    enqueue(actor, new Op(OP_PREPARE_START_FRAME, now, frameDurationMs, null));
+  }
+
+  /**
+   * @param frameDurationMs expected time between two frames of this actor, which is also
+   *                        the time prepared frame is expected to be displayed in
+   */
+  @AnyThread
+  public void prepareNextFrame (GifActor actor, long frameDurationMs) {
+    long now = SystemClock.uptimeMillis();
+    enqueue(actor, new Op(OP_PREPARE_NEXT_FRAME, now + frameDurationMs, frameDurationMs, null));
+  }
+
+  @AnyThread
+  public void onDestroy (GifActor actor) {
+    synchronized (lock) {
+      Lane lane = lanes.get(actor);
+      if (lane == null) {
+        // Nothing was ever scheduled, but actor still has to release its resources
+        lane = newLane(actor);
+      }
+      boolean wasQueued = lane.isQueued;
+      if (wasQueued) {
+        unqueue(lane);
+      }
+      // Frames of cancelled actor are never going to be displayed
+      int droppedCount = 0;
+      for (int i = lane.ops.size(); i > 0; i--) {
+        Op op = lane.ops.pollFirst();
+        if (op.type == OP_START_DECODING || op.type == OP_DESTROY) {
+          lane.ops.offerLast(op);
+        } else {
+          droppedCount++;
+        }
+      }
+      lane.droppedFrameCount += droppedCount;
+      this.droppedFrameCount += droppedCount;
+      lane.ops.offerLast(new Op(OP_DESTROY, SystemClock.uptimeMillis(), 0, null));
+      if (!lane.isRunning) {
+        queue(lane);
+      }
+    }
+  }
+
+  // Internal
+
+  private Lane newLane (GifActor actor) {
+    if (++lastAssignedWorker >= workers.length) {
+      lastAssignedWorker = 0;
+    }
+    Lane lane = new Lane(actor, laneSequence++, lastAssignedWorker);
+    lanes.put(actor, lane);
+    return lane;
+  }
+
+  private void enqueue (GifActor actor, Op op) {
+    synchronized (lock) {
+      Lane lane = lanes.get(actor);
+      if ((lane != null && lane.isDestroyed) || actor.isCancelled()) {
+        if (op.type == OP_PREPARE_NEXT_FRAME || op.type == OP_PREPARE_START_FRAME) {
+          droppedFrameCount++;
+        }
+        return;
+      }
+      if (lane == null) {
+        lane = newLane(actor);
+      }
+      boolean wasEmpty = lane.ops.isEmpty();
+      lane.ops.offerLast(op);
+      if (wasEmpty && !lane.isRunning) {
+        queue(lane);
+      }
+    }
+  }
+
+  private void queue (Lane lane) {
+    Worker worker = workers[lane.workerIndex];
+    worker.lanes.offer(lane);
+    lane.isQueued = true;
+    lock.notifyAll();
+  }
+
+  private void unqueue (Lane lane) {
+    workers[lane.workerIndex].lanes.remove(lane);
+    lane.isQueued = false;
+  }
+
+  private Lane takeLane (Worker self) throws InterruptedException {
+    synchronized (lock) {
+      while (true) {
+        Lane own = self.lanes.peek();
+        Worker victim = null;
+        Lane stolen = null;
+        for (Worker worker : workers) {
+          if (worker == self)
+            continue;
+          Lane head = worker.lanes.peek();
+          if (head != null && (stolen == null || compareLanes(head, stolen) < 0)) {
+            stolen = head;
+            victim = worker;
+          }
+        }
+        Lane lane;
+        if (own != null && (stolen == null || own.deadline() <= stolen.deadline() + STEAL_THRESHOLD_MS)) {
+          lane = self.lanes.poll();
+        } else if (stolen != null) {
+          lane = victim.lanes.poll();
+          lane.workerIndex = self.index;
+          stealCount++;
+        } else {
+          lock.wait();
+          continue;
+        }
+        lane.isQueued = false;
+        lane.isRunning = true;
+        return lane;
+      }
+    }
+  }
+
+  private void runLane (Lane lane) {
+    final Op op;
+    synchronized (lock) {
+      op = lane.ops.pollFirst();
+    }
+    if (op == null) {
+      finishLane(lane);
+      return;
+    }
+    if (op.type == OP_START_DECODING) {
+      // Lane stays running, so no frame of this actor is requested before decoder is created
+      startExecutor.execute(() -> runOp(lane, op));
+      return;
+    }
+    runOp(lane, op);
+  }
+
+  private void runOp (Lane lane, Op op) {
+    try {
+      switch (op.type) {
+        case OP_START_DECODING: {
+          lane.actor.startDecoding(op.path);
+          break;
+        }
+        case OP_PREPARE_START_FRAME:
+        case OP_PREPARE_NEXT_FRAME: {
+          final long now = SystemClock.uptimeMillis();
+          int skipFrameCount = 0;
+          if (op.frameDurationMs > 0 && now > op.deadline + op.frameDurationMs) {
+            skipFrameCount = (int) Math.min(Integer.MAX_VALUE, (now - op.deadline) / op.frameDurationMs);
+          }
+          boolean prepared = op.type == OP_PREPARE_START_FRAME ? lane.actor.prepareStartFrame() : lane.actor.prepareNextFrame(skipFrameCount);
+          if (prepared) {
+            final long preparedTime = SystemClock.uptimeMillis();
+            synchronized (lock) {
+              if (lane.preparedFrameCount == 0) {
+                lane.firstFrameTime = preparedTime;
+              }
+              lane.lastFrameTime = preparedTime;
+              lane.preparedFrameCount++;
+              if (skipFrameCount > 0) {
+                lane.lateFrameCount++;
+                if (lane.actor.canSkipFrames()) {
+                  lane.droppedFrameCount += skipFrameCount;
+                  droppedFrameCount += skipFrameCount;
+                }
+              }
+              if (op.frameDurationMs > 0) {
+                lane.targetFrameRate = 1000.0 / (double) op.frameDurationMs;
+              }
+            }
+          }
+          break;
+        }
+        case OP_DESTROY: {
+          synchronized (lock) {
+            lane.isDestroyed = true;
+          }
+          lane.actor.onDestroy();
+          if (Log.isEnabled(Log.TAG_GIF_LOADER) && lane.preparedFrameCount > 0) {
+            Log.i(Log.TAG_GIF_LOADER, "#%s: fps: %.1f/%.1f, frames: %d, late: %d, dropped: %d", lane.actor.getFile().toString(), lane.achievedFrameRate(), lane.targetFrameRate, lane.preparedFrameCount, lane.lateFrameCount, lane.droppedFrameCount);
+          }
+          break;
+        }
+      }
+    } catch (Throwable t) {
+      Log.e(Log.TAG_GIF_LOADER, "Frame decoder operation failed, type: %d", t, op.type);
+    }
+    finishLane(lane);
+  }
+
+  private void finishLane (Lane lane) {
+    synchronized (lock) {
+      lane.isRunning = false;
+      if (lane.isDestroyed) {
+        lanes.remove(lane.actor);
+        lane.ops.clear();
+      } else if (!lane.ops.isEmpty()) {
+        queue(lane);
+      }
+    }
+  }
+
+  private class Worker extends Thread {
+    final int index;
+    final PriorityQueue<Lane> lanes = new PriorityQueue<>(16, GifFrameScheduler::compareLanes);
+
+    Worker (int index) {
+      super("GifThread#" + index);
+      this.index = index;
+    }
+
+    @Override
+    public void run () {
+      while (true) {
+        Lane lane;
+        try {
+          lane = takeLane(this);
+        } catch (InterruptedException e) {
+          return;
+        }
+        runLane(lane);
+      }
+    }
+  }
+
+  // Stats
+
+  /**
+   * @return human-readable report with achieved and target frame rate of every active actor
+   */
+  @NonNull
+  public String dumpStats () {
+    StringBuilder b = new StringBuilder(toString());
+    synchronized (lock) {
+      for (Lane lane : lanes.values()) {
+        if (lane.preparedFrameCount == 0)
+          continue;
+        b.append('\n')
+          .append('#').append(lane.actor.getFile().toString())
+          .append(String.format(Locale.US, ": fps: %.1f/%.1f, frames: %d, late: %d, dropped: %d, pending: %d",
+            lane.achievedFrameRate(), lane.targetFrameRate, lane.preparedFrameCount, lane.lateFrameCount, lane.droppedFrameCount, lane.ops.size()));
+      }
+    }
+    return b.toString();
+  }
+
+  @Override
+  @NonNull
+  public String toString () {
+    synchronized (lock) {
+      int queuedCount = 0;
+      for (Worker worker : workers) {
+        queuedCount += worker.lanes.size();
+      }
+      return "GifFrameScheduler { workers: " + workers.length +
+        ", actors: " + lanes.size() +
+        ", queued: " + queuedCount +
+        ", starting: " + (startExecutor.getActiveCount() + startExecutor.getQueue().size()) +
+        ", steals: " + stealCount +
+        ", dropped: " + droppedFrameCount + " }";
+    }
+  }
+}
@@ -17,6 +17,8 @@ package org.thunderdog.challegram.loader.gif;
 import android.graphics.Bitmap;
 
 import org.thunderdog.challegram.U;
+import org.thunderdog.challegram.loader.cache.BitmapPool;
+import org.thunderdog.challegram.tool.UI;
 
 import java.util.ArrayDeque;
 import java.util.Queue;
@@ -29,6 +31,7 @@ public class GifState {
   public static class Frame {
     public final Bitmap bitmap;
     public long no;
+    private boolean isDrawn;
 
     public Frame (Bitmap bitmap) {
       this.bitmap = bitmap;
@@ -39,7 +42,13 @@ public class GifState {
     }
 
     public void recycle () {
-      bitmap.recycle();
+      if (isDrawn) {
+        // Frames are drawn on the UI thread, and receivers drop their GifState there before actor is destroyed,
+        // so frame is handed to another decoder only after whatever is already queued there
+        UI.post(() -> BitmapPool.instance().put(bitmap));
+      } else {
+        BitmapPool.instance().put(bitmap);
+      }
     }
 
     public int getWidth () {
@@ -85,7 +94,7 @@ public class GifState {
   public boolean init (FrameReader reader, int numInit, Bitmap.Config config) {
     synchronized (busy) {
       for (int i = 0; i < queueSize; i++) {
-        Bitmap bitmap = Bitmap.createBitmap(width, height, config);
+        Bitmap bitmap = BitmapPool.instance().obtain(width, height, config);
         if (bitmap == null) {
           return false;
         }
@@ -148,6 +157,7 @@ public class GifState {
   }
 
   private void recycleImpl () {
+    // Frames go back to the shared pool, so next actor of the same size doesn't allocate
     for (Frame bitmap : busy) {
       if (bitmap != null && !bitmap.isRecycled()) {
         bitmap.recycle();
@@ -238,6 +248,7 @@ public class GifState {
   public Frame getDrawFrame (boolean willDraw) {
     Frame frame = getFrame();
     if (frame != null) {
+      frame.isDrawn = true;
       if (willDraw) {
         onDraw(frame.no);
       }
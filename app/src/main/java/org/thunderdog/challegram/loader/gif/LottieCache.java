@@ -14,22 +14,19 @@
  */
 package org.thunderdog.challegram.loader.gif;
 
-import android.content.SharedPreferences;
 import android.os.SystemClock;
 
 import org.thunderdog.challegram.Log;
+import org.thunderdog.challegram.config.Config;
 import org.thunderdog.challegram.core.BaseThread;
 import org.thunderdog.challegram.data.TD;
 import org.thunderdog.challegram.telegram.TdlibAccount;
 import org.thunderdog.challegram.unsorted.Settings;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
 import me.vkryl.core.FileUtils;
 import me.vkryl.core.StringUtils;
+import me.vkryl.core.unit.ByteUnit;
 import me.vkryl.leveldb.LevelDB;
 
 @Deprecated
@@ -50,10 +47,15 @@ public class LottieCache {
   private final BaseThread gcThread = new BaseThread("LottieCacheGcThread");
   private final BaseThread[] threadPool = new BaseThread[3];
 
+  // Accessed only on gcThread
+  private final LottieCacheManifest manifest = new LottieCacheManifest(new File(getCacheDir(), "manifest"), LOTTIE_KEY_PREFIX);
+  private final long maxCacheSize = ByteUnit.MIB.toBytes(Config.LOTTIE_CACHE_SIZE_MIB);
+
   private LottieCache () { }
 
   public boolean clear () {
     if (FileUtils.delete(LottieCache.getCacheDir(), true)) {
+      gcThread.post(manifest::clear, 0);
       Settings.instance().pmc().removeByPrefix(LOTTIE_KEY_PREFIX);
       cancelScheduledGc();
       return true;
@@ -63,107 +65,59 @@ public class LottieCache {
 
   private long scheduledAt;
 
-  private static class Entry implements Comparable<Entry> {
-    public final String key;
-    public final long time;
-
-    public final int accountId;
-    public final String directory, fileName;
-
-    public Entry (String key, long time) {
-      this.key = key;
-      this.time = time;
-      String[] fileData = key.substring(LOTTIE_KEY_PREFIX.length()).split("/", 3);
-      if (fileData.length != 3)
-        throw new IllegalArgumentException(key);
-      this.accountId = StringUtils.parseInt(fileData[0], -1);
-      if (accountId == -1)
-        throw new IllegalArgumentException(key);
-      this.directory = fileData[1];
-      this.fileName = fileData[2];
-      if (StringUtils.isEmpty(directory) || StringUtils.isEmpty(fileName))
-        throw new IllegalArgumentException(key);
+  private LottieCacheManifest manifest () {
+    if (manifest.load()) {
+      importLegacyEntries();
     }
+    return manifest;
+  }
 
-    public static boolean validateKey (String key) {
-      String[] fileData = key.substring(LOTTIE_KEY_PREFIX.length()).split("/", 3);
-      if (fileData.length != 3)
-        return false;
-      /*int accountId = StringUtils.parseInt(fileData[0], -1);
-      if (accountId == -1)
-        return false;*/
-      String directory = fileData[1];
-      String fileName = fileData[2];
-      if (StringUtils.isEmpty(directory) || StringUtils.isEmpty(fileName))
-        return false;
-      return true;
+  /**
+   * Moves entries that were stored in {@link Settings#pmc()} before manifest existed.
+   */
+  private void importLegacyEntries () {
+    final LevelDB db = Settings.instance().pmc();
+    boolean found = false;
+    for (LevelDB.Entry entry : db.find(LOTTIE_KEY_PREFIX)) {
+      found = true;
+      try {
+        manifest.put(entry.key(), entry.asLong());
+      } catch (IllegalArgumentException t) {
+        Log.e("Bad lottie cache key: %s", t, entry.key());
+      }
     }
-
-    @Override
-    public int compareTo (Entry o) {
-      return Long.compare(time, o.time);
-    }
-
-    public File toFile (File cacheDir) {
-      return new File(new File(new File(cacheDir, Integer.toString(accountId)), directory), fileName);
+    if (found) {
+      manifest.flush();
+      db.removeByPrefix(LOTTIE_KEY_PREFIX);
     }
   }
 
   private void limitFileCount (int count, String key) {
     gcThread.post(() -> {
-      final LevelDB db = Settings.instance().pmc();
-      final File cacheDir = getCacheDir();
-      List<Entry> entries = new ArrayList<>();
-      List<String> brokenKeys = null;
-      for (LevelDB.Entry entry : db.find(LOTTIE_KEY_PREFIX)) {
-        Entry e;
-        try {
-          e = new Entry(entry.key(), entry.asLong());
-        } catch (IllegalArgumentException t) {
-          Log.e("Bad lottie cache key: %s", t);
-          if (brokenKeys == null)
-            brokenKeys = new ArrayList<>();
-          brokenKeys.add(entry.key());
-          continue;
-        }
-        entries.add(e);
-      }
-      if (brokenKeys != null) {
-        db.edit();
-        for (String brokenKey : brokenKeys) {
-          db.remove(brokenKey);
-        }
-        db.apply();
-      }
-      Collections.sort(entries);
-      int extraCount = (entries.size() - count);
-      int index = 0;
-      SharedPreferences.Editor editor = null;
-      while (extraCount > 0 && index < entries.size()) {
-        Entry entry = entries.get(index++);
-        if (!entry.key.equals(key)) {
-          if (editor == null)
-            editor = db.edit();
-          delete(cacheDir, entry, editor);
-          extraCount--;
-        }
-      }
-      if (editor != null) {
-        editor.apply();
-      }
+      trim(count, maxCacheSize, key);
     }, 0);
   }
 
-  private static void delete (File cacheDir, Entry entry, SharedPreferences.Editor editor) {
+  // Gc thread
+  private void trim (int maxCount, long maxSize, String keepKey) {
+    final LottieCacheManifest manifest = manifest();
+    final File cacheDir = getCacheDir();
+    for (LottieCacheManifest.Entry entry : manifest.findVictims(maxCount, maxSize, keepKey)) {
+      delete(cacheDir, entry);
+    }
+    manifest.flush();
+  }
+
+  // Gc thread
+  private void delete (File cacheDir, LottieCacheManifest.Entry entry) {
     File file = entry.toFile(cacheDir);
     if (!file.exists() || file.delete()) {
-      editor.remove(entry.key);
+      manifest.remove(entry.key);
     }
   }
 
   public void gc () {
     gcThread.post(() -> {
-      long nextTime = -1;
       final File cacheDir = getCacheDir();
 
       File[] accountDirs = cacheDir.listFiles();
@@ -178,33 +132,15 @@ public class LottieCache {
         }
       }
 
-      long now = System.currentTimeMillis();
-      final LevelDB db = Settings.instance().pmc();
-      SharedPreferences.Editor editor = null;
-      List<String> brokenKeys = null;
-      for (LevelDB.Entry entry : db.find(LOTTIE_KEY_PREFIX)) {
-        Entry e;
-        try {
-          e = new Entry(entry.key(), entry.asLong());
-        } catch (IllegalArgumentException t) {
-          Log.e("Bad lottie cache key: %s", t);
-          if (brokenKeys == null)
-            brokenKeys = new ArrayList<>();
-          brokenKeys.add(entry.key());
-          continue;
-        }
-        if (now >= e.time) {
-          if (editor == null)
-            editor = db.edit();
-          delete(cacheDir, e, editor);
-        } else {
-          nextTime = nextTime == -1 ? e.time : Math.min(nextTime, e.time);
-        }
+      final long now = System.currentTimeMillis();
+      final LottieCacheManifest manifest = manifest();
+      for (LottieCacheManifest.Entry entry : manifest.pollExpired(now)) {
+        delete(cacheDir, entry);
       }
-      if (editor != null)
-        editor.apply();
+      manifest.flush();
+      final long nextTime = manifest.nextExpirationTime();
       if (nextTime != -1) {
-        scheduleGc(nextTime - now, true);
+        scheduleGc(Math.max(0, nextTime - now), true);
       } else {
         cancelScheduledGc();
       }
@@ -265,16 +201,22 @@ public class LottieCache {
     File originalFile = new File(file.getFilePath());
     if (keepAliveMs > 0) {
       String key = getCacheFileKey(accountId, optimize, size, colorKey, originalFile.getName());
-      Settings.instance().pmc().putLong(key, System.currentTimeMillis() + keepAliveMs);
-      instance().limitFileCount(maxCount, key);
+      instance().keepAlive(key, System.currentTimeMillis() + keepAliveMs, maxCount);
       instance().scheduleGc(keepAliveMs, false);
     }
     return new File(cacheDir, originalFile.getName());
   }
 
+  private void keepAlive (String key, long expiresAt, int maxCount) {
+    gcThread.post(() -> {
+      manifest().put(key, expiresAt);
+      trim(maxCount, maxCacheSize, key);
+    }, 0);
+  }
+
   public static String getCacheFileKey (int accountId, boolean optimize, int size, String colorKey, String originalFileName) {
     String cacheKey = LOTTIE_KEY_PREFIX + accountId + "/" + (optimize ? "thumbs" + size : size) + (!StringUtils.isEmpty(colorKey) ? "_" + colorKey : "") + "/" + originalFileName;
-    if (!Entry.validateKey(cacheKey))
+    if (!LottieCacheManifest.Entry.validateKey(cacheKey, LOTTIE_KEY_PREFIX))
       throw new IllegalArgumentException(cacheKey);
     return cacheKey;
   }
@@ -286,16 +228,115 @@ public class LottieCache {
       } else {
         String colorKey = fitzpatrickType != 0 ? Integer.toString(fitzpatrickType) : null;
         String key = getCacheFileKey(file.tdlib != null ? file.tdlib.accountId(): TdlibAccount.NO_ID, optimize, size, colorKey, new File(file.getFilePath()).getName());
-        long time = Settings.instance().getLong(key, 0);
+        final LottieCacheManifest manifest = manifest();
+        LottieCacheManifest.Entry entry = manifest.get(key);
+        long time = entry != null ? entry.expiresAt : 0;
         if (time == 0 || System.currentTimeMillis() >= time) {
           cacheFile.delete();
-          Settings.instance().remove(key);
+          manifest.remove(key);
+          manifest.flush();
           gc();
+        } else {
+          // Size is known only once decoder has finished writing the file
+          manifest.setSize(key, cacheFile.length());
+          trim(Integer.MAX_VALUE, maxCacheSize, key);
         }
       }
     }, 0);
   }
 
+  public static File getCacheDir (int accountId, int size, boolean optimize, String colorKey) {
+    File cacheDir = getCacheDir();
+    if (!FileUtils.createDirectory(cacheDir))
+      return null;
+    cacheDir = new File(cacheDir, Integer.toString(accountId));
+    if (!FileUtils.createDirectory(cacheDir))
+      return null;
+    String folderName = optimize ? "thumbs" + size : Integer.toString(size);
+    if (!StringUtils.isEmpty(colorKey))
+      folderName += "_" + colorKey;
+    cacheDir = new File(cacheDir, folderName);
+    if (!FileUtils.createDirectory(cacheDir))
+      return null;
+    return cacheDir;
+  }
+
+  public BaseThread thread (int optimizationLevel) {
+    if (threadPool[optimizationLevel] == null) {
+      threadPool[optimizationLevel] = new BaseThread("LottieCacheThread-" + optimizationLevel);
+    }
+    return threadPool[optimizationLevel];
+  }
+
+  private static final String LOTTIE_KEY_PREFIX = "lottie_";
+
+  public static File getCacheFile (GifFile file, boolean optimize, int size, int fitzpatrickType, long keepAliveMs, int maxCount) {
+    if (optimize) {
+      keepAliveMs = 0;
+    }
+    String colorKey = fitzpatrickType != 0 ? Integer.toString(fitzpatrickType) : null;
+    int accountId = file.tdlib() != null ? file.tdlib().id(): TdlibAccount.NO_ID;
+    File cacheDir = getCacheDir(accountId, size, optimize, colorKey);
+    if (cacheDir == null)
+      return null;
+    File originalFile = new File(file.getFilePath());
+    if (keepAliveMs > 0) {
+      String key = getCacheFileKey(accountId, optimize, size, colorKey, originalFile.getName());
+      instance().keepAlive(key, System.currentTimeMillis() + keepAliveMs, maxCount);
+      instance().scheduleGc(keepAliveMs, false);
+    }
+    return new File(cacheDir, originalFile.getName());
+  }
+
+  private void keepAlive (String key, long expiresAt, int maxCount) {
+    gcThread.post(() -> {
+      manifest().put(key, expiresAt);
+      trim(maxCount, maxCacheSize, key);
+    }, 0);
+  }
+
+  public static String getCacheFileKey (int accountId, boolean optimize, int size, String colorKey, String originalFileName) {
+    String cacheKey = LOTTIE_KEY_PREFIX + accountId + "/" + (optimize ? "thumbs" + size : size) + (!StringUtils.isEmpty(colorKey) ? "_" + colorKey : "") + "/" + originalFileName;
+    if (!LottieCacheManifest.Entry.validateKey(cacheKey, LOTTIE_KEY_PREFIX))
+      throw new IllegalArgumentException(cacheKey);
+    return cacheKey;
+  }
+
+  public void checkFile (GifFile file, File cacheFile, boolean optimize, int size, int fitzpatrickType) {
+    gcThread.post(() -> {
+      if (optimize) {
+        cacheFile.delete();
+      } else {
+        String colorKey = fitzpatrickType != 0 ? Integer.toString(fitzpatrickType) : null;
+        String key = getCacheFileKey(file.tdlib != null ? file.tdlib.accountId(): TdlibAccount.NO_ID, optimize, size, colorKey, new File(file.getFilePath()).getName());
+        final LottieCacheManifest manifest = manifest();
+        LottieCacheManifest.Entry entry = manifest.get(key);
+        long time = entry != null ? entry.expiresAt : 0;
+        if (time == 0 || System.currentTimeMillis() >= time) {
+          cacheFile.delete();
+          manifest.remove(key);
+          manifest.flush();
+          gc();
+        } else {
+          // Size is known only once decoder has finished writing the file
+          manifest.setSize(key, cacheFile.length());
+          trim(Integer.MAX_VALUE, maxCacheSize, key);
+        }
+      }
+    }, 0);
+  }
+
+  /**
+   * Calculates amount of bytes occupied by kept alive cache files of the given account.
+   * Callback is invoked on the gc thread.
+   */
+  public void getAccountCacheSize (int accountId, RunnableLong callback) {
+    gcThread.post(() -> {
+      LottieCacheManifest.Totals totals = manifest().getTotals(accountId);
+      callback.runWithLong(totals != null ? totals.size : 0);
+    }, 0);
+  }
+
   public static File getCacheDir () {
     return new File(TD.getCacheDir(true), "tgs");
   }
@@ -0,0 +1,419 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.loader.gif;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.thunderdog.challegram.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import me.vkryl.core.StringUtils;
+
+/**
+ * Bookkeeping of {@link LottieCache} files that are kept alive after their decoder is destroyed.
+ *
+ * State is restored on start by replaying an append-only log, and is kept in memory afterwards
+ * as an LRU-ordered index with expiration queue and totals, so every operation
+ * costs O(1) or O(log n), and no scan of all entries is ever needed.
+ * Log is rewritten from the index once it accumulates too many obsolete records.
+ *
+ * Must be accessed only from {@link LottieCache} gc thread.
+ */
+final class LottieCacheManifest {
+  static final class Entry {
+    final String key;
+    final int accountId;
+    final String directory, fileName;
+
+    long expiresAt;
+    long size;
+
+    Entry (String key, String prefix) {
+      this.key = key;
+      String[] fileData = key.substring(prefix.length()).split("/", 3);
+      if (fileData.length != 3)
+        throw new IllegalArgumentException(key);
+      this.accountId = StringUtils.parseInt(fileData[0], -1);
+      if (accountId == -1)
+        throw new IllegalArgumentException(key);
+      this.directory = fileData[1];
+      this.fileName = fileData[2];
+      if (StringUtils.isEmpty(directory) || StringUtils.isEmpty(fileName))
+        throw new IllegalArgumentException(key);
+    }
+
+    static boolean validateKey (String key, String prefix) {
+      String[] fileData = key.substring(prefix.length()).split("/", 3);
+      if (fileData.length != 3)
+        return false;
+      String directory = fileData[1];
+      String fileName = fileData[2];
+      return !StringUtils.isEmpty(directory) && !StringUtils.isEmpty(fileName);
+    }
+
+    File toFile (File cacheDir) {
+      return new File(new File(new File(cacheDir, Integer.toString(accountId)), directory), fileName);
+    }
+  }
+
+  static final class Totals {
+    int count;
+    long size;
+  }
+
+  private static final int MAGIC = 0x4c4f5454; // LOTT
+  private static final int VERSION = 1;
+
+  private static final byte OP_PUT = 1;
+  private static final byte OP_SIZE = 2;
+  private static final byte OP_REMOVE = 3;
+
+  private static final int MIN_COMPACTION_RECORD_COUNT = 256;
+
+  private final File file;
+  private final String keyPrefix;
+
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, .75f, true);
+  private final PriorityQueue<ExpirationRecord> expirations = new PriorityQueue<>();
+  private final Totals totals = new Totals();
+
+  private boolean isLoaded;
+  private DataOutputStream out;
+  private int recordCount;
+
+  private static final class ExpirationRecord implements Comparable<ExpirationRecord> {
+    final Entry entry;
+    final long expiresAt;
+
+    ExpirationRecord (Entry entry, long expiresAt) {
+      this.entry = entry;
+      this.expiresAt = expiresAt;
+    }
+
+    @Override
+    public int compareTo (ExpirationRecord o) {
+      return Long.compare(expiresAt, o.expiresAt);
+    }
+  }
+
+  LottieCacheManifest (File file, String keyPrefix) {
+    this.file = file;
+    this.keyPrefix = keyPrefix;
+  }
+
+  // Loading
+
+  /**
+   * @return true, if there was no manifest yet, and caller may want to import legacy entries
+   */
+  boolean load () {
+    if (isLoaded)
+      return false;
+    isLoaded = true;
+    if (!file.exists())
+      return true;
+    byte[] data;
+    try (RandomAccessFile f = new RandomAccessFile(file, "r")) {
+      data = new byte[(int) f.length()];
+      f.readFully(data);
+    } catch (IOException e) {
+      Log.e("Cannot read lottie cache manifest", e);
+      return false;
+    }
+    int validLength = 0;
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Unsupported manifest");
+      }
+      validLength = data.length - in.available();
+      while (in.available() > 0) {
+        byte op = in.readByte();
+        String key = in.readUTF();
+        switch (op) {
+          case OP_PUT: {
+            long expiresAt = in.readLong();
+            try {
+              applyPut(key, expiresAt);
+            } catch (IllegalArgumentException e) {
+              // Record itself is intact, so replay continues with the next one
+              Log.w("Bad lottie cache key: %s", e, key);
+            }
+            break;
+          }
+          case OP_SIZE:
+            applySize(key, in.readLong());
+            break;
+          case OP_REMOVE:
+            applyRemove(key);
+            break;
+          default:
+            throw new IOException("Unknown op: " + op);
+        }
+        recordCount++;
+        validLength = data.length - in.available();
+      }
+    } catch (IOException e) {
+      // Torn write at the end of the log, everything before it is still valid
+      Log.w("Lottie cache manifest is truncated at %d/%d", e, validLength, data.length);
+      recordCount = Integer.MAX_VALUE;
+    }
+    if (validLength == 0) {
+      file.delete();
+      return false;
+    }
+    compactIfNeeded();
+    return false;
+  }
+
+  // Log
+
+  private boolean openLog () {
+    if (out != null)
+      return true;
+    try {
+      File dir = file.getParentFile();
+      if (dir != null && !dir.exists() && !dir.mkdirs())
+        return false;
+      boolean isNew = !file.exists() || file.length() == 0;
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+      if (isNew) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+      }
+      return true;
+    } catch (IOException e) {
+      Log.e("Cannot open lottie cache manifest", e);
+      closeLog();
+      return false;
+    }
+  }
+
+  private void closeLog () {
+    if (out != null) {
+      try {
+        out.close();
+      } catch (IOException ignored) { }
+      out = null;
+    }
+  }
+
+  private void writeRecord (byte op, String key, long value) {
+    if (!openLog())
+      return;
+    try {
+      out.writeByte(op);
+      out.writeUTF(key);
+      if (op != OP_REMOVE) {
+        out.writeLong(value);
+      }
+      recordCount++;
+    } catch (IOException e) {
+      Log.e("Cannot write lottie cache manifest", e);
+      closeLog();
+    }
+  }
+
+  /**
+   * Flushes pending records. Called once per batch of operations.
+   */
+  void flush () {
+    if (out != null) {
+      try {
+        out.flush();
+      } catch (IOException e) {
+        Log.e("Cannot flush lottie cache manifest", e);
+        closeLog();
+      }
+    }
+    compactIfNeeded();
+  }
+
+  private void compactIfNeeded () {
+    if (recordCount < MIN_COMPACTION_RECORD_COUNT || recordCount < entries.size() * 2) {
+      return;
+    }
+    closeLog();
+    File tmpFile = new File(file.getPath() + ".tmp");
+    try (DataOutputStream snapshot = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+      snapshot.writeInt(MAGIC);
+      snapshot.writeInt(VERSION);
+      // Iteration order is LRU order, which is restored by replaying records in the same order
+      for (Entry entry : entries.values()) {
+        snapshot.writeByte(OP_PUT);
+        snapshot.writeUTF(entry.key);
+        snapshot.writeLong(entry.expiresAt);
+        if (entry.size != 0) {
+          snapshot.writeByte(OP_SIZE);
+          snapshot.writeUTF(entry.key);
+          snapshot.writeLong(entry.size);
+        }
+      }
+    } catch (IOException e) {
+      Log.e("Cannot compact lottie cache manifest", e);
+      tmpFile.delete();
+      return;
+    }
+    if (tmpFile.renameTo(file)) {
+      recordCount = entries.size();
+    } else {
+      tmpFile.delete();
+    }
+  }
+
+  // State
+
+  private Entry applyPut (String key, long expiresAt) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      entry = new Entry(key, keyPrefix);
+      entries.put(key, entry);
+      totals.count++;
+    }
+    if (entry.expiresAt != expiresAt) {
+      entry.expiresAt = expiresAt;
+      expirations.add(new ExpirationRecord(entry, expiresAt));
+    }
+    return entry;
+  }
+
+  private void applySize (String key, long size) {
+    Entry entry = entries.get(key);
+    if (entry != null && entry.size != size) {
+      long delta = size - entry.size;
+      entry.size = size;
+      totals.size += delta;
+    }
+  }
+
+  private Entry applyRemove (String key) {
+    Entry entry = entries.remove(key);
+    if (entry != null) {
+      totals.count--;
+      totals.size -= entry.size;
+      // Stale record in expiration queue is skipped lazily
+      entry.expiresAt = 0;
+    }
+    return entry;
+  }
+
+  // Operations
+
+  @Nullable
+  Entry get (String key) {
+    return entries.get(key);
+  }
+
+  void put (String key, long expiresAt) {
+    applyPut(key, expiresAt);
+    writeRecord(OP_PUT, key, expiresAt);
+  }
+
+  void setSize (String key, long size) {
+    Entry entry = entries.get(key);
+    if (entry != null && entry.size != size) {
+      applySize(key, size);
+      writeRecord(OP_SIZE, key, size);
+    }
+  }
+
+  void remove (String key) {
+    if (applyRemove(key) != null) {
+      writeRecord(OP_REMOVE, key, 0);
+    }
+  }
+
+  /**
+   * @return entries, which expiration time has passed. Entries are not removed from the index,
+   * caller is responsible for deleting files first.
+   */
+  @NonNull
+  List<Entry> pollExpired (long now) {
+    List<Entry> result = new ArrayList<>();
+    while (!expirations.isEmpty() && expirations.peek().expiresAt <= now) {
+      ExpirationRecord record = expirations.poll();
+      if (record.entry.expiresAt == record.expiresAt) {
+        result.add(record.entry);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return closest expiration time of existing entry, or -1, if there are none
+   */
+  long nextExpirationTime () {
+    while (!expirations.isEmpty()) {
+      ExpirationRecord record = expirations.peek();
+      if (record.entry.expiresAt == record.expiresAt) {
+        return record.expiresAt;
+      }
+      // Entry was removed or got new expiration time
+      expirations.poll();
+    }
+    return -1;
+  }
+
+  /**
+   * Finds least recently used entries that have to be deleted in order to satisfy the limits.
+   * Entries are not removed, caller is responsible for deleting files first.
+   */
+  @NonNull
+  List<Entry> findVictims (int maxCount, long maxSize, @Nullable String keepKey) {
+    List<Entry> result = null;
+    int count = totals.count;
+    long size = totals.size;
+    Iterator<Entry> it = entries.values().iterator();
+    while ((count > maxCount || size > maxSize) && it.hasNext()) {
+      Entry entry = it.next();
+      if (entry.key.equals(keepKey))
+        continue;
+      if (result == null)
+        result = new ArrayList<>();
+      result.add(entry);
+      count--;
+      size -= entry.size;
+    }
+    return result != null ? result : new ArrayList<>();
+  }
+
+  @NonNull
+  Totals getTotals () {
+    return totals;
+  }
+
+  void clear () {
+    closeLog();
+    entries.clear();
+    expirations.clear();
+    totals.count = 0;
+    totals.size = 0;
+    recordCount = 0;
+    file.delete();
+  }
+}
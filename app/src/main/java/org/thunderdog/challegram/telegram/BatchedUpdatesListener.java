@@ -0,0 +1,27 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.telegram;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.UiThread;
+
+/**
+ * Receives state updates collected by {@link TdlibUpdateBatcher} once per frame on the UI thread,
+ * instead of posting a separate runnable for each of them.
+ */
+public interface BatchedUpdatesListener {
+  @UiThread
+  void onUpdatesBatched (@NonNull TdlibUpdateBatcher.Batch batch);
+}
@@ -410,7 +410,7 @@ public class DisplayInformation {
     return absoluteFilePath;
   }
 
-  private static class EmojiStatusCache {
+  static class EmojiStatusCache {
     public final long emojiStatusId;
     public final TdApi.Sticker sticker;
 
@@ -843,7 +843,7 @@ public class DisplayInformation {
       return null;
     }
 
-    private static byte[] serializeStickerMetadata (TdApi.Sticker sticker) {
+    static byte[] serializeStickerMetadata (TdApi.Sticker sticker) {
       Blob metadata = new Blob(
         1 /*version*/ +
           8 /*id*/ +
@@ -866,7 +866,7 @@ public class DisplayInformation {
       return metadata.toByteArray();
     }
 
-    private static byte[] serializeStickerFile (long customEmojiId, TdApi.File file) {
+    static byte[] serializeStickerFile (long customEmojiId, TdApi.File file) {
       if (file == null || !TD.isFileLoaded(file)) {
         return null;
       }
@@ -880,7 +880,7 @@ public class DisplayInformation {
       return blob.toByteArray();
     }
 
-    private static byte[] serializeThumbnail (long customEmojiId, TdApi.Thumbnail thumbnail) {
+    static byte[] serializeThumbnail (long customEmojiId, TdApi.Thumbnail thumbnail) {
       if (thumbnail == null || !TD.isFileLoaded(thumbnail.file)) {
         return null;
       }
@@ -379,7 +379,9 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
       if (running) {
         long ms = SystemClock.uptimeMillis();
         if (object instanceof TdApi.Update) {
+          long startNanos = tdlib.updateProfiler.onUpdateStarted();
           tdlib.processUpdate(this, (TdApi.Update) object);
+          tdlib.updateProfiler.onUpdateFinished((TdApi.Update) object, startNanos);
         } else {
           Log.e("Invalid update type: %s", object);
         }
@@ -437,19 +439,23 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
     animatedDiceExplicit = new StickerSet(AnimatedEmojiListener.TYPE_DICE, "BetterDice", true);
   private final HashSet<Long> knownChatIds = new HashSet<>();
   private final HashMap<Long, Integer> chatOnlineMemberCount = new HashMap<>();
-  private final TdlibCache cache;
-  private final TdlibEmojiManager emoji;
-  private final TdlibEmojiReactionsManager reactions;
+  private final TdlibStartupGraph.Subsystem<TdlibCache> cache;
+  private final TdlibStartupGraph.Subsystem<TdlibEmojiManager> emoji;
+  private final TdlibStartupGraph.Subsystem<TdlibEmojiReactionsManager> reactions;
   private final TdlibSingleton<TdApi.Stickers> genericReactionEffects;
+  private final TdlibStartupGraph startupGraph;
   private final TdlibListeners listeners;
-  private final TdlibFilesManager filesManager;
-  private final TdlibStatusManager statusManager;
-  private final TdlibContactManager contactManager;
-  private final TdlibQuickAckManager quickAckManager;
-  private final TdlibSettingsManager settingsManager;
-  private final TdlibWallpaperManager wallpaperManager;
-  private final TdlibNotificationManager notificationManager;
-  private final TdlibFileGenerationManager fileGenerationManager;
+  private final TdlibUpdateProfiler updateProfiler;
+  private final TdlibStartupGraph.Subsystem<TdlibFilesManager> filesManager;
+  private final TdlibStartupGraph.Subsystem<TdlibStatusManager> statusManager;
+  private final TdlibStartupGraph.Subsystem<TdlibContactManager> contactManager;
+  private final TdlibStartupGraph.Subsystem<TdlibQuickAckManager> quickAckManager;
+  private final TdlibStartupGraph.Subsystem<TdlibSettingsManager> settingsManager;
+  private final TdlibStartupGraph.Subsystem<TdlibWallpaperManager> wallpaperManager;
+  private final TdlibStartupGraph.Subsystem<TdlibNotificationManager> notificationManager;
+  private final TdlibStartupGraph.Subsystem<TdlibFileGenerationManager> fileGenerationManager;
+  private final TdlibStartupGraph.Subsystem<TdlibProxyHealthMonitor> proxyHealthMonitor;
+  private final TdlibStartupGraph.Subsystem<TdlibTranslationService> translationService;
 
   private final HashSet<Long> channels = new HashSet<>();
   private final LongSparseLongArray accessibleChatTimers = new LongSparseLongArray();
@@ -576,73 +582,36 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
       );
     }
 
-    boolean needMeasure = Log.needMeasureLaunchSpeed();
-    long ms = needMeasure ? SystemClock.uptimeMillis() : 0;
-    this.listeners = new TdlibListeners(this);
-    if (needMeasure) {
-      Log.v("INITIALIZATION: Tdlib.listeners -> %dms", SystemClock.uptimeMillis() - ms);
-      ms = SystemClock.uptimeMillis();
-    }
-    this.cache = new TdlibCache(this);
-    if (needMeasure) {
-      Log.v("INITIALIZATION: Tdlib.cache -> %dms", SystemClock.uptimeMillis() - ms);
-      ms = SystemClock.uptimeMillis();
-    }
-    this.emoji = new TdlibEmojiManager(this);
-    if (needMeasure) {
-      Log.v("INITIALIZATION: Tdlib.emoji -> %dms", SystemClock.uptimeMillis() - ms);
-      ms = SystemClock.uptimeMillis();
-    }
-    this.reactions = new TdlibEmojiReactionsManager(this);
-    if (needMeasure) {
-      Log.v("INITIALIZATION: Tdlib.reaction -> %dms", SystemClock.uptimeMillis() - ms);
-      ms = SystemClock.uptimeMillis();
-    }
+    this.updateProfiler = new TdlibUpdateProfiler(accountId);
+    this.startupGraph = new TdlibStartupGraph(accountId);
+    // Subsystems are created on first use, see TdlibStartupGraph
+    TdlibStartupGraph.Subsystem<TdlibListeners> listeners = startupGraph.add("listeners", () -> new TdlibListeners(this));
+    this.settingsManager = startupGraph.add("settingsManager", () -> new TdlibSettingsManager(this), listeners);
+    this.cache = startupGraph.add("cache", () -> new TdlibCache(this), listeners);
+    this.emoji = startupGraph.add("emoji", () -> new TdlibEmojiManager(this), listeners);
+    this.reactions = startupGraph.add("reactions", () -> new TdlibEmojiReactionsManager(this), listeners);
+    this.filesManager = startupGraph.add("filesManager", () -> new TdlibFilesManager(this));
+    this.statusManager = startupGraph.add("statusManager", () -> new TdlibStatusManager(this), listeners);
+    this.contactManager = startupGraph.add("contactManager", () -> new TdlibContactManager(this), listeners);
+    this.quickAckManager = startupGraph.add("quickAckManager", () -> new TdlibQuickAckManager(this));
+    this.wallpaperManager = startupGraph.add("wallpaperManager", () -> new TdlibWallpaperManager(this));
+    this.notificationManager = startupGraph.add("notificationManager", () -> new TdlibNotificationManager(this, context.notificationQueue()), listeners);
+    this.fileGenerationManager = startupGraph.add("fileGenerationManager", () -> new TdlibFileGenerationManager(this));
+    this.proxyHealthMonitor = startupGraph.add("proxyHealthMonitor", () -> new TdlibProxyHealthMonitor(this));
+    this.translationService = startupGraph.add("translationService", () -> new TdlibTranslationService(this));
+
+    // Listeners are needed by almost everything, including updates coming right after the client is created
+    this.listeners = listeners.initialize();
+    // Settings are read below for the application config anyway
+    settingsManager.initialize();
+    // Files manager has to observe connection type changes from the start
+    filesManager.initialize();
+
+    long startNanos = System.nanoTime();
     this.genericReactionEffects = new TdlibSingleton<>(this, () -> new TdApi.GetCustomEmojiReactionAnimations());
-    if (needMeasure) {
-      Log.v("INITIALIZATION: Tdlib.genericReactionEffects -> %dms", SystemClock.uptimeMillis() - ms);
-      ms = SystemClock.uptimeMillis();
-    }
-    this.filesManager = new TdlibFilesManager(this);
-    if (needMeasure) {
-      Log.v("INITIALIZATION: Tdlib.filesManager -> %dms", SystemClock.uptimeMillis() - ms);
-      ms = SystemClock.uptimeMillis();
-    }
-    this.statusManager = new TdlibStatusManager(this);
-    if (needMeasure) {
-      Log.v("INITIALIZATION: Tdlib.statusManager -> %dms", SystemClock.uptimeMillis() - ms);
-      ms = SystemClock.uptimeMillis();
-    }
-    this.contactManager = new TdlibContactManager(this);
-    if (needMeasure) {
-      Log.v("INITIALIZATION: Tdlib.contactManager -> %dms", SystemClock.uptimeMillis() - ms);
-      ms = SystemClock.uptimeMillis();
-    }
-    this.quickAckManager = new TdlibQuickAckManager(this);
-    if (needMeasure) {
-      Log.v("INITIALIZATION: Tdlib.quickAckManager -> %dms", SystemClock.uptimeMillis() - ms);
-      ms = SystemClock.uptimeMillis();
-    }
-    this.settingsManager = new TdlibSettingsManager(this);
-    if (needMeasure) {
-      Log.v("INITIALIZATION: Tdlib.settingsManager -> %dms", SystemClock.uptimeMillis() - ms);
-      ms = SystemClock.uptimeMillis();
-    }
-    this.wallpaperManager = new TdlibWallpaperManager(this);
-    if (needMeasure) {
-      Log.v("INITIALIZATION: Tdlib.wallpaperManager -> %dms", SystemClock.uptimeMillis() - ms);
-      ms = SystemClock.uptimeMillis();
-    }
-    this.notificationManager = new TdlibNotificationManager(this, context.notificationQueue());
-    if (needMeasure) {
-      Log.v("INITIALIZATION: Tdlib.notificationManager -> %dms", SystemClock.uptimeMillis() - ms);
-      ms = SystemClock.uptimeMillis();
-    }
-    this.fileGenerationManager = new TdlibFileGenerationManager(this);
-    if (needMeasure) {
-      Log.v("INITIALIZATION: Tdlib.fileGenerationManager -> %dms", SystemClock.uptimeMillis() - ms);
-      ms = SystemClock.uptimeMillis();
-    }
+    startupGraph.record("genericReactionEffects", TdlibStartupGraph.TRIGGER_EAGER, startNanos);
+
+    startNanos = System.nanoTime();
     this.applicationConfigJson = settings().getApplicationConfig();
     if (!StringUtils.isEmpty(applicationConfigJson)) {
       TdApi.JsonValue value = JSON.parse(applicationConfigJson);
@@ -650,18 +619,14 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
         processApplicationConfig(value);
       }
     }
-    if (needMeasure) {
-      Log.v("INITIALIZATION: Tdlib.applicationConfig -> %dms", SystemClock.uptimeMillis() - ms);
-      ms = SystemClock.uptimeMillis();
-    }
+    startupGraph.record("applicationConfig", TdlibStartupGraph.TRIGGER_EAGER, startNanos);
 
+    startNanos = System.nanoTime();
     synchronized (clientLock) {
       if (client == null)
         client = newClient();
     }
-    if (needMeasure) {
-      Log.i("INITIALIZATION: Tdlib.newClient() -> %dms", SystemClock.uptimeMillis() - ms);
-    }
+    startupGraph.record("newClient", TdlibStartupGraph.TRIGGER_EAGER, startNanos);
 
     Settings.instance().addNewSettingsListener(this);
   }
@@ -984,6 +949,8 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
       return TimeUnit.SECONDS.toMillis(1);
     if (!context().hasUi())
       return TimeUnit.SECONDS.toMillis(5); // No UI (running in the background), no limits
+    if (context.isHibernated(account()))
+      return TimeUnit.SECONDS.toMillis(5); // Account wasn't opened for a long time
     int num = context.getActiveAccountsNum();
     if (num == 1)
       return TimeUnit.MINUTES.toMillis(15); // User has only one account
@@ -1292,6 +1259,9 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
           if (eraseActor != null) {
             eraseActor.runWithBool(eraseSuccess);
           }
+          if (isPaused() && context.isHibernated(account())) {
+            hibernate();
+          }
         }
         break;
       }
@@ -1798,10 +1768,13 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
 
   public void runOnUiThread (@NonNull Runnable runnable, long timeoutMs) {
     incrementUiReferenceCount();
+    final long postedNanos = System.nanoTime() + timeoutMs * 1_000_000;
     Runnable act = () -> {
+      updateProfiler.onUiRunnableStarted(postedNanos);
       runnable.run();
       decrementUiReferenceCount();
     };
+    TdlibUpdateProfiler.onUiPost();
     if (timeoutMs > 0) {
       ui().postDelayed(act, timeoutMs);
     } else {
@@ -1817,7 +1790,9 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
     if (acquireReference) {
       incrementReferenceCount(REFERENCE_TYPE_JOB);
     }
+    final long enqueuedNanos = System.nanoTime() + (long) (timeoutSeconds * 1_000_000_000);
     clientHolder().runOnTdlibThread(() -> {
+      updateProfiler.onJobStarted(enqueuedNanos);
       runnable.run();
       if (acquireReference) {
         decrementReferenceCount(REFERENCE_TYPE_JOB);
@@ -2209,15 +2184,15 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
   }
 
   public TdlibCache cache () {
-    return cache;
+    return cache.get();
   }
 
   public TdlibEmojiManager emoji () {
-    return emoji;
+    return emoji.get();
   }
 
   public TdlibEmojiReactionsManager reactions () {
-    return reactions;
+    return reactions.get();
   }
 
   public TdlibSingleton<TdApi.Stickers> genericAnimationEffects () {
@@ -2228,36 +2203,52 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
     return listeners;
   }
 
+  public TdlibUpdateProfiler updateProfiler () {
+    return updateProfiler;
+  }
+
+  public TdlibStartupGraph startupGraph () {
+    return startupGraph;
+  }
+
+  public TdlibProxyHealthMonitor proxyHealth () {
+    return proxyHealthMonitor.get();
+  }
+
+  public TdlibTranslationService translations () {
+    return translationService.get();
+  }
+
   public TdlibStatusManager status () {
-    return statusManager;
+    return statusManager.get();
   }
 
   public TdlibFileGenerationManager filegen () {
-    return fileGenerationManager;
+    return fileGenerationManager.get();
   }
 
   public TdlibQuickAckManager qack () {
-    return quickAckManager;
+    return quickAckManager.get();
   }
 
   public TdlibFilesManager files () {
-    return filesManager;
+    return filesManager.get();
   }
 
   public TdlibSettingsManager settings () {
-    return settingsManager;
+    return settingsManager.get();
   }
 
   public TdlibNotificationManager notifications () {
-    return notificationManager;
+    return notificationManager.get();
   }
 
   public TdlibContactManager contacts () {
-    return contactManager;
+    return contactManager.get();
   }
 
   public TdlibWallpaperManager wallpaper () {
-    return wallpaperManager;
+    return wallpaperManager.get();
   }
 
   public TdlibManager context () {
@@ -3327,12 +3318,12 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
     if (!chat.notificationSettings.useDefaultMuteFor) {
       return chat.notificationSettings.muteFor == 0;
     } else {
-      return scopeMuteFor(notificationManager.scope(chat)) == 0;
+      return scopeMuteFor(notifications().scope(chat)) == 0;
     }
   }
 
   public int scopeMuteFor (TdApi.NotificationSettingsScope scope) {
-    TdApi.ScopeNotificationSettings settings = notificationManager.getScopeNotificationSettings(scope);
+    TdApi.ScopeNotificationSettings settings = notifications().getScopeNotificationSettings(scope);
     return settings != null ? settings.muteFor : 0;
   }
 
@@ -3352,7 +3343,7 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
     if (chat == null)
       return 0;
     if (chat.notificationSettings.useDefaultMuteFor) {
-      TdApi.ScopeNotificationSettings notificationSettings = notificationManager.getScopeNotificationSettings(chat);
+      TdApi.ScopeNotificationSettings notificationSettings = notifications().getScopeNotificationSettings(chat);
       return notificationSettings != null ? notificationSettings.muteFor : 0;
     }
     return chat.notificationSettings.muteFor;
@@ -4724,15 +4715,15 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
   }
 
   public TdApi.ScopeNotificationSettings scopeNotificationSettings (long chatId) {
-    return notificationManager.getScopeNotificationSettings(chatId);
+    return notifications().getScopeNotificationSettings(chatId);
   }
 
   public TdApi.ScopeNotificationSettings scopeNotificationSettings (TdApi.Chat chat) {
-    return notificationManager.getScopeNotificationSettings(chat);
+    return notifications().getScopeNotificationSettings(chat);
   }
 
   public TdApi.ScopeNotificationSettings scopeNotificationSettings (TdApi.NotificationSettingsScope scope) {
-    return notificationManager.getScopeNotificationSettings(scope);
+    return notifications().getScopeNotificationSettings(scope);
   }
 
   public void setChatNotificationSettings (long chatId, TdApi.ChatNotificationSettings settings) {
@@ -5885,6 +5876,7 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
             pingMs = Math.round(((TdApi.Seconds) result).seconds * 1000.0);
             proxy.pingErrorCount = 0;
             Settings.instance().trackSuccessfulConnection(proxyId, timestampMs, pingMs, true);
+            Settings.instance().trackProxyHealth(proxyId, networkType, timestampMs, pingMs);
             if (routeSelector != null) {
               routeSelector.markAsSuccessful(proxyId);
             }
@@ -5897,6 +5889,9 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
             }
             pingMs = Settings.PROXY_TIME_EMPTY;
             proxy.pingError = (TdApi.Error) result;
+            if (!isWaitingForNetwork()) {
+              Settings.instance().trackProxyHealth(proxyId, networkType, currentTimeMillis(), pingMs);
+            }
             break;
           }
           default:
@@ -6767,10 +6762,10 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
   void handleUiMessage (Message msg) {
     switch (msg.what) {
       case MSG_ACTION_UPDATE_CHAT_ACTION:
-        statusManager.onUpdateChatUserAction((TdApi.UpdateChatAction) msg.obj);
+        status().onUpdateChatUserAction((TdApi.UpdateChatAction) msg.obj);
         break;
       case MSG_ACTION_UPDATE_CALL:
-        cache.onUpdateCall((TdApi.UpdateCall) msg.obj);
+        cache().onUpdateCall((TdApi.UpdateCall) msg.obj);
         break;
       case MSG_ACTION_DISPATCH_UNREAD_COUNTER:
         dispatchUnreadCounters((TdApi.ChatList) msg.obj, msg.arg1, msg.arg2 == 1);
@@ -7040,7 +7035,7 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
       this.notificationConsistencyListeners.notifyConditionChanged(true);
     }
     incrementNotificationReferenceCount();
-    notificationManager.releaseTdlibReference(() ->
+    notifications().releaseTdlibReference(() ->
       notificationListeners.notifyConditionChanged(!havePendingNotifications)
     );
   }
@@ -7058,21 +7053,21 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
       receivedActiveNotificationsIgnored = false;
     }
     receivedActiveNotificationsTime = SystemClock.uptimeMillis();
-    notificationManager.onUpdateActiveNotifications(update, this::dispatchNotificationsInitialized);
+    notifications().onUpdateActiveNotifications(update, this::dispatchNotificationsInitialized);
   }
 
   @TdlibThread
   private void onUpdateNotificationGroup (TdApi.UpdateNotificationGroup update) {
     TDLib.Tag.notifications(0, accountId, "Received updateNotificationGroup, groupId: %d, elapsed: %d, ignore: %b", update.notificationGroupId, SystemClock.uptimeMillis() - receivedActiveNotificationsTime, ignoreNotificationUpdates);
     if (!ignoreNotificationUpdates) {
-      notificationManager.onUpdateNotificationGroup(update);
+      notifications().onUpdateNotificationGroup(update);
     }
   }
 
   @TdlibThread
   private void onUpdateNotification (TdApi.UpdateNotification update) {
     if (!ignoreNotificationUpdates) {
-      notificationManager.onUpdateNotification(update);
+      notifications().onUpdateNotification(update);
     }
   }
 
@@ -7112,7 +7107,7 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
 
     listeners.updateNewMessage(update);
 
-    notificationManager.onUpdateNewMessage(update);
+    notifications().onUpdateNewMessage(update);
 
     context.global().notifyUpdateNewMessage(this, update);
 
@@ -7130,12 +7125,12 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
 
     listeners.updateMessageSendSucceeded(update);
 
-    notificationManager.onUpdateMessageSendSucceeded(update);
-    quickAckManager.onMessageSendSucceeded(update.message.chatId, update.oldMessageId);
+    notifications().onUpdateMessageSendSucceeded(update);
+    qack().onMessageSendSucceeded(update.message.chatId, update.oldMessageId);
 
     context.global().notifyUpdateMessageSendSucceeded(this, update);
 
-    cache.addOutputLocationMessage(update.message);
+    cache().addOutputLocationMessage(update.message);
 
     addRemoveSendingMessage(update.message.chatId, update.oldMessageId, false);
   }
@@ -7147,7 +7142,7 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
     }
 
     listeners.updateMessageSendFailed(update);
-    quickAckManager.onMessageSendFailed(update.message.chatId, update.oldMessageId);
+    qack().onMessageSendFailed(update.message.chatId, update.oldMessageId);
 
     context.global().notifyUpdateMessageSendFailed(this, update);
 
@@ -7214,15 +7209,19 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
   @TdlibThread
   private void updateMessageMentionRead (TdApi.UpdateMessageMentionRead update) {
     final boolean counterChanged, availabilityChanged;
+    final TdApi.Chat chat;
+    final TdlibChatList[] chatLists;
     synchronized (dataLock) {
-      final TdApi.Chat chat = chats.get(update.chatId);
+      chat = chats.get(update.chatId);
       if (TdlibUtils.assertChat(update.chatId, chat, update)) {
         return;
       }
       availabilityChanged = (chat.unreadMentionCount > 0) != (update.unreadMentionCount > 0);
       counterChanged = chat.unreadMentionCount != update.unreadMentionCount;
       chat.unreadMentionCount = update.unreadMentionCount;
+      chatLists = availabilityChanged ? chatListsImpl(chat.positions) : null;
     }
+    notifyChatStateChanged(chat, chatLists);
 
     listeners.updateMessageMentionRead(update, counterChanged, availabilityChanged);
   }
@@ -7235,15 +7234,19 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
   @TdlibThread
   private void updateMessageUnreadReactions (TdApi.UpdateMessageUnreadReactions update) {
     final boolean counterChanged, availabilityChanged;
+    final TdApi.Chat chat;
+    final TdlibChatList[] chatLists;
     synchronized (dataLock) {
-      final TdApi.Chat chat = chats.get(update.chatId);
+      chat = chats.get(update.chatId);
       if (TdlibUtils.assertChat(update.chatId, chat, update)) {
         return;
       }
       availabilityChanged = (chat.unreadReactionCount > 0) != (update.unreadReactionCount > 0);
       counterChanged = chat.unreadReactionCount != update.unreadReactionCount;
       chat.unreadReactionCount = update.unreadReactionCount;
+      chatLists = availabilityChanged ? chatListsImpl(chat.positions) : null;
     }
+    notifyChatStateChanged(chat, chatLists);
 
 
     listeners.updateMessageUnreadReactions(update, counterChanged, availabilityChanged);
@@ -7261,7 +7264,7 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
 
     context.global().notifyUpdateMessagesDeleted(this, update);
 
-    cache.deleteOutputMessages(update.chatId, update.messageIds);
+    cache().deleteOutputMessages(update.chatId, update.messageIds);
   }
 
   // Updates: CHATS
@@ -7360,14 +7363,18 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
   @TdlibThread
   private void updateChatUnreadMentionCount (TdApi.UpdateChatUnreadMentionCount update) {
     final boolean availabilityChanged;
+    final TdApi.Chat chat;
+    final TdlibChatList[] chatLists;
     synchronized (dataLock) {
-      final TdApi.Chat chat = chats.get(update.chatId);
+      chat = chats.get(update.chatId);
       if (TdlibUtils.assertChat(update.chatId, chat, update)) {
         return;
       }
       availabilityChanged = (chat.unreadMentionCount > 0) != (update.unreadMentionCount > 0);
       chat.unreadMentionCount = update.unreadMentionCount;
+      chatLists = availabilityChanged ? chatListsImpl(chat.positions) : null;
     }
+    notifyChatStateChanged(chat, chatLists);
     listeners.updateChatUnreadMentionCount(update, availabilityChanged);
   }
 
@@ -7385,6 +7392,9 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
       chat.unreadReactionCount = update.unreadReactionCount;
       chatLists = chatListsImpl(chat.positions);
     }
+    if (availabilityChanged) {
+      notifyChatStateChanged(chat, chatLists);
+    }
     listeners.updateChatUnreadReactionCount(update, availabilityChanged, chat, chatLists);
   }
 
@@ -7394,17 +7404,31 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
       Log.i(Log.TAG_MESSAGES_LOADER, "updateChatTopMessage chatId=%d messageId=%d", update.chatId, update.lastMessage != null ? update.lastMessage.id : 0);
     }
     List<ChatListChange> listChanges;
+    final TdApi.Chat chat;
+    final TdlibChatList[] chatLists;
     synchronized (dataLock) {
-      final TdApi.Chat chat = chats.get(update.chatId);
+      chat = chats.get(update.chatId);
       if (TdlibUtils.assertChat(update.chatId, chat, update)) {
         return;
       }
       chat.lastMessage = update.lastMessage;
       listChanges = setChatPositions(chat, update.positions);
+      chatLists = chatListsImpl(chat.positions);
     }
+    notifyChatStateChanged(chat, chatLists);
     listeners.updateChatLastMessage(update, listChanges);
   }
 
+  @TdlibThread
+  private void notifyChatStateChanged (TdApi.Chat chat, @Nullable TdlibChatList[] chatLists) {
+    // Called outside of dataLock, as chat lists hold their own lock while running filters
+    if (chatLists != null) {
+      for (TdlibChatList chatList : chatLists) {
+        chatList.onChatStateChanged(chat);
+      }
+    }
+  }
+
   public static int CHAT_MARKED_AS_UNREAD = -1;
   public static int CHAT_FAILED = -2;
   public static int CHAT_LOADING = -3;
@@ -7697,13 +7721,17 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
 
   @TdlibThread
   private void updateChatHasScheduledMessages (TdApi.UpdateChatHasScheduledMessages update) {
+    final TdApi.Chat chat;
+    final TdlibChatList[] chatLists;
     synchronized (dataLock) {
-      final TdApi.Chat chat = chats.get(update.chatId);
+      chat = chats.get(update.chatId);
       if (TdlibUtils.assertChat(update.chatId, chat, update)) {
         return;
       }
       chat.hasScheduledMessages = update.hasScheduledMessages;
+      chatLists = chatListsImpl(chat.positions);
     }
+    notifyChatStateChanged(chat, chatLists);
 
     listeners.updateChatHasScheduledMessages(update);
   }
@@ -7993,13 +8021,13 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
     }
 
     listeners.updateNotificationSettings(update);
-    notificationManager.onUpdateNotificationSettings(update, chatId, oldNotificationSettings);
+    notifications().onUpdateNotificationSettings(update, chatId, oldNotificationSettings);
   }
 
   @TdlibThread
   private void updateNotificationSettings (TdApi.UpdateScopeNotificationSettings update) {
     listeners.updateNotificationSettings(update);
-    notificationManager.onUpdateNotificationSettings(update);
+    notifications().onUpdateNotificationSettings(update);
   }
 
   @TdlibThread
@@ -8043,7 +8071,7 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
         }
       }
     }
-    cache.onUpdateSupergroup(update, chat);
+    cache().onUpdateSupergroup(update, chat);
   }
 
   // Updates: SECURITY
@@ -8171,6 +8199,7 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
           connectionLossTime = SystemClock.uptimeMillis();
         }
       }
+      proxyHealth().onConnectionStateChanged(state);
       listeners.updateConnectionState(state, prevState);
       context.onConnectionStateChanged(this, state);
       notifyConnectionDisplayStatusChanged();
@@ -8292,7 +8321,7 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
   private void onUpdateMyUserId (long myUserId) {
     context.onKnownUserIdChanged(accountId, myUserId);
     cache().onUpdateMyUserId(myUserId);
-    notificationManager.onUpdateMyUserId(myUserId);
+    notifications().onUpdateMyUserId(myUserId);
   }
 
   @TdlibThread
@@ -8973,7 +9002,7 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
         break;
       }
       case TdApi.UpdateMessageSendAcknowledged.CONSTRUCTOR: {
-        quickAckManager.onMessageSendAcknowledged((TdApi.UpdateMessageSendAcknowledged) update);
+        qack().onMessageSendAcknowledged((TdApi.UpdateMessageSendAcknowledged) update);
         break;
       }
       case TdApi.UpdateMessageContent.CONSTRUCTOR: {
@@ -9209,26 +9238,26 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
 
       // Users
       case TdApi.UpdateUser.CONSTRUCTOR: {
-        cache.onUpdateUser((TdApi.UpdateUser) update);
+        cache().onUpdateUser((TdApi.UpdateUser) update);
         break;
       }
       case TdApi.UpdateUserFullInfo.CONSTRUCTOR: {
-        cache.onUpdateUserFull((TdApi.UpdateUserFullInfo) update);
+        cache().onUpdateUserFull((TdApi.UpdateUserFullInfo) update);
         break;
       }
       case TdApi.UpdateUserStatus.CONSTRUCTOR: {
-        cache.onUpdateUserStatus((TdApi.UpdateUserStatus) update);
+        cache().onUpdateUserStatus((TdApi.UpdateUserStatus) update);
         break;
       }
 
       // Groups
       case TdApi.UpdateBasicGroup.CONSTRUCTOR: {
-        cache.onUpdateBasicGroup((TdApi.UpdateBasicGroup) update);
+        cache().onUpdateBasicGroup((TdApi.UpdateBasicGroup) update);
         break;
       }
       case TdApi.UpdateBasicGroupFullInfo.CONSTRUCTOR: {
         TdApi.UpdateBasicGroupFullInfo updateBasicGroupFullInfo = (TdApi.UpdateBasicGroupFullInfo) update;
-        cache.onUpdateBasicGroupFull(updateBasicGroupFullInfo);
+        cache().onUpdateBasicGroupFull(updateBasicGroupFullInfo);
         refreshChatState(ChatId.fromBasicGroupId(updateBasicGroupFullInfo.basicGroupId));
         break;
       }
@@ -9240,14 +9269,14 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
       }
       case TdApi.UpdateSupergroupFullInfo.CONSTRUCTOR: {
         TdApi.UpdateSupergroupFullInfo updateSupergroupFullInfo = (TdApi.UpdateSupergroupFullInfo) update;
-        cache.onUpdateSupergroupFull(updateSupergroupFullInfo);
+        cache().onUpdateSupergroupFull(updateSupergroupFullInfo);
         refreshChatState(ChatId.fromSupergroupId(updateSupergroupFullInfo.supergroupId));
         break;
       }
 
       // Secret chat
       case TdApi.UpdateSecretChat.CONSTRUCTOR: {
-        cache.onUpdateSecretChat((TdApi.UpdateSecretChat) update);
+        cache().onUpdateSecretChat((TdApi.UpdateSecretChat) update);
         break;
       }
 
@@ -9390,6 +9419,8 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
         break;
       }
     }
+    // After the update is applied, so batched listeners observe the same state as regular ones
+    listeners.updateBatcher.offer(update);
   }
 
   // Loading user data
@@ -9507,6 +9538,12 @@ public class Tdlib implements TdlibProvider, Settings.SettingsChangeListener {
     }
   }
 
+  private void hibernate () {
+    Log.i(Log.TAG_ACCOUNTS, "Hibernating TDLib instance, accountId:%d", accountId);
+    // Pushes are enough to wake the account up. Periodic sync is registered again once it's ready
+    setNeedPeriodicSync(false);
+  }
+
   private void schedulePeriodicSync () {
     if (!hasPeriodicSync) {
       SyncHelper.register(UI.getContext(), accountId);
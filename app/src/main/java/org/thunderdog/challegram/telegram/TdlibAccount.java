@@ -39,6 +39,7 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import me.vkryl.core.BitwiseUtils;
@@ -101,9 +102,39 @@ public class TdlibAccount implements Comparable<TdlibAccount>, TdlibProvider {
 
   void markAsUsed () {
     lastUsageTime = SystemClock.uptimeMillis();
+    if (this == context.currentAccount()) {
+      markAsOpened();
+    }
     context.increaseModCount(this);
   }
 
+  // Hibernation, see TdlibManager#isHibernated
+
+  private volatile long lastOpenTime = -1;
+
+  /**
+   * @return Last time (in wall clock) this account was opened by user, with precision of an hour
+   */
+  long lastOpenTime () {
+    if (lastOpenTime == -1) {
+      lastOpenTime = Settings.instance().getLong(Settings.accountInfoPrefix(id) + Settings.KEY_ACCOUNT_INFO_SUFFIX_LAST_OPEN, 0);
+      if (lastOpenTime == 0) {
+        // Unknown, e.g. after app update. Start counting from now
+        markAsOpened();
+      }
+    }
+    return lastOpenTime;
+  }
+
+  void markAsOpened () {
+    long now = System.currentTimeMillis();
+    if (lastOpenTime > 0 && Math.abs(now - lastOpenTime) < TimeUnit.HOURS.toMillis(1)) {
+      return;
+    }
+    lastOpenTime = now;
+    Settings.instance().putLong(Settings.accountInfoPrefix(id) + Settings.KEY_ACCOUNT_INFO_SUFFIX_LAST_OPEN, now);
+  }
+
   long lastUsageTime () {
     return this == context.currentAccount() ? Long.MAX_VALUE : lastUsageTime;
   }
@@ -546,6 +577,7 @@ public class TdlibAccount implements Comparable<TdlibAccount>, TdlibProvider {
   private void deleteDisplayInformation () {
     Settings.instance().removeByPrefix(Settings.accountInfoPrefix(id), null);
     displayInformation = null;
+    lastOpenTime = -1;
   }
 
   private boolean hasUserInformation () {
@@ -15,10 +15,6 @@
 package org.thunderdog.challegram.telegram;
 
 import android.os.Build;
-import android.os.Handler;
-import android.os.Looper;
-import android.os.Message;
-import android.os.SystemClock;
 
 import androidx.annotation.AnyThread;
 import androidx.annotation.NonNull;
@@ -50,11 +46,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import me.vkryl.core.ArrayUtils;
-import me.vkryl.core.collection.LongSparseIntArray;
 import me.vkryl.core.lambda.CancellableRunnable;
 import me.vkryl.core.lambda.RunnableData;
 import me.vkryl.core.reference.ReferenceIntMap;
@@ -74,6 +70,17 @@ public class TdlibCache implements LiveLocationManager.OutputDelegate, CleanupSt
     @UiThread
     void onUserStatusChanged (long userId, TdApi.UserStatus status, boolean uiOnly);
     default boolean needUserStatusUiUpdates () { return false; }
+
+    /**
+     * Called on global listeners instead of {@link #onUserStatusChanged} with {@code uiOnly} set,
+     * when "last seen" label of multiple users has to be refreshed at once.
+     */
+    @UiThread
+    default void onUserStatusesRefreshed (long[] userIds, TdApi.UserStatus[] statuses) {
+      for (int i = 0; i < userIds.length; i++) {
+        onUserStatusChanged(userIds[i], statuses[i], true);
+      }
+    }
   }
 
   public interface MyUserDataChangeListener {
@@ -145,8 +152,7 @@ public class TdlibCache implements LiveLocationManager.OutputDelegate, CleanupSt
   private boolean loadingMyUser;
   private final Client.ResultHandler meHandler, dataHandler;
 
-  private final LongSparseIntArray pendingStatusRefresh = new LongSparseIntArray();
-  private final Handler onlineHandler;
+  private final UserStatusRefreshWheel statusRefreshWheel;
 
   private final Client.ResultHandler locationListHandler = object -> {
     switch (object.getConstructor()) {
@@ -163,43 +169,25 @@ public class TdlibCache implements LiveLocationManager.OutputDelegate, CleanupSt
 
   private TdApi.HttpUrl downloadUrl;
 
-  private static class OnlineHandler extends Handler {
-    private final TdlibCache context;
-
-    public OnlineHandler (TdlibCache context) {
-      super(Looper.getMainLooper());
-      this.context = context;
-    }
-
-    @Override
-    public void handleMessage (Message msg) {
-      final long userId = (long) msg.obj;
-      final int wasOnline = msg.arg1;
-      final TdApi.User user = context.user(userId);
-      context.onUserStatusUpdate(userId, wasOnline, user);
-    }
-  }
-
-  @UiThread
-  private void onUserStatusUpdate (long userId, int wasOnline, @Nullable TdApi.User user) {
-    if (user == null) {
-      return;
-    }
-    synchronized (onlineMutex) {
-      if (user.status == null) {
-        return;
-      }
-      if (user.status.getConstructor() != TdApi.UserStatusOffline.CONSTRUCTOR) {
-        return;
-      }
-      if (((TdApi.UserStatusOffline) user.status).wasOnline != wasOnline) {
-        return;
+  private void onUserStatusRefreshDue (long[] userIds, int[] wasOnline, int count) {
+    // Called on wheel thread, once per tick
+    final ArrayList<TdApi.User> refreshedUsers = new ArrayList<>(count);
+    synchronized (dataLock) {
+      for (int i = 0; i < count; i++) {
+        TdApi.User user = users.get(userIds[i]);
+        if (user == null) {
+          continue;
+        }
+        synchronized (onlineMutex) {
+          if (user.status != null && user.status.getConstructor() == TdApi.UserStatusOffline.CONSTRUCTOR && ((TdApi.UserStatusOffline) user.status).wasOnline == wasOnline[i]) {
+            refreshedUsers.add(user);
+            checkUserStatus(user, user.status);
+          }
+        }
       }
-      pendingStatusRefresh.delete(userId);
     }
-    notifyUserStatusChanged(userId, user.status, true);
-    synchronized (onlineMutex) {
-      checkUserStatus(user, user.status, false);
+    if (!refreshedUsers.isEmpty()) {
+      tdlib.ui().post(() -> notifyUserStatusesRefreshed(refreshedUsers));
     }
   }
 
@@ -259,12 +247,16 @@ public class TdlibCache implements LiveLocationManager.OutputDelegate, CleanupSt
       }
     };
 
-    this.onlineHandler = new OnlineHandler(this);
+    this.statusRefreshWheel = new UserStatusRefreshWheel(this::onUserStatusRefreshDue);
 
     tdlib.listeners().addCleanupListener(this);
 
-    UI.addStateListener(this);
     this.refreshUiPaused = UI.getUiState() != UI.STATE_RESUMED;
+    // Cache may be created on any thread on the first use, while state listeners are managed on the UI thread
+    UI.execute(() -> {
+      UI.addStateListener(this);
+      onUiStateChanged(UI.getUiState());
+    });
   }
 
   @Override
@@ -336,7 +328,7 @@ public class TdlibCache implements LiveLocationManager.OutputDelegate, CleanupSt
 
   @Override
   public void onPerformUserCleanup () {
-    onlineHandler.removeCallbacksAndMessages(null);
+    statusRefreshWheel.clear();
     tdlib.client().send(new TdApi.GetActiveLiveLocationMessages(), locationListHandler);
   }
 
@@ -381,22 +373,9 @@ public class TdlibCache implements LiveLocationManager.OutputDelegate, CleanupSt
     boolean refreshActive = refreshNeeded && !refreshUiPaused;
     if (this.refreshActive != refreshActive) {
       this.refreshActive = refreshActive;
-      Log.i("accountId:%d refreshActive -> %b, size:%d", tdlib.id(), refreshActive, pendingStatusRefresh.size());
-      if (!refreshActive) {
-        onlineHandler.removeCallbacksAndMessages(null);
-        return;
-      }
-      long ms = SystemClock.elapsedRealtime();
-      final int size = pendingStatusRefresh.size();
-      for (int i = size - 1; i >= 0; i--) {
-        final long userId = pendingStatusRefresh.keyAt(i);
-        final int wasOnline = pendingStatusRefresh.valueAt(i);
-        final TdApi.User user = users.get(userId);
-        if (user != null) {
-          checkUserStatus(user, user.status, true);
-        }
-      }
-      Log.i("%d iterations in %dms", pendingStatusRefresh.size(), SystemClock.elapsedRealtime() - ms);
+      Log.i("accountId:%d refreshActive -> %b, size:%d", tdlib.id(), refreshActive, statusRefreshWheel.size());
+      // Labels that had to change while refresh was inactive get refreshed right away
+      statusRefreshWheel.setActive(refreshActive);
     }
   }
 
@@ -481,7 +460,7 @@ public class TdlibCache implements LiveLocationManager.OutputDelegate, CleanupSt
       onUpdateUserStatus(new TdApi.UpdateUserStatus(newUser.id, newUser.status));
     } else {
       synchronized (onlineMutex) {
-        checkUserStatus(newUser, newUser.status, false);
+        checkUserStatus(newUser, newUser.status);
       }
     }
 
@@ -512,35 +491,20 @@ public class TdlibCache implements LiveLocationManager.OutputDelegate, CleanupSt
   private final Object onlineMutex = new Object();
 
   @AnyThread
-  private void checkUserStatus (TdApi.User user, TdApi.UserStatus status, boolean force) {
+  private void checkUserStatus (TdApi.User user, TdApi.UserStatus status) {
     if (status.getConstructor() == TdApi.UserStatusOffline.CONSTRUCTOR) {
       int wasOnline = ((TdApi.UserStatusOffline) status).wasOnline;
-      int pendingWasOnline = pendingStatusRefresh.get(user.id);
-      if (pendingWasOnline == wasOnline && !force) {
+      if (statusRefreshWheel.getScheduledWasOnline(user.id) == wasOnline) {
         return;
       }
-      if (pendingWasOnline != 0) {
-        onlineHandler.removeMessages(0, user.id);
-        pendingStatusRefresh.delete(user.id);
-      }
       long nextRefreshInMs = Lang.getNextRelativeDateUpdateMs(wasOnline, TimeUnit.SECONDS, tdlib.currentTimeMillis(), TimeUnit.MILLISECONDS, true, 60);
       if (nextRefreshInMs != -1) {
-        pendingStatusRefresh.put(user.id, wasOnline);
-        if (refreshActive) {
-          Message msg = Message.obtain(onlineHandler, 0, wasOnline, 0, user.id);
-          if (force) {
-            onlineHandler.sendMessage(msg);
-          } else {
-            onlineHandler.sendMessageDelayed(msg, nextRefreshInMs);
-          }
-        }
+        statusRefreshWheel.schedule(user.id, wasOnline, nextRefreshInMs);
+      } else {
+        statusRefreshWheel.cancel(user.id);
       }
     } else {
-      int pendingWasOnline = pendingStatusRefresh.get(user.id);
-      if (pendingWasOnline != 0) {
-        onlineHandler.removeMessages(0, user.id);
-        pendingStatusRefresh.delete(user.id);
-      }
+      statusRefreshWheel.cancel(user.id);
     }
   }
 
@@ -569,7 +533,7 @@ public class TdlibCache implements LiveLocationManager.OutputDelegate, CleanupSt
     }
     notifyUserStatusChanged(update.userId, user.status, uiOnly);
     synchronized (onlineMutex) {
-      checkUserStatus(user, user.status, false);
+      checkUserStatus(user, user.status);
     }
   }
 
@@ -1614,6 +1578,14 @@ public class TdlibCache implements LiveLocationManager.OutputDelegate, CleanupSt
     }
   }
 
+  private static void notifyUserStatusListeners (@Nullable Iterator<UserStatusChangeListener> list, long[] userIds, TdApi.UserStatus[] statuses) {
+    if (list != null) {
+      while (list.hasNext()) {
+        list.next().onUserStatusesRefreshed(userIds, statuses);
+      }
+    }
+  }
+
   private static void notifyListeners (@Nullable Iterator<BasicGroupDataChangeListener> list, TdApi.BasicGroup group, boolean migratedToSupergroup) {
     if (list != null) {
       while (list.hasNext()) {
@@ -1772,6 +1744,25 @@ public class TdlibCache implements LiveLocationManager.OutputDelegate, CleanupSt
     notifyListeners(userListeners.iterator(userId), userId, userFull);
   }
 
+  @UiThread
+  private void notifyUserStatusesRefreshed (List<TdApi.User> refreshedUsers) {
+    final long[] userIds = new long[refreshedUsers.size()];
+    final TdApi.UserStatus[] statuses = new TdApi.UserStatus[userIds.length];
+    synchronized (onlineMutex) {
+      for (int i = 0; i < userIds.length; i++) {
+        TdApi.User user = refreshedUsers.get(i);
+        userIds[i] = user.id;
+        statuses[i] = user.status;
+      }
+    }
+    for (int i = 0; i < userIds.length; i++) {
+      notifyUserStatusListeners(statusListeners.iterator(userIds[i]), userIds[i], statuses[i], true);
+      notifyUserStatusListeners(simpleStatusListeners.iterator(userIds[i]), userIds[i], statuses[i], true);
+    }
+    notifyUserStatusListeners(statusListeners.iterator(0L), userIds, statuses);
+    notifyUserStatusListeners(simpleStatusListeners.iterator(0L), userIds, statuses);
+  }
+
   private void notifyUserStatusChanged (long userId, TdApi.UserStatus status, boolean uiOnly) {
     notifyUserStatusListeners(statusListeners.iterator(0L), userId, status, uiOnly);
     notifyUserStatusListeners(statusListeners.iterator(userId), userId, status, uiOnly);
@@ -23,7 +23,6 @@ import org.thunderdog.challegram.data.TD;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
@@ -39,6 +38,8 @@ public class TdlibChatList implements Comparator<TdlibChatList.Entry>, CounterCh
     public final TdApi.ChatList chatList;
     public TdApi.ChatPosition effectivePosition;
 
+    private int stateFlags;
+
     public Entry (TdApi.Chat chat, TdApi.ChatList chatList, TdApi.ChatPosition position) {
       this.chat = chat;
       this.chatList = chatList;
@@ -76,7 +77,15 @@ public class TdlibChatList implements Comparator<TdlibChatList.Entry>, CounterCh
 
   private final Tdlib tdlib;
   private final TdApi.ChatList chatList;
-  private final ArrayList<Entry> list = new ArrayList<>();
+  private static final int FLAG_UNREAD_MENTIONS = 1;
+  private static final int FLAG_UNREAD_REACTIONS = 1 << 1;
+  private static final int FLAG_SCHEDULED_MESSAGES = 1 << 2;
+  private static final int FLAG_FAILED_MESSAGES = 1 << 3;
+  private static final int FLAG_COUNT = 4;
+
+  private final TdlibChatListIndex list = new TdlibChatListIndex();
+  // Number of chats in the list, which have corresponding state flag
+  private final int[] stateCounters = new int[FLAG_COUNT];
   private final List<Runnable> onLoadMore = new ArrayList<>();
   private final List<RunnableData<TdApi.Chat>> perChatCallbacks = new ArrayList<>();
 
@@ -120,18 +129,28 @@ public class TdlibChatList implements Comparator<TdlibChatList.Entry>, CounterCh
   }
 
   public boolean isEmpty (@Nullable Filter<TdApi.Chat> filter) {
-    return count(filter) == 0;
+    return count(filter, 1) == 0;
   }
 
   public int count (@Nullable Filter<TdApi.Chat> filter) {
+    return count(filter, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Filters are arbitrary predicates, so they can't be indexed,
+   * but scan stops as soon as the caller knows enough.
+   *
+   * @return amount of chats accepted by the filter, but no more than {@code limit}
+   */
+  private int count (@Nullable Filter<TdApi.Chat> filter, int limit) {
     synchronized (list) {
       if (filter == null) {
-        return list.size();
+        return Math.min(list.size(), limit);
       }
       int count = 0;
       for (Entry entry : list) {
-        if (filter.accept(entry.chat)) {
-          count++;
+        if (filter.accept(entry.chat) && ++count >= limit) {
+          break;
         }
       }
       return count;
@@ -154,44 +173,26 @@ public class TdlibChatList implements Comparator<TdlibChatList.Entry>, CounterCh
     return copy;
   }
 
-  public boolean hasUnreadMentions () {
+  private boolean hasState (int flag) {
     synchronized (list) {
-      for (Entry entry : list) {
-        if (entry.chat.unreadMentionCount > 0)
-          return true;
-      }
-      return false;
+      return stateCounters[Integer.numberOfTrailingZeros(flag)] > 0;
     }
   }
 
+  public boolean hasUnreadMentions () {
+    return hasState(FLAG_UNREAD_MENTIONS);
+  }
+
   public boolean hasUnreadReactions () {
-    synchronized (list) {
-      for (Entry entry : list) {
-        if (entry.chat.unreadReactionCount > 0)
-          return true;
-      }
-      return false;
-    }
+    return hasState(FLAG_UNREAD_REACTIONS);
   }
 
   public boolean hasScheduledMessages () {
-    synchronized (list) {
-      for (Entry entry : list) {
-        if (entry.chat.hasScheduledMessages)
-          return true;
-      }
-      return false;
-    }
+    return hasState(FLAG_SCHEDULED_MESSAGES);
   }
 
   public boolean hasFailedMessages () {
-    synchronized (list) {
-      for (Entry entry : list) {
-        if (TD.isFailed(entry.chat.lastMessage))
-          return true;
-      }
-      return false;
-    }
+    return hasState(FLAG_FAILED_MESSAGES);
   }
 
   public int maxDate () {
@@ -252,7 +253,8 @@ public class TdlibChatList implements Comparator<TdlibChatList.Entry>, CounterCh
     Runnable act = new Runnable() {
       @Override
       public void run () {
-        int count = count(filter);
+        // Exact, unless there are enough chats already
+        int count = count(filter, minCount);
         if (isEndReached() || count >= minCount) {
           if (after != null) {
             after.run();
@@ -332,15 +334,27 @@ public class TdlibChatList implements Comparator<TdlibChatList.Entry>, CounterCh
     return o1.compareTo(o2);
   }
 
-  private int indexOfEntry (long chatId) {
-    int index = 0;
-    for (Entry entry : list) {
-      if (entry.chat.id == chatId) {
-        return index;
-      }
-      index++;
+  private static int stateFlags (TdApi.Chat chat) {
+    int flags = 0;
+    if (chat.unreadMentionCount > 0)
+      flags |= FLAG_UNREAD_MENTIONS;
+    if (chat.unreadReactionCount > 0)
+      flags |= FLAG_UNREAD_REACTIONS;
+    if (chat.hasScheduledMessages)
+      flags |= FLAG_SCHEDULED_MESSAGES;
+    if (TD.isFailed(chat.lastMessage))
+      flags |= FLAG_FAILED_MESSAGES;
+    return flags;
+  }
+
+  private void applyStateFlags (Entry entry, int newFlags) {
+    int changedFlags = entry.stateFlags ^ newFlags;
+    while (changedFlags != 0) {
+      int flag = Integer.lowestOneBit(changedFlags);
+      stateCounters[Integer.numberOfTrailingZeros(flag)] += (newFlags & flag) != 0 ? 1 : -1;
+      changedFlags &= ~flag;
     }
-    return -1;
+    entry.stateFlags = newFlags;
   }
 
   // Updates handling
@@ -358,32 +372,33 @@ public class TdlibChatList implements Comparator<TdlibChatList.Entry>, CounterCh
   @TdlibThread
   void onUpdateChatPosition (TdApi.Chat chat, Tdlib.ChatChange changeInfo) {
     TdApi.ChatPosition position = changeInfo.position;
-    int prevIndex = indexOfEntry(chat.id);
-    if (prevIndex == -1) {
+    final Entry existingEntry = list.find(chat.id);
+    if (existingEntry == null) {
       if (position.order != 0) {
         addChatToList(new Entry(chat, chatList(), position), changeInfo);
       }
     } else if (position.order == 0) {
-      removeChatFromList(prevIndex, changeInfo);
+      removeChatFromList(chat.id, changeInfo);
     } else {
-      final Entry existingEntry;
+      final int prevIndex;
       if (changeInfo.orderChanged()) {
         int newIndex;
         synchronized (list) {
-          existingEntry = list.remove(prevIndex);
+          prevIndex = list.remove(chat.id);
           Td.copyTo(position, existingEntry.effectivePosition);
-          newIndex = Collections.binarySearch(this.list, existingEntry, this);
-          if (newIndex >= 0)
-            throw new IllegalStateException();
-          newIndex = newIndex * -1 - 1;
-          list.add(newIndex, existingEntry);
+          newIndex = list.insert(existingEntry);
+          // Last message is usually the reason of the move
+          applyStateFlags(existingEntry, stateFlags(chat));
         }
         if (newIndex != prevIndex) {
           tdlib.listeners().updateChatMoved(this, existingEntry.chat, prevIndex, newIndex, changeInfo);
           return;
         }
       } else {
-        existingEntry = list.get(prevIndex);
+        synchronized (list) {
+          prevIndex = list.indexOf(chat.id);
+          applyStateFlags(existingEntry, stateFlags(chat));
+        }
       }
       if (changeInfo.metadataChanged()) {
         tdlib.listeners().updateChatChanged(this, existingEntry.chat, prevIndex, changeInfo);
@@ -391,15 +406,28 @@ public class TdlibChatList implements Comparator<TdlibChatList.Entry>, CounterCh
     }
   }
 
+  /**
+   * Called when any of the chat fields that are aggregated by the list has changed
+   * without affecting chat position: unread mentions or reactions, scheduled messages
+   * or the state of the last message.
+   */
+  @TdlibThread
+  void onChatStateChanged (TdApi.Chat chat) {
+    synchronized (list) {
+      Entry entry = list.find(chat.id);
+      if (entry != null) {
+        applyStateFlags(entry, stateFlags(chat));
+      }
+    }
+  }
+
   // Internal
 
   private void addChatToList (Entry entry, Tdlib.ChatChange changeInfo) {
-    int atIndex = Collections.binarySearch(this.list, entry, this);
-    if (atIndex >= 0)
-      throw new IllegalStateException();
-    atIndex = atIndex * -1 - 1;
+    int atIndex;
     synchronized (list) {
-      list.add(atIndex, entry);
+      atIndex = list.insert(entry);
+      applyStateFlags(entry, stateFlags(entry.chat));
     }
     for (RunnableData<TdApi.Chat> perChatCallback : perChatCallbacks) {
       perChatCallback.runWithData(entry.chat);
@@ -407,10 +435,13 @@ public class TdlibChatList implements Comparator<TdlibChatList.Entry>, CounterCh
     tdlib.listeners().updateChatAdded(this, entry.chat, atIndex, changeInfo);
   }
 
-  private void removeChatFromList (int fromIndex, Tdlib.ChatChange changeInfo) {
+  private void removeChatFromList (long chatId, Tdlib.ChatChange changeInfo) {
     Entry entry;
+    int fromIndex;
     synchronized (list) {
-      entry = list.remove(fromIndex);
+      entry = list.find(chatId);
+      fromIndex = list.remove(chatId);
+      applyStateFlags(entry, 0);
     }
     tdlib.listeners().updateChatRemoved(this, entry.chat, fromIndex, changeInfo);
   }
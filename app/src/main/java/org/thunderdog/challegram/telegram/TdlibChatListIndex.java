@@ -0,0 +1,277 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.telegram;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Sorted storage of {@link TdlibChatList.Entry} with chat identifier lookup.
+ *
+ * Entries are kept in a treap augmented with subtree sizes, so lookup by chat identifier is O(1),
+ * and position of an entry, access by position, insertion and removal are O(log n) expected.
+ *
+ * Entry's {@link TdlibChatList.Entry#effectivePosition} must not be changed while it is in the index:
+ * remove it first, change its position and then insert it back.
+ */
+final class TdlibChatListIndex implements Iterable<TdlibChatList.Entry> {
+  private static final class Node {
+    final TdlibChatList.Entry entry;
+    final int priority;
+    Node left, right;
+    int size = 1;
+
+    Node (TdlibChatList.Entry entry, int priority) {
+      this.entry = entry;
+      this.priority = priority;
+    }
+  }
+
+  private final HashMap<Long, Node> nodes = new HashMap<>();
+  private Node root;
+  private int seed = 0x2545f491;
+  private int modCount;
+
+  private static int sizeOf (@Nullable Node node) {
+    return node != null ? node.size : 0;
+  }
+
+  private static void updateSize (Node node) {
+    node.size = 1 + sizeOf(node.left) + sizeOf(node.right);
+  }
+
+  private int nextPriority () {
+    // xorshift32, distribution quality is irrelevant here
+    int x = seed;
+    x ^= x << 13;
+    x ^= x >>> 17;
+    x ^= x << 5;
+    return seed = x;
+  }
+
+  // Queries
+
+  public int size () {
+    return sizeOf(root);
+  }
+
+  public boolean isEmpty () {
+    return root == null;
+  }
+
+  @Nullable
+  public TdlibChatList.Entry find (long chatId) {
+    Node node = nodes.get(chatId);
+    return node != null ? node.entry : null;
+  }
+
+  /**
+   * @return position of the chat in the list, or -1, if it's not present
+   */
+  public int indexOf (long chatId) {
+    Node node = nodes.get(chatId);
+    return node != null ? indexOf(node.entry) : -1;
+  }
+
+  private int indexOf (TdlibChatList.Entry entry) {
+    int index = 0;
+    Node node = root;
+    while (node != null) {
+      int cmp = entry.compareTo(node.entry);
+      if (cmp == 0) {
+        return index + sizeOf(node.left);
+      }
+      if (cmp < 0) {
+        node = node.left;
+      } else {
+        index += sizeOf(node.left) + 1;
+        node = node.right;
+      }
+    }
+    throw new IllegalStateException();
+  }
+
+  @NonNull
+  public TdlibChatList.Entry get (int index) {
+    if (index < 0 || index >= size())
+      throw new IndexOutOfBoundsException(index + " >= " + size());
+    Node node = root;
+    while (true) {
+      int leftSize = sizeOf(node.left);
+      if (index == leftSize) {
+        return node.entry;
+      }
+      if (index < leftSize) {
+        node = node.left;
+      } else {
+        index -= leftSize + 1;
+        node = node.right;
+      }
+    }
+  }
+
+  // Modifications
+
+  /**
+   * @return position at which entry was inserted
+   */
+  public int insert (@NonNull TdlibChatList.Entry entry) {
+    Node node = new Node(entry, nextPriority());
+    if (nodes.put(entry.chat.id, node) != null)
+      throw new IllegalStateException("Chat is already in the list: " + entry.chat.id);
+    root = insert(root, node);
+    modCount++;
+    return indexOf(entry);
+  }
+
+  private static Node insert (@Nullable Node parent, Node node) {
+    if (parent == null) {
+      return node;
+    }
+    int cmp = node.entry.compareTo(parent.entry);
+    if (cmp == 0)
+      throw new IllegalStateException();
+    if (cmp < 0) {
+      parent.left = insert(parent.left, node);
+      if (parent.left.priority > parent.priority) {
+        parent = rotateRight(parent);
+      }
+    } else {
+      parent.right = insert(parent.right, node);
+      if (parent.right.priority > parent.priority) {
+        parent = rotateLeft(parent);
+      }
+    }
+    updateSize(parent);
+    return parent;
+  }
+
+  /**
+   * @return former position of the removed entry, or -1, if chat is not present
+   */
+  public int remove (long chatId) {
+    Node node = nodes.remove(chatId);
+    if (node == null) {
+      return -1;
+    }
+    int index = indexOf(node.entry);
+    root = remove(root, node.entry);
+    modCount++;
+    return index;
+  }
+
+  private static Node remove (@Nullable Node parent, TdlibChatList.Entry entry) {
+    if (parent == null)
+      throw new IllegalStateException();
+    int cmp = entry.compareTo(parent.entry);
+    if (cmp < 0) {
+      parent.left = remove(parent.left, entry);
+    } else if (cmp > 0) {
+      parent.right = remove(parent.right, entry);
+    } else {
+      return merge(parent.left, parent.right);
+    }
+    updateSize(parent);
+    return parent;
+  }
+
+  private static Node merge (@Nullable Node left, @Nullable Node right) {
+    if (left == null)
+      return right;
+    if (right == null)
+      return left;
+    if (left.priority > right.priority) {
+      left.right = merge(left.right, right);
+      updateSize(left);
+      return left;
+    } else {
+      right.left = merge(left, right.left);
+      updateSize(right);
+      return right;
+    }
+  }
+
+  private static Node rotateRight (Node node) {
+    Node left = node.left;
+    node.left = left.right;
+    left.right = node;
+    updateSize(node);
+    updateSize(left);
+    return left;
+  }
+
+  private static Node rotateLeft (Node node) {
+    Node right = node.right;
+    node.right = right.left;
+    right.left = node;
+    updateSize(node);
+    updateSize(right);
+    return right;
+  }
+
+  public void clear () {
+    nodes.clear();
+    root = null;
+    modCount++;
+  }
+
+  // Iteration
+
+  /**
+   * Iterator is fail-fast: it throws {@link ConcurrentModificationException},
+   * if the index is modified after it was created.
+   */
+  @NonNull
+  @Override
+  public Iterator<TdlibChatList.Entry> iterator () {
+    return new Iterator<TdlibChatList.Entry>() {
+      private final ArrayDeque<Node> stack = new ArrayDeque<>();
+      private final int expectedModCount = modCount;
+
+      {
+        pushLeft(root);
+      }
+
+      private void pushLeft (Node node) {
+        while (node != null) {
+          stack.push(node);
+          node = node.left;
+        }
+      }
+
+      @Override
+      public boolean hasNext () {
+        return !stack.isEmpty();
+      }
+
+      @Override
+      public TdlibChatList.Entry next () {
+        if (modCount != expectedModCount)
+          throw new ConcurrentModificationException();
+        if (stack.isEmpty())
+          throw new NoSuchElementException();
+        Node node = stack.pop();
+        pushLeft(node.right);
+        return node.entry;
+      }
+    };
+  }
+}
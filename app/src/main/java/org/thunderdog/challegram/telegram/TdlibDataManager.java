@@ -19,11 +19,24 @@ import androidx.annotation.Nullable;
 import androidx.annotation.UiThread;
 
 import org.drinkless.tdlib.TdApi;
+import org.thunderdog.challegram.Log;
+import org.thunderdog.challegram.core.Background;
+import org.thunderdog.challegram.tool.UI;
 import org.thunderdog.challegram.util.BatchOperationHandler;
+import org.thunderdog.challegram.util.LongLruCache;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -34,12 +47,21 @@ import me.vkryl.core.lambda.RunnableData;
 import me.vkryl.core.reference.ReferenceList;
 import me.vkryl.core.reference.ReferenceMap;
 
-abstract class TdlibDataManager<Key, Value extends TdApi.Object, Result extends TdlibDataManager.AbstractEntry<Key, Value>> implements CleanupStartupDelegate {
+/**
+ * Loads data by key and keeps results in memory, up to the number of entries specified by {@link EntryCache}.
+ *
+ * When {@link #snapshotLimit} is positive, most recently used entries are also written to disk when app goes to background,
+ * and are restored in background once the manager gets created, so they can be displayed before the actual data gets loaded.
+ * Restored entries get refreshed the first time they get requested, see {@link AbstractEntry#isRestored()}.
+ */
+abstract class TdlibDataManager<Key, Value extends TdApi.Object, Result extends TdlibDataManager.AbstractEntry<Key, Value>> implements CleanupStartupDelegate, UI.StateListener {
   protected static abstract class AbstractEntry<K, V extends TdApi.Object> {
     public final K key;
     public final @Nullable V value;
     public final @Nullable TdApi.Error error;
 
+    boolean isRestored;
+
     public AbstractEntry (@NonNull K key, @Nullable V value, @Nullable TdApi.Error error) {
       this.key = key;
       this.value = value;
@@ -47,6 +69,88 @@ abstract class TdlibDataManager<Key, Value extends TdApi.Object, Result extends
       if (error == null && value == null)
         throw new IllegalStateException();
     }
+
+    /**
+     * @return True, if entry was restored from disk snapshot and wasn't refreshed yet
+     */
+    public final boolean isRestored () {
+      return isRestored;
+    }
+  }
+
+  protected interface EntryCache<Key, Result> {
+    @Nullable Result get (Key key);
+    void put (Key key, Result entry);
+    void clear ();
+    List<Result> recentEntries (int limit);
+  }
+
+  /**
+   * @return Cache, which keeps up to {@code maxSize} most recently used entries
+   */
+  protected static <Key, Result> EntryCache<Key, Result> newEntryCache (int maxSize) {
+    final LinkedHashMap<Key, Result> map = new LinkedHashMap<Key, Result>(16, .75f, true) {
+      @Override
+      protected boolean removeEldestEntry (Map.Entry<Key, Result> eldest) {
+        return size() > maxSize;
+      }
+    };
+    return new EntryCache<Key, Result>() {
+      @Override
+      public Result get (Key key) {
+        return map.get(key);
+      }
+
+      @Override
+      public void put (Key key, Result entry) {
+        map.put(key, entry);
+      }
+
+      @Override
+      public void clear () {
+        map.clear();
+      }
+
+      @Override
+      public List<Result> recentEntries (int limit) {
+        List<Result> entries = new ArrayList<>(map.values());
+        // LinkedHashMap iterates from the least recently used entry
+        List<Result> result = new ArrayList<>(Math.min(limit, entries.size()));
+        for (int i = entries.size() - 1; i >= 0 && result.size() < limit; i--) {
+          result.add(entries.get(i));
+        }
+        return result;
+      }
+    };
+  }
+
+  /**
+   * Same as {@link #newEntryCache(int)}, but doesn't box keys when storing entries.
+   * Keys are still boxed by callers of {@link EntryCache} and by request bookkeeping.
+   */
+  protected static <Result> EntryCache<Long, Result> newLongEntryCache (int maxSize) {
+    final LongLruCache<Result> cache = new LongLruCache<>(maxSize);
+    return new EntryCache<Long, Result>() {
+      @Override
+      public Result get (Long key) {
+        return cache.get(key);
+      }
+
+      @Override
+      public void put (Long key, Result entry) {
+        cache.put(key, entry);
+      }
+
+      @Override
+      public void clear () {
+        cache.clear();
+      }
+
+      @Override
+      public List<Result> recentEntries (int limit) {
+        return cache.recentValues(limit);
+      }
+    };
   }
 
   protected interface Watcher<Key, Value extends TdApi.Object, Result extends TdlibDataManager.AbstractEntry<Key, Value>> {
@@ -55,19 +159,39 @@ abstract class TdlibDataManager<Key, Value extends TdApi.Object, Result extends
 
   protected abstract Result newEntry (@NonNull Key key, @Nullable Value value, @Nullable TdApi.Error error);
 
+  private static final int SNAPSHOT_VERSION = 1;
+
   protected final Tdlib tdlib;
+  private final int snapshotLimit;
 
   private final Object dataLock = new Object();
-  private final Map<Key, Result> entries = new HashMap<>();
+  private final EntryCache<Key, Result> entries;
   private final Set<Key> postponedKeys = new HashSet<>();
   private final Set<Key> loadingKeys = new HashSet<>();
   private final ReferenceMap<Key, Watcher<Key, Value, Result>> watcherReferences = new ReferenceMap<>(true);
   private final Map<Key, List<Watcher<Key, Value, Result>>> watchers = new LinkedHashMap<>();
 
   private int contextId;
+  private boolean snapshotChanged, snapshotRestored;
 
-  protected TdlibDataManager (Tdlib tdlib) {
+  protected TdlibDataManager (Tdlib tdlib, EntryCache<Key, Result> entries) {
+    this(tdlib, entries, 0);
+  }
+
+  /**
+   * @param snapshotLimit Maximum number of entries written to disk, see {@link #writeSnapshotEntry} and {@link #readSnapshotEntry}.
+   */
+  protected TdlibDataManager (Tdlib tdlib, EntryCache<Key, Result> entries, int snapshotLimit) {
     this.tdlib = tdlib;
+    this.entries = entries;
+    this.snapshotLimit = snapshotLimit;
+    if (snapshotLimit > 0) {
+      // Manager may be created on the UI thread on the first use, so disk is never read in place
+      final int contextId = this.contextId;
+      Background.instance().post(() -> restoreSnapshot(contextId));
+      // State listeners are not thread-safe
+      UI.execute(() -> UI.addStateListener(this));
+    }
     tdlib.listeners().addCleanupListener(this);
   }
 
@@ -76,12 +200,139 @@ abstract class TdlibDataManager<Key, Value extends TdApi.Object, Result extends
   @Override
   public final void onPerformRestart () {
     synchronized (dataLock) {
+      saveSnapshot();
       contextId++;
       entries.clear();
       // TODO cancel all pending requests
     }
   }
 
+  @Override
+  public final void onPerformUserCleanup () {
+    if (snapshotLimit > 0) {
+      synchronized (dataLock) {
+        contextId++;
+        entries.clear();
+        snapshotChanged = false;
+      }
+      Background.instance().post(() -> {
+        File file = snapshotFile();
+        if (file.exists() && !file.delete()) {
+          Log.w("Cannot delete %s", file.getName());
+        }
+      });
+    }
+  }
+
+  @Override
+  public final void onUiStateChanged (int newState) {
+    if (newState != UI.STATE_RESUMED) {
+      synchronized (dataLock) {
+        saveSnapshot();
+      }
+    }
+  }
+
+  // Snapshot
+
+  protected boolean writeSnapshotEntry (DataOutputStream out, Result entry) throws IOException {
+    return false;
+  }
+
+  @Nullable
+  protected Result readSnapshotEntry (DataInputStream in) throws IOException {
+    return null;
+  }
+
+  private File snapshotFile () {
+    return new File(TdlibManager.getTdlibDirectory(tdlib.id(), false), "cache_" + getClass().getSimpleName() + ".bin");
+  }
+
+  private void restoreSnapshot (int contextId) {
+    List<Result> restoredEntries = null;
+    File file = snapshotFile();
+    if (file.exists()) {
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+        if (in.readInt() == SNAPSHOT_VERSION) {
+          int count = in.readInt();
+          restoredEntries = new ArrayList<>(count);
+          for (int i = 0; i < count; i++) {
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            Result entry;
+            try {
+              entry = readSnapshotEntry(new DataInputStream(new ByteArrayInputStream(data)));
+            } catch (Throwable t) {
+              Log.w("Cannot restore %s entry", t, getClass().getSimpleName());
+              entry = null;
+            }
+            if (entry != null) {
+              entry.isRestored = true;
+              restoredEntries.add(entry);
+            }
+          }
+        }
+      } catch (IOException e) {
+        Log.w("Cannot restore %s", e, file.getName());
+      }
+    }
+    synchronized (dataLock) {
+      snapshotRestored = true;
+      if (restoredEntries == null || this.contextId != contextId) {
+        return;
+      }
+      // Snapshot starts with the most recently used entry
+      for (int i = restoredEntries.size() - 1; i >= 0; i--) {
+        Result entry = restoredEntries.get(i);
+        if (entries.get(entry.key) == null) {
+          // Entries loaded while snapshot was being read are newer
+          entries.put(entry.key, entry);
+        }
+      }
+    }
+  }
+
+  private void saveSnapshot () {
+    if (snapshotLimit <= 0 || !snapshotChanged || !snapshotRestored) {
+      // Saving before restore completes would drop entries of the previous snapshot
+      return;
+    }
+    snapshotChanged = false;
+    final List<Result> recentEntries = entries.recentEntries(snapshotLimit);
+    Background.instance().post(() -> {
+      File file = snapshotFile();
+      File tempFile = new File(file.getPath() + ".tmp");
+      try {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream entryOut = new DataOutputStream(buffer);
+        List<byte[]> data = new ArrayList<>(recentEntries.size());
+        for (Result entry : recentEntries) {
+          buffer.reset();
+          if (writeSnapshotEntry(entryOut, entry)) {
+            entryOut.flush();
+            data.add(buffer.toByteArray());
+          }
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+          out.writeInt(SNAPSHOT_VERSION);
+          out.writeInt(data.size());
+          for (byte[] entryData : data) {
+            out.writeInt(entryData.length);
+            out.write(entryData);
+          }
+        }
+        if (!tempFile.renameTo(file)) {
+          throw new IOException("Cannot rename " + tempFile.getName());
+        }
+      } catch (IOException e) {
+        Log.w("Cannot save %s", e, file.getName());
+        if (tempFile.exists()) {
+          tempFile.delete();
+        }
+      }
+    });
+  }
+
   // Impl
 
   @UiThread
@@ -101,13 +352,10 @@ abstract class TdlibDataManager<Key, Value extends TdApi.Object, Result extends
       watcher = null;
     }
     Result entry = findOrPostponeRequest(key, watcher, true);
-    if (entry != null) {
-      if (callback != null) {
-        callback.runWithData(entry);
-      }
-    } else {
-      performPostponedRequest(key);
+    if (entry != null && callback != null) {
+      callback.runWithData(entry);
     }
+    performPostponedRequest(key);
     return entry;
   }
 
@@ -121,6 +369,10 @@ abstract class TdlibDataManager<Key, Value extends TdApi.Object, Result extends
     synchronized (dataLock) {
       Result entry = entries.get(key);
       if (entry != null) {
+        if (entry.isRestored && !loadingKeys.contains(key)) {
+          // Display restored entry right away, but refresh it with the actual data
+          postponedKeys.add(key);
+        }
         return entry;
       }
       if (!loadingKeys.contains(key)) {
@@ -217,7 +469,14 @@ abstract class TdlibDataManager<Key, Value extends TdApi.Object, Result extends
     synchronized (dataLock) {
       if (this.contextId != contextId)
         return;
-      entries.put(entry.key, entry);
+      Result existingEntry = entries.get(entry.key);
+      if (existingEntry != null && existingEntry.isRestored && entry.error != null && entry.error.code != 404) {
+        // Failed to refresh restored entry, keep using it
+        entry = existingEntry;
+      } else {
+        entries.put(entry.key, entry);
+        snapshotChanged = true;
+      }
       watcherList = watchers.remove(entry.key);
     }
     ReferenceList<Watcher<Key, Value, Result>> referenceList = watcherReferences.removeAll(entry.key);
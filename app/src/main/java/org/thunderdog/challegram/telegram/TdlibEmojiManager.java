@@ -20,6 +20,9 @@ import androidx.annotation.Nullable;
 import org.drinkless.tdlib.TdApi;
 import org.thunderdog.challegram.Log;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Collection;
 
 import me.vkryl.core.collection.LongSet;
@@ -57,8 +60,62 @@ public final class TdlibEmojiManager extends TdlibDataManager<Long, TdApi.Sticke
     }
   }
 
+  private static final int MAX_CACHED_COUNT = 1000;
+  // Enough to display custom emoji in chat list previews and recently used emoji right after launch
+  private static final int MAX_SNAPSHOT_COUNT = 200;
+
   public TdlibEmojiManager (Tdlib tdlib) {
-    super(tdlib);
+    super(tdlib, newLongEntryCache(MAX_CACHED_COUNT), MAX_SNAPSHOT_COUNT);
+  }
+
+  // Snapshot
+
+  @Override
+  protected boolean writeSnapshotEntry (DataOutputStream out, Entry entry) throws IOException {
+    TdApi.Sticker sticker = entry.value;
+    if (sticker == null) {
+      return false;
+    }
+    // Only emoji that can be displayed without loading anything
+    byte[] fileData = DisplayInformation.EmojiStatusCache.serializeStickerFile(entry.customEmojiId, sticker.sticker);
+    if (fileData == null) {
+      return false;
+    }
+    byte[] metadata = DisplayInformation.EmojiStatusCache.serializeStickerMetadata(sticker);
+    byte[] thumbnailData = DisplayInformation.EmojiStatusCache.serializeThumbnail(entry.customEmojiId, sticker.thumbnail);
+    out.writeLong(entry.customEmojiId);
+    writeByteArray(out, metadata);
+    writeByteArray(out, fileData);
+    writeByteArray(out, thumbnailData);
+    return true;
+  }
+
+  @Override
+  protected Entry readSnapshotEntry (DataInputStream in) throws IOException {
+    long customEmojiId = in.readLong();
+    byte[] metadata = readByteArray(in);
+    byte[] fileData = readByteArray(in);
+    byte[] thumbnailData = readByteArray(in);
+    DisplayInformation.EmojiStatusCache cache = DisplayInformation.EmojiStatusCache.deserialize(customEmojiId, metadata, fileData, thumbnailData);
+    if (cache == null || cache.sticker.sticker == null) {
+      return null;
+    }
+    return new Entry(customEmojiId, cache.sticker, null);
+  }
+
+  private static void writeByteArray (DataOutputStream out, byte[] data) throws IOException {
+    if (data != null) {
+      out.writeInt(data.length);
+      out.write(data);
+    } else {
+      out.writeInt(0);
+    }
+  }
+
+  private static byte[] readByteArray (DataInputStream in) throws IOException {
+    byte[] data = new byte[in.readInt()];
+    in.readFully(data);
+    return data;
   }
 
   @Override
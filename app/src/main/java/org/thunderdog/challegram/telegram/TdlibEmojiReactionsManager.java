@@ -30,8 +30,10 @@ public final class TdlibEmojiReactionsManager extends TdlibDataManager<String, T
 
   public interface Watcher extends TdlibDataManager.Watcher<String, TdApi.EmojiReaction, TdlibEmojiReactionsManager.Entry> { }
 
+  private static final int MAX_CACHED_COUNT = 200;
+
   public TdlibEmojiReactionsManager (Tdlib tdlib) {
-    super(tdlib);
+    super(tdlib, newEntryCache(MAX_CACHED_COUNT));
   }
 
   @Override
@@ -73,6 +73,8 @@ public class TdlibListeners {
 
   final Map<String, List<TdApi.Message>> pendingMessages = new HashMap<>();
 
+  final TdlibUpdateBatcher updateBatcher = new TdlibUpdateBatcher();
+
   public TdlibListeners (Tdlib tdlib) {
     this.tdlib = tdlib;
 
@@ -129,6 +131,11 @@ public class TdlibListeners {
     }
   }
 
+  @AnyThread
+  public TdlibUpdateBatcher updateBatcher () {
+    return updateBatcher;
+  }
+
   @AnyThread
   public void subscribeForAnyUpdates (Object any) {
     synchronized (this) {
@@ -180,6 +187,9 @@ public class TdlibListeners {
       if (any instanceof SessionListener) {
         sessionListeners.add((SessionListener) any);
       }
+      if (any instanceof BatchedUpdatesListener) {
+        updateBatcher.addListener((BatchedUpdatesListener) any);
+      }
     }
   }
 
@@ -234,6 +244,9 @@ public class TdlibListeners {
       if (any instanceof SessionListener) {
         sessionListeners.remove((SessionListener) any);
       }
+      if (any instanceof BatchedUpdatesListener) {
+        updateBatcher.removeListener((BatchedUpdatesListener) any);
+      }
     }
   }
 
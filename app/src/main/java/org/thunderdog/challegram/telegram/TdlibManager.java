@@ -277,7 +277,7 @@ public class TdlibManager implements Iterable<TdlibAccount>, UI.StateListener {
   private final Object counterLock = new Object();
 
   private int preferredAccountId = TdlibAccount.NO_ID;
-  private TdlibAccount currentAccount;
+  private volatile TdlibAccount currentAccount;
 
   private final TdlibListenersGlobal global = new TdlibListenersGlobal(this);
   private final ManagerHandler handler = new ManagerHandler(this);
@@ -768,6 +768,40 @@ public class TdlibManager implements Iterable<TdlibAccount>, UI.StateListener {
     return -1;
   }
 
+  // Hibernation
+
+  private static final long HIBERNATION_DELAY_MS = TimeUnit.DAYS.toMillis(3);
+  private static final int HIBERNATION_MIN_AWAKE_ACCOUNTS = 3;
+
+  /**
+   * Hibernated account is an account, which wasn't opened by user for {@link #HIBERNATION_DELAY_MS}
+   * and isn't among {@link #HIBERNATION_MIN_AWAKE_ACCOUNTS} most recently opened ones.
+   *
+   * Its TDLib instance is closed as soon as it gets unused, it doesn't participate in periodic
+   * and launch-time syncs and it is woken up only by push, its own sync job or account switch.
+   * Unread counters displayed for it come from the snapshot stored in {@link TdlibAccount}.
+   *
+   * Accounts without registered device token are never hibernated, because pushes can't wake them up.
+   *
+   * Doesn't take any locks, as it is called from TDLib threads, e.g. through {@link Tdlib#getPauseTimeout}.
+   */
+  boolean isHibernated (TdlibAccount account) {
+    if (account == currentAccount || account.isUnauthorized() || account.isService() || account.keepAlive() || !account.isDeviceRegistered()) {
+      return false;
+    }
+    final long lastOpenTime = account.lastOpenTime();
+    if (System.currentTimeMillis() - lastOpenTime < HIBERNATION_DELAY_MS) {
+      return false;
+    }
+    int recentlyOpenedCount = 0;
+    for (TdlibAccount other : activeAccountsSnapshot) {
+      if (other != account && other.lastOpenTime() > lastOpenTime && ++recentlyOpenedCount >= HIBERNATION_MIN_AWAKE_ACCOUNTS) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   // Proxy
 
   /*private void readProxyConfig (boolean debug) {
@@ -1528,7 +1562,7 @@ public class TdlibManager implements Iterable<TdlibAccount>, UI.StateListener {
       } else {
         tdlib.sync(pushId, onDone, needNotifications, needNetworkRequest);
       }
-    }, limit, null, after);
+    }, limit, awakeAccountsFilter(), after);
   }
 
   public boolean notifyPushProcessingTakesTooLong (int accountId, long pushId) {
@@ -1584,6 +1618,10 @@ public class TdlibManager implements Iterable<TdlibAccount>, UI.StateListener {
     return account -> account.isUnauthorized() && account.hasPrivateData() && !account.isService();
   }
 
+  private Filter<TdlibAccount> awakeAccountsFilter () {
+    return account -> !isHibernated(account);
+  }
+
   private synchronized void setTokenState (@TokenState int newState) {
     setTokenState(newState, null, null);
   }
@@ -1845,6 +1883,8 @@ public class TdlibManager implements Iterable<TdlibAccount>, UI.StateListener {
   // Account list
 
   private final ArrayList<TdlibAccount> activeAccounts = new ArrayList<>();
+  // Copy of activeAccounts for readers on other threads, order is not preserved
+  private volatile TdlibAccount[] activeAccountsSnapshot = new TdlibAccount[0];
 
   private boolean checkAliveAccount (TdlibAccount account) {
     boolean needAdd = !account.isUnauthorized() && account.hasDisplayInfo();
@@ -1864,6 +1904,7 @@ public class TdlibManager implements Iterable<TdlibAccount>, UI.StateListener {
       }
       activeAccounts.remove(position);
     }
+    activeAccountsSnapshot = activeAccounts.toArray(new TdlibAccount[0]);
     global().notifyAccountAddedOrRemoved(account, position, needAdd);
     resetBadge();
     increaseModCount(account);
@@ -54,6 +54,7 @@ import org.thunderdog.challegram.theme.ColorId;
 import org.thunderdog.challegram.tool.UI;
 import org.thunderdog.challegram.ui.MainController;
 import org.thunderdog.challegram.ui.MessagesController;
+import org.thunderdog.challegram.unsorted.ChatSettingsMap;
 import org.thunderdog.challegram.unsorted.Passcode;
 import org.thunderdog.challegram.unsorted.Settings;
 
@@ -441,6 +442,8 @@ public class TdlibNotificationManager implements UI.StateListener, Passcode.Lock
     return key(key, tdlib.id());
   }
 
+  private final ChatSettingsMap customVibrateModes, customVibrateOnlyIfSilent, customPriorityOrImportance, customLedColors;
+
   TdlibNotificationManager (Tdlib tdlib, NotificationQueue queue) {
     this.tdlib = tdlib;
     this.queue = queue;
@@ -449,6 +452,12 @@ public class TdlibNotificationManager implements UI.StateListener, Passcode.Lock
 
     final int accountId = tdlib.id();
 
+    // Per-chat settings, that are checked for every notification
+    final LevelDB pmc = Settings.instance().pmc();
+    this.customVibrateModes = new ChatSettingsMap(pmc, key(_CUSTOM_VIBRATE_KEY, accountId), ChatSettingsMap.TYPE_INT);
+    this.customVibrateOnlyIfSilent = new ChatSettingsMap(pmc, key(_CUSTOM_VIBRATE_ONLYSILENT_KEY, accountId), ChatSettingsMap.TYPE_BOOLEAN);
+    this.customPriorityOrImportance = new ChatSettingsMap(pmc, key(_CUSTOM_PRIORITY_OR_IMPORTANCE_KEY, accountId), ChatSettingsMap.TYPE_INT);
+    this.customLedColors = new ChatSettingsMap(pmc, key(_CUSTOM_LED_KEY, accountId), ChatSettingsMap.TYPE_INT);
 
     // Sounds
     this.sounds = new SparseIntArray();
@@ -461,7 +470,8 @@ public class TdlibNotificationManager implements UI.StateListener, Passcode.Lock
 
     // Queue
 
-    UI.addStateListener(this);
+    // Manager may be created on any thread on the first use, while state listeners are managed on the UI thread
+    UI.execute(() -> UI.addStateListener(this));
 
     Passcode.instance().addLockListener(this);
 
@@ -703,7 +713,7 @@ public class TdlibNotificationManager implements UI.StateListener, Passcode.Lock
    * @return vibrate mode value for specific chat. {@link #VIBRATE_MODE_DEFAULT} means that value should be obtained from the surrounding scope.
    */
   public int getCustomVibrateMode (long chatId, int defaultVibrateMode) {
-    return getChannelVibrateMode(null, chatId, Settings.instance().getInt(key(_CUSTOM_VIBRATE_KEY + chatId), defaultVibrateMode));
+    return getChannelVibrateMode(null, chatId, customVibrateModes.getInt(chatId, defaultVibrateMode));
   }
 
   /**
@@ -726,7 +736,7 @@ public class TdlibNotificationManager implements UI.StateListener, Passcode.Lock
    * @return stored vibrate silence value, or false by default
    */
   public boolean getCustomVibrateOnlyIfSilent (long chatId) {
-    return Config.VIBRATE_ONLY_IF_SILENT_AVAILABLE && Settings.instance().getBoolean(key(_CUSTOM_VIBRATE_ONLYSILENT_KEY + chatId), false);
+    return Config.VIBRATE_ONLY_IF_SILENT_AVAILABLE && customVibrateOnlyIfSilent.getBoolean(chatId, false);
   }
 
   /**
@@ -736,22 +746,19 @@ public class TdlibNotificationManager implements UI.StateListener, Passcode.Lock
    */
   public void setCustomVibrateMode (long chatId, int vibrateMode, boolean onlyIfSilent) {
     int oldVibrateMode = getCustomVibrateMode(chatId, VIBRATE_MODE_DEFAULT);
-    final LevelDB editor = Settings.instance().edit();
     if (vibrateMode == VIBRATE_MODE_DEFAULT) {
-      editor.remove(key(_CUSTOM_VIBRATE_KEY + chatId));
+      customVibrateModes.remove(chatId);
       if (Config.VIBRATE_ONLY_IF_SILENT_AVAILABLE) {
-        editor.remove(key(_CUSTOM_VIBRATE_ONLYSILENT_KEY + chatId));
+        customVibrateOnlyIfSilent.remove(chatId);
       }
     } else {
-      editor.putInt(key(_CUSTOM_VIBRATE_KEY + chatId), vibrateMode);
+      customVibrateModes.putInt(chatId, vibrateMode);
       if (Config.VIBRATE_ONLY_IF_SILENT_AVAILABLE) {
-        editor.putBoolean(key(_CUSTOM_VIBRATE_ONLYSILENT_KEY + chatId), onlyIfSilent);
+        customVibrateOnlyIfSilent.putBoolean(chatId, onlyIfSilent);
       }
     }
     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && oldVibrateMode != vibrateMode) {
-      incrementChannelVersion(null, chatId, editor);
-    } else {
-      editor.apply();
+      incrementChannelVersion(null, chatId, Settings.instance().edit());
     }
   }
 
@@ -764,7 +771,7 @@ public class TdlibNotificationManager implements UI.StateListener, Passcode.Lock
     int vibrateMode = getCustomVibrateMode(chatId, VIBRATE_MODE_DEFAULT);
     boolean silentOnly;
     if (vibrateMode != VIBRATE_MODE_DEFAULT) {
-      silentOnly = Config.VIBRATE_ONLY_IF_SILENT_AVAILABLE && Settings.instance().getBoolean(key(_CUSTOM_VIBRATE_ONLYSILENT_KEY + chatId), getDefaultVibrateOnlyIfSilent(scope));
+      silentOnly = Config.VIBRATE_ONLY_IF_SILENT_AVAILABLE && customVibrateOnlyIfSilent.getBoolean(chatId, getDefaultVibrateOnlyIfSilent(scope));
     } else {
       vibrateMode = getDefaultVibrateMode(scope);
       silentOnly = Config.VIBRATE_ONLY_IF_SILENT_AVAILABLE && getDefaultVibrateOnlyIfSilent(scope);
@@ -833,7 +840,7 @@ public class TdlibNotificationManager implements UI.StateListener, Passcode.Lock
    * @return current priority or importance value. {@link #DEFAULT_PRIORITY_OR_IMPORTANCE} means value should be obtained from the surrounding scope.
    */
   public int getCustomPriorityOrImportance (long chatId, int defaultPriorityOrImportance) {
-    return getChannelPriorityOrImportance(null, chatId, Settings.instance().getInt(key(_CUSTOM_PRIORITY_OR_IMPORTANCE_KEY + chatId), defaultPriorityOrImportance));
+    return getChannelPriorityOrImportance(null, chatId, customPriorityOrImportance.getInt(chatId, defaultPriorityOrImportance));
   }
 
   /**
@@ -842,16 +849,13 @@ public class TdlibNotificationManager implements UI.StateListener, Passcode.Lock
    */
   public void setCustomPriorityOrImportance (long chatId, int priorityOrImportance) {
     int oldPriorityOrImportance = getCustomPriorityOrImportance(chatId, PRIORITY_OR_IMPORTANCE_UNSET);
-    final LevelDB editor = Settings.instance().edit();
     if (priorityOrImportance == PRIORITY_OR_IMPORTANCE_UNSET) {
-      editor.remove(key(_CUSTOM_PRIORITY_OR_IMPORTANCE_KEY + chatId));
+      customPriorityOrImportance.remove(chatId);
     } else {
-      editor.putInt(key(_CUSTOM_PRIORITY_OR_IMPORTANCE_KEY + chatId), priorityOrImportance);
+      customPriorityOrImportance.putInt(chatId, priorityOrImportance);
     }
     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && oldPriorityOrImportance != priorityOrImportance) {
-      incrementChannelVersion(null, chatId, editor);
-    } else {
-      editor.apply();
+      incrementChannelVersion(null, chatId, Settings.instance().edit());
     }
   }
 
@@ -900,21 +904,18 @@ public class TdlibNotificationManager implements UI.StateListener, Passcode.Lock
   }
 
   public int getCustomLedColor (long chatId, int defaultLedColor) {
-    return getChannelLedColor(null, chatId, Settings.instance().getInt(key(_CUSTOM_LED_KEY + chatId), defaultLedColor));
+    return getChannelLedColor(null, chatId, customLedColors.getInt(chatId, defaultLedColor));
   }
 
   public void setCustomLedColor (long chatId, int ledColor) {
     int oldLedColor = getCustomLedColor(chatId, LED_COLOR_UNSET);
-    LevelDB editor = Settings.instance().edit();
     if (ledColor == LED_COLOR_UNSET) {
-      editor.remove(key(_CUSTOM_LED_KEY + chatId));
+      customLedColors.remove(chatId);
     } else {
-      editor.putInt(key(_CUSTOM_LED_KEY + chatId), ledColor);
+      customLedColors.putInt(chatId, ledColor);
     }
     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && ledColor != oldLedColor) {
-      incrementChannelVersion(null, chatId, editor);
-    } else {
-      editor.apply();
+      incrementChannelVersion(null, chatId, Settings.instance().edit());
     }
   }
 
@@ -1552,6 +1553,10 @@ public class TdlibNotificationManager implements UI.StateListener, Passcode.Lock
     String customCallVibrateOnlySilentKey = key(_CUSTOM_CALL_VIBRATE_ONLYSILENT_KEY, accountId);
     String customCallPriorityKey = key(_CUSTOM_PRIORITY_OR_IMPORTANCE_KEY, accountId);
     String channelVersionCustomKey = key(_CHANNEL_VERSION_CUSTOM_KEY, accountId);
+    customVibrateModes.dropPendingWrites();
+    customVibrateOnlyIfSilent.dropPendingWrites();
+    customPriorityOrImportance.dropPendingWrites();
+    customLedColors.dropPendingWrites();
     Settings.instance().removeByAnyPrefix(new String[] {
       customSoundKey, customSoundNameKey, customSoundPathKey, customLedKey, customVibrateKey, customVibrateOnlySilentKey,
       customCallRingtoneKey, customCallRingtoneNameKey, customCallVibrateKey, customCallVibrateOnlySilentKey, customCallPriorityKey,
@@ -1560,6 +1565,10 @@ public class TdlibNotificationManager implements UI.StateListener, Passcode.Lock
 
     editor.apply();
 
+    customVibrateModes.reset();
+    customVibrateOnlyIfSilent.reset();
+    customPriorityOrImportance.reset();
+    customLedColors.reset();
 
     _inAppChatSounds = null;
 
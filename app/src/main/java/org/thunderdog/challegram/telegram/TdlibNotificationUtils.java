@@ -132,6 +132,8 @@ public class TdlibNotificationUtils {
 
   public static Bitmap buildLargeIcon (Tdlib tdlib, TdApi.File rawFile, @ColorId int colorId, Letters letters, boolean allowSyncDownload, boolean allowDownload) {
     Bitmap avatarBitmap = null;
+    ImageFile cachedFile = null;
+    Bitmap cachedBitmap = null;
     if (rawFile != null) {
       tdlib.files().syncFile(rawFile, null, 500);
       boolean fileLoaded = TD.isFileLoadedAndExists(rawFile);
@@ -142,7 +144,11 @@ public class TdlibNotificationUtils {
       if (fileLoaded) {
         ImageFile file = new ImageFile(tdlib, rawFile);
         file.setSize(iconSize());
-        avatarBitmap = ImageCache.instance().getBitmap(file);
+        // Reference keeps the bitmap from being recycled or reused by the pool while it is drawn below
+        avatarBitmap = cachedBitmap = ImageCache.instance().acquireBitmap(file);
+        if (cachedBitmap != null) {
+          cachedFile = file;
+        }
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P && avatarBitmap != null) {
           if (avatarBitmap.getConfig() == Bitmap.Config.HARDWARE) {
             avatarBitmap = null;
@@ -214,6 +220,10 @@ public class TdlibNotificationUtils {
       }
     }
 
+    if (cachedBitmap != null) {
+      ImageCache.instance().removeReference(cachedFile, cachedBitmap);
+    }
+
     return bitmap;
   }
 
@@ -0,0 +1,214 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.telegram;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import org.thunderdog.challegram.Log;
+import org.thunderdog.challegram.tool.UI;
+import org.thunderdog.challegram.unsorted.Settings;
+
+import java.util.List;
+
+import me.vkryl.core.lambda.CancellableRunnable;
+
+/**
+ * Keeps proxy health statistics up to date while the app is in foreground,
+ * and switches to a better route before the current one fails.
+ *
+ * Every {@link #PROBE_INTERVAL_SECONDS} one route is probed: every other probe checks the current route,
+ * the rest go to other available routes in turn, so each of them gets probed every few minutes.
+ *
+ * Statistics are stored per network type, see {@link Settings#trackProxyHealth}.
+ * Route pings made by {@link TdlibRouteSelector} and proxy settings screen update the same statistics.
+ */
+public class TdlibProxyHealthMonitor implements UI.StateListener {
+  private static final double PROBE_INTERVAL_SECONDS = 20.0;
+
+  // Switch only when other route is at least twice as good
+  private static final double SWITCH_SCORE_RATIO = 0.5;
+  // Don't switch to routes, which health is unknown for too long
+  private static final long MAX_PROBE_AGE_MS = 15 * 60 * 1000;
+  private static final long MIN_SWITCH_INTERVAL_MS = 5 * 60 * 1000;
+  private static final double MIN_CANDIDATE_SUCCESS_RATE = 0.8;
+
+  private final Tdlib tdlib;
+
+  private boolean isUiResumed;
+  private boolean isConnected;
+  private CancellableRunnable probeTask;
+  private int probeCount;
+  private int candidateIndex;
+  private long lastSwitchTime;
+
+  TdlibProxyHealthMonitor (Tdlib tdlib) {
+    this.tdlib = tdlib;
+    this.isUiResumed = UI.getUiState() == UI.STATE_RESUMED;
+    // Monitor may be created on any thread on the first use, while state listeners are managed on the UI thread
+    UI.execute(() -> {
+      UI.addStateListener(this);
+      onUiStateChanged(UI.getUiState());
+    });
+  }
+
+  @Override
+  public void onUiStateChanged (int newState) {
+    boolean isUiResumed = newState == UI.STATE_RESUMED;
+    tdlib.runOnTdlibThread(() -> {
+      if (this.isUiResumed != isUiResumed) {
+        this.isUiResumed = isUiResumed;
+        checkScheduled();
+      }
+    }, 0, false);
+  }
+
+  @TdlibThread
+  void onConnectionStateChanged (@ConnectionState int state) {
+    boolean isConnected = state == ConnectionState.CONNECTED;
+    if (this.isConnected != isConnected) {
+      this.isConnected = isConnected;
+      checkScheduled();
+    }
+  }
+
+  private boolean isActive () {
+    return isUiResumed && isConnected && tdlib.isCurrent() && Settings.instance().hasProxyConfiguration();
+  }
+
+  @TdlibThread
+  private void checkScheduled () {
+    boolean isActive = isActive();
+    if (isActive != (probeTask != null)) {
+      if (isActive) {
+        scheduleProbe();
+      } else {
+        probeTask.cancel();
+        probeTask = null;
+      }
+    }
+  }
+
+  @TdlibThread
+  private void scheduleProbe () {
+    probeTask = new CancellableRunnable() {
+      @Override
+      public void act () {
+        if (probeTask == this) {
+          probeTask = null;
+          probe();
+          checkScheduled();
+        }
+      }
+    };
+    tdlib.runOnTdlibThread(probeTask, PROBE_INTERVAL_SECONDS, false);
+  }
+
+  @TdlibThread
+  private void probe () {
+    if (!isActive()) {
+      return;
+    }
+    final int currentProxyId = Settings.instance().getEffectiveProxyId();
+    final List<Settings.Proxy> routes = Settings.instance().getAvailableProxies();
+    if (currentProxyId == Settings.PROXY_ID_NONE || Settings.instance().checkProxySetting(Settings.PROXY_FLAG_SWITCH_ALLOW_DIRECT)) {
+      routes.add(0, Settings.Proxy.noProxy(false));
+    }
+
+    Settings.Proxy currentRoute = null;
+    for (Settings.Proxy route : routes) {
+      if (route.id == currentProxyId) {
+        currentRoute = route;
+        break;
+      }
+    }
+    if (currentRoute == null) {
+      return;
+    }
+    final Settings.Proxy probeRoute;
+    if (probeCount++ % 2 == 0 || routes.size() == 1) {
+      probeRoute = currentRoute;
+    } else {
+      candidateIndex = (candidateIndex + 1) % routes.size();
+      if (routes.get(candidateIndex).id == currentProxyId) {
+        candidateIndex = (candidateIndex + 1) % routes.size();
+      }
+      probeRoute = routes.get(candidateIndex);
+    }
+    final Settings.Proxy route = currentRoute;
+    tdlib.pingProxy(probeRoute, pingMs -> {
+      if (probeRoute == route) {
+        tdlib.runOnTdlibThread(() -> checkBetterRoute(route, routes), 0, false);
+      }
+    });
+  }
+
+  @TdlibThread
+  private void checkBetterRoute (Settings.Proxy currentRoute, List<Settings.Proxy> routes) {
+    Settings settings = Settings.instance();
+    if (!isActive() || !settings.checkProxySetting(Settings.PROXY_FLAG_SWITCH_AUTOMATICALLY) || settings.getEffectiveProxyId() != currentRoute.id) {
+      return;
+    }
+    long now = SystemClock.elapsedRealtime();
+    if (lastSwitchTime != 0 && now - lastSwitchTime < MIN_SWITCH_INTERVAL_MS) {
+      return;
+    }
+    double currentScore = settings.getProxyHealth(currentRoute.id, tdlib.networkType()).score();
+    if (currentScore == Settings.ProxyHealth.SCORE_UNKNOWN) {
+      return;
+    }
+    boolean allowDirect = settings.checkProxySetting(Settings.PROXY_FLAG_SWITCH_ALLOW_DIRECT);
+    long timestampMs = tdlib.currentTimeMillis();
+    Settings.Proxy bestRoute = null;
+    double bestScore = currentScore * SWITCH_SCORE_RATIO;
+    for (Settings.Proxy route : routes) {
+      if (route.id == currentRoute.id || (route.isDirect() && !allowDirect)) {
+        continue;
+      }
+      Settings.ProxyHealth health = settings.getProxyHealth(route.id, tdlib.networkType());
+      if (health.successRate < MIN_CANDIDATE_SUCCESS_RATE || timestampMs - health.lastProbeTime > MAX_PROBE_AGE_MS) {
+        continue;
+      }
+      double score = health.score();
+      if (score < bestScore) {
+        bestScore = score;
+        bestRoute = route;
+      }
+    }
+    if (bestRoute != null) {
+      Log.i("Switching to a healthier route, proxyId:%d -> %d, score:%.1f -> %.1f", currentRoute.id, bestRoute.id, currentScore, bestScore);
+      lastSwitchTime = now;
+      switchRoute(bestRoute);
+    }
+  }
+
+  private void switchRoute (Settings.Proxy route) {
+    tdlib.ui().post(() -> {
+      if (route.isDirect()) {
+        Settings.instance().disableProxy();
+      } else {
+        Settings.instance().addOrUpdateProxy(route.proxy, route.description, true, route.id);
+      }
+    });
+  }
+
+  /**
+   * @return Health of the route on the current network type
+   */
+  public Settings.ProxyHealth getHealth (@NonNull Settings.Proxy route) {
+    return Settings.instance().getProxyHealth(route.id, tdlib.networkType());
+  }
+}
@@ -51,6 +51,14 @@ public class TdlibRouteSelector implements Comparator<Settings.Proxy> {
     this.routes = Settings.instance().getAvailableProxies();
     this.routes.add(0, Settings.Proxy.noProxy(true));
     this.cancellationSignal = new CancellationSignal();
+    sortRoutes();
+  }
+
+  private void sortRoutes () {
+    // Scores are captured before sorting, as pongs may update health while the list is being sorted
+    for (Settings.Proxy route : routes) {
+      route.healthScore = tdlib.proxyHealth().getHealth(route).score();
+    }
     routes.sort(this);
   }
 
@@ -73,8 +81,14 @@ public class TdlibRouteSelector implements Comparator<Settings.Proxy> {
     if (aOrder != bOrder) {
       return Integer.compare(aOrder, bOrder);
     }
-    if (aPong && a.pingMs != b.pingMs) {
-      return Long.compare(a.pingMs, b.pingMs);
+    if (aPong) {
+      // Long-term latency, jitter and success rate predict route quality better than a single ping
+      if (a.healthScore != b.healthScore) {
+        return Double.compare(a.healthScore, b.healthScore);
+      }
+      if (a.pingMs != b.pingMs) {
+        return Long.compare(a.pingMs, b.pingMs);
+      }
     }
     if (aConnected != bConnected) {
       return aConnected ? -1 : 1;
@@ -187,7 +201,7 @@ public class TdlibRouteSelector implements Comparator<Settings.Proxy> {
   }
 
   private void sortAndSelectRoute (boolean force) {
-    routes.sort(this);
+    sortRoutes();
     Settings.Proxy proxy = selectRoute();
     if (proxy != null || force) {
       suggestRoute(proxy);
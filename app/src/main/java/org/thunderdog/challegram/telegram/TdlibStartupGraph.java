@@ -0,0 +1,269 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.telegram;
+
+import android.os.Build;
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.thunderdog.challegram.BuildConfig;
+import org.thunderdog.challegram.Log;
+import org.thunderdog.challegram.core.BaseThread;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import me.vkryl.core.lambda.Future;
+
+/**
+ * Subsystems of a {@link Tdlib} instance, created on first use instead of all at once in its constructor.
+ *
+ * Each subsystem declares subsystems it needs while being created, these get created first.
+ * Subsystems that weren't used yet can be created in background via {@link #warmUp()},
+ * in the declaration order.
+ *
+ * All subsystems of the graph are created under a single lock. Constructors often call into other
+ * subsystems without declaring them, so per-subsystem locks could be taken in different order
+ * by two threads. Single lock is reentrant, so undeclared calls only create the callee earlier.
+ *
+ * Every created subsystem and every other step reported via {@link #record} is written to startup trace,
+ * see {@link #dump()}. Trace format is the same between builds, so they can be compared line by line.
+ */
+public final class TdlibStartupGraph {
+  public static final int TRIGGER_EAGER = 0;
+  public static final int TRIGGER_ON_DEMAND = 1;
+  public static final int TRIGGER_DEPENDENCY = 2;
+  public static final int TRIGGER_WARM_UP = 3;
+
+  private static final String[] TRIGGER_NAMES = {"eager", "on_demand", "dependency", "warm_up"};
+
+  public static final class Subsystem<T> {
+    private final TdlibStartupGraph graph;
+    private final String name;
+    private final Future<T> factory;
+    private final Subsystem<?>[] dependencies;
+
+    private volatile T value;
+    // Guarded by graph
+    private boolean isCreating;
+
+    private Subsystem (TdlibStartupGraph graph, String name, Future<T> factory, Subsystem<?>[] dependencies) {
+      this.graph = graph;
+      this.name = name;
+      this.factory = factory;
+      this.dependencies = dependencies;
+    }
+
+    public String getName () {
+      return name;
+    }
+
+    public boolean isInitialized () {
+      return value != null;
+    }
+
+    /**
+     * @return Subsystem instance, created on the current thread, if it wasn't created yet
+     */
+    @NonNull
+    public T get () {
+      T value = this.value;
+      return value != null ? value : materialize(TRIGGER_ON_DEMAND);
+    }
+
+    /**
+     * Creates the subsystem right away. Used for subsystems every other one depends on.
+     */
+    @NonNull
+    public T initialize () {
+      T value = this.value;
+      return value != null ? value : materialize(TRIGGER_EAGER);
+    }
+
+    private T materialize (int trigger) {
+      synchronized (graph) {
+        if (value == null) {
+          if (isCreating) {
+            throw new IllegalStateException("Dependency cycle, name: " + name);
+          }
+          isCreating = true;
+          try {
+            for (Subsystem<?> dependency : dependencies) {
+              if (!dependency.isInitialized()) {
+                dependency.materialize(TRIGGER_DEPENDENCY);
+              }
+            }
+            long startNanos = System.nanoTime();
+            T value = factory.getValue();
+            graph.record(name, trigger, startNanos);
+            this.value = value;
+          } finally {
+            isCreating = false;
+          }
+        }
+        return value;
+      }
+    }
+  }
+
+  private static final class Step {
+    final String name;
+    final int trigger;
+    final String threadName;
+    final long startNanos, durationNanos;
+
+    Step (String name, int trigger, String threadName, long startNanos, long durationNanos) {
+      this.name = name;
+      this.trigger = trigger;
+      this.threadName = threadName;
+      this.startNanos = startNanos;
+      this.durationNanos = durationNanos;
+    }
+  }
+
+  private static BaseThread warmUpThread;
+
+  private static synchronized BaseThread warmUpThread () {
+    if (warmUpThread == null) {
+      warmUpThread = new BaseThread("TdlibWarmUpThread");
+    }
+    return warmUpThread;
+  }
+
+  private final int accountId;
+  private final long createdNanos;
+  private final List<Subsystem<?>> subsystems = new ArrayList<>();
+  private final List<Step> steps = new ArrayList<>();
+  private boolean warmUpScheduled;
+
+  TdlibStartupGraph (int accountId) {
+    this.accountId = accountId;
+    this.createdNanos = System.nanoTime();
+  }
+
+  /**
+   * Declares a subsystem. Must be called in order, after all of the {@code dependencies}.
+   */
+  <T> Subsystem<T> add (String name, Future<T> factory, Subsystem<?>... dependencies) {
+    Subsystem<T> subsystem = new Subsystem<>(this, name, factory, dependencies);
+    synchronized (subsystems) {
+      subsystems.add(subsystem);
+    }
+    return subsystem;
+  }
+
+  /**
+   * Records a startup step that started at {@code startNanos} and finished now.
+   */
+  void record (String name, int trigger, long startNanos) {
+    long endNanos = System.nanoTime();
+    Step step = new Step(name, trigger, Thread.currentThread().getName(), startNanos - createdNanos, endNanos - startNanos);
+    synchronized (steps) {
+      steps.add(step);
+    }
+    if (Log.needMeasureLaunchSpeed()) {
+      Log.v("INITIALIZATION: Tdlib.%s -> %dms, trigger:%s, thread:%s, accountId:%d", name, step.durationNanos / 1_000_000, TRIGGER_NAMES[trigger], step.threadName, accountId);
+    }
+  }
+
+  /**
+   * Creates subsystems that weren't used yet on a background thread.
+   * Meant to be called once the first frame is drawn.
+   */
+  public void warmUp () {
+    synchronized (subsystems) {
+      if (warmUpScheduled) {
+        return;
+      }
+      warmUpScheduled = true;
+    }
+    warmUpThread().post(() -> {
+      Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+      final List<Subsystem<?>> subsystems;
+      synchronized (this.subsystems) {
+        subsystems = new ArrayList<>(this.subsystems);
+      }
+      for (Subsystem<?> subsystem : subsystems) {
+        if (!subsystem.isInitialized()) {
+          subsystem.materialize(TRIGGER_WARM_UP);
+        }
+      }
+    }, 0);
+  }
+
+  private static String formatMillis (long nanos) {
+    return String.format(Locale.US, "%.2f", nanos / 1_000_000.0);
+  }
+
+  @NonNull
+  public String dump () {
+    StringBuilder b = new StringBuilder();
+    b.append("# version: ").append(BuildConfig.ORIGINAL_VERSION_NAME)
+      .append(", device: ").append(Build.MANUFACTURER).append(' ').append(Build.MODEL)
+      .append(", sdk: ").append(Build.VERSION.SDK_INT)
+      .append(", accountId: ").append(accountId)
+      .append('\n');
+    b.append("step,trigger,thread,start_ms,duration_ms\n");
+    synchronized (steps) {
+      for (Step step : steps) {
+        b.append(step.name).append(',')
+          .append(TRIGGER_NAMES[step.trigger]).append(',')
+          .append(step.threadName).append(',')
+          .append(formatMillis(step.startNanos)).append(',')
+          .append(formatMillis(step.durationNanos))
+          .append('\n');
+      }
+    }
+    StringBuilder pending = null;
+    synchronized (subsystems) {
+      for (Subsystem<?> subsystem : subsystems) {
+        if (!subsystem.isInitialized()) {
+          if (pending == null) {
+            pending = new StringBuilder();
+          } else {
+            pending.append(", ");
+          }
+          pending.append(subsystem.getName());
+        }
+      }
+    }
+    if (pending != null) {
+      b.append("# not used yet: ").append(pending).append('\n');
+    }
+    return b.toString();
+  }
+
+  @Nullable
+  public File dumpToFile () {
+    File logDir = Log.getLogDir();
+    if (logDir == null) {
+      return null;
+    }
+    File file = new File(logDir, "tdlib_startup." + accountId + ".txt");
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(dump().getBytes("UTF-8"));
+      return file;
+    } catch (IOException e) {
+      Log.e("Cannot write startup trace", e);
+      return null;
+    }
+  }
+}
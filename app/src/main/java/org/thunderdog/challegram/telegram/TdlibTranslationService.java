@@ -0,0 +1,340 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.telegram;
+
+import android.content.Context;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+
+import org.drinkless.tdlib.TdApi;
+import org.thunderdog.challegram.data.TranslationsManager;
+import org.thunderdog.challegram.util.LanguageDetector;
+import org.thunderdog.challegram.util.LongLruCache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import me.vkryl.core.StringUtils;
+import me.vkryl.core.lambda.FutureBool;
+import me.vkryl.core.lambda.RunnableData;
+import me.vkryl.td.Td;
+
+/**
+ * Translations and detected languages of texts, shared by all messages of the account,
+ * so they survive message views being recycled and chats being reopened.
+ *
+ * Requests arriving within {@link #BATCH_WINDOW_MS} are collected before being sent,
+ * so the same text requested by several messages is translated once, and requests of visible messages go first.
+ * At most {@link #MAX_CONCURRENT_REQUESTS} are sent at once.
+ *
+ * Cached values are kept in memory only, so translated texts of secret chats never end up on disk.
+ */
+public class TdlibTranslationService {
+  private static final int MAX_CACHED_TRANSLATIONS = 500;
+  private static final int MAX_CACHED_LANGUAGES = 2000;
+  private static final long BATCH_WINDOW_MS = 60;
+  private static final int MAX_CONCURRENT_REQUESTS = 3;
+
+  private static final class Translation {
+    final TdApi.FormattedText text;
+    final String language;
+    final TdApi.FormattedText result;
+
+    Translation (TdApi.FormattedText text, String language, TdApi.FormattedText result) {
+      this.text = text;
+      this.language = language;
+      this.result = result;
+    }
+  }
+
+  private static final class DetectedLanguage {
+    final String text;
+    final String language;
+
+    DetectedLanguage (String text, String language) {
+      this.text = text;
+      this.language = language;
+    }
+  }
+
+  private static final class Waiter {
+    final @Nullable FutureBool isVisible;
+    final RunnableData<TdApi.Object> callback;
+
+    Waiter (@Nullable FutureBool isVisible, RunnableData<TdApi.Object> callback) {
+      this.isVisible = isVisible;
+      this.callback = callback;
+    }
+
+    boolean isVisible () {
+      return isVisible == null || isVisible.getBoolValue();
+    }
+  }
+
+  private static final class Request {
+    final long key;
+    final TdApi.FormattedText text;
+    final String language;
+    final List<Waiter> waiters = new ArrayList<>(1);
+
+    Request (long key, TdApi.FormattedText text, String language) {
+      this.key = key;
+      this.text = text;
+      this.language = language;
+    }
+
+    boolean isVisible () {
+      for (Waiter waiter : waiters) {
+        if (waiter.isVisible()) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private final Tdlib tdlib;
+
+  private final LongLruCache<Translation> translations = new LongLruCache<>(MAX_CACHED_TRANSLATIONS);
+  private final LongLruCache<DetectedLanguage> languages = new LongLruCache<>(MAX_CACHED_LANGUAGES);
+
+  private final HashMap<Long, Request> requests = new HashMap<>();
+  private final List<Request> queue = new ArrayList<>();
+  private final HashMap<String, List<RunnableData<String>>> pendingDetections = new HashMap<>();
+  private int runningCount;
+  private boolean dispatchScheduled;
+  private final Runnable dispatchRunnable = this::dispatchRequests;
+
+  TdlibTranslationService (Tdlib tdlib) {
+    this.tdlib = tdlib;
+  }
+
+  private static long hashOf (String text) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < text.length(); i++) {
+      hash ^= text.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    return hash;
+  }
+
+  /**
+   * Entities take part in the key: texts that look the same, but e.g. link to different urls,
+   * must not share translations, because the translation carries entities of the source.
+   */
+  private static long hashOf (TdApi.FormattedText text) {
+    long hash = hashOf(text.text);
+    if (text.entities != null) {
+      for (TdApi.TextEntity entity : text.entities) {
+        hash = hash * 31 + entity.offset;
+        hash = hash * 31 + entity.length;
+        hash = hash * 31 + entity.type.getConstructor();
+        switch (entity.type.getConstructor()) {
+          case TdApi.TextEntityTypeTextUrl.CONSTRUCTOR:
+            hash = hash * 31 + ((TdApi.TextEntityTypeTextUrl) entity.type).url.hashCode();
+            break;
+          case TdApi.TextEntityTypeMentionName.CONSTRUCTOR:
+            hash = hash * 31 + ((TdApi.TextEntityTypeMentionName) entity.type).userId;
+            break;
+          case TdApi.TextEntityTypeCustomEmoji.CONSTRUCTOR:
+            hash = hash * 31 + ((TdApi.TextEntityTypeCustomEmoji) entity.type).customEmojiId;
+            break;
+          default:
+            break;
+        }
+      }
+    }
+    return hash;
+  }
+
+  private static long keyOf (TdApi.FormattedText text, String language) {
+    return hashOf(text) ^ (language.hashCode() * 0x9E3779B97F4A7C15L);
+  }
+
+  // Translations
+
+  @AnyThread
+  @Nullable
+  public TdApi.FormattedText findTranslation (@Nullable TdApi.FormattedText text, @Nullable String language) {
+    if (text == null || StringUtils.isEmpty(language)) {
+      return null;
+    }
+    synchronized (translations) {
+      Translation translation = translations.get(keyOf(text, language));
+      return translation != null && translation.language.equals(language) && Td.equalsTo(translation.text, text) ? translation.result : null;
+    }
+  }
+
+  @AnyThread
+  public void saveTranslation (@NonNull TdApi.FormattedText text, @NonNull String language, @NonNull TdApi.FormattedText result) {
+    synchronized (translations) {
+      translations.put(keyOf(text, language), new Translation(text, language, result));
+    }
+  }
+
+  /**
+   * Translates {@code text}, or returns cached translation.
+   *
+   * @param isVisible Whether the requester is currently displayed. Visible requesters get their translations first.
+   * @param callback Receives translated text with {@link TranslationsManager#prepareTranslatedText} applied or {@link TdApi.Error}, on UI thread.
+   */
+  @AnyThread
+  public void translate (@NonNull TdApi.FormattedText text, @NonNull String language, @Nullable FutureBool isVisible, @NonNull RunnableData<TdApi.Object> callback) {
+    tdlib.ui().post(() -> {
+      TdApi.FormattedText cachedTranslation = findTranslation(text, language);
+      if (cachedTranslation != null) {
+        callback.runWithData(cachedTranslation);
+        return;
+      }
+      long key = keyOf(text, language);
+      Request request = requests.get(key);
+      if (request == null || !request.language.equals(language) || !Td.equalsTo(request.text, text)) {
+        // Hash collisions simply don't get coalesced
+        request = new Request(key, text, language);
+        if (!requests.containsKey(key)) {
+          requests.put(key, request);
+        }
+        queue.add(request);
+        scheduleDispatch();
+      }
+      request.waiters.add(new Waiter(isVisible, callback));
+    });
+  }
+
+  @UiThread
+  private void scheduleDispatch () {
+    if (!dispatchScheduled && runningCount < MAX_CONCURRENT_REQUESTS) {
+      dispatchScheduled = true;
+      tdlib.ui().postDelayed(dispatchRunnable, BATCH_WINDOW_MS);
+    }
+  }
+
+  @UiThread
+  private void dispatchRequests () {
+    dispatchScheduled = false;
+    while (runningCount < MAX_CONCURRENT_REQUESTS && !queue.isEmpty()) {
+      int bestIndex = 0;
+      boolean bestIsVisible = queue.get(0).isVisible();
+      for (int i = 1; i < queue.size() && !bestIsVisible; i++) {
+        if (queue.get(i).isVisible()) {
+          bestIndex = i;
+          bestIsVisible = true;
+        }
+      }
+      Request request = queue.remove(bestIndex);
+      runningCount++;
+      tdlib.client().send(new TdApi.TranslateText(request.text, request.language), result -> tdlib.ui().post(() ->
+        onTranslationResult(request, result)
+      ));
+    }
+  }
+
+  @UiThread
+  private void onTranslationResult (Request request, TdApi.Object result) {
+    runningCount--;
+    if (requests.get(request.key) == request) {
+      requests.remove(request.key);
+    }
+    if (result.getConstructor() == TdApi.FormattedText.CONSTRUCTOR) {
+      TdApi.FormattedText translatedText = TranslationsManager.prepareTranslatedText((TdApi.FormattedText) result);
+      saveTranslation(request.text, request.language, translatedText);
+      result = translatedText;
+    }
+    for (Waiter waiter : request.waiters) {
+      waiter.callback.runWithData(result);
+    }
+    if (!queue.isEmpty() && !dispatchScheduled) {
+      // Queued requests already waited for the batch window
+      dispatchRequests();
+    }
+  }
+
+  // Languages
+
+  @AnyThread
+  @Nullable
+  public String findTextLanguage (@Nullable String text) {
+    if (text == null) {
+      return null;
+    }
+    synchronized (languages) {
+      DetectedLanguage detectedLanguage = languages.get(hashOf(text));
+      return detectedLanguage != null && detectedLanguage.text.equals(text) ? detectedLanguage.language : null;
+    }
+  }
+
+  @AnyThread
+  public void saveTextLanguage (@NonNull String text, @Nullable String language) {
+    if (language == null) {
+      return;
+    }
+    synchronized (languages) {
+      languages.put(hashOf(text), new DetectedLanguage(text, language));
+    }
+  }
+
+  /**
+   * Same as {@link LanguageDetector#detectLanguage}, but returns previously detected language right away,
+   * and runs detection of the same text once, when it is requested by several messages at once.
+   */
+  @AnyThread
+  public void detectTextLanguage (Context context, @NonNull String text, @NonNull RunnableData<String> onSuccess, @Nullable RunnableData<Throwable> onFail) {
+    String cachedLanguage = findTextLanguage(text);
+    if (cachedLanguage != null) {
+      onSuccess.runWithData(cachedLanguage);
+      return;
+    }
+    synchronized (pendingDetections) {
+      List<RunnableData<String>> callbacks = pendingDetections.get(text);
+      if (callbacks != null) {
+        callbacks.add(language -> {
+          if (language != null) {
+            onSuccess.runWithData(language);
+          } else if (onFail != null) {
+            onFail.runWithData(null);
+          }
+        });
+        return;
+      }
+      pendingDetections.put(text, new ArrayList<>());
+    }
+    LanguageDetector.detectLanguage(context, text, language -> {
+      saveTextLanguage(text, language);
+      onSuccess.runWithData(language);
+      notifyPendingDetections(text, language);
+    }, error -> {
+      if (onFail != null) {
+        onFail.runWithData(error);
+      }
+      notifyPendingDetections(text, null);
+    });
+  }
+
+  private void notifyPendingDetections (String text, @Nullable String language) {
+    List<RunnableData<String>> callbacks;
+    synchronized (pendingDetections) {
+      callbacks = pendingDetections.remove(text);
+    }
+    if (callbacks != null) {
+      for (RunnableData<String> callback : callbacks) {
+        callback.runWithData(language);
+      }
+    }
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.telegram;
+
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.UiThread;
+import androidx.collection.LongSparseArray;
+
+import org.drinkless.tdlib.TdApi;
+import org.thunderdog.challegram.tool.UI;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import me.vkryl.core.reference.ReferenceList;
+
+/**
+ * Collects {@link TdApi.UpdateChatReadInbox} updates that arrive in bursts (e.g. during catch-up after reconnect)
+ * and delivers them to {@link BatchedUpdatesListener} once per frame.
+ *
+ * Read inbox update fully describes the latest state of a chat, so when another one arrives
+ * for the same chat before the frame, it replaces the pending one.
+ * Regular listeners are not affected and still receive every update.
+ */
+public class TdlibUpdateBatcher {
+  public static final class Batch {
+    public final List<TdApi.UpdateChatReadInbox> readInbox;
+    public final int receivedCount;
+    public final long firstReceiveTime;
+
+    Batch (List<TdApi.UpdateChatReadInbox> readInbox, int receivedCount, long firstReceiveTime) {
+      this.readInbox = Collections.unmodifiableList(readInbox);
+      this.receivedCount = receivedCount;
+      this.firstReceiveTime = firstReceiveTime;
+    }
+
+    public int coalescedCount () {
+      return receivedCount - readInbox.size();
+    }
+  }
+
+  private final ReferenceList<BatchedUpdatesListener> listeners = new ReferenceList<>(true);
+  private int listenerCount;
+  private volatile boolean isActive;
+
+  private final LongSparseArray<TdApi.UpdateChatReadInbox> pendingReadInbox = new LongSparseArray<>();
+  private int pendingReceivedCount;
+  private long pendingSinceTime;
+  private boolean isFrameScheduled;
+
+  // Metrics
+  private long receivedCount, coalescedCount, batchCount;
+  private int maxBatchSize;
+  private long maxDelayMs;
+
+  private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> dispatch();
+  private final Runnable scheduleFrame = () -> Choreographer.getInstance().postFrameCallback(frameCallback);
+
+  TdlibUpdateBatcher () { }
+
+  // Called under TdlibListeners lock
+
+  void addListener (BatchedUpdatesListener listener) {
+    listeners.add(listener);
+    listenerCount++;
+    isActive = true;
+  }
+
+  void removeListener (BatchedUpdatesListener listener) {
+    listeners.remove(listener);
+    if (listenerCount > 0 && --listenerCount == 0) {
+      isActive = false;
+    }
+  }
+
+  /**
+   * @return true, if updates are currently collected and will be delivered through {@link BatchedUpdatesListener}.
+   * When it returns false, listeners must handle the update directly.
+   */
+  @AnyThread
+  public boolean isCollecting () {
+    return isActive;
+  }
+
+  @TdlibThread
+  void offer (TdApi.Update update) {
+    if (!isActive || update.getConstructor() != TdApi.UpdateChatReadInbox.CONSTRUCTOR) {
+      return;
+    }
+    TdApi.UpdateChatReadInbox readInbox = (TdApi.UpdateChatReadInbox) update;
+    boolean needSchedule;
+    synchronized (pendingReadInbox) {
+      if (pendingReceivedCount == 0) {
+        pendingSinceTime = SystemClock.uptimeMillis();
+      }
+      pendingReceivedCount++;
+      receivedCount++;
+      int index = pendingReadInbox.indexOfKey(readInbox.chatId);
+      if (index >= 0) {
+        pendingReadInbox.setValueAt(index, readInbox);
+        coalescedCount++;
+      } else {
+        pendingReadInbox.put(readInbox.chatId, readInbox);
+      }
+      needSchedule = !isFrameScheduled;
+      isFrameScheduled = true;
+    }
+    if (needSchedule) {
+      UI.post(scheduleFrame);
+    }
+  }
+
+  @UiThread
+  private void dispatch () {
+    final Batch batch;
+    synchronized (pendingReadInbox) {
+      isFrameScheduled = false;
+      if (pendingReceivedCount == 0) {
+        return;
+      }
+      final int size = pendingReadInbox.size();
+      List<TdApi.UpdateChatReadInbox> readInbox = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        readInbox.add(pendingReadInbox.valueAt(i));
+      }
+      pendingReadInbox.clear();
+      batch = new Batch(readInbox, pendingReceivedCount, pendingSinceTime);
+      pendingReceivedCount = 0;
+      batchCount++;
+      maxBatchSize = Math.max(maxBatchSize, size);
+      maxDelayMs = Math.max(maxDelayMs, SystemClock.uptimeMillis() - pendingSinceTime);
+    }
+    for (BatchedUpdatesListener listener : listeners) {
+      listener.onUpdatesBatched(batch);
+    }
+  }
+
+  @Override
+  @NonNull
+  public String toString () {
+    synchronized (pendingReadInbox) {
+      return "TdlibUpdateBatcher { received: " + receivedCount +
+        ", coalesced: " + coalescedCount +
+        ", batches: " + batchCount +
+        ", maxBatch: " + maxBatchSize +
+        ", maxDelay: " + maxDelayMs + "ms }";
+    }
+  }
+}
@@ -0,0 +1,251 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.telegram;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+
+import org.drinkless.tdlib.TdApi;
+import org.thunderdog.challegram.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Per-constructor statistics of {@link Tdlib} update handlers: number of updates, handler time
+ * percentiles and number of UI thread posts made by the handler and its listeners.
+ * Additionally tracks how long jobs wait in TDLib and UI thread queues.
+ *
+ * Times are recorded into fixed-size log2 histograms, so recording never allocates.
+ * Histograms are written only from the thread they belong to and read without locks,
+ * so exported values are approximate while updates keep coming.
+ */
+public final class TdlibUpdateProfiler {
+  // Bucket N contains durations within [2^(N-1), 2^N) microseconds
+  private static final int BUCKET_COUNT = 32;
+  // Power of two, larger than the number of TdApi.Update constructors
+  private static final int CAPACITY = 512;
+  private static final int KEY_EMPTY = 0;
+
+  private static volatile Thread activeThread;
+  private static TdlibUpdateProfiler activeProfiler;
+
+  private final int accountId;
+
+  private final int[] keys = new int[CAPACITY];
+  private final String[] names = new String[CAPACITY];
+  private final long[] counts = new long[CAPACITY];
+  private final long[] totalNanos = new long[CAPACITY];
+  private final long[] maxNanos = new long[CAPACITY];
+  private final long[] uiPosts = new long[CAPACITY];
+  private final int[] handlerHistogram = new int[CAPACITY * BUCKET_COUNT];
+  private int slotCount;
+
+  private final int[] jobWaitHistogram = new int[BUCKET_COUNT];
+  private final int[] uiWaitHistogram = new int[BUCKET_COUNT];
+  private long jobCount, uiRunCount;
+
+  private int activeUiPosts;
+  private final long startTimeMs = System.currentTimeMillis();
+
+  TdlibUpdateProfiler (int accountId) {
+    this.accountId = accountId;
+  }
+
+  private static int bucketOf (long nanos) {
+    long micros = nanos / 1000;
+    if (micros <= 0) {
+      // Delayed job may start slightly earlier than requested
+      return 0;
+    }
+    return Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+  }
+
+  private int slotOf (int constructor, Object update) {
+    int mask = CAPACITY - 1;
+    int slot = (constructor * 0x9e3779b9) >>> 23 & mask;
+    while (true) {
+      int key = keys[slot];
+      if (key == constructor) {
+        return slot;
+      }
+      if (key == KEY_EMPTY) {
+        if (slotCount == CAPACITY - 1) {
+          return -1;
+        }
+        // Name must be visible before the key, as export reads without locks
+        names[slot] = update.getClass().getSimpleName();
+        keys[slot] = constructor;
+        slotCount++;
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  // Recording
+
+  @TdlibThread
+  long onUpdateStarted () {
+    activeProfiler = this;
+    activeUiPosts = 0;
+    activeThread = Thread.currentThread();
+    return System.nanoTime();
+  }
+
+  @TdlibThread
+  void onUpdateFinished (TdApi.Update update, long startNanos) {
+    long elapsedNanos = System.nanoTime() - startNanos;
+    activeThread = null;
+    activeProfiler = null;
+    int constructor = update.getConstructor();
+    if (constructor == KEY_EMPTY) {
+      return;
+    }
+    int slot = slotOf(constructor, update);
+    if (slot == -1) {
+      return;
+    }
+    counts[slot]++;
+    totalNanos[slot] += elapsedNanos;
+    if (elapsedNanos > maxNanos[slot]) {
+      maxNanos[slot] = elapsedNanos;
+    }
+    uiPosts[slot] += activeUiPosts;
+    handlerHistogram[slot * BUCKET_COUNT + bucketOf(elapsedNanos)]++;
+  }
+
+  @TdlibThread
+  void onJobStarted (long enqueuedNanos) {
+    jobCount++;
+    jobWaitHistogram[bucketOf(System.nanoTime() - enqueuedNanos)]++;
+  }
+
+  @UiThread
+  void onUiRunnableStarted (long postedNanos) {
+    uiRunCount++;
+    uiWaitHistogram[bucketOf(System.nanoTime() - postedNanos)]++;
+  }
+
+  /**
+   * Called on every UI thread post. Counted only when made while update handler is running.
+   */
+  public static void onUiPost () {
+    Thread thread = activeThread;
+    if (thread != null && thread == Thread.currentThread()) {
+      TdlibUpdateProfiler profiler = activeProfiler;
+      if (profiler != null) {
+        profiler.activeUiPosts++;
+      }
+    }
+  }
+
+  // Export
+
+  private static long percentileMicros (int[] histogram, int offset, long count, double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    long threshold = (long) Math.ceil(count * percentile);
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+      seen += histogram[offset + bucket];
+      if (seen >= threshold) {
+        return 1L << bucket;
+      }
+    }
+    return 1L << (BUCKET_COUNT - 1);
+  }
+
+  private static long sum (int[] histogram) {
+    long sum = 0;
+    for (int value : histogram) {
+      sum += value;
+    }
+    return sum;
+  }
+
+  private static String formatMicros (long micros) {
+    if (micros >= 1000) {
+      return (micros / 1000) + "ms";
+    }
+    return micros + "us";
+  }
+
+  @NonNull
+  public String dump () {
+    List<Integer> slots = new ArrayList<>(slotCount);
+    for (int slot = 0; slot < CAPACITY; slot++) {
+      if (keys[slot] != KEY_EMPTY && counts[slot] > 0) {
+        slots.add(slot);
+      }
+    }
+    Collections.sort(slots, (a, b) -> Long.compare(totalNanos[b], totalNanos[a]));
+
+    StringBuilder b = new StringBuilder();
+    b.append("Account: ").append(accountId)
+      .append("\nRecording for: ").append((System.currentTimeMillis() - startTimeMs) / 1000).append("s")
+      .append("\nPercentiles are upper bounds of power-of-two buckets\n");
+
+    b.append("\nUpdates (sorted by total handler time):\n");
+    for (int slot : slots) {
+      long count = counts[slot];
+      int offset = slot * BUCKET_COUNT;
+      b.append(names[slot])
+        .append(": count=").append(count)
+        .append(", total=").append(totalNanos[slot] / 1_000_000).append("ms")
+        .append(", p50=").append(formatMicros(percentileMicros(handlerHistogram, offset, count, .5)))
+        .append(", p99=").append(formatMicros(percentileMicros(handlerHistogram, offset, count, .99)))
+        .append(", max=").append(formatMicros(maxNanos[slot] / 1000))
+        .append(", uiPosts=").append(uiPosts[slot])
+        .append('\n');
+    }
+
+    long jobWaitCount = sum(jobWaitHistogram);
+    b.append("\nTDLib thread jobs: count=").append(jobCount)
+      .append(", wait p50=").append(formatMicros(percentileMicros(jobWaitHistogram, 0, jobWaitCount, .5)))
+      .append(", p99=").append(formatMicros(percentileMicros(jobWaitHistogram, 0, jobWaitCount, .99)));
+    long uiWaitCount = sum(uiWaitHistogram);
+    b.append("\nUI thread posts: count=").append(uiRunCount)
+      .append(", wait p50=").append(formatMicros(percentileMicros(uiWaitHistogram, 0, uiWaitCount, .5)))
+      .append(", p99=").append(formatMicros(percentileMicros(uiWaitHistogram, 0, uiWaitCount, .99)))
+      .append('\n');
+    return b.toString();
+  }
+
+  /**
+   * Writes {@link #dump()} to the logs directory, so it can be shared along with other log files.
+   */
+  @Nullable
+  public File dumpToFile () {
+    File logDir = Log.getLogDir();
+    if (logDir == null) {
+      return null;
+    }
+    File file = new File(logDir, "tdlib_updates." + accountId + ".txt");
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(dump().getBytes("UTF-8"));
+      return file;
+    } catch (IOException e) {
+      Log.e("Cannot write update statistics", e);
+      return null;
+    }
+  }
+}
@@ -0,0 +1,301 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.telegram;
+
+import android.os.SystemClock;
+
+import org.thunderdog.challegram.core.BaseThread;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Hierarchical timing wheel, which tells when "last seen" label of offline users has to be refreshed.
+ *
+ * Each tick lasts one second. Level 0 has a slot per tick for the next 64 seconds,
+ * each next level has 64 slots, each covering a whole rotation of the previous level.
+ * When a level rotates, entries of its next slot move down to the lower levels, so adding and removing users is O(1),
+ * regardless of how far their deadlines are.
+ *
+ * Ticks are processed on a background thread shared by all accounts, and only when there's something to fire.
+ * All users due in the same tick are passed to {@link Callback} in a single call.
+ */
+final class UserStatusRefreshWheel {
+  interface Callback {
+    /**
+     * Called on wheel thread, when labels of {@code count} first users in {@code userIds} should be refreshed.
+     * Arrays are reused by the next call.
+     */
+    void onUserStatusRefreshDue (long[] userIds, int[] wasOnline, int count);
+  }
+
+  private static final long TICK_MS = 1000;
+  private static final int SLOT_BITS = 6;
+  private static final int SLOT_COUNT = 1 << SLOT_BITS;
+  private static final int SLOT_MASK = SLOT_COUNT - 1;
+  private static final int LEVEL_COUNT = 4; // ~194 days, farther deadlines get re-placed until they fit
+
+  private static final class Entry {
+    final long userId;
+    final int wasOnline;
+    final long deadlineTick;
+    Entry next;
+    boolean isCancelled;
+
+    Entry (long userId, int wasOnline, long deadlineTick) {
+      this.userId = userId;
+      this.wasOnline = wasOnline;
+      this.deadlineTick = deadlineTick;
+    }
+  }
+
+  private static BaseThread thread;
+
+  private static synchronized BaseThread thread () {
+    if (thread == null) {
+      thread = new BaseThread("UserStatusRefreshThread");
+    }
+    return thread;
+  }
+
+  private final Callback callback;
+  private final Entry[][] slots = new Entry[LEVEL_COUNT][SLOT_COUNT];
+  private final HashMap<Long, Entry> entries = new HashMap<>();
+  private final Runnable tickRunnable = this::processTicks;
+
+  private long currentTick = currentTick();
+  private boolean isActive;
+  private long scheduledTick = -1;
+
+  private long[] firedUserIds = new long[16];
+  private int[] firedWasOnline = new int[16];
+
+  UserStatusRefreshWheel (Callback callback) {
+    this.callback = callback;
+  }
+
+  private static long currentTick () {
+    return SystemClock.elapsedRealtime() / TICK_MS;
+  }
+
+  /**
+   * @return wasOnline of the scheduled refresh, or 0, if refresh for this user is not scheduled
+   */
+  public synchronized int getScheduledWasOnline (long userId) {
+    Entry entry = entries.get(userId);
+    return entry != null ? entry.wasOnline : 0;
+  }
+
+  public synchronized int size () {
+    return entries.size();
+  }
+
+  public synchronized void schedule (long userId, int wasOnline, long delayMs) {
+    long deadlineTick = Math.max(currentTick + 1, currentTick() + (delayMs + TICK_MS - 1) / TICK_MS);
+    Entry entry = new Entry(userId, wasOnline, deadlineTick);
+    Entry prevEntry = entries.put(userId, entry);
+    if (prevEntry != null) {
+      prevEntry.isCancelled = true;
+    }
+    place(entry);
+    scheduleTicks();
+  }
+
+  public synchronized void cancel (long userId) {
+    Entry entry = entries.remove(userId);
+    if (entry != null) {
+      entry.isCancelled = true;
+    }
+  }
+
+  public synchronized void clear () {
+    clearSlots();
+    entries.clear();
+    cancelTicks();
+  }
+
+  private void clearSlots () {
+    for (Entry[] level : slots) {
+      Arrays.fill(level, null);
+    }
+  }
+
+  /**
+   * Ticks are processed only while wheel is active. When it becomes active, all missed ticks get processed at once.
+   */
+  public void setActive (boolean isActive) {
+    synchronized (this) {
+      if (this.isActive == isActive) {
+        return;
+      }
+      this.isActive = isActive;
+      if (!isActive) {
+        cancelTicks();
+        return;
+      }
+    }
+    thread().post(tickRunnable, 0);
+  }
+
+  // Placement
+
+  private void place (Entry entry) {
+    if (entry.deadlineTick <= currentTick) {
+      // Called while processing current tick
+      push(0, (int) (currentTick & SLOT_MASK), entry);
+      return;
+    }
+    for (int level = 0; level < LEVEL_COUNT; level++) {
+      int shift = level * SLOT_BITS;
+      long index = entry.deadlineTick >> shift;
+      if (index - (currentTick >> shift) < SLOT_COUNT) {
+        push(level, (int) (index & SLOT_MASK), entry);
+        return;
+      }
+    }
+    // Too far, put it to the last slot of the top level, it will be placed again once this slot is reached
+    int shift = (LEVEL_COUNT - 1) * SLOT_BITS;
+    push(LEVEL_COUNT - 1, (int) (((currentTick >> shift) + SLOT_MASK) & SLOT_MASK), entry);
+  }
+
+  private void push (int level, int slot, Entry entry) {
+    entry.next = slots[level][slot];
+    slots[level][slot] = entry;
+  }
+
+  private Entry pop (int level, int slot) {
+    Entry entry = slots[level][slot];
+    slots[level][slot] = null;
+    return entry;
+  }
+
+  // Ticks
+
+  private void processTicks () {
+    int firedCount;
+    synchronized (this) {
+      scheduledTick = -1;
+      if (!isActive) {
+        return;
+      }
+      final long targetTick = currentTick();
+      firedCount = 0;
+      if (entries.isEmpty() && currentTick < targetTick) {
+        // Only cancelled entries are left, no need to go through missed ticks
+        clearSlots();
+        currentTick = targetTick;
+      }
+      while (currentTick < targetTick) {
+        currentTick++;
+        cascade();
+        firedCount = fire(firedCount);
+      }
+      scheduleTicks();
+    }
+    if (firedCount > 0) {
+      callback.onUserStatusRefreshDue(firedUserIds, firedWasOnline, firedCount);
+    }
+  }
+
+  private void cascade () {
+    // Higher levels go first, so their entries can move down through lower levels in the same tick
+    int topLevel = 0;
+    while (topLevel + 1 < LEVEL_COUNT && (currentTick & ((1L << ((topLevel + 1) * SLOT_BITS)) - 1)) == 0) {
+      topLevel++;
+    }
+    for (int level = topLevel; level > 0; level--) {
+      int shift = level * SLOT_BITS;
+      Entry entry = pop(level, (int) ((currentTick >> shift) & SLOT_MASK));
+      while (entry != null) {
+        Entry next = entry.next;
+        if (!entry.isCancelled) {
+          place(entry);
+        }
+        entry = next;
+      }
+    }
+  }
+
+  private int fire (int firedCount) {
+    Entry entry = pop(0, (int) (currentTick & SLOT_MASK));
+    while (entry != null) {
+      Entry next = entry.next;
+      if (!entry.isCancelled) {
+        if (entry.deadlineTick > currentTick) {
+          place(entry);
+        } else {
+          entries.remove(entry.userId);
+          if (firedCount == firedUserIds.length) {
+            long[] userIds = new long[firedCount << 1];
+            int[] wasOnline = new int[firedCount << 1];
+            System.arraycopy(firedUserIds, 0, userIds, 0, firedCount);
+            System.arraycopy(firedWasOnline, 0, wasOnline, 0, firedCount);
+            firedUserIds = userIds;
+            firedWasOnline = wasOnline;
+          }
+          firedUserIds[firedCount] = entry.userId;
+          firedWasOnline[firedCount] = entry.wasOnline;
+          firedCount++;
+        }
+      }
+      entry = next;
+    }
+    return firedCount;
+  }
+
+  private long findNextTick () {
+    long nextTick = -1;
+    for (int level = 0; level < LEVEL_COUNT; level++) {
+      int shift = level * SLOT_BITS;
+      long currentIndex = currentTick >> shift;
+      for (int slot = 0; slot < SLOT_COUNT; slot++) {
+        if (slots[level][slot] == null) {
+          continue;
+        }
+        long index = currentIndex + ((slot - currentIndex) & SLOT_MASK);
+        if (index == currentIndex) {
+          index += SLOT_COUNT;
+        }
+        long tick = index << shift;
+        if (nextTick == -1 || tick < nextTick) {
+          nextTick = tick;
+        }
+      }
+    }
+    return nextTick;
+  }
+
+  private void scheduleTicks () {
+    if (!isActive || entries.isEmpty()) {
+      cancelTicks();
+      return;
+    }
+    long nextTick = findNextTick();
+    if (nextTick == -1 || nextTick == scheduledTick) {
+      return;
+    }
+    cancelTicks();
+    scheduledTick = nextTick;
+    long delayMs = nextTick * TICK_MS - SystemClock.elapsedRealtime();
+    thread().post(tickRunnable, Math.max(0, delayMs));
+  }
+
+  private void cancelTicks () {
+    if (scheduledTick != -1) {
+      scheduledTick = -1;
+      thread().cancel(tickRunnable);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.theme;
+
+import androidx.annotation.ColorInt;
+import androidx.annotation.NonNull;
+
+import me.vkryl.core.ColorUtils;
+
+/**
+ * Dense table of resolved colors, indexed by {@link ColorId}.
+ *
+ * Theme colors are resolved through the whole chain of parent themes once,
+ * so reading a color is an array read instead of a map lookup per inheritance level.
+ */
+final class ThemeColorTable {
+  private static final int SIZE = ThemeColors.COUNT + 1;
+
+  private final int[] colors = new int[SIZE];
+  private final long[] resolvedIds = new long[(SIZE + 63) >>> 6];
+
+  public ThemeColorTable () { }
+
+  public ThemeColorTable (@NonNull ThemeColorTable copy) {
+    System.arraycopy(copy.colors, 0, colors, 0, SIZE);
+    System.arraycopy(copy.resolvedIds, 0, resolvedIds, 0, resolvedIds.length);
+  }
+
+  public boolean isResolved (@ColorId int colorId) {
+    return colorId > ColorId.NONE && colorId < SIZE && (resolvedIds[colorId >>> 6] & (1L << colorId)) != 0;
+  }
+
+  /**
+   * Must be called only after {@link #isResolved(int)} returned true
+   */
+  @ColorInt
+  public int get (@ColorId int colorId) {
+    return colors[colorId];
+  }
+
+  public void put (@ColorId int colorId, @ColorInt int color) {
+    colors[colorId] = color;
+    resolvedIds[colorId >>> 6] |= 1L << colorId;
+  }
+
+  public void remove (@ColorId int colorId) {
+    resolvedIds[colorId >>> 6] &= ~(1L << colorId);
+  }
+
+  /**
+   * Resolves all colors of the given theme
+   */
+  public static ThemeColorTable resolve (@NonNull ThemeDelegate theme) {
+    ThemeColorTable table = new ThemeColorTable();
+    for (int colorId = ColorId.NONE + 1; colorId < SIZE; colorId++) {
+      table.put(colorId, theme.getColor(colorId));
+    }
+    return table;
+  }
+
+  /**
+   * Fills table with colors interpolated between two tables.
+   * Colors missing in one of the tables stay unresolved.
+   */
+  public void blend (@NonNull ThemeColorTable fromTable, @NonNull ThemeColorTable toTable, float factor) {
+    for (int i = 0; i < resolvedIds.length; i++) {
+      resolvedIds[i] = fromTable.resolvedIds[i] & toTable.resolvedIds[i];
+    }
+    for (int colorId = ColorId.NONE + 1; colorId < SIZE; colorId++) {
+      colors[colorId] = ColorUtils.fromToArgb(fromTable.colors[colorId], toTable.colors[colorId], factor);
+    }
+  }
+}
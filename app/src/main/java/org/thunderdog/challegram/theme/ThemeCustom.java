@@ -27,6 +27,10 @@ public final class ThemeCustom implements ThemeDelegate {
   @Nullable
   private ThemeDelegate parentTheme;
 
+  // Colors of this theme, with fallback to parent theme already applied.
+  // Published table is never modified, changes are made on a copy
+  private volatile ThemeColorTable colorTable;
+
   public ThemeCustom (@ThemeId int id) {
     this.id = id;
     this.properties = new ThemeProperties();
@@ -59,6 +63,12 @@ public final class ThemeCustom implements ThemeDelegate {
   public void setColor (@ColorId int colorId, @Nullable Integer color) {
     this.lastChangedColorId = colorId;
     colors.set(colorId, color);
+    ThemeColorTable colorTable = this.colorTable;
+    if (colorTable != null) {
+      colorTable = new ThemeColorTable(colorTable);
+      resolveColor(colorTable, colorId);
+      this.colorTable = colorTable;
+    }
   }
 
   public boolean hasRecentlyChanged (@ColorId int colorId) {
@@ -79,6 +89,30 @@ public final class ThemeCustom implements ThemeDelegate {
     this.parentTheme = ThemeSet.getBuiltinTheme(id);
     if (this.parentTheme == null)
       throw new IllegalArgumentException("Invalid themeId: " + id);
+    this.colorTable = null;
+  }
+
+  private void resolveColor (ThemeColorTable colorTable, @ColorId int colorId) {
+    Integer color = colors.get(colorId);
+    if (color != null) {
+      colorTable.put(colorId, color);
+    } else if (parentTheme != null) {
+      colorTable.put(colorId, parentTheme.getColor(colorId));
+    } else {
+      colorTable.remove(colorId);
+    }
+  }
+
+  ThemeColorTable colorTable () {
+    ThemeColorTable colorTable = this.colorTable;
+    if (colorTable == null) {
+      colorTable = new ThemeColorTable();
+      for (int colorId = ColorId.NONE + 1; colorId <= ThemeColors.COUNT; colorId++) {
+        resolveColor(colorTable, colorId);
+      }
+      this.colorTable = colorTable;
+    }
+    return colorTable;
   }
 
   public void setProperty (@PropertyId int propertyId, @Nullable Float value) {
@@ -95,11 +129,9 @@ public final class ThemeCustom implements ThemeDelegate {
 
   @Override
   public int getColor (int colorId) {
-    Integer color = colors.get(colorId);
-    if (color != null)
-      return color;
-    if (parentTheme != null)
-      return parentTheme.getColor(colorId);
+    ThemeColorTable colorTable = colorTable();
+    if (colorTable.isResolved(colorId))
+      return colorTable.get(colorId);
     throw Theme.newError(colorId, "colorId");
   }
 
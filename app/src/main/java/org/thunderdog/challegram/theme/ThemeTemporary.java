@@ -22,9 +22,23 @@ final class ThemeTemporary implements ThemeDelegate {
   private final ThemeDelegate fromTheme;
   private final ThemeDelegate toTheme;
 
+  // Colors are blended once per frame, in setFactor, instead of on every getColor call
+  private final ThemeColorTable fromColors, toColors, frameColors;
+
   public ThemeTemporary (ThemeDelegate fromTheme, ThemeDelegate toTheme) {
     this.fromTheme = fromTheme;
     this.toTheme = toTheme;
+    this.fromColors = colorTable(fromTheme);
+    this.toColors = colorTable(toTheme);
+    this.frameColors = new ThemeColorTable();
+  }
+
+  private static ThemeColorTable colorTable (ThemeDelegate theme) {
+    if (theme instanceof ThemeCustom) {
+      return ((ThemeCustom) theme).colorTable();
+    }
+    // Builtin themes define all colors, and previous temporary theme is no longer animated
+    return ThemeColorTable.resolve(theme);
   }
 
   @Override
@@ -59,13 +73,19 @@ final class ThemeTemporary implements ThemeDelegate {
   public boolean setFactor (float factor) {
     if (this.factor != factor) {
       this.factor = factor;
+      if (factor != 0f && factor != 1f) {
+        frameColors.blend(fromColors, toColors, factor);
+      }
       return true;
     }
     return false;
   }
 
   @Override
-  public int getColor (@ThemeId int colorId) {
+  public int getColor (@ColorId int colorId) {
+    final ThemeColorTable colorTable = factor == 0f ? fromColors : factor == 1f ? toColors : frameColors;
+    if (colorTable.isResolved(colorId))
+      return colorTable.get(colorId);
     if (factor == 0f)
       return fromTheme.getColor(colorId);
     else if (factor == 1f)
@@ -990,32 +990,43 @@ public class Paints {
   // TextStyleProvider
 
   private static SparseArrayCompat<TextStyleProvider> robotoProvider;
-  private static TextStyleProvider titleStyleProvider, subtitleStyleProvider;
+  private static volatile TextStyleProvider titleStyleProvider, subtitleStyleProvider;
 
+  // Called from parallel message layout, so all providers are created under the class lock
   public static TextStyleProvider robotoStyleProvider (float dp) {
     if (dp == 15) {
       if (titleStyleProvider == null) {
-        titleStyleProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSize(15f);
+        synchronized (Paints.class) {
+          if (titleStyleProvider == null) {
+            titleStyleProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSize(15f);
+          }
+        }
       }
       return titleStyleProvider;
     } else if (dp == 13) {
       if (subtitleStyleProvider == null) {
-        subtitleStyleProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSize(13f);
+        synchronized (Paints.class) {
+          if (subtitleStyleProvider == null) {
+            subtitleStyleProvider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSize(13f);
+          }
+        }
       }
       return subtitleStyleProvider;
     }
 
-    if (robotoProvider == null) {
-      robotoProvider = new SparseArrayCompat<>();
-    }
-    int key = Float.floatToIntBits(dp);
-    int i = robotoProvider.indexOfKey(key);
-    TextStyleProvider provider;
-    if (i >= 0) {
-      provider = robotoProvider.valueAt(i);
-    } else {
-      robotoProvider.put(key, provider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSize(dp));
+    synchronized (Paints.class) {
+      if (robotoProvider == null) {
+        robotoProvider = new SparseArrayCompat<>();
+      }
+      int key = Float.floatToIntBits(dp);
+      int i = robotoProvider.indexOfKey(key);
+      TextStyleProvider provider;
+      if (i >= 0) {
+        provider = robotoProvider.valueAt(i);
+      } else {
+        robotoProvider.put(key, provider = new TextStyleProvider(Fonts.newRobotoStorage()).setTextSize(dp));
+      }
+      return provider;
     }
-    return provider;
   }
 }
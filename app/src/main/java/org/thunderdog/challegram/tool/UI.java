@@ -51,6 +51,7 @@ import org.thunderdog.challegram.navigation.ViewController;
 import org.thunderdog.challegram.service.NetworkListenerService;
 import org.thunderdog.challegram.telegram.TdlibDelegate;
 import org.thunderdog.challegram.telegram.TdlibManager;
+import org.thunderdog.challegram.telegram.TdlibUpdateProfiler;
 import org.thunderdog.challegram.theme.Theme;
 import org.thunderdog.challegram.unsorted.AppState;
 import org.thunderdog.challegram.unsorted.Settings;
@@ -704,10 +705,12 @@ public class UI {
     }
   }
   public static void post (Runnable r) {
+    TdlibUpdateProfiler.onUiPost();
     getAppHandler().post(r);
   }
 
   public static void post (Runnable r, long delay) {
+    TdlibUpdateProfiler.onUiPost();
     getAppHandler().postDelayed(r, delay);
   }
 
@@ -68,6 +68,7 @@ import org.thunderdog.challegram.navigation.TooltipOverlayView;
 import org.thunderdog.challegram.navigation.ViewController;
 import org.thunderdog.challegram.navigation.ViewPagerController;
 import org.thunderdog.challegram.support.ViewSupport;
+import org.thunderdog.challegram.telegram.BatchedUpdatesListener;
 import org.thunderdog.challegram.telegram.ChatFilter;
 import org.thunderdog.challegram.telegram.ChatListListener;
 import org.thunderdog.challegram.telegram.ChatListener;
@@ -86,6 +87,7 @@ import org.thunderdog.challegram.telegram.TdlibContactManager;
 import org.thunderdog.challegram.telegram.TdlibSettingsManager;
 import org.thunderdog.challegram.telegram.TdlibThread;
 import org.thunderdog.challegram.telegram.TdlibUi;
+import org.thunderdog.challegram.telegram.TdlibUpdateBatcher;
 import org.thunderdog.challegram.theme.ColorId;
 import org.thunderdog.challegram.theme.Theme;
 import org.thunderdog.challegram.tool.Paints;
@@ -137,7 +139,7 @@ public class ChatsController extends TelegramViewController<ChatsController.Argu
   ForceTouchView.PreviewDelegate, LiveLocationHelper.Callback,
   BaseView.LongPressInterceptor, TdlibCache.UserStatusChangeListener,
   Settings.ChatListModeChangeListener, CounterChangeListener,
-  TdlibSettingsManager.PreferenceChangeListener, SelectDelegate, MoreDelegate {
+  TdlibSettingsManager.PreferenceChangeListener, SelectDelegate, MoreDelegate, BatchedUpdatesListener {
 
   private boolean progressVisible, initialLoadFinished;
   @Nullable
@@ -2573,6 +2575,10 @@ public class ChatsController extends TelegramViewController<ChatsController.Argu
 
   @Override
   public void onChatReadInbox (final long chatId, final long lastReadInboxMessageId, final int unreadCount, boolean availabilityChanged) {
+    if (tdlib.listeners().updateBatcher().isCollecting()) {
+      // Delivered once per frame through onUpdatesBatched
+      return;
+    }
     runOnUiThreadOptional(() -> {
       if (chatsView != null) {
         chatsView.updateChatReadInbox(chatId, lastReadInboxMessageId, unreadCount);
@@ -2580,6 +2586,16 @@ public class ChatsController extends TelegramViewController<ChatsController.Argu
     });
   }
 
+  @Override
+  public void onUpdatesBatched (@NonNull TdlibUpdateBatcher.Batch batch) {
+    if (isDestroyed() || chatsView == null) {
+      return;
+    }
+    for (TdApi.UpdateChatReadInbox readInbox : batch.readInbox) {
+      chatsView.updateChatReadInbox(readInbox.chatId, readInbox.lastReadInboxMessageId, readInbox.unreadCount);
+    }
+  }
+
   @Override
   public void onMessageUnreadReactionsChanged (long chatId, long messageId, @Nullable TdApi.UnreadReaction[] unreadReactions, int unreadReactionCount){
     runOnUiThreadOptional(() -> {
@@ -2795,6 +2811,13 @@ public class ChatsController extends TelegramViewController<ChatsController.Argu
     }
   }
 
+  @Override
+  public void onUserStatusesRefreshed (long[] userIds, TdApi.UserStatus[] statuses) {
+    if (chatsView != null) {
+      chatsView.updateUserStatuses(userIds);
+    }
+  }
+
   // System sharing
 
   public void shareIntent (Intent intent) {
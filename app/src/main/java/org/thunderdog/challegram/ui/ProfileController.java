@@ -110,7 +110,6 @@ import org.thunderdog.challegram.unsorted.Settings;
 import org.thunderdog.challegram.unsorted.Size;
 import org.thunderdog.challegram.util.CharacterStyleFilter;
 import org.thunderdog.challegram.util.DoneListener;
-import org.thunderdog.challegram.util.LanguageDetector;
 import org.thunderdog.challegram.util.OptionDelegate;
 import org.thunderdog.challegram.util.SenderPickerDelegate;
 import org.thunderdog.challegram.util.StringList;
@@ -4536,7 +4535,7 @@ public class ProfileController extends ViewController<ProfileController.Args> im
         return;
       }
       if (Settings.instance().getChatTranslateMode() != Settings.TRANSLATE_MODE_NONE) {
-        LanguageDetector.detectLanguage(context, aboutWrapper.getText(), (lang) -> {
+        tdlib.translations().detectTextLanguage(context, aboutWrapper.getText(), (lang) -> {
           showDescriptionOptions(true, descriptionLanguage = lang);
         }, (err) -> {
           showDescriptionOptions(true, descriptionLanguage = null);
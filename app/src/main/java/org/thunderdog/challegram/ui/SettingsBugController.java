@@ -36,10 +36,14 @@ import org.thunderdog.challegram.MainActivity;
 import org.thunderdog.challegram.R;
 import org.thunderdog.challegram.U;
 import org.thunderdog.challegram.component.base.SettingView;
+import org.thunderdog.challegram.component.chat.MessagesLoaderStats;
 import org.thunderdog.challegram.config.Config;
 import org.thunderdog.challegram.core.Background;
 import org.thunderdog.challegram.core.Lang;
 import org.thunderdog.challegram.data.TD;
+import org.thunderdog.challegram.emoji.EmojiScannerBenchmark;
+import org.thunderdog.challegram.loader.ImageCache;
+import org.thunderdog.challegram.loader.gif.GifBridge;
 import org.thunderdog.challegram.navigation.BackHeaderButton;
 import org.thunderdog.challegram.navigation.DoubleHeaderView;
 import org.thunderdog.challegram.navigation.SettingsWrap;
@@ -78,8 +82,10 @@ import me.vkryl.core.MathUtils;
 import me.vkryl.core.StringUtils;
 import me.vkryl.core.collection.IntList;
 import me.vkryl.core.lambda.RunnableBool;
+import me.vkryl.core.lambda.RunnableData;
 import me.vkryl.core.unit.ByteUnit;
 import me.vkryl.td.ChatPosition;
+import me.vkryl.td.Td;
 
 public class SettingsBugController extends RecyclerViewController<SettingsBugController.Args> implements
   View.OnClickListener,
@@ -535,6 +541,8 @@ public class SettingsBugController extends RecyclerViewController<SettingsBugCon
           view.setData(b.toString());
         } else if (itemId == R.id.btn_log_android) {
           view.getToggler().setRadioEnabled(Log.checkSetting(Log.SETTING_ANDROID_LOG), false);
+        } else if (itemId == R.id.btn_log_asyncFormat) {
+          view.getToggler().setRadioEnabled(Log.checkSetting(Log.SETTING_ASYNC_FORMAT), false);
         } else if (itemId == R.id.btn_tdlib_verbosity) {
           String module = (String) item.getData();
           Settings.TdlibLogSettings settings = Settings.instance().getLogSettings();
@@ -625,6 +633,8 @@ public class SettingsBugController extends RecyclerViewController<SettingsBugCon
         items.add(new ListItem(ListItem.TYPE_VALUED_SETTING, R.id.btn_log_files, 0, R.string.DebugLogFiles, false));
         items.add(new ListItem(ListItem.TYPE_SEPARATOR_FULL));
         items.add(new ListItem(ListItem.TYPE_RADIO_SETTING, R.id.btn_log_android, 0, R.string.DebugLogcat, false));
+        items.add(new ListItem(ListItem.TYPE_SEPARATOR_FULL));
+        items.add(new ListItem(ListItem.TYPE_RADIO_SETTING, R.id.btn_log_asyncFormat, 0, R.string.DebugLogAsyncFormat, false));
         items.add(new ListItem(ListItem.TYPE_SHADOW_BOTTOM));
         items.add(new ListItem(ListItem.TYPE_DESCRIPTION, 0, 0, Lang.getMarkdownStringSecure(this, R.string.DebugAppLogsInfo), false));
 
@@ -678,6 +688,18 @@ public class SettingsBugController extends RecyclerViewController<SettingsBugCon
           items.add(new ListItem(ListItem.TYPE_SETTING, R.id.btn_secret_tdlibDatabaseStats, 0, "TDLib database statistics", false));
           items.add(new ListItem(ListItem.TYPE_SEPARATOR_FULL));
           items.add(new ListItem(ListItem.TYPE_SETTING, R.id.btn_secret_databaseStats, 0, "Other internal statistics", false));
+          items.add(new ListItem(ListItem.TYPE_SEPARATOR_FULL));
+          items.add(new ListItem(ListItem.TYPE_SETTING, R.id.btn_secret_updateStats, 0, "TDLib update handlers statistics", false));
+          items.add(new ListItem(ListItem.TYPE_SEPARATOR_FULL));
+          items.add(new ListItem(ListItem.TYPE_SETTING, R.id.btn_secret_emojiBenchmark, 0, "Emoji scanner benchmark", false));
+          items.add(new ListItem(ListItem.TYPE_SEPARATOR_FULL));
+          items.add(new ListItem(ListItem.TYPE_SETTING, R.id.btn_secret_messagesLoaderStats, 0, "Messages loader statistics", false));
+          items.add(new ListItem(ListItem.TYPE_SEPARATOR_FULL));
+          items.add(new ListItem(ListItem.TYPE_SETTING, R.id.btn_secret_gifFrameStats, 0, "Animation frame scheduler statistics", false));
+          items.add(new ListItem(ListItem.TYPE_SEPARATOR_FULL));
+          items.add(new ListItem(ListItem.TYPE_SETTING, R.id.btn_secret_imageCacheStats, 0, "Image cache statistics", false));
+          items.add(new ListItem(ListItem.TYPE_SEPARATOR_FULL));
+          items.add(new ListItem(ListItem.TYPE_SETTING, R.id.btn_secret_startupTrace, 0, "TDLib startup trace", false));
 
           if (testerLevel >= Tdlib.TESTER_LEVEL_ADMIN) {
             items.add(new ListItem(ListItem.TYPE_SEPARATOR_FULL));
@@ -1216,6 +1238,8 @@ public class SettingsBugController extends RecyclerViewController<SettingsBugCon
       navigateTo(c);
     } else if (viewId == R.id.btn_log_android) {
       Log.setSetting(Log.SETTING_ANDROID_LOG, ((SettingView) v).getToggler().toggle(true));
+    } else if (viewId == R.id.btn_log_asyncFormat) {
+      Log.setSetting(Log.SETTING_ASYNC_FORMAT, ((SettingView) v).getToggler().toggle(true));
     } else if (viewId == R.id.btn_log_tags) {
       ListItem[] items = new ListItem[Log.TAGS.length];
       for (int i = 0; i < items.length; i++) {
@@ -1281,6 +1305,60 @@ public class SettingsBugController extends RecyclerViewController<SettingsBugCon
       TextController c = new TextController(context, tdlib);
       c.setArguments(TextController.Arguments.fromRawText("App Database Stats", stats, "text/plain"));
       navigateTo(c);
+    } else if (viewId == R.id.btn_secret_updateStats) {
+      String stats = tdlib.updateProfiler().dump();
+      // Also saved next to log files, so it can be shared from "Log files" section
+      File file = tdlib.updateProfiler().dumpToFile();
+      if (file != null) {
+        stats = "Saved to " + file.getName() + "\n\n" + stats;
+      }
+      TextController c = new TextController(context, tdlib);
+      c.setArguments(TextController.Arguments.fromRawText("TDLib Update Stats", stats, "text/plain"));
+      navigateTo(c);
+    } else if (viewId == R.id.btn_secret_emojiBenchmark) {
+      // Chat titles and last messages are what chat list passes through emoji scanner
+      List<String> corpus = new ArrayList<>();
+      RunnableData<TdApi.Chat> collector = chat -> {
+        corpus.add(chat.title);
+        TdApi.FormattedText text = chat.lastMessage != null ? Td.textOrCaption(chat.lastMessage.content) : null;
+        if (text != null && !StringUtils.isEmpty(text.text)) {
+          corpus.add(text.text);
+        }
+      };
+      tdlib.chatList(ChatPosition.CHAT_LIST_MAIN).iterate(collector);
+      tdlib.chatList(ChatPosition.CHAT_LIST_ARCHIVE).iterate(collector);
+      UI.showToast("Running benchmark on " + corpus.size() + " texts. Please wait...", Toast.LENGTH_SHORT);
+      Background.instance().post(() -> {
+        String result = EmojiScannerBenchmark.run(corpus, 20);
+        tdlib.ui().post(() -> {
+          if (!isDestroyed()) {
+            TextController c = new TextController(context, tdlib);
+            c.setArguments(TextController.Arguments.fromRawText("Emoji Scanner Benchmark", result, "text/plain"));
+            navigateTo(c);
+          }
+        });
+      });
+    } else if (viewId == R.id.btn_secret_messagesLoaderStats) {
+      TextController c = new TextController(context, tdlib);
+      c.setArguments(TextController.Arguments.fromRawText("Messages Loader Stats", MessagesLoaderStats.dump(), "text/plain"));
+      navigateTo(c);
+    } else if (viewId == R.id.btn_secret_startupTrace) {
+      String trace = tdlib.startupGraph().dump();
+      File file = tdlib.startupGraph().dumpToFile();
+      if (file != null) {
+        trace = "Saved to " + file.getName() + "\n\n" + trace;
+      }
+      TextController c = new TextController(context, tdlib);
+      c.setArguments(TextController.Arguments.fromRawText("TDLib Startup Trace", trace, "text/plain"));
+      navigateTo(c);
+    } else if (viewId == R.id.btn_secret_imageCacheStats) {
+      TextController c = new TextController(context, tdlib);
+      c.setArguments(TextController.Arguments.fromRawText("Image Cache Stats", ImageCache.instance().dumpStats(), "text/plain"));
+      navigateTo(c);
+    } else if (viewId == R.id.btn_secret_gifFrameStats) {
+      TextController c = new TextController(context, tdlib);
+      c.setArguments(TextController.Arguments.fromRawText("Animation Frame Scheduler Stats", GifBridge.instance().getFrameScheduler().dumpStats(), "text/plain"));
+      navigateTo(c);
     } else if (viewId == R.id.btn_secret_tdlibDatabaseStats) {
       UI.showToast("Calculating. Please wait...", Toast.LENGTH_SHORT);
       tdlib.client().send(new TdApi.GetDatabaseStatistics(), result -> {
@@ -287,9 +287,9 @@ public class SettingsProxyController extends RecyclerViewController<Void> implem
             out.connected = true;
             if (info.pingMs >= 0) {
               if (info.winState != WIN_STATE_NONE) {
-                out.value = Lang.getStringBoldLowercase(R.string.ProxyConnected, Lang.getString(info.winState == WIN_STATE_WINNER ? R.string.format_pingBest : R.string.format_ping, Strings.buildCounter(info.pingMs)));
+                out.value = Lang.getStringBoldLowercase(R.string.ProxyConnected, getPingText(info));
               } else {
-                out.value = Lang.getString(R.string.ProxyConnected, Lang.getString(R.string.format_ping, Strings.buildCounter(info.pingMs)));
+                out.value = Lang.getString(R.string.ProxyConnected, getPingText(info));
               }
             } else {
               out.value = Lang.getString(R.string.Connected);
@@ -315,9 +315,9 @@ public class SettingsProxyController extends RecyclerViewController<Void> implem
     } else if (info.pingMs >= 0) {
       out.colorId = ColorId.textSecure;
       if (info.winState != 0) {
-        out.value = Lang.getStringBoldLowercase(R.string.ProxyAvailable, Lang.getString(info.winState == WIN_STATE_WINNER ? R.string.format_pingBest : R.string.format_ping, Strings.buildCounter(info.pingMs)));
+        out.value = Lang.getStringBoldLowercase(R.string.ProxyAvailable, getPingText(info));
       } else {
-        out.value = Lang.getString(R.string.ProxyAvailable, Lang.getString(R.string.format_ping, Strings.buildCounter(info.pingMs)));
+        out.value = Lang.getString(R.string.ProxyAvailable, getPingText(info));
       }
     } else if (info.pingMs == Settings.PROXY_TIME_EMPTY) {
       out.colorId = ColorId.textNegative;
@@ -333,6 +333,19 @@ public class SettingsProxyController extends RecyclerViewController<Void> implem
     }
   }
 
+  private String getPingText (@NonNull Settings.Proxy info) {
+    String ping = Lang.getString(info.winState == WIN_STATE_WINNER ? R.string.format_pingBest : R.string.format_ping, Strings.buildCounter(info.pingMs));
+    Settings.ProxyHealth health = tdlib.proxyHealth().getHealth(info);
+    if (health.isReliable()) {
+      return Lang.getString(R.string.format_pingHealth, ping,
+        Strings.buildCounter(Math.round(health.latencyMs)),
+        Strings.buildCounter(Math.round(health.jitterMs)),
+        (int) Math.round(health.successRate * 100.0)
+      );
+    }
+    return ping;
+  }
+
   private void pingProxy (@NonNull Settings.Proxy info, boolean allowNotify) {
     int nextPingId = info.pingCount + 1;
     tdlib.pingProxy(info, pingMs -> runOnUiThreadOptional(() -> {
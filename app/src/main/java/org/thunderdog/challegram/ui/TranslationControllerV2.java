@@ -523,7 +523,7 @@ public class TranslationControllerV2 extends BottomSheetViewController.BottomShe
 
     showOptions(null, ids.get(), strings.get(), colors.get(), icons.get(), (itemView, id) -> {
       if (id == R.id.btn_copyTranslation) {
-        TdApi.FormattedText text = mTranslationsManager.getCachedTextTranslation(originalText.text, mTranslationsManager.getCurrentTranslatedLanguage());
+        TdApi.FormattedText text = mTranslationsManager.getCachedTextTranslation(originalText, mTranslationsManager.getCurrentTranslatedLanguage());
         if (text != null) {
           UI.copyText(text.text, R.string.CopiedText);
         }
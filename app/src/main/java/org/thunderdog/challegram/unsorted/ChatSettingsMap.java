@@ -0,0 +1,188 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.unsorted;
+
+import androidx.annotation.NonNull;
+
+import org.thunderdog.challegram.core.BaseThread;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import me.vkryl.core.collection.LongSparseIntArray;
+import me.vkryl.leveldb.LevelDB;
+
+/**
+ * In-memory copy of a family of per-chat values stored in {@link Settings} as "{prefix}{chatId}" keys.
+ *
+ * All values with the given prefix are read from LevelDB once, on first access.
+ * Afterwards reads never leave the memory, and writes update the memory immediately,
+ * while LevelDB is updated asynchronously, in a single transaction for all changes
+ * made within {@link #FLUSH_DELAY_MS}.
+ */
+public final class ChatSettingsMap {
+  public static final int TYPE_INT = 0;
+  public static final int TYPE_BOOLEAN = 1;
+
+  private static final long FLUSH_DELAY_MS = 100;
+
+  private final LevelDB pmc;
+  private final String prefix;
+  private final int type;
+
+  private LongSparseIntArray values;
+
+  public ChatSettingsMap (LevelDB pmc, String prefix, int type) {
+    this.pmc = pmc;
+    this.prefix = prefix;
+    this.type = type;
+  }
+
+  private LongSparseIntArray values () {
+    if (values == null) {
+      LongSparseIntArray values = new LongSparseIntArray();
+      for (LevelDB.Entry entry : pmc.find(prefix)) {
+        final long chatId;
+        try {
+          chatId = Long.parseLong(entry.key().substring(prefix.length()));
+        } catch (NumberFormatException e) {
+          // Another family, which prefix starts with the same characters, e.g. custom_vibrate_onlysilent_
+          continue;
+        }
+        values.put(chatId, type == TYPE_BOOLEAN ? (entry.asBoolean() ? 1 : 0) : entry.asInt());
+      }
+      this.values = values;
+    }
+    return values;
+  }
+
+  // Reading
+
+  public synchronized int getInt (long chatId, int defValue) {
+    return values().get(chatId, defValue);
+  }
+
+  public boolean getBoolean (long chatId, boolean defValue) {
+    int value = getInt(chatId, -1);
+    return value != -1 ? value == 1 : defValue;
+  }
+
+  // Writing
+
+  public void putInt (long chatId, int value) {
+    synchronized (this) {
+      values().put(chatId, value);
+    }
+    enqueue(this, prefix + chatId, value);
+  }
+
+  public void putBoolean (long chatId, boolean value) {
+    putInt(chatId, value ? 1 : 0);
+  }
+
+  public void remove (long chatId) {
+    synchronized (this) {
+      values().delete(chatId);
+    }
+    enqueue(this, prefix + chatId, null);
+  }
+
+  /**
+   * Drops writes that were not yet flushed.
+   * Must be called before values are removed from LevelDB by prefix,
+   * otherwise pending writes could restore them.
+   */
+  public void dropPendingWrites () {
+    synchronized (pendingWrites) {
+      Iterator<PendingWrite> it = pendingWrites.values().iterator();
+      while (it.hasNext()) {
+        if (it.next().map == this) {
+          it.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * Forgets all values, so they are read from LevelDB again on next access.
+   * Must be called after values are removed from LevelDB,
+   * otherwise a concurrent read could load stale values back.
+   */
+  public synchronized void reset () {
+    values = null;
+  }
+
+  // Asynchronous writes
+
+  private static final class PendingWrite {
+    final ChatSettingsMap map;
+    final Integer value;
+
+    PendingWrite (ChatSettingsMap map, Integer value) {
+      this.map = map;
+      this.value = value;
+    }
+  }
+
+  private static final LinkedHashMap<String, PendingWrite> pendingWrites = new LinkedHashMap<>();
+  private static BaseThread writer;
+  private static boolean isFlushScheduled;
+
+  private static void enqueue (ChatSettingsMap map, @NonNull String key, Integer value) {
+    synchronized (pendingWrites) {
+      // Previous write for the same key is superseded
+      pendingWrites.remove(key);
+      pendingWrites.put(key, new PendingWrite(map, value));
+      if (isFlushScheduled) {
+        return;
+      }
+      isFlushScheduled = true;
+      if (writer == null) {
+        writer = new BaseThread("SettingsWriteThread");
+      }
+    }
+    writer.post(ChatSettingsMap::flush, FLUSH_DELAY_MS);
+  }
+
+  /**
+   * Writes all pending changes to LevelDB.
+   */
+  public static void flush () {
+    synchronized (pendingWrites) {
+      isFlushScheduled = false;
+      if (pendingWrites.isEmpty()) {
+        return;
+      }
+      // Lock is held while writing, so clear() can't interleave with the transaction
+      LevelDB pmc = null;
+      for (Map.Entry<String, PendingWrite> entry : pendingWrites.entrySet()) {
+        PendingWrite write = entry.getValue();
+        if (pmc == null) {
+          pmc = write.map.pmc.edit();
+        }
+        if (write.value == null) {
+          pmc.remove(entry.getKey());
+        } else if (write.map.type == TYPE_BOOLEAN) {
+          pmc.putBoolean(entry.getKey(), write.value == 1);
+        } else {
+          pmc.putInt(entry.getKey(), write.value);
+        }
+      }
+      pmc.apply();
+      pendingWrites.clear();
+    }
+  }
+}
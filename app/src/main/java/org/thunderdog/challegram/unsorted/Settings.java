@@ -251,6 +251,7 @@ public class Settings {
   public static final String KEY_ACCOUNT_INFO_SUFFIX_PHOTO = "photo"; // path, if loaded
   public static final String KEY_ACCOUNT_INFO_SUFFIX_PHOTO_FULL = "photo_full"; // path, if loaded
   public static final String KEY_ACCOUNT_INFO_SUFFIX_COUNTER = "counter_"; // counter
+  public static final String KEY_ACCOUNT_INFO_SUFFIX_LAST_OPEN = "last_open"; // last time account was opened by user
 
   public static final String KEY_ACCOUNT_INFO_SUFFIX_EMOJI_STATUS_PREFIX = "emoji_"; // emoji status
   public static final String KEY_EMOJI_STATUS_SUFFIX_ID = "id";
@@ -4138,6 +4139,8 @@ public class Settings {
   private static final String KEY_PROXY_PREFIX_LAST_CONNECTION = KEY_PROXY_ITEM_PREFIX + "connect_";
   // type:long[] description: {time pong received, ping value}
   private static final String KEY_PROXY_PREFIX_LAST_PING = KEY_PROXY_ITEM_PREFIX + "ping_";
+  // type:long[] description: {time of the last probe, latency (microseconds), jitter (microseconds), success rate (ppm), probe count}
+  private static final String KEY_PROXY_PREFIX_HEALTH = KEY_PROXY_ITEM_PREFIX + "health_"; // + network_type + "_" + proxy_id
 
   public static final int PROXY_FLAG_ENABLED = 1;
   public static final int PROXY_FLAG_USE_FOR_CALLS = 1 << 1;
@@ -4514,6 +4517,77 @@ public class Settings {
     }
   }
 
+  // Proxy health
+
+  private static final String[] PROXY_NETWORK_TYPES = {"wifi", "mobile", "roaming", "other"};
+
+  /**
+   * @return Key under which health of proxies is tracked, as the same proxy may behave differently on Wi-Fi and mobile networks
+   */
+  public static String getProxyNetworkType (@Nullable TdApi.NetworkType networkType) {
+    if (networkType != null) {
+      switch (networkType.getConstructor()) {
+        case TdApi.NetworkTypeWiFi.CONSTRUCTOR:
+          return PROXY_NETWORK_TYPES[0];
+        case TdApi.NetworkTypeMobile.CONSTRUCTOR:
+          return PROXY_NETWORK_TYPES[1];
+        case TdApi.NetworkTypeMobileRoaming.CONSTRUCTOR:
+          return PROXY_NETWORK_TYPES[2];
+      }
+    }
+    return PROXY_NETWORK_TYPES[3];
+  }
+
+  private final Map<String, ProxyHealth> proxyHealthCache = new HashMap<>();
+
+  /**
+   * @return Health of the proxy measured on the given network type. Returned object is updated in place by {@link #trackProxyHealth}
+   */
+  public @NonNull ProxyHealth getProxyHealth (int proxyId, @Nullable TdApi.NetworkType networkType) {
+    final String key = KEY_PROXY_PREFIX_HEALTH + getProxyNetworkType(networkType) + "_" + proxyId;
+    synchronized (proxyHealthCache) {
+      ProxyHealth health = proxyHealthCache.get(key);
+      if (health == null) {
+        health = new ProxyHealth();
+        health.restore(pmc.getLongArray(key));
+        proxyHealthCache.put(key, health);
+      }
+      return health;
+    }
+  }
+
+  /**
+   * Tracks the result of a proxy probe.
+   *
+   * @param pingMs Round-trip time or negative value, if proxy did not respond
+   */
+  public void trackProxyHealth (int proxyId, @Nullable TdApi.NetworkType networkType, long timestampMs, long pingMs) {
+    if (proxyId <= Settings.PROXY_ID_UNKNOWN)
+      throw new IllegalArgumentException(Integer.toString(proxyId));
+    final String key = KEY_PROXY_PREFIX_HEALTH + getProxyNetworkType(networkType) + "_" + proxyId;
+    ProxyHealth health = getProxyHealth(proxyId, networkType);
+    long[] data;
+    synchronized (health) {
+      if (pingMs >= 0) {
+        health.addPong(timestampMs, pingMs);
+      } else {
+        health.addFailure(timestampMs);
+      }
+      data = health.save();
+    }
+    pmc.putLongArray(key, data);
+  }
+
+  private void removeProxyHealth (LevelDB editor, int proxyId) {
+    synchronized (proxyHealthCache) {
+      for (String networkType : PROXY_NETWORK_TYPES) {
+        String key = KEY_PROXY_PREFIX_HEALTH + networkType + "_" + proxyId;
+        editor.remove(key);
+        proxyHealthCache.remove(key);
+      }
+    }
+  }
+
   public int addOrUpdateProxy (@NonNull TdApi.InternalLinkTypeProxy proxy, @Nullable String proxyDescription, boolean setAsCurrent) {
     return addOrUpdateProxy(proxy, proxyDescription, setAsCurrent, PROXY_ID_NONE);
   }
@@ -4555,6 +4629,7 @@ public class Settings {
         editor.putInt(KEY_PROXY_LAST_ID, proxyId); // incrementing
         editor.putByteArray(KEY_PROXY_PREFIX_CONFIG + proxyId, data);
         editor.removeByPrefix(KEY_PROXY_PREFIX_CONNECTION_TIME + proxyId);
+        removeProxyHealth(editor, proxyId);
         isNewAdd = true;
       }
     }
@@ -4619,6 +4694,7 @@ public class Settings {
     pmc.edit();
     pmc.remove(KEY_PROXY_PREFIX_CONFIG + proxyId);
     pmc.removeByPrefix(KEY_PROXY_PREFIX_CONNECTION_TIME + proxyId);
+    removeProxyHealth(pmc, proxyId);
     pmc.apply();
 
     if (availableProxyId == proxyId) {
@@ -4699,6 +4775,7 @@ public class Settings {
     public long lastPingTime, lastPingResult;
 
     public int pingCount;
+    public double healthScore = ProxyHealth.SCORE_UNKNOWN;
     public long pingMs = PROXY_TIME_UNSET;
     public @Nullable TdApi.Error pingError;
     public int pingErrorCount;
@@ -4805,6 +4882,80 @@ public class Settings {
     }
   }
 
+  /**
+   * Exponentially-weighted statistics of proxy probes
+   */
+  public static class ProxyHealth {
+    public static final double SCORE_UNKNOWN = Double.MAX_VALUE;
+    public static final int MIN_PROBE_COUNT = 3;
+
+    private static final double LATENCY_WEIGHT = 0.25;
+    private static final double JITTER_WEIGHT = 0.125;
+    private static final double SUCCESS_WEIGHT = 0.1;
+    private static final double MIN_SUCCESS_RATE = 0.05;
+
+    public long lastProbeTime;
+    public double latencyMs = -1, jitterMs, successRate = 1.0;
+    public int probeCount;
+
+    void addPong (long timestampMs, long pingMs) {
+      if (latencyMs < 0) {
+        latencyMs = pingMs;
+      } else {
+        jitterMs += (Math.abs(pingMs - latencyMs) - jitterMs) * JITTER_WEIGHT;
+        latencyMs += (pingMs - latencyMs) * LATENCY_WEIGHT;
+      }
+      successRate += (1.0 - successRate) * SUCCESS_WEIGHT;
+      lastProbeTime = timestampMs;
+      probeCount++;
+    }
+
+    void addFailure (long timestampMs) {
+      successRate -= successRate * SUCCESS_WEIGHT;
+      lastProbeTime = timestampMs;
+      probeCount++;
+    }
+
+    public boolean hasLatency () {
+      return latencyMs >= 0;
+    }
+
+    public boolean isReliable () {
+      return probeCount >= MIN_PROBE_COUNT && hasLatency();
+    }
+
+    /**
+     * @return Expected round-trip time penalized by jitter and failures. Lower is better.
+     */
+    public double score () {
+      if (!isReliable()) {
+        return SCORE_UNKNOWN;
+      }
+      return (latencyMs + jitterMs * 2.0) / Math.max(MIN_SUCCESS_RATE, successRate);
+    }
+
+    long[] save () {
+      return new long[] {
+        lastProbeTime,
+        Math.round(latencyMs * 1000.0),
+        Math.round(jitterMs * 1000.0),
+        Math.round(successRate * 1_000_000.0),
+        probeCount
+      };
+    }
+
+    void restore (@Nullable long[] data) {
+      if (data == null || data.length < 5) {
+        return;
+      }
+      lastProbeTime = data[0];
+      latencyMs = data[1] / 1000.0;
+      jitterMs = data[2] / 1000.0;
+      successRate = data[3] / 1_000_000.0;
+      probeCount = (int) data[4];
+    }
+  }
+
   /**
    * Sets order of proxy list
    *
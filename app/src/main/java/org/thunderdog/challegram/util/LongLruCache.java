@@ -0,0 +1,207 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.util;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Size-bounded map from {@code long} to value, which evicts least recently used entries.
+ *
+ * Keys are never boxed: entries live in preallocated arrays, linked in recency order by their indexes,
+ * and are found through open-addressing table of entry indexes.
+ *
+ * Not thread-safe.
+ */
+public final class LongLruCache<V> {
+  private static final int NONE = -1;
+
+  private final int maxSize;
+
+  private final long[] keys;
+  private final Object[] values;
+  private final int[] prev, next;
+  private final int[] table; // entry index + 1, 0 when empty
+
+  private int size;
+  private int head = NONE, tail = NONE; // most and least recently used
+
+  public LongLruCache (int maxSize) {
+    if (maxSize <= 0)
+      throw new IllegalArgumentException(Integer.toString(maxSize));
+    this.maxSize = maxSize;
+    this.keys = new long[maxSize];
+    this.values = new Object[maxSize];
+    this.prev = new int[maxSize];
+    this.next = new int[maxSize];
+    this.table = new int[Integer.highestOneBit(maxSize * 2 - 1) << 1];
+  }
+
+  private static int slotOf (long key, int mask) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+
+  public int size () {
+    return size;
+  }
+
+  public int maxSize () {
+    return maxSize;
+  }
+
+  private int indexOf (long key) {
+    final int mask = table.length - 1;
+    for (int slot = slotOf(key, mask); table[slot] != 0; slot = (slot + 1) & mask) {
+      int index = table[slot] - 1;
+      if (keys[index] == key) {
+        return index;
+      }
+    }
+    return NONE;
+  }
+
+  public boolean containsKey (long key) {
+    return indexOf(key) != NONE;
+  }
+
+  /**
+   * @return Value and marks it as the most recently used one
+   */
+  @SuppressWarnings("unchecked")
+  @Nullable
+  public V get (long key) {
+    int index = indexOf(key);
+    if (index == NONE) {
+      return null;
+    }
+    moveToHead(index);
+    return (V) values[index];
+  }
+
+  /**
+   * Puts the value, evicting the least recently used one, if the cache is full.
+   */
+  public void put (long key, V value) {
+    if (value == null)
+      throw new IllegalArgumentException();
+    int index = indexOf(key);
+    if (index != NONE) {
+      values[index] = value;
+      moveToHead(index);
+      return;
+    }
+    if (size == maxSize) {
+      index = tail;
+      unlink(index);
+      removeFromTable(keys[index]);
+      size--;
+    } else {
+      index = size;
+    }
+    keys[index] = key;
+    values[index] = value;
+    linkHead(index);
+    addToTable(index);
+    size++;
+  }
+
+  public void clear () {
+    if (size == 0)
+      return;
+    Arrays.fill(values, null);
+    Arrays.fill(table, 0);
+    head = tail = NONE;
+    size = 0;
+  }
+
+  /**
+   * @return Up to {@code limit} values, starting from the most recently used one
+   */
+  @SuppressWarnings("unchecked")
+  public List<V> recentValues (int limit) {
+    List<V> result = new ArrayList<>(Math.min(limit, size));
+    for (int index = head; index != NONE && result.size() < limit; index = next[index]) {
+      result.add((V) values[index]);
+    }
+    return result;
+  }
+
+  // Recency list
+
+  private void unlink (int index) {
+    int p = prev[index], n = next[index];
+    if (p != NONE) {
+      next[p] = n;
+    } else {
+      head = n;
+    }
+    if (n != NONE) {
+      prev[n] = p;
+    } else {
+      tail = p;
+    }
+  }
+
+  private void linkHead (int index) {
+    prev[index] = NONE;
+    next[index] = head;
+    if (head != NONE) {
+      prev[head] = index;
+    } else {
+      tail = index;
+    }
+    head = index;
+  }
+
+  private void moveToHead (int index) {
+    if (head != index) {
+      unlink(index);
+      linkHead(index);
+    }
+  }
+
+  // Table
+
+  private void addToTable (int index) {
+    final int mask = table.length - 1;
+    int slot = slotOf(keys[index], mask);
+    while (table[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = index + 1;
+  }
+
+  private void removeFromTable (long key) {
+    final int mask = table.length - 1;
+    int slot = slotOf(key, mask);
+    while (keys[table[slot] - 1] != key) {
+      slot = (slot + 1) & mask;
+    }
+    // Move following entries of the same cluster into the freed slot, if it's on their probe path
+    int free = slot;
+    for (int n = (free + 1) & mask; table[n] != 0; n = (n + 1) & mask) {
+      int desired = slotOf(keys[table[n] - 1], mask);
+      if (((n - desired) & mask) >= ((n - free) & mask)) {
+        table[free] = table[n];
+        free = n;
+      }
+    }
+    table[free] = 0;
+  }
+}
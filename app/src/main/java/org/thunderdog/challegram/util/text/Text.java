@@ -1613,7 +1613,7 @@ public class Text implements Runnable, Emoji.CountLimiter, CounterAnimator.TextD
       } else if (isChild) {
         fullWidth = childWidth[0];
       } else {
-        fullWidth = U.measureText(in, start, end, paint);
+        fullWidth = TextAdvanceCache.measureText(in, start, end, paint);
       }
     }
     futureWidth = fullWidth;
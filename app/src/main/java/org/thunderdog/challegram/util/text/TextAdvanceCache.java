@@ -0,0 +1,112 @@
+/*
+ * This file is a part of Telegram X
+ * Copyright © 2014 (tgx-android@pm.me)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * File created on 18/10/2026
+ */
+package org.thunderdog.challegram.util.text;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+import androidx.annotation.NonNull;
+
+import org.thunderdog.challegram.U;
+
+import me.vkryl.core.util.LocalVar;
+
+/**
+ * Bounded cache of measured word advances, used by all {@link Text} instances.
+ *
+ * Relayout of the same text (after width change, rotation or message being recreated)
+ * measures the same words with the same paints again, so advances are memoized
+ * by word content and everything in {@link Paint} that affects measurement.
+ * All words, including ones too long to be cached, are measured by {@link U#measureTextRun}
+ * without the surrounding text as context, so the advance doesn't depend on where the word occurs
+ * or whether it was cached.
+ *
+ * Cache is direct-mapped: colliding entry is simply replaced, so lookups and inserts are O(1)
+ * and memory usage is fixed. Hits don't allocate. Texts are laid out on several threads at once,
+ * so each thread has its own table and no locking is needed.
+ */
+final class TextAdvanceCache {
+  private static final int CAPACITY = 2048; // Must be a power of two
+  private static final int MAX_WORD_LENGTH = 32;
+
+  private static final class Table {
+    final String[] words = new String[CAPACITY];
+    final int[] hashes = new int[CAPACITY];
+    final float[] advances = new float[CAPACITY];
+    final Typeface[] typefaces = new Typeface[CAPACITY];
+    final float[] textSizes = new float[CAPACITY];
+    final float[] textScales = new float[CAPACITY];
+    final float[] textSkews = new float[CAPACITY];
+    final int[] paintFlags = new int[CAPACITY];
+  }
+
+  private static final LocalVar<Table> tables = new LocalVar<>();
+
+  private static int hashOf (String in, int start, int end, Typeface typeface, float textSize, float textScale, float textSkew, int flags) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + in.charAt(i);
+    }
+    hash = 31 * hash + System.identityHashCode(typeface);
+    hash = 31 * hash + Float.floatToIntBits(textSize);
+    hash = 31 * hash + Float.floatToIntBits(textScale);
+    hash = 31 * hash + Float.floatToIntBits(textSkew);
+    hash = 31 * hash + flags;
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * Same as {@link U#measureTextRun(CharSequence, int, int, Paint)}, but short words are measured only once per thread.
+   */
+  public static float measureText (@NonNull String in, int start, int end, @NonNull Paint paint) {
+    final int length = end - start;
+    if (length <= 0 || length > MAX_WORD_LENGTH) {
+      return U.measureTextRun(in, start, end, paint);
+    }
+    Table table = tables.get();
+    if (table == null) {
+      tables.set(table = new Table());
+    }
+    final Typeface typeface = paint.getTypeface();
+    final float textSize = paint.getTextSize();
+    final float textScale = paint.getTextScaleX();
+    final float textSkew = paint.getTextSkewX();
+    final int flags = paint.getFlags();
+    final int hash = hashOf(in, start, end, typeface, textSize, textScale, textSkew, flags);
+    final int index = hash & (CAPACITY - 1);
+    String word = table.words[index];
+    if (word != null &&
+      table.hashes[index] == hash &&
+      word.length() == length &&
+      table.typefaces[index] == typeface &&
+      table.textSizes[index] == textSize &&
+      table.textScales[index] == textScale &&
+      table.textSkews[index] == textSkew &&
+      table.paintFlags[index] == flags &&
+      word.regionMatches(0, in, start, length)) {
+      return table.advances[index];
+    }
+    final float advance = U.measureTextRun(in, start, end, paint);
+    table.words[index] = in.substring(start, end);
+    table.hashes[index] = hash;
+    table.advances[index] = advance;
+    table.typefaces[index] = typeface;
+    table.textSizes[index] = textSize;
+    table.textScales[index] = textScale;
+    table.textSkews[index] = textSkew;
+    table.paintFlags[index] = flags;
+    return advance;
+  }
+}
@@ -159,6 +159,7 @@ public class TextMedia implements Destroyable, TdlibEmojiManager.Watcher {
         this.gifFile.setScaleType(GifFile.FIT_CENTER);
         this.gifFile.setOptimizationMode(GifFile.OptimizationMode.EMOJI);
         this.gifFile.setRequestedSize(Math.max(width, height));
+        this.gifFile.setShared(true);
         if (isEmojiStatus) {
           this.gifFile.setRepeatCount(2);
         }
@@ -28,10 +28,12 @@ import org.drinkless.tdlib.TdApi;
 import org.thunderdog.challegram.component.dialogs.ChatView;
 import org.thunderdog.challegram.component.dialogs.ChatsAdapter;
 import org.thunderdog.challegram.helper.LiveLocationHelper;
+import org.thunderdog.challegram.loader.ImageDecodeScheduler;
 import org.thunderdog.challegram.tool.Screen;
 import org.thunderdog.challegram.ui.ChatsController;
 
 import me.vkryl.android.util.ClickHelper;
+import me.vkryl.core.collection.LongSet;
 
 public class ChatsRecyclerView extends CustomRecyclerView implements ClickHelper.Delegate {
   private static final int PRELOAD_SIZE = 15;
@@ -75,6 +77,7 @@ public class ChatsRecyclerView extends CustomRecyclerView implements ClickHelper
     addOnScrollListener(new OnScrollListener() {
       @Override
       public void onScrolled (@NonNull RecyclerView recyclerView, int dx, int dy) {
+        updateImagePriorities();
         if (dy > 0) {
           if (controller != null && controller.isInForceTouchMode() && !isVerticalScrollBarEnabled()) {
             setVerticalScrollBarEnabled(true);
@@ -88,6 +91,25 @@ public class ChatsRecyclerView extends CustomRecyclerView implements ClickHelper
     });
   }
 
+  // Chats laid out outside of the viewport decode their avatars after the visible ones
+  private void updateImagePriorities () {
+    final int height = getMeasuredHeight();
+    final int childCount = getChildCount();
+    for (int i = 0; i < childCount; i++) {
+      View view = getChildAt(i);
+      if (view instanceof ChatView) {
+        boolean isVisible = view.getBottom() > 0 && view.getTop() < height;
+        ((ChatView) view).setImagePriority(isVisible ? ImageDecodeScheduler.Priority.VISIBLE : ImageDecodeScheduler.Priority.PREFETCH);
+      }
+    }
+  }
+
+  @Override
+  protected void onLayout (boolean changed, int left, int top, int right, int bottom) {
+    super.onLayout(changed, left, top, right, bottom);
+    updateImagePriorities();
+  }
+
   private final ClickHelper helper = new ClickHelper(this);
 
   @Override
@@ -233,6 +255,23 @@ public class ChatsRecyclerView extends CustomRecyclerView implements ClickHelper
     }
   }
 
+  public void updateUserStatuses (long[] userIds) {
+    LongSet userIdsSet = new LongSet(userIds);
+    int startIndex = 0, updated;
+    while (true) {
+      updated = adapter.updateUserStatuses(userIdsSet, startIndex);
+      if (updated == -1)
+        break;
+      View view = manager.findViewByPosition(updated);
+      if (view instanceof ChatView && ((ChatView) view).getChatId() == adapter.getChatAt(updated).getChatId()) {
+        view.invalidate();
+      } else {
+        adapter.notifyItemChanged(updated);
+      }
+      startIndex = updated + 1;
+    }
+  }
+
   public void updateChatTitle (long chatId, String title) {
     int updated = adapter.updateChatTitle(chatId, title);
     if (updated != -1) {
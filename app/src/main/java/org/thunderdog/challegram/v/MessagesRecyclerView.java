@@ -25,12 +25,14 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import org.thunderdog.challegram.component.attach.CustomItemAnimator;
 import org.thunderdog.challegram.component.chat.CustomTouchHelper;
+import org.thunderdog.challegram.component.chat.MessageView;
 import org.thunderdog.challegram.component.chat.MessagesAdapter;
 import org.thunderdog.challegram.component.chat.MessagesHolder;
 import org.thunderdog.challegram.component.chat.MessagesManager;
 import org.thunderdog.challegram.component.chat.MessagesTouchHelperCallback;
 import org.thunderdog.challegram.config.Config;
 import org.thunderdog.challegram.data.TGMessage;
+import org.thunderdog.challegram.loader.ImageDecodeScheduler;
 import org.thunderdog.challegram.navigation.HeaderView;
 import org.thunderdog.challegram.tool.Screen;
 import org.thunderdog.challegram.tool.UI;
@@ -142,6 +144,27 @@ public class MessagesRecyclerView extends RecyclerView implements FactorAnimator
     if (manager != null) {
       manager.controller().onMessagesFrameChanged();
     }
+    updateImagePriorities();
+  }
+
+  @Override
+  public void onScrolled (int dx, int dy) {
+    super.onScrolled(dx, dy);
+    updateImagePriorities();
+  }
+
+  // Messages laid out outside of the viewport decode their images after the visible ones
+  private void updateImagePriorities () {
+    final int height = getMeasuredHeight();
+    final int childCount = getChildCount();
+    for (int i = 0; i < childCount; i++) {
+      View itemView = getChildAt(i);
+      MessageView view = MessagesHolder.findMessageView(itemView);
+      if (view != null) {
+        boolean isVisible = itemView.getBottom() > 0 && itemView.getTop() < height;
+        view.setImagePriority(isVisible ? ImageDecodeScheduler.Priority.VISIBLE : ImageDecodeScheduler.Priority.PREFETCH);
+      }
+    }
   }
 
   private boolean disallowIntercept;